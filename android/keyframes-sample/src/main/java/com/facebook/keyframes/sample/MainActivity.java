@@ -26,22 +26,21 @@ import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.SeekBar;
 
+import com.facebook.keyframes.KFImageCache;
+import com.facebook.keyframes.KFImageLoader;
 import com.facebook.keyframes.KeyframesDrawable;
 import com.facebook.keyframes.KeyframesDrawableBuilder;
-import com.facebook.keyframes.deserializers.KFImageDeserializer;
 import com.facebook.keyframes.model.KFImage;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends Activity {
 
   private static final String TAG = "KeyframesSample";
 
   private static final int TEST_CANVAS_SIZE_PX = 500;
+  private static final String SAMPLE_FILE_ASSET = "sample_file";
 
   private KeyframesDrawable mKeyFramesDrawable;
   private boolean mPaused;
@@ -63,22 +62,9 @@ public class MainActivity extends Activity {
       }
 
       requestPermission();
-      InputStream descriptorJSON;
-      try {
-        descriptorJSON = new FileInputStream(descriptorPath);
-      } catch (FileNotFoundException e) {
-        e.printStackTrace();
-        return;
-      }
-
-      KFImage kfImage;
-      try {
-        kfImage = KFImageDeserializer.deserialize(descriptorJSON);
-      } catch (IOException e) {
-        e.printStackTrace();
-        return;
-      }
-      setKFImage(kfImage);
+      // The previewed file changes between broadcasts, so never reuse a cached copy of it.
+      KFImageCache.getInstance().remove(descriptorPath);
+      loadImage(descriptorPath, KFImageLoader.fromFile(new File(descriptorPath)));
     }
 
   };
@@ -91,6 +77,10 @@ public class MainActivity extends Activity {
   };
   private KFImage mKfImage;
 
+  private final KFImageLoader mImageLoader =
+      new KFImageLoader(Executors.newSingleThreadExecutor());
+  private KFImageLoader.Request mLoadRequest;
+
   private void requestPermission() {
     // Check if we have write permission
     int permission = ActivityCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE);
@@ -117,11 +107,15 @@ public class MainActivity extends Activity {
     mSeekBar = (SeekBar) findViewById(R.id.seek_bar);
 
     initSeekBar();
-    setKFImage(getSampleImage());
+    mImageLoader.setImageCache(KFImageCache.getInstance());
+    loadImage(SAMPLE_FILE_ASSET, KFImageLoader.fromAsset(getAssets(), SAMPLE_FILE_ASSET));
     registerReceiver(mPreviewRenderReceiver, mPreviewKeyframesAnimation);
   }
 
   public void resetImage(View view) {
+    if (mKfImage == null) {
+      return;
+    }
     setKFImage(mKfImage);
   }
 
@@ -145,7 +139,7 @@ public class MainActivity extends Activity {
     mSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
       @Override
       public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-        if (mDraggingSeekBar) {
+        if (mDraggingSeekBar && mKeyFramesDrawable != null) {
           mKeyFramesDrawable.seekToProgress((float) progress / 100);
         }
       }
@@ -153,6 +147,9 @@ public class MainActivity extends Activity {
       @Override
       public void onStartTrackingTouch(SeekBar seekBar) {
         mDraggingSeekBar = true;
+        if (mKeyFramesDrawable == null) {
+          return;
+        }
         mKeyFramesDrawable.setAnimationListener(new KeyframesDrawable.OnAnimationEnd() {
           @Override
           public void onAnimationEnd() {
@@ -228,23 +225,23 @@ public class MainActivity extends Activity {
     imageView.setImageAlpha(0);
   }
 
-  private KFImage getSampleImage() {
-    InputStream stream = null;
-    try {
-      stream = getResources().getAssets().open("sample_file");
-      KFImage sampleImage = KFImageDeserializer.deserialize(stream);
-      return sampleImage;
-    } catch (IOException e) {
-      e.printStackTrace();
-    } finally {
-      if (stream != null) {
-        try {
-          stream.close();
-        } catch (IOException ignored) {
-        }
-      }
+  private void loadImage(String key, KFImageLoader.Source source) {
+    if (mLoadRequest != null) {
+      mLoadRequest.cancel();
     }
-    return null;
+    mLoadRequest = mImageLoader.load(key, source, new KFImageLoader.Callback() {
+      @Override
+      public void onImageLoaded(KFImage image) {
+        mLoadRequest = null;
+        setKFImage(image);
+      }
+
+      @Override
+      public void onImageLoadFailed(Exception error) {
+        mLoadRequest = null;
+        Log.e(TAG, "Failed to load image", error);
+      }
+    });
   }
 
   @Override
@@ -256,6 +253,15 @@ public class MainActivity extends Activity {
     super.onPause();
   }
 
+  @Override
+  protected void onDestroy() {
+    if (mLoadRequest != null) {
+      mLoadRequest.cancel();
+      mLoadRequest = null;
+    }
+    super.onDestroy();
+  }
+
   @Override
   public void onResume() {
     super.onResume();
@@ -13,6 +13,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.BitmapDrawable;
 import android.test.AndroidTestCase;
@@ -67,4 +68,64 @@ public class SanityTests extends AndroidTestCase {
       Assert.assertTrue(testBitmap.sameAs(compareBitmap));
     }
   }
+
+  /**
+   * Checks that the baked group matrices match the evaluated ones at every whole frame.
+   */
+  public void testBakedGroupMatricesForSample() throws Exception {
+    InputStream stream = getContext().getResources().getAssets().open("sample_file");
+    KFImage kfImage = KFImageDeserializer.deserialize(stream);
+    int groupCount = kfImage.getAnimationGroups().size();
+    Matrix[] expected = new Matrix[groupCount];
+    Matrix[] actual = new Matrix[groupCount];
+    for (int i = 0; i < groupCount; i++) {
+      expected[i] = new Matrix();
+      actual[i] = new Matrix();
+    }
+    float[] expectedValues = new float[9];
+    float[] actualValues = new float[9];
+    for (int frame = 0; frame <= kfImage.getFrameCount(); frame++) {
+      kfImage.setAnimationMatrices(expected, frame);
+      kfImage.getGroupMatrixTable().apply(actual, frame, actualValues);
+      for (int i = 0; i < groupCount; i++) {
+        expected[i].getValues(expectedValues);
+        actual[i].getValues(actualValues);
+        for (int j = 0; j < 9; j++) {
+          Assert.assertEquals(expectedValues[j], actualValues[j], 1e-4f);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks that progress updates which don't change what is drawn are suppressed.
+   */
+  public void testRedrawSuppressionForSample() throws Exception {
+    InputStream stream = getContext().getResources().getAssets().open("sample_file");
+    KFImage kfImage = KFImageDeserializer.deserialize(stream);
+
+    KeyframesDrawable quantizedDrawable = new KeyframesDrawableBuilder()
+        .withImage(kfImage)
+        .withExperimentalFeatures()
+        .withSourceFrameQuantization()
+        .build();
+    quantizedDrawable.onProgressUpdate(10.1f);
+    quantizedDrawable.onProgressUpdate(10.3f);
+    quantizedDrawable.onProgressUpdate(9.8f);
+    Assert.assertEquals(2, quantizedDrawable.getSuppressedRedrawCount());
+    quantizedDrawable.onProgressUpdate(10.6f);
+    Assert.assertEquals(2, quantizedDrawable.getSuppressedRedrawCount());
+
+    KeyframesDrawable thresholdDrawable = new KeyframesDrawableBuilder()
+        .withImage(kfImage)
+        .withExperimentalFeatures()
+        .withRedrawThreshold(0)
+        .build();
+    thresholdDrawable.setBounds(0, 0, TEST_CANVAS_SIZE_PX, TEST_CANVAS_SIZE_PX);
+    thresholdDrawable.onProgressUpdate(10);
+    thresholdDrawable.onProgressUpdate(10);
+    Assert.assertEquals(1, thresholdDrawable.getSuppressedRedrawCount());
+    thresholdDrawable.onProgressUpdate(kfImage.getFrameCount() / 2);
+    Assert.assertEquals(1, thresholdDrawable.getSuppressedRedrawCount());
+  }
 }
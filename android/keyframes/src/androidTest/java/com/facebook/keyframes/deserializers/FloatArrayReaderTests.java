@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import android.test.AndroidTestCase;
+import android.util.JsonReader;
+
+import junit.framework.Assert;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Tests reading float arrays with {@link CommonDeserializerHelper}, which needs a real
+ * {@link JsonReader} and so can't be exercised in unit tests.
+ */
+public class FloatArrayReaderTests extends AndroidTestCase {
+
+  public void testReadsEmptyArrays() throws IOException {
+    Assert.assertEquals(0, CommonDeserializerHelper.readFloatArray(createReader("[]")).length);
+    Assert.assertEquals(0, CommonDeserializerHelper.read3DFloatArray(createReader("[]")).length);
+
+    float[][][] nested = CommonDeserializerHelper.read3DFloatArray(createReader("[[], [[]]]"));
+    Assert.assertEquals(2, nested.length);
+    Assert.assertEquals(0, nested[0].length);
+    Assert.assertEquals(1, nested[1].length);
+    Assert.assertEquals(0, nested[1][0].length);
+  }
+
+  public void testGrowsPastInitialCapacity() throws IOException {
+    float[] expected = createValues(100);
+    Assert.assertTrue(Arrays.equals(
+        expected,
+        CommonDeserializerHelper.readFloatArray(createReader(toJson(expected)))));
+
+    // A shorter array read after growing only holds its own values.
+    float[] shorter = createValues(3);
+    Assert.assertTrue(Arrays.equals(
+        shorter,
+        CommonDeserializerHelper.readFloatArray(createReader(toJson(shorter)))));
+  }
+
+  public void testReadsRaggedNestedArrays() throws IOException {
+    float[][][] values = CommonDeserializerHelper.read3DFloatArray(
+        createReader("[[[1], [2, 3], []], [], [[4, 5, 6]]]"));
+    Assert.assertEquals(3, values.length);
+    Assert.assertEquals(3, values[0].length);
+    Assert.assertTrue(Arrays.equals(new float[] {1}, values[0][0]));
+    Assert.assertTrue(Arrays.equals(new float[] {2, 3}, values[0][1]));
+    Assert.assertEquals(0, values[0][2].length);
+    Assert.assertEquals(0, values[1].length);
+    Assert.assertEquals(1, values[2].length);
+    Assert.assertTrue(Arrays.equals(new float[] {4, 5, 6}, values[2][0]));
+  }
+
+  public void testDropsLargeScratchBuffer() throws IOException {
+    FloatArrayReader floatArrayReader = new FloatArrayReader();
+    float[] expected = createValues(10 * FloatArrayReader.MAX_RETAINED_CAPACITY);
+    Assert.assertTrue(Arrays.equals(
+        expected,
+        floatArrayReader.readFloatArray(createReader(toJson(expected)))));
+    Assert.assertTrue(
+        floatArrayReader.getValuesCapacity() <= FloatArrayReader.MAX_RETAINED_CAPACITY);
+  }
+
+  private static JsonReader createReader(String json) {
+    return new JsonReader(new StringReader(json));
+  }
+
+  private static float[] createValues(int count) {
+    float[] values = new float[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = i * 0.5f;
+    }
+    return values;
+  }
+
+  private static String toJson(float[] values) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(values[i]);
+    }
+    return json.append(']').toString();
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Times color interpolation with {@link KFColorInterpolator}, from prepared segments, against
+ * interpolating the components of both colors as floats at every call, logging the average cost of
+ * a call under {@link #TAG}.  Nothing is asserted, as timings depend on the device.
+ */
+public class ColorInterpolatorBenchmarkTests extends AndroidTestCase {
+
+  private static final String TAG = "ColorInterpolatorBenchmark";
+
+  private static final int[] COLORS = {
+      0xFF000000,
+      0xFFFFFFFF,
+      0x80FF8040,
+      0x00336699,
+      0xFF1E90FF,
+      0xC0FF0000,
+  };
+
+  private static final int WARMUP_ITERATIONS = 100000;
+  private static final int ITERATIONS = 1000000;
+  private static final int INPUT_STEPS = 997;
+
+  public void testInterpolationCost() {
+    logAverageCost("per call float", false, false);
+    logAverageCost("fixed point", true, false);
+    logAverageCost("fixed point premultiplied", true, true);
+  }
+
+  private static void logAverageCost(String name, boolean fixedPoint, boolean premultiplied) {
+    int segmentCount = COLORS.length - 1;
+    int[] segmentStarts = new int[segmentCount];
+    long[] segmentDeltas = new long[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segmentStarts[i] = KFColorInterpolator.getSegmentStart(COLORS[i], premultiplied);
+      segmentDeltas[i] =
+          KFColorInterpolator.getSegmentDeltas(COLORS[i], COLORS[i + 1], premultiplied);
+    }
+
+    evaluate(segmentStarts, segmentDeltas, fixedPoint, premultiplied, WARMUP_ITERATIONS);
+    long start = System.nanoTime();
+    int checksum = evaluate(segmentStarts, segmentDeltas, fixedPoint, premultiplied, ITERATIONS);
+    long elapsed = System.nanoTime() - start;
+    Log.i(
+        TAG,
+        String.format(
+            "%s: %.1f ns per call (checksum %d)",
+            name,
+            (double) elapsed / (ITERATIONS * segmentCount),
+            checksum));
+  }
+
+  private static int evaluate(
+      int[] segmentStarts,
+      long[] segmentDeltas,
+      boolean fixedPoint,
+      boolean premultiplied,
+      int iterations) {
+    int checksum = 0;
+    for (int i = 0; i < iterations; i++) {
+      float progress = (float) (i % INPUT_STEPS) / INPUT_STEPS;
+      for (int j = 0; j < segmentStarts.length; j++) {
+        checksum ^= fixedPoint
+            ? KFColorInterpolator.interpolate(
+                segmentStarts[j],
+                segmentDeltas[j],
+                progress,
+                premultiplied)
+            : interpolateFloat(COLORS[j], COLORS[j + 1], progress);
+      }
+    }
+    return checksum;
+  }
+
+  private static int interpolateFloat(int colorA, int colorB, float progress) {
+    return Color.argb(
+        (int) (Color.alpha(colorA) + (Color.alpha(colorB) - Color.alpha(colorA)) * progress),
+        (int) (Color.red(colorA) + (Color.red(colorB) - Color.red(colorA)) * progress),
+        (int) (Color.green(colorA) + (Color.green(colorB) - Color.green(colorA)) * progress),
+        (int) (Color.blue(colorA) + (Color.blue(colorB) - Color.blue(colorA)) * progress));
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.test.AndroidTestCase;
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.facebook.keyframes.deserializers.CommonDeserializerHelper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times reading JSON float arrays with {@link CommonDeserializerHelper}, into primitive arrays,
+ * against reading them into lists of boxed floats and converting them, logging the average cost of
+ * a value under {@link #TAG}.  Nothing is asserted, as timings depend on the device.
+ */
+public class FloatArrayBenchmarkTests extends AndroidTestCase {
+
+  private static final String TAG = "FloatArrayBenchmark";
+
+  private static final int[] ARRAY_SIZES = {2, 6, 32, 512};
+
+  private static final int WARMUP_ITERATIONS = 2000;
+  private static final int ITERATIONS = 20000;
+
+  public void testReadCost() throws IOException {
+    for (int size : ARRAY_SIZES) {
+      String json = createJson(size);
+      logAverageCost("primitive", json, size, false);
+      logAverageCost("boxed", json, size, true);
+    }
+  }
+
+  private static void logAverageCost(String name, String json, int size, boolean boxed)
+      throws IOException {
+    read(json, WARMUP_ITERATIONS, boxed);
+    long start = System.nanoTime();
+    float sum = read(json, ITERATIONS, boxed);
+    long elapsed = System.nanoTime() - start;
+    Log.i(
+        TAG,
+        String.format(
+            "%s, %d values: %.1f ns per value (checksum %f)",
+            name,
+            size,
+            (double) elapsed / ((long) ITERATIONS * size),
+            sum));
+  }
+
+  private static float read(String json, int iterations, boolean boxed) throws IOException {
+    float sum = 0;
+    for (int i = 0; i < iterations; i++) {
+      JsonReader reader = new JsonReader(new StringReader(json));
+      float[] values = boxed ?
+          readBoxedFloatArray(reader) :
+          CommonDeserializerHelper.readFloatArray(reader);
+      sum += values[values.length - 1];
+    }
+    return sum;
+  }
+
+  /**
+   * Reads the array the way it was before reading into primitive arrays.
+   */
+  private static float[] readBoxedFloatArray(JsonReader reader) throws IOException {
+    List<Float> list = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      list.add((float) reader.nextDouble());
+    }
+    reader.endArray();
+    float[] values = new float[list.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = list.get(i);
+    }
+    return values;
+  }
+
+  private static String createJson(int size) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(i * 1.25f);
+    }
+    return json.append(']').toString();
+  }
+}
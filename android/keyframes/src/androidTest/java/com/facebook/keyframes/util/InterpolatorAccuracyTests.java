@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.test.AndroidTestCase;
+import android.view.animation.Interpolator;
+
+import junit.framework.Assert;
+
+/**
+ * Compares the interpolators against {@link KFPathInterpolator}, which needs a real
+ * {@link android.graphics.PathMeasure} and so can't be exercised in unit tests.
+ */
+public class InterpolatorAccuracyTests extends AndroidTestCase {
+
+  private static final float[][] CURVES = {
+      {0, 0, 1, 1},
+      {0.25f, 0.1f, 0.25f, 1},
+      {0.42f, 0, 1, 1},
+      {0, 0, 0.58f, 1},
+      {0.42f, 0, 0.58f, 1},
+      {0.167f, 0.167f, 0.833f, 0.833f},
+      {0.333f, 0, 0.667f, 1},
+  };
+
+  /**
+   * {@link KFPathInterpolator} samples the curve at a coarse precision, so it is only accurate to
+   * about this much.
+   */
+  private static final float PATH_SAMPLED_TOLERANCE = 0.02f;
+
+  public void testCubicBezierMatchesPathSampled() {
+    for (float[] curve : CURVES) {
+      Interpolator expected = new KFPathInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      Interpolator actual = new KFCubicBezierInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      for (int i = 0; i <= 100; i++) {
+        float x = i / 100f;
+        Assert.assertEquals(
+            expected.getInterpolation(x),
+            actual.getInterpolation(x),
+            PATH_SAMPLED_TOLERANCE);
+      }
+    }
+  }
+
+  public void testLookupTableMatchesPathSampled() {
+    for (float[] curve : CURVES) {
+      Interpolator expected = new KFPathInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      Interpolator actual = new KFLookupTableInterpolator(
+          curve[0],
+          curve[1],
+          curve[2],
+          curve[3],
+          KFLookupTableInterpolator.DEFAULT_ERROR_BOUND);
+      for (int i = 0; i <= 100; i++) {
+        float x = i / 100f;
+        Assert.assertEquals(
+            expected.getInterpolation(x),
+            actual.getInterpolation(x),
+            PATH_SAMPLED_TOLERANCE);
+      }
+    }
+  }
+}
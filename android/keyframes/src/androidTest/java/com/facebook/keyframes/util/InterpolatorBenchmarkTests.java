@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.animation.Interpolator;
+
+/**
+ * Times evaluation of each kind of interpolator over the same curves, logging the average cost of
+ * a call under {@link #TAG}.  Nothing is asserted, as timings depend on the device.
+ */
+public class InterpolatorBenchmarkTests extends AndroidTestCase {
+
+  private static final String TAG = "InterpolatorBenchmark";
+
+  private static final float[][] CURVES = {
+      {0.25f, 0.1f, 0.25f, 1},
+      {0.42f, 0, 1, 1},
+      {0, 0, 0.58f, 1},
+      {0.42f, 0, 0.58f, 1},
+      {0.167f, 0.167f, 0.833f, 0.833f},
+      {0.333f, 0, 0.667f, 1},
+  };
+
+  private static final int WARMUP_ITERATIONS = 100000;
+  private static final int ITERATIONS = 1000000;
+  private static final int INPUT_STEPS = 997;
+
+  public void testEvaluationCost() {
+    int count = CURVES.length;
+    Interpolator[] pathSampled = new Interpolator[count];
+    Interpolator[] cubicBezier = new Interpolator[count];
+    Interpolator[] lookupTable = new Interpolator[count];
+    for (int i = 0; i < count; i++) {
+      float[] curve = CURVES[i];
+      pathSampled[i] = new KFPathInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      cubicBezier[i] = new KFCubicBezierInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      lookupTable[i] = new KFLookupTableInterpolator(
+          curve[0],
+          curve[1],
+          curve[2],
+          curve[3],
+          KFLookupTableInterpolator.DEFAULT_ERROR_BOUND);
+    }
+
+    logAverageCost("path sampled", pathSampled);
+    logAverageCost("cubic bezier", cubicBezier);
+    logAverageCost("lookup table", lookupTable);
+  }
+
+  private static void logAverageCost(String name, Interpolator[] interpolators) {
+    evaluate(interpolators, WARMUP_ITERATIONS);
+    long start = System.nanoTime();
+    float sum = evaluate(interpolators, ITERATIONS);
+    long elapsed = System.nanoTime() - start;
+    Log.i(
+        TAG,
+        String.format(
+            "%s: %.1f ns per call (checksum %f)",
+            name,
+            (double) elapsed / (ITERATIONS * interpolators.length),
+            sum));
+  }
+
+  private static float evaluate(Interpolator[] interpolators, int iterations) {
+    float sum = 0;
+    for (int i = 0; i < iterations; i++) {
+      float input = (float) (i % INPUT_STEPS) / INPUT_STEPS;
+      for (Interpolator interpolator : interpolators) {
+        sum += interpolator.getInterpolation(input);
+      }
+    }
+    return sum;
+  }
+}
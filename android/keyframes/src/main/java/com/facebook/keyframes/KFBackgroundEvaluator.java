@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Evaluates the frames of an animation on an {@link Executor}, used by {@link KeyframesDrawable}
+ * to keep keyframe math off of the UI thread.  Frames are evaluated into a back buffer while the
+ * front buffer is drawn, and the two are swapped by {@link #acquireFrame()} once the back buffer
+ * holds a completed frame.
+ *
+ * When evaluation falls behind the requested frames, requests made while an evaluation is running
+ * are coalesced, so that only the latest is evaluated next.  What {@link #acquireFrame()} returns
+ * then depends on the maximum wait: with none, it returns the latest completed frame right away,
+ * dropping to it from whichever frame was drawn last.  Otherwise it blocks until the latest
+ * requested frame is completed, or the wait times out, in which case it returns the latest
+ * completed frame as well.
+ * @param <T> The type of frame state evaluated
+ */
+class KFBackgroundEvaluator<T> {
+
+  interface Evaluation<T> {
+
+    /**
+     * Creates an empty buffer to evaluate frames into.  Called on the executor.
+     */
+    T createBuffer();
+
+    /**
+     * Evaluates a frame into the buffer, overwriting the frame it held.  Called on the executor,
+     * one frame at a time.
+     */
+    void evaluate(float frameProgress, T buffer);
+  }
+
+  private final Executor mExecutor;
+  private final Evaluation<T> mEvaluation;
+  private final Runnable mOnFrameAvailable;
+  private final long mMaxWaitNanos;
+
+  private final Object mLock = new Object();
+  private final Runnable mEvaluateRunnable = new Runnable() {
+    @Override
+    public void run() {
+      evaluatePendingRequest();
+    }
+  };
+
+  /**
+   * The buffers, with the request count of the frame each holds, or 0 if none.  mBack is only
+   * touched by the executor while mEvaluating.
+   */
+  private T mFront;
+  private T mBack;
+  private int mFrontRequest;
+  private int mBackRequest;
+  private boolean mBackReady;
+
+  private boolean mEvaluating;
+  private boolean mHasPendingRequest;
+  private float mPendingFrameProgress;
+  private int mRequestCount;
+  private boolean mWaiting;
+
+  /**
+   * @param executor The executor to evaluate frames on
+   * @param evaluation The frame evaluation to run
+   * @param onFrameAvailable Called on the executor when a frame is completed and no thread is
+   * waiting for it in {@link #acquireFrame()}
+   * @param maxWaitMs The longest {@link #acquireFrame()} waits for the latest requested frame, or
+   * 0 to never wait
+   */
+  KFBackgroundEvaluator(
+      Executor executor,
+      Evaluation<T> evaluation,
+      Runnable onFrameAvailable,
+      long maxWaitMs) {
+    if (maxWaitMs < 0) {
+      throw new IllegalArgumentException("maxWaitMs < 0");
+    }
+    mExecutor = executor;
+    mEvaluation = evaluation;
+    mOnFrameAvailable = onFrameAvailable;
+    mMaxWaitNanos = maxWaitMs * 1000000;
+  }
+
+  /**
+   * Requests that a frame be evaluated, replacing any request which hasn't started yet.
+   * @param frameProgress The progress in animation, given as a frame value
+   */
+  void request(float frameProgress) {
+    synchronized (mLock) {
+      mRequestCount++;
+      mPendingFrameProgress = frameProgress;
+      mHasPendingRequest = true;
+      startEvaluationLocked();
+    }
+  }
+
+  /**
+   * Returns the latest completed frame, or null if none has completed yet, swapping buffers if a
+   * new frame has completed since the last call.  The returned buffer isn't written to until the
+   * next call.
+   */
+  T acquireFrame() {
+    synchronized (mLock) {
+      long deadline = System.nanoTime() + mMaxWaitNanos;
+      while (true) {
+        if (mBackReady) {
+          T front = mFront;
+          mFront = mBack;
+          mBack = front;
+          mFrontRequest = mBackRequest;
+          mBackReady = false;
+          startEvaluationLocked();
+        }
+        if (mMaxWaitNanos == 0 || mFrontRequest == mRequestCount) {
+          break;
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          break;
+        }
+        mWaiting = true;
+        try {
+          mLock.wait(
+              remainingNanos / 1000000,
+              (int) (remainingNanos % 1000000));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } finally {
+          mWaiting = false;
+        }
+      }
+      return mFront;
+    }
+  }
+
+  /**
+   * Starts evaluating the pending request, unless there is none, an evaluation is already running,
+   * or the back buffer holds a frame which hasn't been acquired yet.  If the executor rejects the
+   * evaluation, it is run on the calling thread instead.
+   */
+  private void startEvaluationLocked() {
+    if (!mHasPendingRequest || mEvaluating || mBackReady) {
+      return;
+    }
+    mEvaluating = true;
+    try {
+      mExecutor.execute(mEvaluateRunnable);
+    } catch (RejectedExecutionException e) {
+      mEvaluateRunnable.run();
+    }
+  }
+
+  private void evaluatePendingRequest() {
+    float frameProgress;
+    int request;
+    T back;
+    synchronized (mLock) {
+      frameProgress = mPendingFrameProgress;
+      request = mRequestCount;
+      mHasPendingRequest = false;
+      if (mBack == null) {
+        mBack = mEvaluation.createBuffer();
+      }
+      back = mBack;
+    }
+
+    boolean completed = false;
+    boolean waiting;
+    try {
+      mEvaluation.evaluate(frameProgress, back);
+      completed = true;
+    } finally {
+      synchronized (mLock) {
+        mEvaluating = false;
+        if (completed) {
+          mBackRequest = request;
+          mBackReady = true;
+        } else {
+          startEvaluationLocked();
+        }
+        waiting = mWaiting;
+        mLock.notifyAll();
+      }
+    }
+    if (!waiting) {
+      mOnFrameAvailable.run();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * A cache of evaluated frame states, keyed by frame index, used by {@link KeyframesDrawable} to
+ * memoize the frames of looping animations.  Like {@link KFImageCache}, it is bounded by an
+ * estimate of the memory held by its entries and evicts the least recently used frames first.
+ * Unlike it, it belongs to a single drawable, though it may be cleared from another thread than the
+ * one frames are evaluated on.
+ * @param <T> The type of frame state held
+ */
+class KFFrameCache<T> {
+
+  private final LinkedHashMap<Integer, Entry<T>> mEntries =
+      new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+  private final int mMaxSizeBytes;
+  private int mSizeBytes;
+
+  private int mHitCount;
+  private int mMissCount;
+  private int mEvictionCount;
+
+  /**
+   * @param maxSizeBytes The maximum estimated size of all cached frames
+   */
+  KFFrameCache(int maxSizeBytes) {
+    if (maxSizeBytes < 0) {
+      throw new IllegalArgumentException("maxSizeBytes < 0");
+    }
+    mMaxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the state cached for the frame, or null, marking it as the most recently used.
+   */
+  synchronized T get(int frameIndex) {
+    Entry<T> entry = mEntries.get(frameIndex);
+    if (entry == null) {
+      mMissCount++;
+      return null;
+    }
+    mHitCount++;
+    return entry.mState;
+  }
+
+  /**
+   * Caches the state of a frame, evicting least recently used frames as needed.  A state larger
+   * than the maximum size is not cached.
+   * @param sizeBytes The estimated memory held by the state
+   */
+  synchronized void put(int frameIndex, T state, int sizeBytes) {
+    Entry<T> previous = mEntries.remove(frameIndex);
+    if (previous != null) {
+      mSizeBytes -= previous.mSizeBytes;
+    }
+    if (sizeBytes <= mMaxSizeBytes) {
+      mEntries.put(frameIndex, new Entry<>(state, sizeBytes));
+      mSizeBytes += sizeBytes;
+      trimToSize(mMaxSizeBytes);
+    }
+  }
+
+  /**
+   * Evicts least recently used frames until the cache is no larger than the given size.
+   */
+  synchronized void trimToSize(int sizeBytes) {
+    Iterator<Entry<T>> iterator = mEntries.values().iterator();
+    while (mSizeBytes > sizeBytes && iterator.hasNext()) {
+      Entry<T> entry = iterator.next();
+      iterator.remove();
+      mSizeBytes -= entry.mSizeBytes;
+      mEvictionCount++;
+    }
+  }
+
+  synchronized void evictAll() {
+    trimToSize(0);
+  }
+
+  synchronized int size() {
+    return mEntries.size();
+  }
+
+  synchronized int getSizeBytes() {
+    return mSizeBytes;
+  }
+
+  int getMaxSizeBytes() {
+    return mMaxSizeBytes;
+  }
+
+  synchronized int getHitCount() {
+    return mHitCount;
+  }
+
+  synchronized int getMissCount() {
+    return mMissCount;
+  }
+
+  synchronized int getEvictionCount() {
+    return mEvictionCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    int accesses = mHitCount + mMissCount;
+    return String.format(
+        Locale.US,
+        "KFFrameCache[frames=%d,sizeBytes=%d,maxSizeBytes=%d,hits=%d,misses=%d,hitRate=%d%%," +
+            "evictions=%d]",
+        mEntries.size(),
+        mSizeBytes,
+        mMaxSizeBytes,
+        mHitCount,
+        mMissCount,
+        accesses != 0 ? (100 * mHitCount / accesses) : 0,
+        mEvictionCount);
+  }
+
+  private static class Entry<T> {
+
+    private final T mState;
+    private final int mSizeBytes;
+
+    private Entry(T state, int sizeBytes) {
+      mState = state;
+      mSizeBytes = sizeBytes;
+    }
+  }
+}
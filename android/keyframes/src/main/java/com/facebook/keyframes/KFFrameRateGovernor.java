@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+/**
+ * Picks how often an animation is updated from what its updates cost, used by
+ * {@link KeyframesDrawableAnimationCallback} when adaptive frame rate is enabled.  The interval
+ * between updates is a whole multiple of the uncapped interval, the divisor of the frame rate, so
+ * that a 60 fps animation steps down to 30, 20 and then 15 fps.
+ *
+ * The cost of each update, the time spent evaluating and drawing it, is compared to a budget, a
+ * share of the interval between updates, over windows of updates.  When most updates of a window
+ * are over budget, the frame rate is stepped down, so that a single slow update, e.g. from garbage
+ * collection, doesn't.  It is only stepped back up after several windows in a row in which most
+ * updates would fit in the headroom, a lower share of the shorter interval, so that an animation
+ * which is just over budget at the higher rate doesn't flip back and forth.
+ */
+class KFFrameRateGovernor {
+
+  static final int MAX_DIVISOR = 4;
+  static final int WINDOW_UPDATES = 10;
+  static final int HEADROOM_WINDOWS = 3;
+  static final float BUDGET_SHARE = 0.5f;
+  static final float HEADROOM_SHARE = 0.35f;
+
+  private int mDivisor = 1;
+  private int mTransitionCount;
+
+  private int mWindowUpdateCount;
+  private int mWindowOverBudgetCount;
+  private int mWindowHeadroomCount;
+  private int mHeadroomWindowCount;
+
+  /**
+   * Returns what the uncapped frame rate is currently divided by.
+   */
+  int getDivisor() {
+    return mDivisor;
+  }
+
+  /**
+   * Returns how many times the frame rate was stepped up or down.
+   */
+  int getTransitionCount() {
+    return mTransitionCount;
+  }
+
+  /**
+   * Records the cost of an update.
+   * @param costNanos The time spent evaluating and drawing the update
+   * @param uncappedIntervalNanos The interval between updates at the uncapped frame rate
+   * @return whether the frame rate changed
+   */
+  boolean recordUpdate(long costNanos, long uncappedIntervalNanos) {
+    if (costNanos > BUDGET_SHARE * uncappedIntervalNanos * mDivisor) {
+      mWindowOverBudgetCount++;
+    } else if (costNanos < HEADROOM_SHARE * uncappedIntervalNanos * (mDivisor - 1)) {
+      mWindowHeadroomCount++;
+    }
+    if (++mWindowUpdateCount < WINDOW_UPDATES) {
+      return false;
+    }
+    boolean overBudget = mWindowOverBudgetCount > WINDOW_UPDATES / 2;
+    boolean headroom = mWindowHeadroomCount > WINDOW_UPDATES / 2;
+    mWindowUpdateCount = 0;
+    mWindowOverBudgetCount = 0;
+    mWindowHeadroomCount = 0;
+
+    if (overBudget) {
+      mHeadroomWindowCount = 0;
+      if (mDivisor < MAX_DIVISOR) {
+        mDivisor++;
+        mTransitionCount++;
+        return true;
+      }
+    } else if (headroom) {
+      if (++mHeadroomWindowCount == HEADROOM_WINDOWS) {
+        mHeadroomWindowCount = 0;
+        mDivisor--;
+        mTransitionCount++;
+        return true;
+      }
+    } else {
+      mHeadroomWindowCount = 0;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFAnimationGroup;
+import com.facebook.keyframes.model.KFBitmap;
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFGradient;
+import com.facebook.keyframes.model.KFGradientColor;
+import com.facebook.keyframes.model.KFImage;
+import com.facebook.keyframes.util.VectorCommand;
+
+/**
+ * A cache of parsed {@link KFImage}s.  Images are immutable once built, so a single instance can be
+ * shared by every {@link KeyframesDrawable} showing the same animation instead of deserializing it
+ * again.  Images are keyed by any identity the caller chooses, e.g. an asset name, or by
+ * {@link KFImage#getKey()} when added with {@link #put(KFImage)}.
+ *
+ * The cache is bounded by an estimate of the memory held by its images, see
+ * {@link #estimateSizeBytes(KFImage)}, and evicts the least recently used images first.  Images
+ * larger than the whole budget are not cached.  All methods are thread safe.
+ */
+public class KFImageCache {
+
+  public static final int DEFAULT_MAX_SIZE_BYTES = 2 * 1024 * 1024;
+
+  /**
+   * Rough per object costs used to estimate the size of an image.  These don't need to be exact,
+   * only proportional to the real footprint so that the budget is meaningful.
+   */
+  private static final int OBJECT_BYTES = 16;
+  private static final int ARRAY_BYTES = 16;
+  private static final int FLOAT_BYTES = 4;
+  private static final int REFERENCE_BYTES = 4;
+  /**
+   * Each timing curve is backed by a sampled interpolator of roughly 50 points.
+   */
+  private static final int TIMING_CURVE_BYTES = 2 * ARRAY_BYTES + 100 * FLOAT_BYTES;
+
+  private static KFImageCache sInstance;
+
+  private final LinkedHashMap<Object, Entry> mEntries =
+      new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+  private int mMaxSizeBytes;
+  private int mSizeBytes;
+
+  private int mHitCount;
+  private int mMissCount;
+  private int mPutCount;
+  private int mEvictionCount;
+
+  /**
+   * Returns the process wide cache, created with {@link #DEFAULT_MAX_SIZE_BYTES}.
+   */
+  public static synchronized KFImageCache getInstance() {
+    if (sInstance == null) {
+      sInstance = new KFImageCache(DEFAULT_MAX_SIZE_BYTES);
+    }
+    return sInstance;
+  }
+
+  /**
+   * @param maxSizeBytes The maximum estimated size of all cached images
+   */
+  public KFImageCache(int maxSizeBytes) {
+    if (maxSizeBytes < 0) {
+      throw new IllegalArgumentException("maxSizeBytes < 0");
+    }
+    mMaxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the image cached for the key, or null, marking it as the most recently used.
+   */
+  public synchronized KFImage get(Object key) {
+    Entry entry = mEntries.get(key);
+    if (entry == null) {
+      mMissCount++;
+      return null;
+    }
+    mHitCount++;
+    return entry.mImage;
+  }
+
+  /**
+   * Caches the image under {@link KFImage#getKey()}.
+   * @return The image previously cached under the key, or null
+   */
+  public KFImage put(KFImage image) {
+    return put(image.getKey(), image);
+  }
+
+  /**
+   * Caches the image under the given key, evicting least recently used images as needed.  If the
+   * image alone exceeds the maximum size, it is not cached and any image previously cached under
+   * the key is removed.
+   * @return The image previously cached under the key, or null
+   */
+  public synchronized KFImage put(Object key, KFImage image) {
+    if (key == null || image == null) {
+      throw new NullPointerException("key == null || image == null");
+    }
+    mPutCount++;
+    Entry previous = mEntries.remove(key);
+    if (previous != null) {
+      mSizeBytes -= previous.mSizeBytes;
+    }
+    int sizeBytes = estimateSizeBytes(image);
+    if (sizeBytes <= mMaxSizeBytes) {
+      mEntries.put(key, new Entry(image, sizeBytes));
+      mSizeBytes += sizeBytes;
+      trimToSize(mMaxSizeBytes);
+    }
+    return previous != null ? previous.mImage : null;
+  }
+
+  /**
+   * Removes the image cached for the key.
+   * @return The removed image, or null
+   */
+  public synchronized KFImage remove(Object key) {
+    Entry entry = mEntries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    mSizeBytes -= entry.mSizeBytes;
+    return entry.mImage;
+  }
+
+  /**
+   * Changes the maximum size of the cache, evicting images if it shrank.
+   */
+  public synchronized void resize(int maxSizeBytes) {
+    if (maxSizeBytes < 0) {
+      throw new IllegalArgumentException("maxSizeBytes < 0");
+    }
+    mMaxSizeBytes = maxSizeBytes;
+    trimToSize(maxSizeBytes);
+  }
+
+  /**
+   * Evicts least recently used images until the cache is no larger than the given size, e.g. in
+   * response to {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+   */
+  public synchronized void trimToSize(int sizeBytes) {
+    Iterator<Entry> iterator = mEntries.values().iterator();
+    while (mSizeBytes > sizeBytes && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      iterator.remove();
+      mSizeBytes -= entry.mSizeBytes;
+      mEvictionCount++;
+    }
+  }
+
+  public void evictAll() {
+    trimToSize(0);
+  }
+
+  public synchronized int size() {
+    return mEntries.size();
+  }
+
+  public synchronized int getSizeBytes() {
+    return mSizeBytes;
+  }
+
+  public synchronized int getMaxSizeBytes() {
+    return mMaxSizeBytes;
+  }
+
+  public synchronized int getHitCount() {
+    return mHitCount;
+  }
+
+  public synchronized int getMissCount() {
+    return mMissCount;
+  }
+
+  public synchronized int getPutCount() {
+    return mPutCount;
+  }
+
+  public synchronized int getEvictionCount() {
+    return mEvictionCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    int accesses = mHitCount + mMissCount;
+    return String.format(
+        Locale.US,
+        "KFImageCache[sizeBytes=%d,maxSizeBytes=%d,hits=%d,misses=%d,hitRate=%d%%,evictions=%d]",
+        mSizeBytes,
+        mMaxSizeBytes,
+        mHitCount,
+        mMissCount,
+        accesses != 0 ? (100 * mHitCount / accesses) : 0,
+        mEvictionCount);
+  }
+
+  /**
+   * Estimates the memory held by an image: its path data, animation frames, timing curves and the
+   * interpolators built from them, and the bitmap data it retains.
+   */
+  public static int estimateSizeBytes(KFImage image) {
+    int size = OBJECT_BYTES + floatArraySize(image.getCanvasSize());
+    List<KFFeature> features = image.getFeatures();
+    for (int i = 0, len = features.size(); i < len; i++) {
+      size += featureSize(features.get(i));
+    }
+    List<KFAnimationGroup> groups = image.getAnimationGroups();
+    for (int i = 0, len = groups.size(); i < len; i++) {
+      KFAnimationGroup group = groups.get(i);
+      size += OBJECT_BYTES + animationsSize(group.getAnimations());
+      if (group.getAnchorPointAnimation() != null) {
+        size += animationSize(group.getAnchorPointAnimation());
+      }
+    }
+    Map<String, KFBitmap> bitmaps = image.getKFBitmaps();
+    if (bitmaps != null) {
+      for (KFBitmap bitmap : bitmaps.values()) {
+        // Decoded bitmaps are only retained by drawables, so only the encoded data is counted.
+        byte[] encodedBytes = bitmap.getEncodedBytes();
+        size += OBJECT_BYTES + (encodedBytes != null ?
+            ARRAY_BYTES + encodedBytes.length :
+            bitmap.getBitmap().getByteCount());
+      }
+    }
+    return size;
+  }
+
+  private static int featureSize(KFFeature feature) {
+    int size = OBJECT_BYTES + timingCurvesSize(feature.getTimingCurves());
+    List<KFFeatureFrame> keyFrames = feature.getKeyFrames();
+    for (int i = 0, len = keyFrames.size(); i < len; i++) {
+      List<VectorCommand> commands = keyFrames.get(i).getShapeData().getVectorCommands();
+      size += 2 * OBJECT_BYTES + commands.size() * REFERENCE_BYTES;
+      for (int j = 0, commandCount = commands.size(); j < commandCount; j++) {
+        size += OBJECT_BYTES + floatArraySize(commands.get(j).getArguments());
+      }
+    }
+    size += animationsSize(feature.getFeatureAnimations());
+    if (feature.getEffect() != null) {
+      KFGradient gradient = feature.getEffect().getGradient();
+      size += 2 * OBJECT_BYTES +
+          gradientColorSize(gradient.getColorStart()) +
+          gradientColorSize(gradient.getColorEnd());
+    }
+    if (feature.getFeatureMask() != null) {
+      size += featureSize(feature.getFeatureMask());
+    }
+    return size;
+  }
+
+  private static int animationsSize(List<KFAnimation> animations) {
+    int size = 0;
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      size += animationSize(animations.get(i));
+    }
+    return size;
+  }
+
+  private static int animationSize(KFAnimation animation) {
+    int size = OBJECT_BYTES +
+        timingCurvesSize(animation.getTimingCurves()) +
+        floatArraySize(animation.getAnchor());
+    List<KFAnimationFrame> frames = animation.getAnimationFrames();
+    for (int i = 0, len = frames.size(); i < len; i++) {
+      size += OBJECT_BYTES + floatArraySize(frames.get(i).getData());
+    }
+    return size;
+  }
+
+  private static int gradientColorSize(KFGradientColor gradientColor) {
+    if (gradientColor == null) {
+      return 0;
+    }
+    return OBJECT_BYTES +
+        gradientColor.getKeyValues().size() * OBJECT_BYTES +
+        timingCurvesSize(gradientColor.getTimingCurves());
+  }
+
+  private static int timingCurvesSize(float[][][] timingCurves) {
+    return timingCurves == null ? 0 : timingCurves.length * TIMING_CURVE_BYTES;
+  }
+
+  private static int floatArraySize(float[] array) {
+    return array == null ? 0 : ARRAY_BYTES + array.length * FLOAT_BYTES;
+  }
+
+  private static class Entry {
+
+    private final KFImage mImage;
+    private final int mSizeBytes;
+
+    private Entry(KFImage image, int sizeBytes) {
+      mImage = image;
+      mSizeBytes = sizeBytes;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.facebook.keyframes.deserializers.KFImageBinaryDeserializer;
+import com.facebook.keyframes.deserializers.KFImageDeserializer;
+import com.facebook.keyframes.model.KFImage;
+
+/**
+ * Loads {@link KFImage}s off of the calling thread.  Images are deserialized on the given
+ * {@link Executor} and the result is delivered on the given {@link Looper}, the main looper by
+ * default.  Concurrent loads with the same key are coalesced into a single deserialization, the
+ * result of which is delivered to every pending {@link Callback}.
+ *
+ * A load can be cancelled with {@link Request#cancel()}, e.g. when a view is recycled.  When
+ * cancelled on the callback looper, the callback is guaranteed not to be invoked.  The
+ * deserialization itself is skipped if every request for it was cancelled before it started.
+ *
+ * If a {@link KFImageCache} is set, loaded images are added to it under their load key, and later
+ * loads for a cached key are delivered from the cache without deserializing again.
+ */
+public class KFImageLoader {
+
+  /**
+   * A source of a {@link KFImage}, which is loaded on the loader's executor.
+   */
+  public interface Source {
+    KFImage load() throws IOException;
+  }
+
+  public interface Callback {
+    void onImageLoaded(KFImage image);
+
+    /**
+     * Called when the source fails to load, with either the {@link IOException} it threw or the
+     * {@link RuntimeException} thrown for malformed image data.
+     */
+    void onImageLoadFailed(Exception error);
+  }
+
+  private final Executor mExecutor;
+  private final Executor mCallbackExecutor;
+  private final Object mLock = new Object();
+  private final Map<String, Load> mInFlightLoads = new HashMap<>();
+  private volatile KFImageCache mImageCache;
+
+  /**
+   * @param executor The executor to load images on
+   */
+  public KFImageLoader(Executor executor) {
+    this(executor, Looper.getMainLooper());
+  }
+
+  /**
+   * @param executor The executor to load images on
+   * @param callbackLooper The looper to invoke {@link Callback}s on
+   */
+  public KFImageLoader(Executor executor, Looper callbackLooper) {
+    this(executor, new HandlerExecutor(new Handler(callbackLooper)));
+  }
+
+  KFImageLoader(Executor executor, Executor callbackExecutor) {
+    mExecutor = executor;
+    mCallbackExecutor = callbackExecutor;
+  }
+
+  /**
+   * Sets the cache to check before loading, and to add loaded images to.  May be null.
+   */
+  public void setImageCache(KFImageCache imageCache) {
+    mImageCache = imageCache;
+  }
+
+  /**
+   * Loads the image from the source, unless it is cached or a load for the same key is already in
+   * flight, in which case this request joins it and the given source is ignored.  Either way, the
+   * callback is invoked asynchronously on the callback looper.
+   * @param key A key identifying the image, e.g. its asset name
+   * @param source The source to load the image from
+   * @param callback The callback to deliver the result to
+   * @return A {@link Request} which can be used to cancel this load
+   */
+  public Request load(String key, Source source, Callback callback) {
+    KFImageCache imageCache = mImageCache;
+    final KFImage cachedImage = imageCache != null ? imageCache.get(key) : null;
+    if (cachedImage != null) {
+      final Request request = new Request(null, callback);
+      mCallbackExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (!request.mCancelled) {
+            request.mCallback.onImageLoaded(cachedImage);
+          }
+        }
+      });
+      return request;
+    }
+
+    Load load;
+    Request request;
+    boolean isNewLoad;
+    synchronized (mLock) {
+      load = mInFlightLoads.get(key);
+      isNewLoad = load == null;
+      if (isNewLoad) {
+        load = new Load(key, source);
+        mInFlightLoads.put(key, load);
+      }
+      request = new Request(load, callback);
+      load.mRequests.add(request);
+    }
+    if (isNewLoad) {
+      try {
+        mExecutor.execute(load);
+      } catch (RejectedExecutionException e) {
+        synchronized (mLock) {
+          load.mFinished = true;
+          removeInFlightLoad(load);
+        }
+        throw e;
+      }
+    }
+    return request;
+  }
+
+  /**
+   * Returns whether a load for the given key is currently in flight.
+   */
+  public boolean isLoading(String key) {
+    synchronized (mLock) {
+      return mInFlightLoads.containsKey(key);
+    }
+  }
+
+  /**
+   * A source which deserializes a JSON image from an asset.
+   */
+  public static Source fromAsset(final AssetManager assets, final String assetName) {
+    return new Source() {
+      @Override
+      public KFImage load() throws IOException {
+        InputStream stream = assets.open(assetName);
+        try {
+          return KFImageDeserializer.deserialize(stream);
+        } finally {
+          stream.close();
+        }
+      }
+    };
+  }
+
+  /**
+   * A source which deserializes a JSON image from a file.
+   */
+  public static Source fromFile(final File file) {
+    return new Source() {
+      @Override
+      public KFImage load() throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+          return KFImageDeserializer.deserialize(stream);
+        } finally {
+          stream.close();
+        }
+      }
+    };
+  }
+
+  /**
+   * A source which memory maps an image in the binary format from a file.
+   */
+  public static Source fromBinaryFile(final File file) {
+    return new Source() {
+      @Override
+      public KFImage load() throws IOException {
+        return KFImageBinaryDeserializer.deserialize(file);
+      }
+    };
+  }
+
+  private void deliver(Load load, KFImage image, Exception error) {
+    List<Request> requests;
+    synchronized (mLock) {
+      removeInFlightLoad(load);
+      if (load.mFinished) {
+        return;
+      }
+      load.mFinished = true;
+      requests = new ArrayList<>(load.mRequests);
+      load.mRequests.clear();
+    }
+    for (int i = 0, len = requests.size(); i < len; i++) {
+      Request request = requests.get(i);
+      if (request.mCancelled) {
+        continue;
+      }
+      if (error == null) {
+        request.mCallback.onImageLoaded(image);
+      } else {
+        request.mCallback.onImageLoadFailed(error);
+      }
+    }
+  }
+
+  private void cancel(Request request) {
+    synchronized (mLock) {
+      if (request.mCancelled) {
+        return;
+      }
+      request.mCancelled = true;
+      Load load = request.mLoad;
+      if (load == null) {
+        return;
+      }
+      load.mRequests.remove(request);
+      if (load.mRequests.isEmpty() && !load.mFinished) {
+        // Nobody is waiting on this load anymore, so skip it if it hasn't started yet.  A new
+        // request for the same key will start a fresh load.
+        load.mFinished = true;
+        removeInFlightLoad(load);
+      }
+    }
+  }
+
+  /**
+   * Must be called while holding {@link #mLock}.
+   */
+  private void removeInFlightLoad(Load load) {
+    if (mInFlightLoads.get(load.mKey) == load) {
+      mInFlightLoads.remove(load.mKey);
+    }
+  }
+
+  /**
+   * A handle to a single call to {@link #load(String, Source, Callback)}.
+   */
+  public class Request {
+
+    /**
+     * The load this request is waiting on, or null if it was served from the cache.
+     */
+    private final Load mLoad;
+    private final Callback mCallback;
+    private volatile boolean mCancelled;
+
+    private Request(Load load, Callback callback) {
+      mLoad = load;
+      mCallback = callback;
+    }
+
+    /**
+     * Cancels this request.  If called on the callback looper, its callback will not be invoked.
+     */
+    public void cancel() {
+      KFImageLoader.this.cancel(this);
+    }
+
+    public boolean isCancelled() {
+      return mCancelled;
+    }
+  }
+
+  /**
+   * A single deserialization shared by all of the requests for the same key.  Its requests and
+   * finished state are guarded by {@link #mLock}.
+   */
+  private class Load implements Runnable {
+
+    private final String mKey;
+    private final Source mSource;
+    private final List<Request> mRequests = new ArrayList<>(1);
+    private boolean mFinished;
+
+    private Load(String key, Source source) {
+      mKey = key;
+      mSource = source;
+    }
+
+    @Override
+    public void run() {
+      synchronized (mLock) {
+        if (mFinished) {
+          return;
+        }
+      }
+      boolean delivering = false;
+      try {
+        KFImage image = null;
+        Exception error = null;
+        try {
+          image = mSource.load();
+          if (image == null) {
+            error = new IOException("No image loaded for key: " + mKey);
+          } else {
+            KFImageCache imageCache = mImageCache;
+            if (imageCache != null) {
+              imageCache.put(mKey, image);
+            }
+          }
+        } catch (IOException | RuntimeException e) {
+          error = e;
+        }
+        final KFImage loadedImage = image;
+        final Exception loadError = error;
+        mCallbackExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            deliver(Load.this, loadedImage, loadError);
+          }
+        });
+        delivering = true;
+      } finally {
+        if (!delivering) {
+          // An Error from the source, or a rejected delivery, would otherwise leave the key in
+          // flight for good, so that it could never be loaded again.  Its requests aren't called
+          // back, as there is no result to give them.
+          synchronized (mLock) {
+            mFinished = true;
+            removeInFlightLoad(this);
+          }
+        }
+      }
+    }
+  }
+
+  private static class HandlerExecutor implements Executor {
+
+    private final Handler mHandler;
+
+    private HandlerExecutor(Handler handler) {
+      mHandler = handler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      mHandler.post(command);
+    }
+  }
+}
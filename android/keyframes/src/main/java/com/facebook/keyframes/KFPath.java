@@ -25,6 +25,21 @@ public class KFPath {
     this(new Path(), new float[]{0, 0});
   }
 
+  /**
+   * Creates a copy of src, see {@link Path#Path(Path)}.
+   */
+  public KFPath(KFPath src) {
+    this(new Path(src.mPath), src.mLastPoint.clone());
+  }
+
+  /**
+   * Replaces the contents of this path with a copy of src, see {@link Path#set(Path)}.
+   */
+  public void set(KFPath src) {
+    mPath.set(src.mPath);
+    adjustLastPoint(src.mLastPoint[0], src.mLastPoint[1]);
+  }
+
   /**
    * Constructor for tests to pass in objects
    */
@@ -132,6 +147,15 @@ public class KFPath {
     matrix.mapPoints(mLastPoint);
   }
 
+  /**
+   * See {@link Path#transform(Matrix, Path)}.  This path is left unchanged, and the transformed
+   * path, including its last point, replaces the contents of dst.
+   */
+  public void transform(Matrix matrix, KFPath dst) {
+    mPath.transform(matrix, dst.mPath);
+    matrix.mapPoints(dst.mLastPoint, mLastPoint);
+  }
+
   /**
    * See {@link Path#isEmpty()}.
    */
@@ -13,7 +13,6 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.LinearGradient;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
@@ -21,24 +20,31 @@ import android.graphics.Rect;
 import android.graphics.Region;
 import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
-import android.util.SparseArray;
+import android.os.Handler;
+import android.os.Looper;
 
-import com.facebook.keyframes.model.KFAnimationGroup;
+import com.facebook.keyframes.model.KFBitmap;
 import com.facebook.keyframes.model.KFFeature;
-import com.facebook.keyframes.model.KFGradient;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFGradientShaderCache;
+import com.facebook.keyframes.model.KFGroupMatrixTable;
 import com.facebook.keyframes.model.KFImage;
+import com.facebook.keyframes.model.KFScalarChannels;
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedFillColor;
-import com.facebook.keyframes.model.keyframedmodels.KeyFramedGradient;
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedOpacity;
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedPath;
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedStrokeColor;
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedStrokeWidth;
+import com.facebook.keyframes.util.VectorCommand;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This drawable will render a KFImage model by painting paths to the supplied canvas in
@@ -50,7 +56,35 @@ import java.util.Map;
 public class KeyframesDrawable extends Drawable
         implements KeyframesDrawableAnimationCallback.FrameListener, KeyframesDirectionallyScalingDrawable {
 
-  private static final float GRADIENT_PRECISION_PER_SECOND = 30;
+  /**
+   * The max frame rate which updates the animation on every display frame, whatever the display's
+   * refresh rate, see {@link #setMaxFrameRate(int)}.
+   */
+  public static final int MAX_FRAME_RATE_DISPLAY = 0;
+
+  /**
+   * The default number of gradient shaders per second of animation, see
+   * {@link KeyframesDrawableBuilder#withGradientPrecision(float)}.
+   */
+  static final float DEFAULT_GRADIENT_PRECISION_PER_SECOND = 30;
+
+  /**
+   * A shape state which {@link KeyFramedPath#getState(float)} never returns, for paths which
+   * haven't been built yet.
+   */
+  private static final long UNKNOWN_SHAPE_STATE = -1;
+
+  public static final int DEFAULT_FRAME_MEMOIZATION_SIZE_BYTES = 1024 * 1024;
+
+  /**
+   * Rough costs used to estimate the memory held by a memoized frame.  These don't need to be
+   * exact, only proportional to the real footprint so that the limit is meaningful.
+   */
+  private static final int FEATURE_FRAME_BYTES = 48;
+  private static final int MATRIX_BYTES = 64;
+  private static final int PATH_BYTES = 64;
+  private static final int PATH_VERB_BYTES = 1;
+  private static final int PATH_COORDINATE_BYTES = 4;
 
   /**
    * The KFImage object to render.
@@ -65,10 +99,16 @@ public class KeyframesDrawable extends Drawable
    * for the current progress of animation.
    */
   private final List<FeatureState> mFeatureStateList;
+  /**
+   * The feature states frames are evaluated in, which are mFeatureStateList itself unless frames
+   * are evaluated in the background, in which case evaluated frames are restored into
+   * mFeatureStateList before drawing them.
+   */
+  private final List<FeatureState> mEvaluatedFeatureStateList;
   /**
    * The current state of animation layer matrices for this animation, keyed by animation group id.
    */
-  private final SparseArray<Matrix> mAnimationGroupMatrices;
+  private final Matrix[] mAnimationGroupMatrices;
   /**
    * The animation callback object used to start and stop the animation.
    */
@@ -77,6 +117,11 @@ public class KeyframesDrawable extends Drawable
    * A recyclable matrix that can be reused.
    */
   private final Matrix mRecyclableTransformMatrix;
+  /**
+   * A recyclable path which feature paths are scaled into for drawing, leaving the feature paths
+   * themselves untouched so that they can be reused for later frames.
+   */
+  private final KFPath mRecyclableScaledPath = new KFPath();
 
   /**
    * The scale matrix to be applied for the final size of this drawable.
@@ -96,11 +141,77 @@ public class KeyframesDrawable extends Drawable
   private float mScale;
   private float mScaleFromCenter;
   private float mScaleFromEnd;
-  private final Map<String, Bitmap> mBitmaps;
+  private final Map<String, KFBitmap> mBitmaps;
+  private final boolean mDownsampleBitmaps;
   private boolean mClipToAECanvas;
 
   private boolean mHasInitialized = false;
 
+  /**
+   * Counts of how feature and mask paths were brought up to date for each frame, see
+   * {@link #getPathRebuildCount()}.  Atomic, as they are counted on the evaluation executor in
+   * background mode and read from the UI thread.
+   */
+  private final AtomicInteger mPathRebuildCount = new AtomicInteger();
+  private final AtomicInteger mPathRetransformCount = new AtomicInteger();
+  private final AtomicInteger mSkippedPathRebuildCount = new AtomicInteger();
+
+  /**
+   * The evaluated state of each feature, in the order of mFeatureStateList, for recently drawn
+   * frames, or null unless frame memoization is enabled.
+   */
+  private final KFFrameCache<FeatureFrame[]> mFrameCache;
+  /**
+   * The frame the feature states are currently set up for, when memoizing frames.
+   */
+  private int mMemoizedFrameIndex = -1;
+
+  /**
+   * The evaluator of frames in the background, or null to evaluate them on the calling thread.
+   */
+  private final KFBackgroundEvaluator<FeatureFrame[]> mBackgroundEvaluator;
+  /**
+   * The background evaluated frame mFeatureStateList was last restored from.
+   */
+  private FeatureFrame[] mDrawnFeatureFrames;
+
+  /**
+   * Whether progress updates are quantized to the frames of the image, and the frame they were
+   * last quantized to.
+   */
+  private final boolean mQuantizeToSourceFrames;
+  private int mSourceFrameIndex = -1;
+  /**
+   * How far, in pixels of the image's canvas, the features need to change for a progress update to
+   * redraw, or a negative value to always redraw.  Its equivalent for the linear part of matrices
+   * is scaled down by the size of the canvas, so that no point within it moves further.
+   */
+  private final float mRedrawThreshold;
+  private final float mRedrawLinearThreshold;
+  private int mSuppressedRedrawCount;
+
+  /**
+   * The baked matrices of the image's animation groups, or null to evaluate them each frame.
+   */
+  private final KFGroupMatrixTable mGroupMatrixTable;
+  private final float[] mRecyclableMatrixValues = new float[9];
+
+  /**
+   * The stroke width, color and opacity animations of all features, evaluated together each frame.
+   */
+  private final KFScalarChannels mScalarChannels;
+
+  /**
+   * The gradient shaders of the image's features, shared with other drawables of the image.
+   */
+  private final KFGradientShaderCache mGradientShaderCache;
+
+  /**
+   * Whether draws are timed for adaptive frame rate, see
+   * {@link KeyframesDrawableBuilder.ExperimentalFeatures#withAdaptiveFrameRate}.
+   */
+  private final boolean mAdaptiveFrameRate;
+
   /**
    * Create a new KeyframesDrawable with the supplied values from the builder.
    * @param builder
@@ -110,6 +221,7 @@ public class KeyframesDrawable extends Drawable
     mBitmaps = builder.getExperimentalFeatures().getBitmaps() == null ?
         null :
         Collections.unmodifiableMap(builder.getExperimentalFeatures().getBitmaps());
+    mDownsampleBitmaps = builder.getExperimentalFeatures().getDownsampleBitmaps();
 
     mRecyclableTransformMatrix = new Matrix();
     mScaleMatrix = new Matrix();
@@ -118,22 +230,68 @@ public class KeyframesDrawable extends Drawable
 
     mDrawingPaint.setStrokeCap(Paint.Cap.ROUND);
 
+    int frameMemoizationMaxSizeBytes =
+        builder.getExperimentalFeatures().getFrameMemoizationMaxSizeBytes();
+    mFrameCache = frameMemoizationMaxSizeBytes > 0 ?
+        new KFFrameCache<FeatureFrame[]>(frameMemoizationMaxSizeBytes) :
+        null;
+    mQuantizeToSourceFrames = builder.getExperimentalFeatures().getQuantizeToSourceFrames();
+    mRedrawThreshold = builder.getExperimentalFeatures().getRedrawThreshold();
+    mRedrawLinearThreshold = mRedrawThreshold /
+        Math.max(mKFImage.getCanvasSize()[0], mKFImage.getCanvasSize()[1]);
+    mScalarChannels = new KFScalarChannels(mKFImage.getScalarChannelTable());
+    mGradientShaderCache = mKFImage.getGradientShaderCache(builder.getGradientPrecision());
+
     // Setup feature state list
-    List<FeatureState> featureStateList = new ArrayList<>();
-    for (int i = 0, len = mKFImage.getFeatures().size(); i < len; i++) {
-      featureStateList.add(new FeatureState(mKFImage.getFeatures().get(i)));
+    mFeatureStateList = createFeatureStateList();
+    Executor evaluationExecutor = builder.getExperimentalFeatures().getEvaluationExecutor();
+    if (evaluationExecutor != null) {
+      mEvaluatedFeatureStateList = createFeatureStateList();
+      final Handler mainHandler = new Handler(Looper.getMainLooper());
+      final Runnable invalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+          invalidateSelf();
+        }
+      };
+      mBackgroundEvaluator = new KFBackgroundEvaluator<>(
+          evaluationExecutor,
+          new FrameEvaluation(),
+          new Runnable() {
+            @Override
+            public void run() {
+              mainHandler.post(invalidateRunnable);
+            }
+          },
+          builder.getExperimentalFeatures().getEvaluationMaxWaitMs());
+    } else {
+      mEvaluatedFeatureStateList = mFeatureStateList;
+      mBackgroundEvaluator = null;
     }
-    mFeatureStateList = Collections.unmodifiableList(featureStateList);
 
     // Setup animation layers
-    mAnimationGroupMatrices = new SparseArray<>();
-    List<KFAnimationGroup> animationGroups = mKFImage.getAnimationGroups();
-    for (int i = 0, len = animationGroups.size(); i < len; i++) {
-      mAnimationGroupMatrices.put(animationGroups.get(i).getGroupId(), new Matrix());
+    mAnimationGroupMatrices = new Matrix[mKFImage.getAnimationGroups().size()];
+    for (int i = 0; i < mAnimationGroupMatrices.length; i++) {
+      mAnimationGroupMatrices[i] = new Matrix();
     }
 
     setMaxFrameRate(builder.getMaxFrameRate());
+    mAdaptiveFrameRate = builder.getExperimentalFeatures().getAdaptiveFrameRate();
+    mKeyframesDrawableAnimationCallback.setAdaptiveFrameRate(
+        mAdaptiveFrameRate,
+        builder.getExperimentalFeatures().getFrameRateListener());
     mClipToAECanvas = builder.getExperimentalFeatures().getClipToAECanvas();
+    mGroupMatrixTable = builder.getExperimentalFeatures().getBakeGroupMatrices() ?
+        mKFImage.getGroupMatrixTable() :
+        null;
+  }
+
+  private List<FeatureState> createFeatureStateList() {
+    List<FeatureState> featureStateList = new ArrayList<>();
+    for (int i = 0, len = mKFImage.getFeatures().size(); i < len; i++) {
+      featureStateList.add(new FeatureState(mKFImage.getFeatures().get(i), i));
+    }
+    return Collections.unmodifiableList(featureStateList);
   }
 
   /**
@@ -172,6 +330,19 @@ public class KeyframesDrawable extends Drawable
    */
   @Override
   public void draw(Canvas canvas) {
+    if (!mAdaptiveFrameRate) {
+      drawFrame(canvas);
+      return;
+    }
+    long startNanos = System.nanoTime();
+    drawFrame(canvas);
+    mKeyframesDrawableAnimationCallback.recordDrawDuration(System.nanoTime() - startNanos);
+  }
+
+  private void drawFrame(Canvas canvas) {
+    if (mBackgroundEvaluator != null) {
+      restoreBackgroundEvaluatedFrame();
+    }
     Rect currBounds = getBounds();
     canvas.translate(currBounds.left, currBounds.top);
     if (mClipToAECanvas) {
@@ -200,7 +371,10 @@ public class KeyframesDrawable extends Drawable
         // This block is for the experimental bitmap supporting
         canvas.save();
         canvas.concat(mScaleMatrix);
-        canvas.drawBitmap(backedImage, uniqueFeatureMatrix, mDrawingPaint);
+        canvas.concat(uniqueFeatureMatrix);
+        // A downsampled bitmap is scaled back up to cover the area of the full size one.
+        canvas.scale(featureState.getBackedImageScaleX(), featureState.getBackedImageScaleY());
+        canvas.drawBitmap(backedImage, 0, 0, mDrawingPaint);
         canvas.restore();
         continue;
       }
@@ -240,16 +414,28 @@ public class KeyframesDrawable extends Drawable
     canvas.translate(-currBounds.left, -currBounds.top);
   }
 
+  /**
+   * Restores the latest frame evaluated in the background into mFeatureStateList, if it changed.
+   */
+  private void restoreBackgroundEvaluatedFrame() {
+    FeatureFrame[] featureFrames = mBackgroundEvaluator.acquireFrame();
+    if (featureFrames == null || featureFrames == mDrawnFeatureFrames) {
+      return;
+    }
+    for (int i = 0, len = mFeatureStateList.size(); i < len; i++) {
+      mFeatureStateList.get(i).restoreFrame(featureFrames[i]);
+    }
+    mDrawnFeatureFrames = featureFrames;
+  }
+
   private void applyScaleAndClipCanvas(Canvas canvas, KFPath path, Region.Op op) {
-    path.transform(mScaleMatrix);
-    canvas.clipPath(path.getPath(), op);
-    path.transform(mInverseScaleMatrix);
+    path.transform(mScaleMatrix, mRecyclableScaledPath);
+    canvas.clipPath(mRecyclableScaledPath.getPath(), op);
   }
 
   private void applyScaleAndDrawPath(Canvas canvas, KFPath path, Paint paint) {
-    path.transform(mScaleMatrix);
-    canvas.drawPath(path.getPath(), paint);
-    path.transform(mInverseScaleMatrix);
+    path.transform(mScaleMatrix, mRecyclableScaledPath);
+    canvas.drawPath(mRecyclableScaledPath.getPath(), paint);
   }
 
   /**
@@ -334,31 +520,152 @@ public class KeyframesDrawable extends Drawable
 
   /**
    * Given a progress in terms of frames, calculates each of the paths needed to be drawn in
-   * {@link #draw(Canvas)}.
+   * {@link #draw(Canvas)}.  When evaluating frames in the background, see
+   * {@link KeyframesDrawableBuilder.ExperimentalFeatures#withBackgroundEvaluation(Executor, long)},
+   * this only requests the frame, which is drawn once it has been calculated.  The next progress
+   * update is always redrawn, as what it is compared to is no longer what is drawn.
    */
   public void setFrameProgress(float frameProgress) {
+    resetRedrawTracking();
+    applyFrameProgress(frameProgress);
+  }
+
+  private void applyFrameProgress(float frameProgress) {
     mHasInitialized = true;
-    mKFImage.setAnimationMatrices(mAnimationGroupMatrices, frameProgress);
-    for (int i = 0, len = mFeatureStateList.size(); i < len; i++) {
-      mFeatureStateList.get(i).setupFeatureStateForProgress(frameProgress);
+    if (mBackgroundEvaluator != null) {
+      mBackgroundEvaluator.request(frameProgress);
+      return;
     }
+    evaluateFrame(frameProgress);
   }
 
+  /**
+   * Sets up mEvaluatedFeatureStateList for frameProgress.
+   */
+  private void evaluateFrame(float frameProgress) {
+    if (mFrameCache != null) {
+      setMemoizedFrameProgress(frameProgress);
+      return;
+    }
+    setAnimationMatrices(frameProgress);
+    mScalarChannels.evaluate(frameProgress);
+    for (int i = 0, len = mEvaluatedFeatureStateList.size(); i < len; i++) {
+      mEvaluatedFeatureStateList.get(i).setupFeatureStateForProgress(frameProgress);
+    }
+  }
+
+  private void setAnimationMatrices(float frameProgress) {
+    if (mGroupMatrixTable != null) {
+      mGroupMatrixTable.apply(mAnimationGroupMatrices, frameProgress, mRecyclableMatrixValues);
+    } else {
+      mKFImage.setAnimationMatrices(mAnimationGroupMatrices, frameProgress);
+    }
+  }
+
+  /**
+   * Sets up the feature states for the nearest whole frame to frameProgress, restoring them from
+   * the frame cache if that frame has been evaluated before.
+   */
+  private void setMemoizedFrameProgress(float frameProgress) {
+    int frameIndex = Math.round(frameProgress);
+    if (frameIndex == mMemoizedFrameIndex) {
+      return;
+    }
+    mMemoizedFrameIndex = frameIndex;
+    FeatureFrame[] featureFrames = mFrameCache.get(frameIndex);
+    if (featureFrames != null) {
+      for (int i = 0, len = mEvaluatedFeatureStateList.size(); i < len; i++) {
+        mEvaluatedFeatureStateList.get(i).restoreFrame(featureFrames[i]);
+      }
+      return;
+    }
+
+    setAnimationMatrices(frameIndex);
+    mScalarChannels.evaluate(frameIndex);
+    int featureCount = mEvaluatedFeatureStateList.size();
+    featureFrames = new FeatureFrame[featureCount];
+    int sizeBytes = 0;
+    for (int i = 0; i < featureCount; i++) {
+      FeatureState featureState = mEvaluatedFeatureStateList.get(i);
+      featureState.setupFeatureStateForProgress(frameIndex);
+      featureFrames[i] = featureState.saveFrame();
+      sizeBytes += featureFrames[i].mSizeBytes;
+    }
+    mFrameCache.put(frameIndex, featureFrames, sizeBytes);
+  }
+
+  /**
+   * Stops the animation and shows it at the given progress, from 0 to 1, redrawing even if the
+   * frame is the one already drawn.
+   */
   public void seekToProgress(float progress) {
     stopAnimation();
+    resetRedrawTracking();
     onProgressUpdate(progress * mKFImage.getFrameCount());
   }
 
   /**
    * The callback used to update the frame progress of this drawable.  This leads to a recalculation
-   * of the paths that need to be drawn before the Drawable invalidates itself.
+   * of the paths that need to be drawn before the Drawable invalidates itself.  Updates which
+   * wouldn't change what is drawn are skipped, see
+   * {@link KeyframesDrawableBuilder.ExperimentalFeatures#withSourceFrameQuantization()} and
+   * {@link KeyframesDrawableBuilder.ExperimentalFeatures#withRedrawThreshold(float)}.
    */
   @Override
   public void onProgressUpdate(float frameProgress) {
-    setFrameProgress(frameProgress);
+    if (mQuantizeToSourceFrames) {
+      int frameIndex = Math.round(frameProgress);
+      if (frameIndex == mSourceFrameIndex) {
+        mSuppressedRedrawCount++;
+        return;
+      }
+      mSourceFrameIndex = frameIndex;
+      frameProgress = frameIndex;
+    }
+    applyFrameProgress(frameProgress);
+    if (mRedrawThreshold >= 0 &&
+        mFrameCache == null &&
+        mBackgroundEvaluator == null &&
+        !updateRedrawStates()) {
+      mSuppressedRedrawCount++;
+      return;
+    }
     invalidateSelf();
   }
 
+  /**
+   * Forgets the source frame and feature states of the last redraw, so that the next progress
+   * update redraws.  Called whenever the frame is set other than by a progress update.
+   */
+  private void resetRedrawTracking() {
+    mSourceFrameIndex = -1;
+    if (mRedrawThreshold < 0) {
+      return;
+    }
+    for (int i = 0, len = mFeatureStateList.size(); i < len; i++) {
+      mFeatureStateList.get(i).mRedrawState.reset();
+    }
+  }
+
+  /**
+   * Returns whether any feature changed beyond the redraw threshold since the last redraw, and if
+   * so, records the current state of every feature as the one redrawn.
+   */
+  private boolean updateRedrawStates() {
+    int featureCount = mFeatureStateList.size();
+    int i = 0;
+    while (i < featureCount && !mFeatureStateList.get(i).mRedrawState.differs()) {
+      i++;
+    }
+    if (i == featureCount) {
+      return false;
+    }
+    for (i = 0; i < featureCount; i++) {
+      mFeatureStateList.get(i).mRedrawState.record();
+    }
+    return true;
+  }
+
   @Override
   public void onStop() {
     if (mOnAnimationEnd == null) {
@@ -407,22 +714,104 @@ public class KeyframesDrawable extends Drawable
   /**
    * Cap the frame rate to a specific FPS. Consider using this for low end devices.
    * Calls {@link KeyframesDrawableAnimationCallback#setMaxFrameRate}
-   * @param maxFrameRate
+   * @param maxFrameRate The cap, or {@link #MAX_FRAME_RATE_DISPLAY} for no cap
    */
   public void setMaxFrameRate(int maxFrameRate) {
     mKeyframesDrawableAnimationCallback.setMaxFrameRate(maxFrameRate);
   }
 
+  /**
+   * Sets how important it is to keep this drawable's animation moving when the frames are shared
+   * with a {@link KeyframesFrameBudget}, e.g. {@link KeyframesFrameBudget.Priority#OFFSCREEN} once
+   * it is scrolled out of sight.
+   * Calls {@link KeyframesDrawableAnimationCallback#setPriority}
+   */
+  public void setPriority(KeyframesFrameBudget.Priority priority) {
+    mKeyframesDrawableAnimationCallback.setPriority(priority);
+  }
+
+  /**
+   * Returns the number of times per second the animation is updated, see
+   * {@link KeyframesDrawableAnimationCallback#getEffectiveFrameRate()}.
+   */
+  public float getEffectiveFrameRate() {
+    return mKeyframesDrawableAnimationCallback.getEffectiveFrameRate();
+  }
+
+  /**
+   * Returns how many times adaptive frame rate changed the rate the animation is updated at.
+   */
+  public int getFrameRateTransitionCount() {
+    return mKeyframesDrawableAnimationCallback.getFrameRateTransitionCount();
+  }
+
   public KFImage getKFImage() {
     return mKFImage;
   }
 
+  /**
+   * Returns how many times a feature or mask path was rebuilt from its vector commands because its
+   * shape changed from the previous frame.
+   */
+  public int getPathRebuildCount() {
+    return mPathRebuildCount.get();
+  }
+
+  /**
+   * Returns how many times a feature or mask path kept its shape from the previous frame, but was
+   * transformed again because its matrix changed.
+   */
+  public int getPathRetransformCount() {
+    return mPathRetransformCount.get();
+  }
+
+  /**
+   * Returns how many times a feature or mask path was reused as is, because neither its shape nor
+   * its matrix changed from the previous frame.
+   */
+  public int getSkippedPathRebuildCount() {
+    return mSkippedPathRebuildCount.get();
+  }
+
+  /**
+   * Returns how many progress updates didn't redraw, because they wouldn't have changed what is
+   * drawn.
+   */
+  public int getSuppressedRedrawCount() {
+    return mSuppressedRedrawCount;
+  }
+
+  /**
+   * Returns how many frames were restored from memoized state, see
+   * {@link KeyframesDrawableBuilder.ExperimentalFeatures#withFrameMemoization(int)}.
+   */
+  public int getFrameCacheHitCount() {
+    return mFrameCache != null ? mFrameCache.getHitCount() : 0;
+  }
+
+  /**
+   * Returns how many frames had to be evaluated when memoizing frames.
+   */
+  public int getFrameCacheMissCount() {
+    return mFrameCache != null ? mFrameCache.getMissCount() : 0;
+  }
+
+  /**
+   * Drops all memoized frames, e.g. in response to
+   * {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+   */
+  public void clearFrameCache() {
+    if (mFrameCache != null) {
+      mFrameCache.evictAll();
+    }
+  }
+
   private class FeatureState {
     private final KFFeature mFeature;
 
     // Reuseable modifiable objects for drawing
-    private final KFPath mPath;
-    private final KFPath mFeatureMaskPath;
+    private final CachedPath mPath;
+    private final CachedPath mFeatureMaskPath;
     private final KeyFramedStrokeWidth.StrokeWidth mStrokeWidth;
     private final KeyFramedStrokeColor.StrokeColor mStrokeColor;
     private final KeyFramedFillColor.FillColor mFillColor;
@@ -431,6 +820,30 @@ public class KeyframesDrawable extends Drawable
     private final float[] mMatrixValueRecyclableArray = new float[9];
     private final Matrix mFeatureMaskMatrix;
 
+    /**
+     * The channels of mScalarChannels animating this feature's properties, or
+     * {@link KFScalarChannels#NO_CHANNEL}.
+     */
+    private final int mStrokeWidthChannel;
+    private final int mStrokeColorChannel;
+    private final int mFillColorChannel;
+    private final int mOpacityChannel;
+    /**
+     * The index of this feature's animation group in mAnimationGroupMatrices, or -1.
+     */
+    private final int mAnimationGroupIndex;
+
+    /**
+     * The paths to draw, which are either those of mPath and mFeatureMaskPath, or of a restored
+     * frame.
+     */
+    private KFPath mPathForDrawing;
+    private KFPath mMaskPathForDrawing;
+    /**
+     * The estimated memory held by copies of this feature's path and mask path.
+     */
+    private final int mPathSizeBytes;
+
     private boolean mIsVisible;
 
     public Matrix getUniqueFeatureMatrix() {
@@ -441,12 +854,38 @@ public class KeyframesDrawable extends Drawable
       return mFeatureMatrix;
     }
 
-    // Cached shader vars
-    private Shader[] mCachedShaders;
+    private final int mFeatureIndex;
     private Shader mCurrentShader;
 
-    public FeatureState(KFFeature feature) {
+    /**
+     * The state of this feature when last redrawn, or null unless there is a redraw threshold.
+     */
+    private final RedrawState mRedrawState;
+
+    // Backed image vars
+    private final KFBitmap mBackedImage;
+    /**
+     * The decoded backed image, held for as long as this drawable is so that it is shared with
+     * other drawables of the same image, and released along with them.
+     */
+    private Bitmap mBackedImageBitmap;
+    private int mBackedImageSampleSize;
+    private float mBackedImageScaleX = 1;
+    private float mBackedImageScaleY = 1;
+
+    public FeatureState(KFFeature feature, int featureIndex) {
       mFeature = feature;
+      mFeatureIndex = featureIndex;
+      mStrokeWidthChannel =
+          mScalarChannels.getChannel(featureIndex, KFScalarChannels.STROKE_WIDTH);
+      mStrokeColorChannel =
+          mScalarChannels.getChannel(featureIndex, KFScalarChannels.STROKE_COLOR);
+      mFillColorChannel = mScalarChannels.getChannel(featureIndex, KFScalarChannels.FILL_COLOR);
+      mOpacityChannel = mScalarChannels.getChannel(featureIndex, KFScalarChannels.OPACITY);
+      mAnimationGroupIndex = mKFImage.getAnimationGroupIndex(feature.getAnimationGroup());
+      mBackedImage = mBitmaps == null || feature.getBackedImageName() == null ?
+          null :
+          mBitmaps.get(feature.getBackedImageName());
       if (hasCustomDrawable()) {
         mPath = null;
         mStrokeWidth = null;
@@ -456,7 +895,7 @@ public class KeyframesDrawable extends Drawable
         // so there's no way to reuse a globally cached matrix
         mFeatureMatrix = new Matrix();
       } else {
-        mPath = new KFPath();
+        mPath = new CachedPath();
         mStrokeWidth = new KeyFramedStrokeWidth.StrokeWidth();
         mStrokeColor = new KeyFramedStrokeColor.StrokeColor();
         mFillColor = new KeyFramedFillColor.FillColor();
@@ -466,12 +905,18 @@ public class KeyframesDrawable extends Drawable
       }
       mOpacity = new KeyFramedOpacity.Opacity();
       if (mFeature.getFeatureMask() != null) {
-        mFeatureMaskPath = new KFPath();
+        mFeatureMaskPath = new CachedPath();
         mFeatureMaskMatrix = new Matrix();
       } else {
         mFeatureMaskPath = null;
         mFeatureMaskMatrix = null;
       }
+      mPathForDrawing = mPath != null ? mPath.getPath() : null;
+      mMaskPathForDrawing = mFeatureMaskPath != null ? mFeatureMaskPath.getPath() : null;
+      mPathSizeBytes = mFrameCache == null ?
+          0 :
+          estimatePathSizeBytes(mFeature) + estimatePathSizeBytes(mFeature.getFeatureMask());
+      mRedrawState = mRedrawThreshold >= 0 ? new RedrawState(this) : null;
       assert mFeatureMatrix != null;
     }
 
@@ -482,43 +927,126 @@ public class KeyframesDrawable extends Drawable
       }
       mIsVisible = true;
       mFeature.setAnimationMatrix(mFeatureMatrix, frameProgress);
-      Matrix layerTransformMatrix = mAnimationGroupMatrices.get(mFeature.getAnimationGroup());
+      Matrix layerTransformMatrix = mAnimationGroupIndex >= 0 ?
+          mAnimationGroupMatrices[mAnimationGroupIndex] :
+          null;
 
       if (layerTransformMatrix != null && !layerTransformMatrix.isIdentity()) {
         mFeatureMatrix.postConcat(layerTransformMatrix);
       }
-      mFeature.setOpacity(mOpacity, frameProgress);
+      if (mOpacityChannel != KFScalarChannels.NO_CHANNEL) {
+        mOpacity.setOpacity(mScalarChannels.getValue(mOpacityChannel));
+      }
       KeyFramedPath path = mFeature.getPath();
       if (hasCustomDrawable() || path == null) {
         return; // skip all the path stuff
       }
-      mPath.reset();
-      path.apply(frameProgress, mPath);
-      mPath.transform(mFeatureMatrix);
-
-      mFeature.setStrokeWidth(mStrokeWidth, frameProgress);
-      mFeature.setStrokeColor(mStrokeColor, frameProgress);
-      mFeature.setFillColor(mFillColor, frameProgress);
-      mStrokeWidth.adjustScale(extractScaleFromMatrix(mFeatureMatrix));
-      if (mFeature.getEffect() != null) {
-        prepareShadersForFeature(mFeature);
+      mPath.update(path, frameProgress, mFeatureMatrix);
+      mPathForDrawing = mPath.getPath();
+
+      mStrokeWidth.setStrokeWidth(mStrokeWidthChannel != KFScalarChannels.NO_CHANNEL ?
+          mScalarChannels.getValue(mStrokeWidthChannel) :
+          mFeature.getStrokeWidth());
+      if (mStrokeColorChannel != KFScalarChannels.NO_CHANNEL) {
+        mStrokeColor.setStrokeColor(mScalarChannels.getColor(mStrokeColorChannel));
+      }
+      if (mFillColorChannel != KFScalarChannels.NO_CHANNEL) {
+        mFillColor.setFillColor(mScalarChannels.getColor(mFillColorChannel));
       }
-      mCurrentShader = getNearestShaderForFeature(frameProgress);
+      mStrokeWidth.adjustScale(extractScaleFromMatrix(mFeatureMatrix));
+      mCurrentShader = mGradientShaderCache.getShader(mFeatureIndex, frameProgress);
 
       if (mFeature.getFeatureMask() != null) {
         mFeature.getFeatureMask().setAnimationMatrix(mFeatureMaskMatrix, frameProgress);
-        mFeatureMaskPath.reset();
-        mFeature.getFeatureMask().getPath().apply(frameProgress, mFeatureMaskPath);
-        mFeatureMaskPath.transform(mFeatureMaskMatrix);
+        mFeatureMaskPath.update(
+            mFeature.getFeatureMask().getPath(),
+            frameProgress,
+            mFeatureMaskMatrix);
+        mMaskPathForDrawing = mFeatureMaskPath.getPath();
+      }
+    }
+
+    /**
+     * Returns a copy of the state set up by {@link #setupFeatureStateForProgress(float)}.
+     */
+    public FeatureFrame saveFrame() {
+      FeatureFrame frame = new FeatureFrame();
+      saveFrame(frame);
+      return frame;
+    }
+
+    /**
+     * Copies the state set up by {@link #setupFeatureStateForProgress(float)} into frame, reusing
+     * the paths and matrix it already holds.
+     */
+    public void saveFrame(FeatureFrame frame) {
+      frame.mSizeBytes = FEATURE_FRAME_BYTES;
+      frame.mIsVisible = mIsVisible;
+      if (!mIsVisible) {
+        return;
       }
+      frame.mOpacity = mOpacity.getOpacity();
+      if (hasCustomDrawable()) {
+        if (frame.mFeatureMatrix == null) {
+          frame.mFeatureMatrix = new Matrix(mFeatureMatrix);
+        } else {
+          frame.mFeatureMatrix.set(mFeatureMatrix);
+        }
+        frame.mSizeBytes += MATRIX_BYTES;
+        return;
+      }
+      frame.mPath = copyPath(mPathForDrawing, frame.mPath);
+      frame.mMaskPath = copyPath(mMaskPathForDrawing, frame.mMaskPath);
+      frame.mSizeBytes += mPathSizeBytes;
+      frame.mStrokeWidth = mStrokeWidth.getStrokeWidth();
+      frame.mStrokeColor = mStrokeColor.getStrokeColor();
+      frame.mFillColor = mFillColor.getFillColor();
+      frame.mShader = mCurrentShader;
+    }
+
+    private KFPath copyPath(KFPath src, KFPath recyclableDst) {
+      if (src == null) {
+        return null;
+      }
+      if (recyclableDst == null) {
+        return new KFPath(src);
+      }
+      recyclableDst.set(src);
+      return recyclableDst;
+    }
+
+    /**
+     * Restores the state saved by {@link #saveFrame()}, possibly into another drawable's feature
+     * state for the same feature.  The saved paths are drawn directly, and are not modified.
+     */
+    public void restoreFrame(FeatureFrame frame) {
+      mIsVisible = frame.mIsVisible;
+      if (!mIsVisible) {
+        return;
+      }
+      mOpacity.setOpacity(frame.mOpacity);
+      if (hasCustomDrawable()) {
+        mFeatureMatrix.set(frame.mFeatureMatrix);
+        return;
+      }
+      mPathForDrawing = frame.mPath;
+      mMaskPathForDrawing = frame.mMaskPath;
+      mStrokeWidth.setStrokeWidth(frame.mStrokeWidth);
+      if (mStrokeColorChannel != KFScalarChannels.NO_CHANNEL) {
+        mStrokeColor.setStrokeColor(frame.mStrokeColor);
+      }
+      if (mFillColorChannel != KFScalarChannels.NO_CHANNEL) {
+        mFillColor.setFillColor(frame.mFillColor);
+      }
+      mCurrentShader = frame.mShader;
     }
 
     public KFPath getCurrentPathForDrawing() {
-      return mPath;
+      return mPathForDrawing;
     }
 
     public KFPath getCurrentMaskPath() {
-      return mFeatureMaskPath;
+      return mMaskPathForDrawing;
     }
 
     public float getStrokeWidth() {
@@ -539,14 +1067,14 @@ public class KeyframesDrawable extends Drawable
 
     public int getStrokeColor() {
       if (mStrokeColor != null && mStrokeColor.hasStrokeColor()) {
-        return (int)mStrokeColor.getStrokeColor();
+        return mStrokeColor.getStrokeColor();
       }
       return mFeature.getStrokeColor();
     }
 
     public int getFillColor() {
       if (mFillColor != null && mFillColor.hasFillColor()) {
-        return (int)mFillColor.getFillColor();
+        return mFillColor.getFillColor();
       }
       return mFeature.getFillColor();
     }
@@ -559,49 +1087,41 @@ public class KeyframesDrawable extends Drawable
       return mIsVisible;
     }
 
-    private void prepareShadersForFeature(KFFeature feature) {
-      if (mCachedShaders != null) {
-        return;
-      }
-
-      int frameRate = mKFImage.getFrameRate();
-      int numFrames = mKFImage.getFrameCount();
-      int precision = Math.round(GRADIENT_PRECISION_PER_SECOND * numFrames / frameRate);
-      mCachedShaders = new LinearGradient[precision + 1];
-      float progress;
-      KeyFramedGradient.GradientColorPair colorPair = new KeyFramedGradient.GradientColorPair();
-      KFGradient gradient = feature.getEffect().getGradient();
-      for (int i = 0; i < precision; i++) {
-        progress = i / (float) (precision) * numFrames;
-        gradient.getStartGradient().apply(progress, colorPair);
-        gradient.getEndGradient().apply(progress, colorPair);
-        mCachedShaders[i] = new LinearGradient(
-                0,
-                0,
-                0,
-                mKFImage.getCanvasSize()[1],
-                colorPair.getStartColor(),
-                colorPair.getEndColor(),
-                Shader.TileMode.CLAMP);
-      }
-    }
-
-    public Shader getNearestShaderForFeature(float frameProgress) {
-      if (mCachedShaders == null) {
+    /**
+     * Returns the backed image of this feature, decoding it on first use.  When downsampling, it is
+     * decoded again if the scale of this drawable changes the sample size needed.  If decoding
+     * fails, null is returned without decoding again until the sample size changes.
+     */
+    public final Bitmap getBackedImageBitmap() {
+      if (mBackedImage == null) {
         return null;
       }
-      int shaderIndex =
-              (int) ((frameProgress / mKFImage.getFrameCount()) * (mCachedShaders.length - 1));
-      return mCachedShaders[shaderIndex];
+      int sampleSize = mDownsampleBitmaps ? KFBitmap.computeSampleSize(mScale) : 1;
+      if (sampleSize != mBackedImageSampleSize) {
+        mBackedImageBitmap = mBackedImage.getBitmap(sampleSize);
+        mBackedImageSampleSize = sampleSize;
+        mBackedImageScaleX = 1;
+        mBackedImageScaleY = 1;
+        if (mBackedImageBitmap != null &&
+            mBackedImageBitmap.getWidth() > 0 &&
+            mBackedImageBitmap.getHeight() > 0) {
+          mBackedImageScaleX = (float) mBackedImage.getWidth() / mBackedImageBitmap.getWidth();
+          mBackedImageScaleY = (float) mBackedImage.getHeight() / mBackedImageBitmap.getHeight();
+        }
+      }
+      return mBackedImageBitmap;
     }
 
-    public final Bitmap getBackedImageBitmap() {
-      if (mBitmaps == null) return null;
-      return mBitmaps.get(mFeature.getBackedImageName());
+    public float getBackedImageScaleX() {
+      return mBackedImageScaleX;
+    }
+
+    public float getBackedImageScaleY() {
+      return mBackedImageScaleY;
     }
 
     private boolean hasCustomDrawable() {
-      return getBackedImageBitmap() != null;
+      return mBackedImage != null;
     }
 
     private float extractScaleFromMatrix(Matrix matrix) {
@@ -611,6 +1131,237 @@ public class KeyframesDrawable extends Drawable
     }
   }
 
+  /**
+   * The properties of a feature as of the last redraw, to tell whether a new frame is different
+   * enough to redraw.
+   */
+  private class RedrawState {
+    private final FeatureState mFeatureState;
+    private final float[] mMatrixValues = new float[9];
+    private final float[] mMaskMatrixValues = new float[9];
+    private final float[] mRecyclableMatrixValues = new float[9];
+    private boolean mRecorded;
+    private boolean mIsVisible;
+    private int mAlpha;
+    private float mStrokeWidth;
+    private int mStrokeColor;
+    private int mFillColor;
+    private Shader mShader;
+    private long mShapeState;
+    private long mMaskShapeState;
+
+    private RedrawState(FeatureState featureState) {
+      mFeatureState = featureState;
+    }
+
+    /**
+     * Returns whether the feature changed beyond the redraw threshold since the last
+     * {@link #record()}.
+     */
+    private boolean differs() {
+      FeatureState state = mFeatureState;
+      if (!mRecorded || state.isVisible() != mIsVisible) {
+        return true;
+      }
+      if (!mIsVisible) {
+        return false;
+      }
+      if (state.getAlpha() != mAlpha) {
+        return true;
+      }
+      if (state.hasCustomDrawable()) {
+        state.mFeatureMatrix.getValues(mRecyclableMatrixValues);
+        return matrixDiffers(mRecyclableMatrixValues, mMatrixValues);
+      }
+      if (Math.abs(state.getStrokeWidth() - mStrokeWidth) > mRedrawThreshold ||
+          state.getStrokeColor() != mStrokeColor ||
+          state.getFillColor() != mFillColor ||
+          state.getCurrentShader() != mShader) {
+        return true;
+      }
+      CachedPath path = state.mPath;
+      if (path.getShapeState() != mShapeState ||
+          matrixDiffers(path.getMatrixValues(), mMatrixValues)) {
+        return true;
+      }
+      CachedPath maskPath = state.mFeatureMaskPath;
+      return maskPath != null &&
+          (maskPath.getShapeState() != mMaskShapeState ||
+              matrixDiffers(maskPath.getMatrixValues(), mMaskMatrixValues));
+    }
+
+    /**
+     * Records the current state of the feature as the one last redrawn.
+     */
+    private void record() {
+      FeatureState state = mFeatureState;
+      mRecorded = true;
+      mIsVisible = state.isVisible();
+      mAlpha = state.getAlpha();
+      if (state.hasCustomDrawable()) {
+        state.mFeatureMatrix.getValues(mMatrixValues);
+        return;
+      }
+      mStrokeWidth = state.getStrokeWidth();
+      mStrokeColor = state.getStrokeColor();
+      mFillColor = state.getFillColor();
+      mShader = state.getCurrentShader();
+      mShapeState = state.mPath.getShapeState();
+      System.arraycopy(state.mPath.getMatrixValues(), 0, mMatrixValues, 0, 9);
+      if (state.mFeatureMaskPath != null) {
+        mMaskShapeState = state.mFeatureMaskPath.getShapeState();
+        System.arraycopy(state.mFeatureMaskPath.getMatrixValues(), 0, mMaskMatrixValues, 0, 9);
+      }
+    }
+
+    /**
+     * Forgets the recorded state, so that the feature {@link #differs()} until recorded again.
+     */
+    private void reset() {
+      mRecorded = false;
+    }
+
+    /**
+     * Returns whether the translation of two matrices differs by more than the redraw threshold, or
+     * any other value by more than the linear threshold.
+     */
+    private boolean matrixDiffers(float[] values, float[] otherValues) {
+      for (int i = 0; i < 9; i++) {
+        float threshold = i == Matrix.MTRANS_X || i == Matrix.MTRANS_Y ?
+            mRedrawThreshold :
+            mRedrawLinearThreshold;
+        if (Math.abs(values[i] - otherValues[i]) > threshold) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Evaluates frames in the background into a buffer of feature frames, in the order of
+   * mEvaluatedFeatureStateList.  Other drawables of the same image may be evaluated at the same
+   * time on other threads, so everything written while evaluating, down to the scratch arrays of
+   * path morphs, belongs to this drawable, and the shared image is only read.
+   */
+  private class FrameEvaluation implements KFBackgroundEvaluator.Evaluation<FeatureFrame[]> {
+
+    @Override
+    public FeatureFrame[] createBuffer() {
+      FeatureFrame[] featureFrames = new FeatureFrame[mEvaluatedFeatureStateList.size()];
+      for (int i = 0; i < featureFrames.length; i++) {
+        featureFrames[i] = new FeatureFrame();
+      }
+      return featureFrames;
+    }
+
+    @Override
+    public void evaluate(float frameProgress, FeatureFrame[] buffer) {
+      evaluateFrame(frameProgress);
+      for (int i = 0; i < buffer.length; i++) {
+        mEvaluatedFeatureStateList.get(i).saveFrame(buffer[i]);
+      }
+    }
+  }
+
+  /**
+   * Estimates the memory held by a copy of the path of a feature, based on its largest key frame.
+   */
+  private static int estimatePathSizeBytes(KFFeature feature) {
+    if (feature == null) {
+      return 0;
+    }
+    int maxSizeBytes = 0;
+    List<KFFeatureFrame> keyFrames = feature.getKeyFrames();
+    for (int i = 0, len = keyFrames.size(); i < len; i++) {
+      List<VectorCommand> commands = keyFrames.get(i).getShapeData().getVectorCommands();
+      int sizeBytes = PATH_BYTES;
+      for (int j = 0, commandsLen = commands.size(); j < commandsLen; j++) {
+        sizeBytes += PATH_VERB_BYTES +
+            commands.get(j).getArguments().length * PATH_COORDINATE_BYTES;
+      }
+      maxSizeBytes = Math.max(maxSizeBytes, sizeBytes);
+    }
+    return maxSizeBytes;
+  }
+
+  /**
+   * The state of a feature at one frame, as saved for frame memoization or background evaluation.
+   */
+  private static class FeatureFrame {
+
+    private int mSizeBytes;
+    private boolean mIsVisible;
+    private float mOpacity;
+    private Matrix mFeatureMatrix;
+    private KFPath mPath;
+    private KFPath mMaskPath;
+    private float mStrokeWidth;
+    private int mStrokeColor;
+    private int mFillColor;
+    private Shader mShader;
+  }
+
+  /**
+   * The path of a feature or mask, transformed for the current frame.  The path is only rebuilt
+   * from its vector commands when the shape changes, as it doesn't during a hold between key
+   * frames, and is only transformed again when either the shape or the matrix changes.
+   */
+  private class CachedPath {
+    private final KFPath mUntransformedPath = new KFPath();
+    private final KFPath mPath = new KFPath();
+    private long mShapeState = UNKNOWN_SHAPE_STATE;
+    private final float[] mMatrixValues = new float[9];
+    private final float[] mRecyclableMatrixValues = new float[9];
+    // Scratch for morphing the shape, owned here as the morphs are shared by drawables and threads.
+    private float[] mRecyclableMorphArgs;
+
+    public void update(KeyFramedPath keyFramedPath, float frameProgress, Matrix matrix) {
+      long shapeState = keyFramedPath.getState(frameProgress);
+      boolean shapeChanged = shapeState != mShapeState;
+      if (shapeChanged) {
+        if (mRecyclableMorphArgs == null ||
+            mRecyclableMorphArgs.length < keyFramedPath.getMaxArgCount()) {
+          mRecyclableMorphArgs = new float[keyFramedPath.getMaxArgCount()];
+        }
+        mUntransformedPath.reset();
+        keyFramedPath.applyState(shapeState, mUntransformedPath, mRecyclableMorphArgs);
+        mShapeState = shapeState;
+      }
+      matrix.getValues(mRecyclableMatrixValues);
+      boolean matrixChanged = !Arrays.equals(mRecyclableMatrixValues, mMatrixValues);
+      if (matrixChanged) {
+        System.arraycopy(mRecyclableMatrixValues, 0, mMatrixValues, 0, mMatrixValues.length);
+      }
+
+      if (shapeChanged) {
+        mPathRebuildCount.incrementAndGet();
+      } else if (matrixChanged) {
+        mPathRetransformCount.incrementAndGet();
+      } else {
+        mSkippedPathRebuildCount.incrementAndGet();
+        return;
+      }
+      mUntransformedPath.transform(matrix, mPath);
+    }
+
+    public KFPath getPath() {
+      return mPath;
+    }
+
+    public long getShapeState() {
+      return mShapeState;
+    }
+
+    /**
+     * Returns the values of the matrix the path was last transformed by, which should *never* be
+     * modified.
+     */
+    public float[] getMatrixValues() {
+      return mMatrixValues;
+    }
+  }
+
   public interface OnAnimationEnd {
     void onAnimationEnd();
   }
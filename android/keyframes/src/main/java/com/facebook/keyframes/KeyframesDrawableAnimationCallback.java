@@ -9,21 +9,14 @@
 
 package com.facebook.keyframes;
 
-import android.annotation.TargetApi;
-import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.SystemClock;
-import android.view.Choreographer;
-
 import com.facebook.keyframes.model.KFImage;
 
 import java.lang.ref.WeakReference;
 
 /**
  * A simple callback that when run, will call back indefinitely with progress updates until
- * cancelled.  This will continuously feed back progress data from [0, 1] calculated by millis
- * per loop.
+ * cancelled.  This will continuously feed back progress data from [0, 1] calculated by nanos
+ * per loop.  Frames are driven by the shared {@link KeyframesTicker}.
  */
 public abstract class KeyframesDrawableAnimationCallback {
 
@@ -35,63 +28,178 @@ public abstract class KeyframesDrawableAnimationCallback {
     void onStop();
   }
 
+  /**
+   * An interface for a class which wants to know when adaptive frame rate changes the rate an
+   * animation is updated at, see {@link #setAdaptiveFrameRate(boolean, FrameRateListener)}.
+   */
+  public interface FrameRateListener {
+
+    /**
+     * @param effectiveFrameRate The number of progress updates per second from now on
+     * @param transitionCount The number of times the rate was changed so far
+     */
+    void onFrameRateChanged(float effectiveFrameRate, int transitionCount);
+  }
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
   private final WeakReference<FrameListener> mListener;
   private final int mFrameCount;
-  private final int mMillisPerLoop;
+  private final long mNanosPerLoop;
 
-  private long mStartTimeMillis;
+  /**
+   * The frame time the animation started at, shifted forward by the time spent paused, or 0 if it
+   * hasn't received its first frame since being started.
+   */
+  private long mStartTimeNanos;
+  private boolean mPaused;
   private boolean mStopAtLoopEnd;
   // This flag is used to prevent posting callbacks after the animation is stopped.
   private boolean mStopped;
   private int mCurrentLoopNumber;
 
-  private long mMinimumMillisBetweenProgressUpdates = -1;
-  private long mPreviousProgressMillis = 0;
+  /**
+   * Progress updates are paced on a grid of mNanosBetweenProgressUpdates from the start time, with
+   * each update made on the display frame closest to its slot on the grid.
+   */
+  private long mNanosBetweenProgressUpdates;
+  private long mPreviousProgressNanos;
+  private long mNextProgressNanos;
+  private long mRefreshPeriodNanos = NANOS_PER_SECOND / 60;
+
+  private KeyframesFrameBudget.Priority mPriority = KeyframesFrameBudget.Priority.VISIBLE;
+
+  private KFFrameRateGovernor mFrameRateGovernor;
+  private FrameRateListener mFrameRateListener;
+  // The time spent evaluating and drawing the last progress update so far, or -1 if not measured.
+  private long mProgressCostNanos = -1;
 
   /**
-   * Creates a KeyframesDrawableAnimationCallback appropriate for the API level of the device.
+   * Creates a KeyframesDrawableAnimationCallback driven by {@link KeyframesTicker#getInstance()}.
    * @param listener The listener that will receive callbacks on updates to the value
    * @return A KeyframesDrawableAnimationCallback implementation
    */
   public static KeyframesDrawableAnimationCallback create(
       FrameListener listener,
       KFImage face) {
-    if (hasChoreographer()) {
-      return new FrameCallbackFaceAnimationCallback(
-          listener,
-          face.getFrameRate(),
-          face.getFrameCount());
-    } else {
-      return new RunnableFaceAnimationCallback(
-          listener,
-          face.getFrameRate(),
-          face.getFrameCount());
-    }
+    return create(
+        listener,
+        face.getFrameRate(),
+        face.getFrameCount(),
+        KeyframesTicker.getInstance());
   }
 
-  private static boolean hasChoreographer() {
-    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+  static KeyframesDrawableAnimationCallback create(
+      FrameListener listener,
+      int frameRate,
+      int frameCount,
+      KeyframesTicker ticker) {
+    return new TickerFaceAnimationCallback(listener, frameRate, frameCount, ticker);
   }
 
   private KeyframesDrawableAnimationCallback(FrameListener listener, int frameRate, int frameCount) {
     mListener = new WeakReference<>(listener);
     mFrameCount = frameCount;
-    mMillisPerLoop = Math.round(1000 * ((float) frameCount / frameRate));
+    mNanosPerLoop = frameCount * NANOS_PER_SECOND / frameRate;
   }
 
   /**
    * Set the maximum frame rate for this animation.
    * Consider using this for low end devices.
-   * @param maxFrameRate
+   * @param maxFrameRate The maximum number of progress updates per second, or
+   * {@link KeyframesDrawable#MAX_FRAME_RATE_DISPLAY} to update on every display frame
    */
   public void setMaxFrameRate(int maxFrameRate) {
-    mMinimumMillisBetweenProgressUpdates = 1000 / maxFrameRate;
+    if (maxFrameRate < 0) {
+      throw new IllegalArgumentException("maxFrameRate < 0");
+    }
+    mNanosBetweenProgressUpdates = maxFrameRate == KeyframesDrawable.MAX_FRAME_RATE_DISPLAY ?
+        0 :
+        NANOS_PER_SECOND / maxFrameRate;
+  }
+
+  /**
+   * Sets the priority of this animation, used by the {@link KeyframesFrameBudget} of the ticker if
+   * it has one.  Animations are {@link KeyframesFrameBudget.Priority#VISIBLE} by default.
+   */
+  public void setPriority(KeyframesFrameBudget.Priority priority) {
+    if (priority == null) {
+      throw new IllegalArgumentException("priority == null");
+    }
+    if (priority != mPriority) {
+      mPriority = priority;
+      onPriorityChanged();
+    }
+  }
+
+  public KeyframesFrameBudget.Priority getPriority() {
+    return mPriority;
+  }
+
+  /**
+   * Enables or disables adaptive frame rate, which steps the rate of progress updates down from the
+   * max frame rate, to a half, a third and then a quarter of it, while updates take longer than
+   * their share of the time between them to evaluate and draw, and back up once they don't.  The
+   * listener of this callback is expected to report the time spent drawing each update through
+   * {@link #recordDrawDuration(long)}.
+   * @param enabled Whether to adapt the frame rate
+   * @param frameRateListener The listener to notify when the rate changes, or null
+   */
+  public void setAdaptiveFrameRate(boolean enabled, FrameRateListener frameRateListener) {
+    mFrameRateGovernor = enabled ? new KFFrameRateGovernor() : null;
+    mFrameRateListener = frameRateListener;
+    mProgressCostNanos = -1;
+  }
+
+  /**
+   * Returns the number of progress updates per second, at most the max frame rate, or the display's
+   * refresh rate if the max frame rate is {@link KeyframesDrawable#MAX_FRAME_RATE_DISPLAY}, and
+   * lowered by adaptive frame rate.
+   */
+  public float getEffectiveFrameRate() {
+    return (float) NANOS_PER_SECOND / (getUncappedIntervalNanos() * getFrameRateDivisor());
+  }
+
+  /**
+   * Returns how many times adaptive frame rate changed the rate of progress updates.
+   */
+  public int getFrameRateTransitionCount() {
+    return mFrameRateGovernor == null ? 0 : mFrameRateGovernor.getTransitionCount();
+  }
+
+  /**
+   * Records time spent drawing the last progress update, counted towards its cost by adaptive frame
+   * rate.
+   */
+  void recordDrawDuration(long drawNanos) {
+    if (mProgressCostNanos >= 0) {
+      mProgressCostNanos += drawNanos;
+    }
+  }
+
+  private long getUncappedIntervalNanos() {
+    return mNanosBetweenProgressUpdates > 0 ? mNanosBetweenProgressUpdates : mRefreshPeriodNanos;
+  }
+
+  private int getFrameRateDivisor() {
+    return mFrameRateGovernor == null ? 1 : mFrameRateGovernor.getDivisor();
   }
 
   protected abstract void postCallback();
 
   protected abstract void cancelCallback();
 
+  protected abstract void onPriorityChanged();
+
+  /**
+   * Freezes the animation while it is skipped by the frame budget, so that the next frame resumes
+   * from the last progress update as after {@link #pause()}.
+   */
+  protected void freeze() {
+    mProgressCostNanos = -1;
+    mPaused = mStartTimeNanos != 0;
+  }
+
   /**
    * Starts this animation callback and resets the start time.
    *
@@ -101,8 +209,10 @@ public abstract class KeyframesDrawableAnimationCallback {
   public void start() {
     mStopped = false;
     mStopAtLoopEnd = false;
-    mStartTimeMillis = 0;
+    mStartTimeNanos = 0;
+    mPaused = false;
     mCurrentLoopNumber = 0;
+    mProgressCostNanos = -1;
     cancelCallback();
     postCallback();
   }
@@ -113,8 +223,10 @@ public abstract class KeyframesDrawableAnimationCallback {
   public void playOnce() {
     mStopped = false;
     mStopAtLoopEnd = true;
-    mStartTimeMillis = 0;
+    mStartTimeNanos = 0;
+    mPaused = false;
     mCurrentLoopNumber = 0;
+    mProgressCostNanos = -1;
     cancelCallback();
     postCallback();
   }
@@ -125,7 +237,8 @@ public abstract class KeyframesDrawableAnimationCallback {
   public void stop() {
     mStopped = true;
     cancelCallback();
-    mStartTimeMillis = 0;
+    mStartTimeNanos = 0;
+    mPaused = false;
     mCurrentLoopNumber = -1;
     mListener.get().onStop();
   }
@@ -135,7 +248,8 @@ public abstract class KeyframesDrawableAnimationCallback {
    */
   public void pause() {
     cancelCallback();
-    mStartTimeMillis *= -1;
+    mProgressCostNanos = -1;
+    mPaused = mStartTimeNanos != 0;
   }
 
   /**
@@ -158,111 +272,126 @@ public abstract class KeyframesDrawableAnimationCallback {
     mStopAtLoopEnd = true;
   }
 
-  protected void advanceAnimation(final long frameTimeMillis) {
+  /**
+   * Advances the animation to a display frame.
+   * @param frameTimeNanos The time the frame is shown at, on the {@link System#nanoTime()} clock
+   * @param refreshPeriodNanos The time between display frames
+   */
+  protected void advanceAnimation(final long frameTimeNanos, final long refreshPeriodNanos) {
+    mRefreshPeriodNanos = refreshPeriodNanos;
     // hold a strong reference to the listener to prevent getting a null during this method.
     FrameListener listener = mListener.get();
     if (listener == null) {
       cancelCallback();
-      mStartTimeMillis = 0;
-      mPreviousProgressMillis = 0;
+      mStartTimeNanos = 0;
+      mPaused = false;
       mCurrentLoopNumber = -1;
       return;
     }
-    if (mStartTimeMillis == 0) {
-      mStartTimeMillis = frameTimeMillis;
-    } else if (mStartTimeMillis < 0) {
-      long pausedTimeMillis = frameTimeMillis - mPreviousProgressMillis;
-      mStartTimeMillis = mStartTimeMillis * -1 + pausedTimeMillis;
-      mPreviousProgressMillis += pausedTimeMillis;
+    if (mStartTimeNanos == 0) {
+      mStartTimeNanos = frameTimeNanos;
+      mPreviousProgressNanos = frameTimeNanos;
+      mNextProgressNanos = frameTimeNanos;
+    } else if (mPaused) {
+      // Resume from the last progress update, as if no time had passed since.
+      long pausedNanos = frameTimeNanos - mPreviousProgressNanos;
+      mStartTimeNanos += pausedNanos;
+      mPreviousProgressNanos += pausedNanos;
+      mNextProgressNanos += pausedNanos;
+      mPaused = false;
     }
 
-    int currentLoopNumber = (int) (frameTimeMillis - mStartTimeMillis) / mMillisPerLoop;
+    long elapsedNanos = frameTimeNanos - mStartTimeNanos;
+    int currentLoopNumber = (int) (elapsedNanos / mNanosPerLoop);
     final boolean loopHasEnded = currentLoopNumber > mCurrentLoopNumber;
     if (mStopAtLoopEnd && loopHasEnded) {
       listener.onProgressUpdate(mFrameCount);
       stop();
       return;
     }
-    long currentProgressMillis = (frameTimeMillis - mStartTimeMillis) % mMillisPerLoop;
 
-    boolean shouldUpdateProgress = true;
-    if (frameTimeMillis - mPreviousProgressMillis < mMinimumMillisBetweenProgressUpdates) {
-      shouldUpdateProgress = false;
-    } else {
-      mPreviousProgressMillis = frameTimeMillis;
-    }
-
-    if (shouldUpdateProgress) {
-      listener.onProgressUpdate((float) currentProgressMillis / mMillisPerLoop * mFrameCount);
+    // The display frame closest to the next slot on the grid is the first one within half a
+    // refresh period of it, so that updates are spread as evenly as the display allows.
+    if (frameTimeNanos >= mNextProgressNanos - refreshPeriodNanos / 2) {
+      if (mFrameRateGovernor != null && mProgressCostNanos >= 0) {
+        recordProgressCost();
+      }
+      int divisor = getFrameRateDivisor();
+      long nanosBetweenProgressUpdates = divisor == 1 ?
+          mNanosBetweenProgressUpdates :
+          getUncappedIntervalNanos() * divisor;
+      mPreviousProgressNanos = frameTimeNanos;
+      mNextProgressNanos += nanosBetweenProgressUpdates;
+      if (mNextProgressNanos <= frameTimeNanos) {
+        // Fell behind by more than an update, e.g. from dropped frames, so don't catch up.
+        mNextProgressNanos = frameTimeNanos + nanosBetweenProgressUpdates;
+      }
+      long progressStartNanos = 0;
+      if (mFrameRateGovernor != null) {
+        mProgressCostNanos = 0;
+        progressStartNanos = System.nanoTime();
+      }
+      listener.onProgressUpdate(
+          (float) ((double) (elapsedNanos % mNanosPerLoop) / mNanosPerLoop * mFrameCount));
+      // The listener may have stopped the animation, or turned adaptive frame rate off.
+      if (mFrameRateGovernor != null && mProgressCostNanos >= 0) {
+        mProgressCostNanos += System.nanoTime() - progressStartNanos;
+      }
     }
-    mCurrentLoopNumber = (int) (frameTimeMillis - mStartTimeMillis) / mMillisPerLoop;
+    mCurrentLoopNumber = currentLoopNumber;
     if (!mStopped) {
       postCallback();
     }
   }
 
-  @TargetApi(16)
-  private static class FrameCallbackFaceAnimationCallback extends KeyframesDrawableAnimationCallback
-      implements Choreographer.FrameCallback {
+  private void recordProgressCost() {
+    boolean changed =
+        mFrameRateGovernor.recordUpdate(mProgressCostNanos, getUncappedIntervalNanos());
+    mProgressCostNanos = -1;
+    if (changed && mFrameRateListener != null) {
+      mFrameRateListener.onFrameRateChanged(
+          getEffectiveFrameRate(),
+          mFrameRateGovernor.getTransitionCount());
+    }
+  }
 
-    private static Choreographer sUIChoreographer;
+  private static class TickerFaceAnimationCallback extends KeyframesDrawableAnimationCallback
+      implements KeyframesTicker.Callback {
 
-    private FrameCallbackFaceAnimationCallback(
+    private final KeyframesTicker mTicker;
+
+    private TickerFaceAnimationCallback(
         FrameListener listener,
         int frameRate,
-        int frameCount) {
+        int frameCount,
+        KeyframesTicker ticker) {
       super(listener, frameRate, frameCount);
+      mTicker = ticker;
     }
 
     @Override
     public void doFrame(long frameTimeNanos) {
-      advanceAnimation(frameTimeNanos / 1000000); // nanoseconds per millisecond
+      advanceAnimation(frameTimeNanos, mTicker.getRefreshPeriodNanos());
     }
 
     @Override
     protected void postCallback() {
-      if (sUIChoreographer == null) {
-        sUIChoreographer = Choreographer.getInstance();
-      }
-      sUIChoreographer.postFrameCallback(this);
+      mTicker.postCallback(this);
     }
 
     @Override
     protected void cancelCallback() {
-      if (sUIChoreographer == null) {
-        sUIChoreographer = Choreographer.getInstance();
-      }
-      sUIChoreographer.removeFrameCallback(this);
-    }
-  }
-
-  private static class RunnableFaceAnimationCallback extends KeyframesDrawableAnimationCallback
-      implements Runnable {
-    private static final int ANIMATION_MIN_STEP_TIME_MS = 25; // 40 fps
-
-    private final Handler mHandler;
-
-    private RunnableFaceAnimationCallback(
-        FrameListener listener,
-        int frameRate,
-        int frameCount) {
-      super(listener, frameRate, frameCount);
-      mHandler = new Handler(Looper.getMainLooper());
+      mTicker.removeCallback(this);
     }
 
     @Override
-    public void run() {
-      advanceAnimation(SystemClock.uptimeMillis());
+    protected void onPriorityChanged() {
+      mTicker.onPriorityChanged(this);
     }
 
     @Override
-    protected void postCallback() {
-      mHandler.postDelayed(this, ANIMATION_MIN_STEP_TIME_MS);
-    }
-
-    @Override
-    protected void cancelCallback() {
-      mHandler.removeCallbacks(this);
+    public void onFrameSkipped() {
+      freeze();
     }
   }
 }
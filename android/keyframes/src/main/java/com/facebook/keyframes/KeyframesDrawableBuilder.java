@@ -9,11 +9,11 @@
 
 package com.facebook.keyframes;
 
-import android.graphics.Bitmap;
-
+import com.facebook.keyframes.model.KFBitmap;
 import com.facebook.keyframes.model.KFImage;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * A class for building an instance of the Keyframes drawable.  This class includes setting configs
@@ -23,10 +23,23 @@ import java.util.Map;
 public class KeyframesDrawableBuilder {
 
   private KFImage mImage;
+  private KFImageCache mImageCache;
+  private Object mImageCacheKey;
   private int mMaxFrameRate = 60;
+  private float mGradientPrecision = KeyframesDrawable.DEFAULT_GRADIENT_PRECISION_PER_SECOND;
   private ExperimentalFeatures mExperimentalFeatures = new ExperimentalFeatures();
 
+  /**
+   * Builds the drawable.
+   * @throws IllegalStateException if the image given by {@link #withCachedImage} isn't cached
+   */
   public KeyframesDrawable build() {
+    if (mImageCache != null) {
+      mImage = mImageCache.get(mImageCacheKey);
+      if (mImage == null) {
+        throw new IllegalStateException("No KFImage cached under " + mImageCacheKey);
+      }
+    }
     if (mImage == null) {
       throw new IllegalArgumentException("No KFImage provided!");
     }
@@ -35,6 +48,22 @@ public class KeyframesDrawableBuilder {
 
   public KeyframesDrawableBuilder withImage(KFImage image) {
     mImage = image;
+    mImageCache = null;
+    mImageCacheKey = null;
+    return this;
+  }
+
+  /**
+   * Uses the image cached under the given key, which is looked up when {@link #build()} is called,
+   * so it only needs to be in the cache by then.
+   */
+  public KeyframesDrawableBuilder withCachedImage(KFImageCache cache, Object key) {
+    if (cache == null) {
+      throw new IllegalArgumentException("cache == null");
+    }
+    mImage = null;
+    mImageCache = cache;
+    mImageCacheKey = key;
     return this;
   }
 
@@ -42,6 +71,12 @@ public class KeyframesDrawableBuilder {
     return mImage;
   }
 
+  /**
+   * Caps the number of times per second the animation is updated, defaulting to 60.  Updates are
+   * paced to the display's refresh rate, so a cap which divides it, or
+   * {@link KeyframesDrawable#MAX_FRAME_RATE_DISPLAY} to update on every display frame, plays the
+   * most evenly.
+   */
   public KeyframesDrawableBuilder withMaxFrameRate(int maxFrameRate) {
     mMaxFrameRate = maxFrameRate;
     return this;
@@ -51,6 +86,23 @@ public class KeyframesDrawableBuilder {
     return mMaxFrameRate;
   }
 
+  /**
+   * Sets how many gradient shaders are used per second of animation, defaulting to
+   * {@link KeyframesDrawable#DEFAULT_GRADIENT_PRECISION_PER_SECOND}.  Gradient colors are stepped
+   * at this rate, and the shaders are shared by all drawables of the image at the same precision.
+   */
+  public KeyframesDrawableBuilder withGradientPrecision(float precisionPerSecond) {
+    if (precisionPerSecond <= 0) {
+      throw new IllegalArgumentException("precisionPerSecond <= 0");
+    }
+    mGradientPrecision = precisionPerSecond;
+    return this;
+  }
+
+  float getGradientPrecision() {
+    return mGradientPrecision;
+  }
+
   // Experimental features below.  APIs are volatile and subject to change.  Use with care!
 
   public ExperimentalFeatures withExperimentalFeatures() {
@@ -65,20 +117,45 @@ public class KeyframesDrawableBuilder {
    * Experimental features that are subject to drastic changes.  Use with care!
    */
   public class ExperimentalFeatures {
-    private Map<String, Bitmap> mBitmaps;
+    private boolean mWithBitmaps;
+    private boolean mDownsampleBitmaps;
     private boolean mClipToAECanvas = false;
+    private int mFrameMemoizationMaxSizeBytes;
+    private boolean mBakeGroupMatrices;
+    private Executor mEvaluationExecutor;
+    private long mEvaluationMaxWaitMs;
+    private boolean mQuantizeToSourceFrames;
+    private float mRedrawThreshold = -1;
+    private boolean mAdaptiveFrameRate;
+    private KeyframesDrawableAnimationCallback.FrameRateListener mFrameRateListener;
 
     public KeyframesDrawable build() {
       return KeyframesDrawableBuilder.this.build();
     }
 
     public ExperimentalFeatures withBitmaps() {
-      mBitmaps = mImage.getBitmaps();
+      mWithBitmaps = true;
       return ExperimentalFeatures.this;
     }
 
-    Map<String, Bitmap> getBitmaps() {
-      return mBitmaps;
+    /**
+     * Like {@link #withBitmaps()}, but decodes each bitmap downsampled to the size it is drawn at,
+     * based on the drawable's bounds relative to the canvas size of the image.
+     */
+    public ExperimentalFeatures withDownsampledBitmaps() {
+      mDownsampleBitmaps = true;
+      return withBitmaps();
+    }
+
+    /**
+     * Returns the bitmaps of the image, read once the image is known at {@link #build()}.
+     */
+    Map<String, KFBitmap> getBitmaps() {
+      return mWithBitmaps ? mImage.getKFBitmaps() : null;
+    }
+
+    boolean getDownsampleBitmaps() {
+      return mDownsampleBitmaps;
     }
 
     public ExperimentalFeatures clipToAECanvas() {
@@ -89,5 +166,149 @@ public class KeyframesDrawableBuilder {
     boolean getClipToAECanvas() {
       return mClipToAECanvas;
     }
+
+    /**
+     * Like {@link #withFrameMemoization(int)}, with a limit of
+     * {@link KeyframesDrawable#DEFAULT_FRAME_MEMOIZATION_SIZE_BYTES}.
+     */
+    public ExperimentalFeatures withFrameMemoization() {
+      return withFrameMemoization(KeyframesDrawable.DEFAULT_FRAME_MEMOIZATION_SIZE_BYTES);
+    }
+
+    /**
+     * Quantizes playback to the frame rate the image was exported at, and remembers the evaluated
+     * state of each frame, so that later loops of the animation don't evaluate it again.  The least
+     * recently used frames are dropped once the estimated memory they hold exceeds the given size.
+     */
+    public ExperimentalFeatures withFrameMemoization(int maxSizeBytes) {
+      if (maxSizeBytes <= 0) {
+        throw new IllegalArgumentException("maxSizeBytes <= 0");
+      }
+      mFrameMemoizationMaxSizeBytes = maxSizeBytes;
+      return ExperimentalFeatures.this;
+    }
+
+    /**
+     * Returns the memory limit of frame memoization, or 0 if it is disabled.
+     */
+    int getFrameMemoizationMaxSizeBytes() {
+      return mFrameMemoizationMaxSizeBytes;
+    }
+
+    /**
+     * Looks up animation group matrices in a table built once per image, see
+     * {@link com.facebook.keyframes.model.KFImage#getGroupMatrixTable()}, rather than evaluating
+     * the animations of every group at each frame.  Matrices between whole frames are a linear
+     * approximation, so leave this off for images with eased group animations drawn between whole
+     * frames.
+     */
+    public ExperimentalFeatures withBakedGroupMatrices() {
+      mBakeGroupMatrices = true;
+      return ExperimentalFeatures.this;
+    }
+
+    boolean getBakeGroupMatrices() {
+      return mBakeGroupMatrices;
+    }
+
+    /**
+     * Like {@link #withBackgroundEvaluation(Executor, long)}, drawing the latest evaluated frame
+     * without waiting for the one last requested.
+     */
+    public ExperimentalFeatures withBackgroundEvaluation(Executor executor) {
+      return withBackgroundEvaluation(executor, 0);
+    }
+
+    /**
+     * Evaluates each frame on the given executor rather than on the thread animating the drawable,
+     * leaving only the canvas calls of {@link KeyframesDrawable#draw(android.graphics.Canvas)} to
+     * the UI thread.  A frame is evaluated into a back buffer while the previous one is drawn, and
+     * requests for frames made while one is evaluated are coalesced into the latest.  When drawing,
+     * the drawable waits up to maxWaitMs for the latest requested frame, then draws the latest
+     * evaluated one.  The image may be shared with other drawables, e.g. through a
+     * {@link KFImageCache}, as evaluation only reads it.
+     * @param executor The executor to evaluate frames on, which may be shared between drawables
+     * @param maxWaitMs The longest time to block drawing for, or 0 to never block
+     */
+    public ExperimentalFeatures withBackgroundEvaluation(Executor executor, long maxWaitMs) {
+      if (executor == null) {
+        throw new IllegalArgumentException("executor == null");
+      }
+      if (maxWaitMs < 0) {
+        throw new IllegalArgumentException("maxWaitMs < 0");
+      }
+      mEvaluationExecutor = executor;
+      mEvaluationMaxWaitMs = maxWaitMs;
+      return ExperimentalFeatures.this;
+    }
+
+    /**
+     * Returns the executor to evaluate frames on, or null to evaluate them on the calling thread.
+     */
+    Executor getEvaluationExecutor() {
+      return mEvaluationExecutor;
+    }
+
+    long getEvaluationMaxWaitMs() {
+      return mEvaluationMaxWaitMs;
+    }
+
+    /**
+     * Quantizes playback to the frame rate the image was exported at, only evaluating and redrawing
+     * the drawable when the nearest whole frame changes, rather than at every display frame.
+     */
+    public ExperimentalFeatures withSourceFrameQuantization() {
+      mQuantizeToSourceFrames = true;
+      return ExperimentalFeatures.this;
+    }
+
+    boolean getQuantizeToSourceFrames() {
+      return mQuantizeToSourceFrames;
+    }
+
+    /**
+     * Evaluates each progress update as usual, but only redraws the drawable when a feature changed
+     * visibly since the last redraw: when its shape, colors or visibility changed, or it moved or
+     * its stroke width changed by more than the threshold, in pixels of the image's canvas.  Holds
+     * and slow stretches of easing then don't redraw at every display frame.  Has no effect along
+     * with frame memoization or background evaluation.
+     * @param threshold The distance a feature needs to move to be redrawn, or 0 to redraw on any
+     * change
+     */
+    public ExperimentalFeatures withRedrawThreshold(float threshold) {
+      if (threshold < 0) {
+        throw new IllegalArgumentException("threshold < 0");
+      }
+      mRedrawThreshold = threshold;
+      return ExperimentalFeatures.this;
+    }
+
+    /**
+     * Returns the redraw threshold, or a negative value to redraw at every progress update.
+     */
+    float getRedrawThreshold() {
+      return mRedrawThreshold;
+    }
+
+    /**
+     * Adapts how often the animation is updated to what the updates cost, stepping the frame rate
+     * down from the max frame rate to a half, a third and then a quarter of it while evaluating and
+     * drawing the animation takes more than its share of the frame, and back up once it doesn't.
+     * @param frameRateListener The listener to notify when the frame rate changes, or null
+     */
+    public ExperimentalFeatures withAdaptiveFrameRate(
+        KeyframesDrawableAnimationCallback.FrameRateListener frameRateListener) {
+      mAdaptiveFrameRate = true;
+      mFrameRateListener = frameRateListener;
+      return ExperimentalFeatures.this;
+    }
+
+    boolean getAdaptiveFrameRate() {
+      return mAdaptiveFrameRate;
+    }
+
+    KeyframesDrawableAnimationCallback.FrameRateListener getFrameRateListener() {
+      return mFrameRateListener;
+    }
   }
 }
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+/**
+ * A policy for sharing the time of each frame between all running animations, consulted by
+ * {@link KeyframesTicker} once set with {@link KeyframesTicker#setFrameBudget}.  Each frame, the
+ * ticker advances animations in order of their {@link Priority}, and asks the budget for each one
+ * whether to advance it, given the time spent advancing animations so far in the frame.
+ *
+ * By default, foreground animations are always advanced.  Visible animations are deferred once the
+ * frame's budget is spent, or half of it while scrolling, but are advanced anyway after
+ * {@link #MAX_CONSECUTIVE_DEFERRALS} frames in a row so that they keep moving.  Offscreen
+ * animations are skipped while scrolling or once the budget is spent, and only advanced in frames
+ * with time to spare.  Skipped animations are frozen rather than left to jump ahead, and no frames
+ * are requested for them alone while the budget would keep skipping them.  Subclasses can override
+ * {@link #getDecision(Priority, long)} for a different policy.
+ *
+ * Like the ticker, the budget must only be used from the main thread.
+ */
+public class KeyframesFrameBudget {
+
+  /**
+   * How important it is to keep an animation moving, see
+   * {@link KeyframesDrawable#setPriority(Priority)}.
+   */
+  public enum Priority {
+    /**
+     * The animation the user is looking at, which should never be throttled.
+     */
+    FOREGROUND,
+    /**
+     * An animation on screen, which can play at a lower frame rate.
+     */
+    VISIBLE,
+    /**
+     * An animation scrolled or hidden out of sight, which can be frozen.
+     */
+    OFFSCREEN
+  }
+
+  /**
+   * What to do with an animation in the current frame.
+   */
+  public enum Decision {
+    /**
+     * Advance the animation.
+     */
+    ADVANCE,
+    /**
+     * Advance the animation in a later frame instead, before other animations of its priority.
+     * After {@link #MAX_CONSECUTIVE_DEFERRALS} frames in a row, it is advanced anyway.
+     */
+    DEFER,
+    /**
+     * Leave the animation as it is for this frame.
+     */
+    SKIP
+  }
+
+  public static final long DEFAULT_BUDGET_NANOS = 4000000;
+  public static final int MAX_CONSECUTIVE_DEFERRALS = 3;
+
+  private final long mBudgetNanos;
+  private boolean mScrolling;
+  // Notified when scrolling changes, so that the ticker can resume skipped animations.
+  private Runnable mScrollingListener;
+
+  private final int[] mDeferredFrameCounts = new int[Priority.values().length];
+  private final int[] mSkippedFrameCounts = new int[Priority.values().length];
+  private int mOverBudgetFrameCount;
+
+  /**
+   * Creates a budget of {@link #DEFAULT_BUDGET_NANOS} per frame.
+   */
+  public KeyframesFrameBudget() {
+    this(DEFAULT_BUDGET_NANOS);
+  }
+
+  /**
+   * @param budgetNanos The time to spend advancing all animations in a frame
+   */
+  public KeyframesFrameBudget(long budgetNanos) {
+    if (budgetNanos <= 0) {
+      throw new IllegalArgumentException("budgetNanos <= 0");
+    }
+    mBudgetNanos = budgetNanos;
+  }
+
+  public long getBudgetNanos() {
+    return mBudgetNanos;
+  }
+
+  /**
+   * Sets whether a list or other parent of the animations is scrolling, e.g. from a scroll
+   * listener, during which animations other than the foreground ones are throttled harder.
+   */
+  public void setScrolling(boolean scrolling) {
+    if (mScrolling == scrolling) {
+      return;
+    }
+    mScrolling = scrolling;
+    if (mScrollingListener != null) {
+      mScrollingListener.run();
+    }
+  }
+
+  public boolean isScrolling() {
+    return mScrolling;
+  }
+
+  /**
+   * Decides what to do with an animation in the current frame.
+   * @param priority The priority of the animation
+   * @param spentNanos The time spent advancing animations so far in the frame
+   */
+  public Decision getDecision(Priority priority, long spentNanos) {
+    switch (priority) {
+      case FOREGROUND:
+        return Decision.ADVANCE;
+      case VISIBLE:
+        long budgetNanos = mScrolling ? mBudgetNanos / 2 : mBudgetNanos;
+        return spentNanos < budgetNanos ? Decision.ADVANCE : Decision.DEFER;
+      default:
+        return !mScrolling && spentNanos < mBudgetNanos ? Decision.ADVANCE : Decision.SKIP;
+    }
+  }
+
+  /**
+   * Returns how many animation frames of the given priority were deferred to a later frame.
+   */
+  public int getDeferredFrameCount(Priority priority) {
+    return mDeferredFrameCounts[priority.ordinal()];
+  }
+
+  /**
+   * Returns how many animation frames of the given priority were skipped.
+   */
+  public int getSkippedFrameCount(Priority priority) {
+    return mSkippedFrameCounts[priority.ordinal()];
+  }
+
+  /**
+   * Returns how many frames took longer than the budget to advance every animation which wasn't
+   * deferred or skipped.
+   */
+  public int getOverBudgetFrameCount() {
+    return mOverBudgetFrameCount;
+  }
+
+  void setScrollingListener(Runnable scrollingListener) {
+    mScrollingListener = scrollingListener;
+  }
+
+  void recordDeferredFrame(Priority priority) {
+    mDeferredFrameCounts[priority.ordinal()]++;
+  }
+
+  void recordSkippedFrame(Priority priority) {
+    mSkippedFrameCounts[priority.ordinal()]++;
+  }
+
+  void recordFrame(long spentNanos) {
+    if (spentNanos > mBudgetNanos) {
+      mOverBudgetFrameCount++;
+    }
+  }
+}
@@ -0,0 +1,446 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * The process wide source of animation frames for every running {@link KeyframesDrawable}.  Rather
+ * than each animation posting its own frame callback, the ticker posts a single one per frame, on
+ * the {@link Choreographer} where available, and advances every animation waiting for a frame in
+ * one pass with the same frame time.  The ticker stops posting as soon as no animation is waiting.
+ *
+ * The ticker also tracks the display's refresh period, as the shortest time between consecutive
+ * frames over a window of frames.  Frames dropped or skipped while idle only lengthen the time
+ * between frames, so they don't affect it, while a faster refresh rate is picked up on the next
+ * frame and a slower one within a window.
+ *
+ * With a {@link KeyframesFrameBudget} set, animations are advanced in order of priority, and the
+ * budget decides which of them are advanced, deferred or skipped in each frame.  Deferred
+ * animations stay posted for the next frame.  Skipped animations are frozen, and set aside: they
+ * are reconsidered in frames posted for other animations, but no frame is posted for them alone
+ * unless the budget would advance them in an otherwise idle frame, e.g. once scrolling stops or
+ * their priority changes.
+ *
+ * Like the Choreographer it runs on, the ticker must only be used from the main thread.
+ */
+public class KeyframesTicker {
+
+  /**
+   * An observer of the cost of each frame, e.g. for logging.
+   */
+  public interface TickObserver {
+
+    /**
+     * Called after each frame.
+     * @param animationCount The number of animations advanced in the frame
+     * @param durationNanos The time taken to advance all of them
+     */
+    void onTick(int animationCount, long durationNanos);
+  }
+
+  /**
+   * A callback for the next frame, which is removed once called, and needs to be posted again for
+   * the frame after.
+   */
+  interface Callback {
+
+    /**
+     * @param frameTimeNanos The time the frame is shown at, on the {@link System#nanoTime()} clock
+     */
+    void doFrame(long frameTimeNanos);
+
+    /**
+     * Returns the priority of the animation, used with a {@link KeyframesFrameBudget}.
+     */
+    KeyframesFrameBudget.Priority getPriority();
+
+    /**
+     * Called when the callback is skipped in a frame, after which it is expected to resume from
+     * where it was, as if no time had passed while skipped.
+     */
+    void onFrameSkipped();
+  }
+
+  /**
+   * Schedules the ticker's next frame.
+   */
+  interface FrameScheduler {
+    void postFrame(KeyframesTicker ticker);
+    void cancelFrame(KeyframesTicker ticker);
+  }
+
+  private static final long DEFAULT_REFRESH_PERIOD_NANOS = 1000000000L / 60;
+  // Frames closer together than on a 240Hz display are treated as jitter.
+  private static final long MIN_REFRESH_PERIOD_NANOS = 1000000000L / 240;
+  private static final int REFRESH_PERIOD_WINDOW_FRAMES = 8;
+
+  private static final KeyframesFrameBudget.Priority[] PRIORITIES =
+      KeyframesFrameBudget.Priority.values();
+
+  private static KeyframesTicker sInstance;
+
+  /**
+   * Returns the ticker of the main thread.
+   */
+  public static synchronized KeyframesTicker getInstance() {
+    if (sInstance == null) {
+      sInstance = new KeyframesTicker(
+          Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ?
+              new ChoreographerFrameScheduler() :
+              new HandlerFrameScheduler());
+    }
+    return sInstance;
+  }
+
+  private final FrameScheduler mFrameScheduler;
+  private boolean mFramePosted;
+
+  /**
+   * The callbacks waiting for the next frame, and those being called for the current one, where a
+   * callback removed during the frame is replaced by null.  The two lists are swapped each frame.
+   */
+  private ArrayList<Callback> mPendingCallbacks = new ArrayList<>();
+  private ArrayList<Callback> mRunningCallbacks = new ArrayList<>();
+
+  // The callbacks skipped in the last frame they were considered in, which are frozen.
+  private final ArrayList<Callback> mSkippedCallbacks = new ArrayList<>();
+
+  private KeyframesFrameBudget mFrameBudget;
+  private final Runnable mScrollingListener = new Runnable() {
+    @Override
+    public void run() {
+      postFrameForSkippedCallbacks();
+    }
+  };
+  // The number of frames in a row each deferred callback was deferred for.
+  private final Map<Callback, Integer> mDeferralCounts = new HashMap<>();
+  // Where the next callback deferred in this frame goes in mPendingCallbacks.
+  private int mDeferredInsertIndex;
+
+  private TickObserver mTickObserver;
+  private int mLastTickAnimationCount;
+  private long mLastTickDurationNanos;
+
+  private long mRefreshPeriodNanos = DEFAULT_REFRESH_PERIOD_NANOS;
+  private long mWindowRefreshPeriodNanos = Long.MAX_VALUE;
+  private int mWindowFrameCount;
+  // The time of the previous frame, if this frame directly follows it, or 0.
+  private long mPreviousFrameTimeNanos;
+
+  KeyframesTicker(FrameScheduler frameScheduler) {
+    mFrameScheduler = frameScheduler;
+  }
+
+  /**
+   * Sets the observer to report the cost of each frame to, or null.
+   */
+  public void setTickObserver(TickObserver tickObserver) {
+    mTickObserver = tickObserver;
+  }
+
+  /**
+   * Sets the budget to share the time of each frame between animations with, or null to advance
+   * every animation in every frame.
+   */
+  public void setFrameBudget(KeyframesFrameBudget frameBudget) {
+    if (mFrameBudget != null) {
+      mFrameBudget.setScrollingListener(null);
+    }
+    mFrameBudget = frameBudget;
+    mDeferralCounts.clear();
+    if (frameBudget != null) {
+      frameBudget.setScrollingListener(mScrollingListener);
+      postFrameForSkippedCallbacks();
+    } else if (!mSkippedCallbacks.isEmpty()) {
+      ArrayList<Callback> skippedCallbacks = new ArrayList<>(mSkippedCallbacks);
+      mSkippedCallbacks.clear();
+      for (int i = 0, len = skippedCallbacks.size(); i < len; i++) {
+        postCallback(skippedCallbacks.get(i));
+      }
+    }
+  }
+
+  public KeyframesFrameBudget getFrameBudget() {
+    return mFrameBudget;
+  }
+
+  /**
+   * Returns the number of animations advanced in the last frame.
+   */
+  public int getLastTickAnimationCount() {
+    return mLastTickAnimationCount;
+  }
+
+  /**
+   * Returns the time taken to advance every animation in the last frame.
+   */
+  public long getLastTickDurationNanos() {
+    return mLastTickDurationNanos;
+  }
+
+  /**
+   * Returns the display's refresh period, as measured from the frames so far, or the period of a
+   * 60Hz display until enough frames are measured.
+   */
+  public long getRefreshPeriodNanos() {
+    return mRefreshPeriodNanos;
+  }
+
+  /**
+   * Calls the callback on the next frame, unless it is already waiting for it.
+   */
+  void postCallback(Callback callback) {
+    mSkippedCallbacks.remove(callback);
+    if (!mPendingCallbacks.contains(callback)) {
+      mPendingCallbacks.add(callback);
+    }
+    if (!mFramePosted) {
+      mFramePosted = true;
+      mFrameScheduler.postFrame(this);
+    }
+  }
+
+  /**
+   * Removes the callback, which won't be called again until posted again, even if it was due to be
+   * called later in the current frame.
+   */
+  void removeCallback(Callback callback) {
+    mPendingCallbacks.remove(callback);
+    mSkippedCallbacks.remove(callback);
+    mDeferralCounts.remove(callback);
+    int runningIndex = mRunningCallbacks.indexOf(callback);
+    if (runningIndex >= 0) {
+      mRunningCallbacks.set(runningIndex, null);
+    }
+    if (mPendingCallbacks.isEmpty() && mFramePosted) {
+      mFramePosted = false;
+      mPreviousFrameTimeNanos = 0;
+      mFrameScheduler.cancelFrame(this);
+      postFrameForSkippedCallbacks();
+    }
+  }
+
+  /**
+   * Reconsiders a skipped callback whose priority changed, posting it for the next frame.
+   */
+  void onPriorityChanged(Callback callback) {
+    if (mSkippedCallbacks.contains(callback)) {
+      postCallback(callback);
+    }
+  }
+
+  /**
+   * Calls every callback posted for this frame.
+   */
+  void doFrame(long frameTimeNanos) {
+    mFramePosted = false;
+    measureRefreshPeriod(frameTimeNanos);
+    ArrayList<Callback> runningCallbacks = mPendingCallbacks;
+    mPendingCallbacks = mRunningCallbacks;
+    mRunningCallbacks = runningCallbacks;
+    // Skipped callbacks are reconsidered in every frame that runs.
+    runningCallbacks.addAll(mSkippedCallbacks);
+    mSkippedCallbacks.clear();
+
+    long startNanos = System.nanoTime();
+    int animationCount = 0;
+    try {
+      if (mFrameBudget != null) {
+        animationCount =
+            doBudgetedFrame(mFrameBudget, runningCallbacks, frameTimeNanos, startNanos);
+      } else {
+        for (int i = 0; i < runningCallbacks.size(); i++) {
+          Callback callback = runningCallbacks.get(i);
+          if (callback != null) {
+            animationCount++;
+            callback.doFrame(frameTimeNanos);
+          }
+        }
+      }
+    } finally {
+      runningCallbacks.clear();
+    }
+    mLastTickAnimationCount = animationCount;
+    mLastTickDurationNanos = System.nanoTime() - startNanos;
+    if (mTickObserver != null) {
+      mTickObserver.onTick(mLastTickAnimationCount, mLastTickDurationNanos);
+    }
+    postFrameForSkippedCallbacks();
+    // Without a frame posted, the next frame won't directly follow this one.
+    mPreviousFrameTimeNanos = mFramePosted ? frameTimeNanos : 0;
+  }
+
+  /**
+   * Calls the callbacks posted for this frame one priority at a time, as the budget decides.  Each
+   * callback is taken out of the list once handled, and a final pass handles those whose priority
+   * changed during the frame.
+   * @return the number of callbacks called
+   */
+  private int doBudgetedFrame(
+      KeyframesFrameBudget frameBudget,
+      ArrayList<Callback> runningCallbacks,
+      long frameTimeNanos,
+      long startNanos) {
+    mDeferredInsertIndex = 0;
+    int animationCount = 0;
+    for (int pass = 0; pass <= PRIORITIES.length; pass++) {
+      for (int i = 0; i < runningCallbacks.size(); i++) {
+        Callback callback = runningCallbacks.get(i);
+        if (callback == null) {
+          continue;
+        }
+        KeyframesFrameBudget.Priority priority = callback.getPriority();
+        if (pass < PRIORITIES.length && priority != PRIORITIES[pass]) {
+          continue;
+        }
+        runningCallbacks.set(i, null);
+        KeyframesFrameBudget.Decision decision =
+            frameBudget.getDecision(priority, System.nanoTime() - startNanos);
+        if (decision == KeyframesFrameBudget.Decision.DEFER) {
+          Integer deferralCount = mDeferralCounts.get(callback);
+          int count = deferralCount == null ? 0 : deferralCount;
+          if (count < KeyframesFrameBudget.MAX_CONSECUTIVE_DEFERRALS) {
+            mDeferralCounts.put(callback, count + 1);
+            frameBudget.recordDeferredFrame(priority);
+            keepDeferred(callback);
+            continue;
+          }
+        } else if (decision == KeyframesFrameBudget.Decision.SKIP) {
+          frameBudget.recordSkippedFrame(priority);
+          mDeferralCounts.remove(callback);
+          if (!mPendingCallbacks.contains(callback) && !mSkippedCallbacks.contains(callback)) {
+            mSkippedCallbacks.add(callback);
+          }
+          callback.onFrameSkipped();
+          continue;
+        }
+        mDeferralCounts.remove(callback);
+        animationCount++;
+        callback.doFrame(frameTimeNanos);
+      }
+    }
+    frameBudget.recordFrame(System.nanoTime() - startNanos);
+    return animationCount;
+  }
+
+  /**
+   * Posts a deferred callback for the next frame, ahead of the callbacks posted so far.
+   */
+  private void keepDeferred(Callback callback) {
+    if (!mPendingCallbacks.contains(callback)) {
+      // Callbacks removed during the frame may have shortened the list.
+      mDeferredInsertIndex = Math.min(mDeferredInsertIndex, mPendingCallbacks.size());
+      mPendingCallbacks.add(mDeferredInsertIndex++, callback);
+    }
+    if (!mFramePosted) {
+      mFramePosted = true;
+      mFrameScheduler.postFrame(this);
+    }
+  }
+
+  /**
+   * Posts a frame for the skipped callbacks when no other callback is waiting for one, if the
+   * budget would advance any of them in an otherwise idle frame.
+   */
+  private void postFrameForSkippedCallbacks() {
+    if (mFramePosted || mFrameBudget == null) {
+      return;
+    }
+    for (int i = 0, len = mSkippedCallbacks.size(); i < len; i++) {
+      KeyframesFrameBudget.Priority priority = mSkippedCallbacks.get(i).getPriority();
+      if (mFrameBudget.getDecision(priority, 0) != KeyframesFrameBudget.Decision.SKIP) {
+        mFramePosted = true;
+        mFrameScheduler.postFrame(this);
+        return;
+      }
+    }
+  }
+
+  private void measureRefreshPeriod(long frameTimeNanos) {
+    if (mPreviousFrameTimeNanos == 0) {
+      return;
+    }
+    long periodNanos = frameTimeNanos - mPreviousFrameTimeNanos;
+    if (periodNanos < MIN_REFRESH_PERIOD_NANOS) {
+      return;
+    }
+    mWindowRefreshPeriodNanos = Math.min(mWindowRefreshPeriodNanos, periodNanos);
+    // A shorter period is taken right away, a longer one only once seen over a whole window.
+    mRefreshPeriodNanos = Math.min(mRefreshPeriodNanos, periodNanos);
+    if (++mWindowFrameCount == REFRESH_PERIOD_WINDOW_FRAMES) {
+      mRefreshPeriodNanos = mWindowRefreshPeriodNanos;
+      mWindowRefreshPeriodNanos = Long.MAX_VALUE;
+      mWindowFrameCount = 0;
+    }
+  }
+
+  @TargetApi(16)
+  private static class ChoreographerFrameScheduler
+      implements FrameScheduler, Choreographer.FrameCallback {
+
+    private Choreographer mChoreographer;
+    private KeyframesTicker mTicker;
+
+    @Override
+    public void postFrame(KeyframesTicker ticker) {
+      mTicker = ticker;
+      getChoreographer().postFrameCallback(this);
+    }
+
+    @Override
+    public void cancelFrame(KeyframesTicker ticker) {
+      getChoreographer().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      mTicker.doFrame(frameTimeNanos);
+    }
+
+    private Choreographer getChoreographer() {
+      if (mChoreographer == null) {
+        mChoreographer = Choreographer.getInstance();
+      }
+      return mChoreographer;
+    }
+  }
+
+  private static class HandlerFrameScheduler implements FrameScheduler, Runnable {
+    private static final int ANIMATION_MIN_STEP_TIME_MS = 25; // 40 fps
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private KeyframesTicker mTicker;
+
+    @Override
+    public void postFrame(KeyframesTicker ticker) {
+      mTicker = ticker;
+      mHandler.postDelayed(this, ANIMATION_MIN_STEP_TIME_MS);
+    }
+
+    @Override
+    public void cancelFrame(KeyframesTicker ticker) {
+      mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+      mTicker.doFrame(System.nanoTime());
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.util.JsonReader;
+
+/**
+ * Reads JSON arrays of numbers straight into primitive float arrays, without boxing each value.
+ * Values are accumulated in growable scratch buffers which are reused for every array read by the
+ * same instance, so the only allocations are the exactly sized results.  Buffers which grew past
+ * {@link #MAX_RETAINED_CAPACITY} are dropped once read, so that an unusually large array doesn't
+ * stay allocated for the life of the thread.  Instances are not thread safe, see
+ * {@link CommonDeserializerHelper}, which keeps one per thread.
+ */
+final class FloatArrayReader {
+
+  private static final int INITIAL_CAPACITY = 16;
+  static final int MAX_RETAINED_CAPACITY = 1024;
+
+  private float[] mValues = new float[INITIAL_CAPACITY];
+  private final ArrayList<float[]> mRows = new ArrayList<>();
+  private final ArrayList<float[][]> mMatrices = new ArrayList<>();
+
+  float[] readFloatArray(JsonReader reader) throws IOException {
+    int count = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (count == mValues.length) {
+        mValues = Arrays.copyOf(mValues, count * 2);
+      }
+      mValues[count++] = (float) reader.nextDouble();
+    }
+    reader.endArray();
+    float[] values = Arrays.copyOf(mValues, count);
+    if (mValues.length > MAX_RETAINED_CAPACITY) {
+      mValues = new float[INITIAL_CAPACITY];
+    }
+    return values;
+  }
+
+  /**
+   * Rows are collected at the end of the shared scratch list and removed again once copied out, so
+   * nested arrays can be read with the same instance.
+   */
+  float[][] read2DFloatArray(JsonReader reader) throws IOException {
+    int start = mRows.size();
+    try {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        mRows.add(readFloatArray(reader));
+      }
+      reader.endArray();
+      List<float[]> rows = mRows.subList(start, mRows.size());
+      return rows.toArray(new float[rows.size()][]);
+    } finally {
+      trim(mRows, start);
+    }
+  }
+
+  float[][][] read3DFloatArray(JsonReader reader) throws IOException {
+    int start = mMatrices.size();
+    try {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        mMatrices.add(read2DFloatArray(reader));
+      }
+      reader.endArray();
+      List<float[][]> matrices = mMatrices.subList(start, mMatrices.size());
+      return matrices.toArray(new float[matrices.size()][][]);
+    } finally {
+      trim(mMatrices, start);
+    }
+  }
+
+  /**
+   * Returns the number of values the scratch buffer currently holds room for.
+   */
+  int getValuesCapacity() {
+    return mValues.length;
+  }
+
+  /**
+   * Removes the entries added from the given index, releasing the list's storage as well if the
+   * outermost array read was large.
+   */
+  private static void trim(ArrayList<?> list, int start) {
+    boolean large = list.size() > MAX_RETAINED_CAPACITY;
+    list.subList(start, list.size()).clear();
+    if (large && start == 0) {
+      list.trimToSize();
+    }
+  }
+}
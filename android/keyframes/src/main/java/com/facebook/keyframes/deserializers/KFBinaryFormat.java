@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import java.nio.charset.Charset;
+
+import android.graphics.Paint;
+
+import com.facebook.keyframes.model.KFAnimation;
+
+/**
+ * Constants shared by {@link KFImageBinarySerializer} and {@link KFImageBinaryDeserializer}.
+ *
+ * The binary format is a big endian encoding of the {@link com.facebook.keyframes.model.KFImage}
+ * model, in the same field order as the model builders.  Lists are prefixed with their int length,
+ * and nullable values are prefixed with a length of {@link #NULL_LENGTH} or a presence byte.  Path
+ * commands are stored as their SVG command character as a single byte, followed by the raw float
+ * arguments, so no command strings need to be parsed when loading.
+ *
+ * Enums are written as an index into the tables below rather than their ordinal, so the enums can
+ * be reordered without breaking existing files.  Any other change to the layout must bump
+ * {@link #VERSION}.
+ */
+final class KFBinaryFormat {
+
+  /**
+   * "KFBN" in ASCII.
+   */
+  static final int MAGIC = 0x4B46424E;
+  static final int VERSION = 1;
+
+  /**
+   * The length written in place of a list, array or string which is null.
+   */
+  static final int NULL_LENGTH = -1;
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  static final KFAnimation.PropertyType[] PROPERTY_TYPES = {
+      KFAnimation.PropertyType.SCALE,
+      KFAnimation.PropertyType.ROTATION,
+      KFAnimation.PropertyType.POSITION,
+      KFAnimation.PropertyType.X_POSITION,
+      KFAnimation.PropertyType.Y_POSITION,
+      KFAnimation.PropertyType.ANCHOR_POINT,
+      KFAnimation.PropertyType.STROKE_WIDTH,
+      KFAnimation.PropertyType.STROKE_COLOR,
+      KFAnimation.PropertyType.FILL_COLOR,
+      KFAnimation.PropertyType.OPACITY
+  };
+
+  static final Paint.Cap[] STROKE_LINE_CAPS = {
+      Paint.Cap.BUTT,
+      Paint.Cap.ROUND,
+      Paint.Cap.SQUARE
+  };
+
+  static <T> int indexOf(T[] table, T value) {
+    for (int i = 0; i < table.length; i++) {
+      if (table[i] == value) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("No binary encoding for value: " + value);
+  }
+
+  /**
+   * Returns the number of float arguments following a path command in the binary format.
+   */
+  static int getArgumentCount(char command) {
+    switch (command) {
+      case 'm':
+      case 'M':
+      case 'l':
+      case 'L':
+        return 2;
+      case 'q':
+      case 'Q':
+        return 4;
+      case 'c':
+      case 'C':
+        return 6;
+      default:
+        throw new IllegalArgumentException("Unhandled vector command: " + command);
+    }
+  }
+
+  private KFBinaryFormat() {
+  }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFAnimationGroup;
+import com.facebook.keyframes.model.KFColorFrame;
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureEffect;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFGradient;
+import com.facebook.keyframes.model.KFGradientColor;
+import com.facebook.keyframes.model.KFImage;
+import com.facebook.keyframes.util.VectorCommand;
+
+/**
+ * Deserializer for the compact binary encoding of a {@link KFImage} written by
+ * {@link KFImageBinarySerializer}.  Unlike {@link KFImageDeserializer}, no JSON tokens or path
+ * command strings are created: values are read directly from the buffer into the model builders.
+ */
+public class KFImageBinaryDeserializer {
+
+  /**
+   * Memory maps the given file and deserializes a {@link KFImage} from it.
+   * @param file A file containing a binary encoded {@link KFImage}
+   * @return A deserialized {@link KFImage} object
+   * @throws IOException
+   */
+  public static KFImage deserialize(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return deserialize(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Deserializes a {@link KFImage} from the buffer, starting at its current position.  The
+   * position of the buffer is advanced past the image.
+   * @param buffer A buffer containing a binary encoded {@link KFImage}
+   * @return A deserialized {@link KFImage} object
+   * @throws IOException if the buffer does not contain a supported, well formed image
+   */
+  public static KFImage deserialize(ByteBuffer buffer) throws IOException {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    try {
+      int magic = buffer.getInt();
+      if (magic != KFBinaryFormat.MAGIC) {
+        throw new IOException("Not a binary KFImage, unexpected header: " +
+            Integer.toHexString(magic));
+      }
+      int version = buffer.getInt();
+      if (version != KFBinaryFormat.VERSION) {
+        throw new IOException(String.format(
+            Locale.US,
+            "Unsupported binary KFImage version %d, expected %d.",
+            version,
+            KFBinaryFormat.VERSION));
+      }
+      return readImage(buffer);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated binary KFImage.");
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw createMalformedException(e.getMessage());
+    }
+  }
+
+  private static IOException createMalformedException(String message) {
+    return new IOException("Malformed binary KFImage: " + message);
+  }
+
+  /**
+   * Reads the number of elements which follow, each taking at least the given number of bytes,
+   * checking that the rest of the buffer can hold them before anything is allocated for them.
+   * @throws BufferUnderflowException if the count runs past the end of the buffer
+   */
+  private static int readCount(ByteBuffer buffer, int minElementBytes) throws IOException {
+    return checkCount(buffer, buffer.getInt(), minElementBytes);
+  }
+
+  /**
+   * Like {@link #readCount}, but also accepts {@link KFBinaryFormat#NULL_LENGTH}.
+   */
+  private static int readNullableCount(ByteBuffer buffer, int minElementBytes)
+      throws IOException {
+    int count = buffer.getInt();
+    return count == KFBinaryFormat.NULL_LENGTH ? count : checkCount(buffer, count, minElementBytes);
+  }
+
+  private static int checkCount(ByteBuffer buffer, int count, int minElementBytes)
+      throws IOException {
+    if (count < 0) {
+      throw createMalformedException("negative count " + count);
+    }
+    if (count > buffer.remaining() / minElementBytes) {
+      throw new BufferUnderflowException();
+    }
+    return count;
+  }
+
+  private static KFImage readImage(ByteBuffer buffer) throws IOException {
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = buffer.getInt();
+    builder.frameCount = buffer.getInt();
+    builder.canvasSize = readFloatArray(buffer);
+    builder.key = buffer.getInt();
+
+    int featureCount = readCount(buffer, 4);
+    builder.features = new ArrayList<>(featureCount);
+    for (int i = 0; i < featureCount; i++) {
+      builder.features.add(readFeature(buffer));
+    }
+
+    int groupCount = readCount(buffer, 4);
+    builder.animationGroups = new ArrayList<>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      builder.animationGroups.add(readAnimationGroup(buffer));
+    }
+
+    builder.encodedBitmaps = readBitmaps(buffer);
+    return builder.build();
+  }
+
+  private static KFFeature readFeature(ByteBuffer buffer) throws IOException {
+    KFFeature.Builder builder = new KFFeature.Builder();
+    builder.name = readString(buffer);
+    builder.fillColor = buffer.getInt();
+    builder.strokeColor = buffer.getInt();
+    builder.strokeWidth = buffer.getFloat();
+    builder.fromFrame = buffer.getFloat();
+    builder.toFrame = buffer.getFloat();
+
+    int keyFrameCount = readCount(buffer, 4);
+    builder.keyFrames = new ArrayList<>(keyFrameCount);
+    for (int i = 0; i < keyFrameCount; i++) {
+      builder.keyFrames.add(readFeatureFrame(buffer));
+    }
+    builder.timingCurves = readTimingCurves(buffer);
+
+    builder.animationGroup = buffer.getInt();
+    builder.strokeLineCap = KFBinaryFormat.STROKE_LINE_CAPS[buffer.get()];
+
+    if (buffer.get() != 0) {
+      builder.featureMask = readFeature(buffer);
+    }
+
+    builder.featureAnimations = readAnimations(buffer);
+
+    if (buffer.get() != 0) {
+      KFGradient.Builder gradientBuilder = new KFGradient.Builder();
+      gradientBuilder.colorStart = readGradientColor(buffer);
+      gradientBuilder.colorEnd = readGradientColor(buffer);
+      KFFeatureEffect.Builder effectBuilder = new KFFeatureEffect.Builder();
+      effectBuilder.gradient = gradientBuilder.build();
+      builder.effect = effectBuilder.build();
+    }
+
+    builder.backedImageName = readString(buffer);
+    return builder.build();
+  }
+
+  private static KFFeatureFrame readFeatureFrame(ByteBuffer buffer) throws IOException {
+    int startFrame = buffer.getInt();
+    VectorCommand[] commands = new VectorCommand[readCount(buffer, 1)];
+    for (int i = 0; i < commands.length; i++) {
+      char command = (char) buffer.get();
+      float[] args = new float[KFBinaryFormat.getArgumentCount(command)];
+      for (int j = 0; j < args.length; j++) {
+        args[j] = buffer.getFloat();
+      }
+      commands[i] = VectorCommand.createVectorCommand(command, args);
+    }
+    return new KFFeatureFrame(startFrame, new KFFeatureFrame.ShapeMoveListData(commands));
+  }
+
+  private static KFAnimationGroup readAnimationGroup(ByteBuffer buffer) throws IOException {
+    KFAnimationGroup.Builder builder = new KFAnimationGroup.Builder();
+    builder.groupId = buffer.getInt();
+    builder.parentGroup = buffer.getInt();
+    builder.animations = readAnimations(buffer);
+    return builder.build();
+  }
+
+  private static List<KFAnimation> readAnimations(ByteBuffer buffer) throws IOException {
+    int animationCount = readCount(buffer, 1);
+    List<KFAnimation> animations = new ArrayList<>(animationCount);
+    for (int i = 0; i < animationCount; i++) {
+      animations.add(readAnimation(buffer));
+    }
+    return animations;
+  }
+
+  private static KFAnimation readAnimation(ByteBuffer buffer) throws IOException {
+    KFAnimation.Builder builder = new KFAnimation.Builder();
+    builder.propertyType = KFBinaryFormat.PROPERTY_TYPES[buffer.get()];
+    int frameCount = readCount(buffer, 4);
+    builder.animationFrames = new ArrayList<>(frameCount);
+    for (int i = 0; i < frameCount; i++) {
+      KFAnimationFrame.Builder frameBuilder = new KFAnimationFrame.Builder();
+      frameBuilder.startFrame = buffer.getInt();
+      frameBuilder.data = readFloatArray(buffer);
+      builder.animationFrames.add(frameBuilder.build());
+    }
+    builder.timingCurves = readTimingCurves(buffer);
+    builder.anchor = readFloatArray(buffer);
+    return builder.build();
+  }
+
+  private static KFGradientColor readGradientColor(ByteBuffer buffer) throws IOException {
+    KFGradientColor.Builder builder = new KFGradientColor.Builder();
+    int keyValueCount = readCount(buffer, 8);
+    builder.keyValues = new ArrayList<>(keyValueCount);
+    for (int i = 0; i < keyValueCount; i++) {
+      KFColorFrame.Builder frameBuilder = new KFColorFrame.Builder();
+      frameBuilder.startFrame = buffer.getInt();
+      frameBuilder.color = buffer.getInt();
+      builder.keyValues.add(frameBuilder.build());
+    }
+    builder.timingCurves = readTimingCurves(buffer);
+    return builder.build();
+  }
+
+  private static Map<String, byte[]> readBitmaps(ByteBuffer buffer) throws IOException {
+    int bitmapCount = readNullableCount(buffer, 4);
+    if (bitmapCount == KFBinaryFormat.NULL_LENGTH) {
+      return null;
+    }
+    Map<String, byte[]> bitmaps = new HashMap<>();
+    for (int i = 0; i < bitmapCount; i++) {
+      String name = readString(buffer);
+      byte[] bytes = new byte[readCount(buffer, 1)];
+      buffer.get(bytes);
+      bitmaps.put(name, bytes);
+    }
+    return bitmaps;
+  }
+
+  private static float[][][] readTimingCurves(ByteBuffer buffer) throws IOException {
+    int curveCount = readNullableCount(buffer, 16);
+    if (curveCount == KFBinaryFormat.NULL_LENGTH) {
+      return null;
+    }
+    float[][][] timingCurves = new float[curveCount][2][2];
+    for (int i = 0; i < curveCount; i++) {
+      timingCurves[i][0][0] = buffer.getFloat();
+      timingCurves[i][0][1] = buffer.getFloat();
+      timingCurves[i][1][0] = buffer.getFloat();
+      timingCurves[i][1][1] = buffer.getFloat();
+    }
+    return timingCurves;
+  }
+
+  private static float[] readFloatArray(ByteBuffer buffer) throws IOException {
+    int length = readNullableCount(buffer, 4);
+    if (length == KFBinaryFormat.NULL_LENGTH) {
+      return null;
+    }
+    float[] array = new float[length];
+    for (int i = 0; i < length; i++) {
+      array[i] = buffer.getFloat();
+    }
+    return array;
+  }
+
+  private static String readString(ByteBuffer buffer) throws IOException {
+    int length = readNullableCount(buffer, 1);
+    if (length == KFBinaryFormat.NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, KFBinaryFormat.UTF_8);
+  }
+}
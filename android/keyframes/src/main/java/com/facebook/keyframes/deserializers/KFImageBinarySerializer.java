@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFAnimationGroup;
+import com.facebook.keyframes.model.KFBitmap;
+import com.facebook.keyframes.model.KFColorFrame;
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFGradient;
+import com.facebook.keyframes.model.KFGradientColor;
+import com.facebook.keyframes.model.KFImage;
+import com.facebook.keyframes.util.VectorCommand;
+
+/**
+ * Writes a {@link KFImage} in the compact binary format read by {@link KFImageBinaryDeserializer}.
+ * This is intended to be run ahead of time, e.g. at build time, on images deserialized from JSON
+ * with {@link KFImageDeserializer}.  See {@link KFBinaryFormat} for a description of the format.
+ */
+public class KFImageBinarySerializer {
+
+  /**
+   * Writes the given {@link KFImage} to the output stream.  The stream is flushed, but not closed.
+   * @param image The image to serialize
+   * @param outputStream The stream to write the binary encoded image to
+   * @throws IOException
+   */
+  public static void serialize(KFImage image, OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(KFBinaryFormat.MAGIC);
+    out.writeInt(KFBinaryFormat.VERSION);
+    writeImage(out, image);
+    out.flush();
+  }
+
+  private static void writeImage(DataOutputStream out, KFImage image) throws IOException {
+    out.writeInt(image.getFrameRate());
+    out.writeInt(image.getFrameCount());
+    writeFloatArray(out, image.getCanvasSize());
+    out.writeInt(image.getKey());
+
+    List<KFFeature> features = image.getFeatures();
+    out.writeInt(features.size());
+    for (int i = 0, len = features.size(); i < len; i++) {
+      writeFeature(out, features.get(i));
+    }
+
+    List<KFAnimationGroup> animationGroups = image.getAnimationGroups();
+    out.writeInt(animationGroups.size());
+    for (int i = 0, len = animationGroups.size(); i < len; i++) {
+      writeAnimationGroup(out, animationGroups.get(i));
+    }
+
+    writeBitmaps(out, image.getKFBitmaps());
+  }
+
+  private static void writeFeature(DataOutputStream out, KFFeature feature) throws IOException {
+    writeString(out, feature.getName());
+    out.writeInt(feature.getFillColor());
+    out.writeInt(feature.getStrokeColor());
+    out.writeFloat(feature.getStrokeWidth());
+    out.writeFloat(feature.getFromFrame());
+    out.writeFloat(feature.getToFrame());
+
+    List<KFFeatureFrame> keyFrames = feature.getKeyFrames();
+    out.writeInt(keyFrames.size());
+    for (int i = 0, len = keyFrames.size(); i < len; i++) {
+      writeFeatureFrame(out, keyFrames.get(i));
+    }
+    writeTimingCurves(out, feature.getTimingCurves());
+
+    out.writeInt(feature.getAnimationGroup());
+    out.writeByte(
+        KFBinaryFormat.indexOf(KFBinaryFormat.STROKE_LINE_CAPS, feature.getStrokeLineCap()));
+
+    out.writeBoolean(feature.getFeatureMask() != null);
+    if (feature.getFeatureMask() != null) {
+      writeFeature(out, feature.getFeatureMask());
+    }
+
+    writeAnimations(out, feature.getFeatureAnimations());
+
+    out.writeBoolean(feature.getEffect() != null);
+    if (feature.getEffect() != null) {
+      KFGradient gradient = feature.getEffect().getGradient();
+      writeGradientColor(out, gradient.getColorStart());
+      writeGradientColor(out, gradient.getColorEnd());
+    }
+
+    writeString(out, feature.getBackedImageName());
+  }
+
+  private static void writeFeatureFrame(
+      DataOutputStream out,
+      KFFeatureFrame featureFrame) throws IOException {
+    out.writeInt(featureFrame.getKeyFrame());
+    List<VectorCommand> commands = featureFrame.getShapeData().getVectorCommands();
+    out.writeInt(commands.size());
+    for (int i = 0, len = commands.size(); i < len; i++) {
+      VectorCommand command = commands.get(i);
+      float[] args = command.getArguments();
+      out.writeByte(command.getCommandCharacter());
+      for (int j = 0; j < args.length; j++) {
+        out.writeFloat(args[j]);
+      }
+    }
+  }
+
+  private static void writeAnimationGroup(
+      DataOutputStream out,
+      KFAnimationGroup group) throws IOException {
+    out.writeInt(group.getGroupId());
+    out.writeInt(group.getParentGroup());
+    List<KFAnimation> animations = group.getAnimations();
+    KFAnimation anchorPoint = group.getAnchorPointAnimation();
+    out.writeInt(animations.size() + (anchorPoint != null ? 1 : 0));
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      writeAnimation(out, animations.get(i));
+    }
+    if (anchorPoint != null) {
+      writeAnimation(out, anchorPoint);
+    }
+  }
+
+  private static void writeAnimations(
+      DataOutputStream out,
+      List<KFAnimation> animations) throws IOException {
+    out.writeInt(animations.size());
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      writeAnimation(out, animations.get(i));
+    }
+  }
+
+  private static void writeAnimation(
+      DataOutputStream out,
+      KFAnimation animation) throws IOException {
+    out.writeByte(
+        KFBinaryFormat.indexOf(KFBinaryFormat.PROPERTY_TYPES, animation.getPropertyType()));
+    List<KFAnimationFrame> frames = animation.getAnimationFrames();
+    out.writeInt(frames.size());
+    for (int i = 0, len = frames.size(); i < len; i++) {
+      out.writeInt(frames.get(i).getKeyFrame());
+      writeFloatArray(out, frames.get(i).getData());
+    }
+    writeTimingCurves(out, animation.getTimingCurves());
+    writeFloatArray(out, animation.getAnchor());
+  }
+
+  private static void writeGradientColor(
+      DataOutputStream out,
+      KFGradientColor gradientColor) throws IOException {
+    List<KFColorFrame> keyValues = gradientColor.getKeyValues();
+    out.writeInt(keyValues.size());
+    for (int i = 0, len = keyValues.size(); i < len; i++) {
+      out.writeInt(keyValues.get(i).getKeyFrame());
+      out.writeInt(keyValues.get(i).getColor());
+    }
+    writeTimingCurves(out, gradientColor.getTimingCurves());
+  }
+
+  private static void writeBitmaps(
+      DataOutputStream out,
+      Map<String, KFBitmap> bitmaps) throws IOException {
+    if (bitmaps == null) {
+      out.writeInt(KFBinaryFormat.NULL_LENGTH);
+      return;
+    }
+    out.writeInt(bitmaps.size());
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    for (Map.Entry<String, KFBitmap> entry : bitmaps.entrySet()) {
+      writeString(out, entry.getKey());
+      byte[] encodedBytes = entry.getValue().getEncodedBytes();
+      if (encodedBytes != null) {
+        // Bitmaps loaded from an image are still encoded, so they can be copied as is.
+        out.writeInt(encodedBytes.length);
+        out.write(encodedBytes);
+      } else {
+        encoded.reset();
+        entry.getValue().getBitmap().compress(Bitmap.CompressFormat.PNG, 100, encoded);
+        out.writeInt(encoded.size());
+        encoded.writeTo(out);
+      }
+    }
+  }
+
+  /**
+   * Timing curves are always validated to be of the shape [n][2][2], so only the number of curves
+   * is written, followed by the 4 control point values of each curve.
+   */
+  private static void writeTimingCurves(
+      DataOutputStream out,
+      float[][][] timingCurves) throws IOException {
+    if (timingCurves == null) {
+      out.writeInt(KFBinaryFormat.NULL_LENGTH);
+      return;
+    }
+    out.writeInt(timingCurves.length);
+    for (int i = 0; i < timingCurves.length; i++) {
+      out.writeFloat(timingCurves[i][0][0]);
+      out.writeFloat(timingCurves[i][0][1]);
+      out.writeFloat(timingCurves[i][1][0]);
+      out.writeFloat(timingCurves[i][1][1]);
+    }
+  }
+
+  private static void writeFloatArray(DataOutputStream out, float[] array) throws IOException {
+    if (array == null) {
+      out.writeInt(KFBinaryFormat.NULL_LENGTH);
+      return;
+    }
+    out.writeInt(array.length);
+    for (int i = 0; i < array.length; i++) {
+      out.writeFloat(array[i]);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(KFBinaryFormat.NULL_LENGTH);
+      return;
+    }
+    byte[] bytes = string.getBytes(KFBinaryFormat.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
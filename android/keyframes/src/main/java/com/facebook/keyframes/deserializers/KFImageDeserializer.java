@@ -15,8 +15,6 @@ import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Base64;
 import android.util.JsonReader;
 
@@ -67,7 +65,7 @@ public class KFImageDeserializer {
           builder.key = reader.nextInt();
           break;
         case KFImage.BITMAPS_JSON_FIELD:
-          builder.bitmaps = readBitmaps(reader);
+          builder.encodedBitmaps = readBitmaps(reader);
           break;
         default:
           reader.skipValue();
@@ -77,14 +75,16 @@ public class KFImageDeserializer {
     return builder.build();
   }
 
-  private static Map<String, Bitmap> readBitmaps(JsonReader reader) throws IOException {
+  /**
+   * Bitmaps are only Base64 decoded here.  Decoding the image data is left to
+   * {@link com.facebook.keyframes.model.KFBitmap}, when and if the bitmap is drawn.
+   */
+  private static Map<String, byte[]> readBitmaps(JsonReader reader) throws IOException {
     reader.beginObject();
-    Map<String, Bitmap> bitmaps = new HashMap<>();
+    Map<String, byte[]> bitmaps = new HashMap<>();
     while (reader.hasNext()) {
       String name = reader.nextName();
-      byte[] bytes = Base64.decode(reader.nextString(), Base64.DEFAULT);
-      Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-      bitmaps.put(name, bitmap);
+      bitmaps.put(name, Base64.decode(reader.nextString(), Base64.DEFAULT));
     }
     reader.endObject();
     return bitmaps;
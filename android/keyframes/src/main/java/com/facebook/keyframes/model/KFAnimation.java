@@ -9,6 +9,7 @@
 
 package com.facebook.keyframes.model;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -107,6 +108,11 @@ public class KFAnimation {
    */
   private final KeyFramedObject mKeyFramedAnimation;
 
+  /**
+   * Whether every key frame has the same value, see {@link #isConstant()}.
+   */
+  private final boolean mIsConstant;
+
   public static class Builder {
     public PropertyType propertyType;
     public List<KFAnimationFrame> animationFrames;
@@ -139,6 +145,7 @@ public class KFAnimation {
         anchor,
         anchor == null || anchor.length == 2,
         ANCHOR_JSON_FIELD);
+    mIsConstant = hasConstantValue(mAnimationFrames);
     if (mPropertyType.isMatrixBased()) {
       mKeyFramedAnimation = KeyFramedMatrixAnimation.fromAnimation(this);
     } else if (mPropertyType == PropertyType.STROKE_WIDTH){
@@ -180,4 +187,48 @@ public class KFAnimation {
   public KeyFramedObject getAnimation() {
     return mKeyFramedAnimation;
   }
+
+  /**
+   * Returns whether this animation has the same value at every frame.  The post-processed
+   * animation of a constant animation holds just the first key frame, so it is never interpolated.
+   */
+  public boolean isConstant() {
+    return mIsConstant;
+  }
+
+  /**
+   * Returns whether this is a constant, matrix based animation which leaves the matrix it is
+   * applied to unchanged, such as a SCALE of 100%, and so can be skipped altogether.
+   */
+  public boolean isIdentity() {
+    if (!mIsConstant) {
+      return false;
+    }
+    float[] data = mAnimationFrames.get(0).getData();
+    switch (mPropertyType) {
+      case SCALE:
+        return data.length >= 2 && data[0] == 100 && data[1] == 100;
+      case ROTATION:
+      case X_POSITION:
+      case Y_POSITION:
+        return data[0] == 0;
+      case POSITION:
+        // Positions are relative to the first key frame.
+        return true;
+      case ANCHOR_POINT:
+        return data.length >= 2 && data[0] == 0 && data[1] == 0;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean hasConstantValue(List<KFAnimationFrame> animationFrames) {
+    float[] firstData = animationFrames.get(0).getData();
+    for (int i = 1, len = animationFrames.size(); i < len; i++) {
+      if (!Arrays.equals(firstData, animationFrames.get(i).getData())) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
@@ -9,6 +9,8 @@
 
 package com.facebook.keyframes.model;
 
+import android.graphics.Matrix;
+
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedAnchorPoint;
 import com.facebook.keyframes.util.AnimationHelper;
 import com.facebook.keyframes.util.ArgCheckUtil;
@@ -42,6 +44,13 @@ public class KFAnimationGroup {
 
   private final KFAnimation mAnchorPoint;
 
+  /**
+   * The anchor point and animations which need applying each frame, leaving out those which have
+   * no effect.
+   */
+  private final List<KFAnimation> mAnimationsToApply;
+  private final boolean mIsConstant;
+
   public static class Builder {
     public int groupId;
     public int parentGroup;
@@ -69,6 +78,8 @@ public class KFAnimationGroup {
         ListHelper.immutableOrEmpty(animations),
         animations.size() > 0,
         ANIMATIONS_JSON_FIELD);
+    mAnimationsToApply = AnimationHelper.getMatrixAnimationsToApply(mAnchorPoint, mAnimations);
+    mIsConstant = AnimationHelper.areConstant(mAnimationsToApply);
   }
 
   public int getGroupId() {
@@ -83,10 +94,40 @@ public class KFAnimationGroup {
     return mAnimations;
   }
 
+  /**
+   * Returns the raw ANCHOR_POINT animation for this group, if any, which is kept separately from
+   * {@link #getAnimations()}.
+   */
+  public KFAnimation getAnchorPointAnimation() {
+    return mAnchorPoint;
+  }
+
   public KeyFramedAnchorPoint getAnchorPoint() {
     if (mAnchorPoint == null) {
       return null;
     }
     return (KeyFramedAnchorPoint) mAnchorPoint.getAnimation();
   }
+
+  /**
+   * Applies the anchor point and animations of this group alone, not its parents, to the matrix.
+   */
+  public void applyAnimations(float frameProgress, Matrix matrix) {
+    AnimationHelper.applyMatrixAnimations(mAnimationsToApply, frameProgress, matrix);
+  }
+
+  /**
+   * Returns whether the matrix of this group alone, not its parents, is the same at every frame.
+   */
+  public boolean isConstant() {
+    return mIsConstant;
+  }
+
+  /**
+   * Returns how many of the anchor point and animations of this group have no effect, and so are
+   * skipped by {@link #applyAnimations}.
+   */
+  public int getSkippedAnimationCount() {
+    return mAnimations.size() + (mAnchorPoint != null ? 1 : 0) - mAnimationsToApply.size();
+  }
 }
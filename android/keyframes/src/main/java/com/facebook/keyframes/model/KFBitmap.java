@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * A bitmap backing a feature of a {@link KFImage}.  Bitmaps embedded in an image are kept in their
+ * encoded form and only decoded on first use, optionally downsampled.  The decoded bitmap is only
+ * weakly held here, so it is released once no drawable references it and decoded again if needed.
+ */
+public class KFBitmap {
+
+  private static final int MAX_SAMPLE_SIZE = 32;
+
+  /**
+   * The encoded bitmap, e.g. PNG data, or null if this was created from a decoded bitmap.
+   */
+  private final byte[] mEncodedBytes;
+
+  /**
+   * A bitmap which was supplied already decoded, and so can't be released.
+   */
+  private final Bitmap mBitmap;
+
+  private int mWidth = -1;
+  private int mHeight = -1;
+  private WeakReference<Bitmap> mDecodedBitmap;
+  private int mDecodedSampleSize;
+
+  /**
+   * The sample sizes at which decoding failed, which aren't tried again.
+   */
+  private Set<Integer> mFailedSampleSizes;
+
+  public KFBitmap(byte[] encodedBytes) {
+    if (encodedBytes == null) {
+      throw new IllegalArgumentException("encodedBytes == null");
+    }
+    mEncodedBytes = encodedBytes;
+    mBitmap = null;
+  }
+
+  public KFBitmap(Bitmap bitmap) {
+    if (bitmap == null) {
+      throw new IllegalArgumentException("bitmap == null");
+    }
+    mEncodedBytes = null;
+    mBitmap = bitmap;
+  }
+
+  /**
+   * Returns the encoded bitmap, or null if this was created from an already decoded bitmap.
+   */
+  public byte[] getEncodedBytes() {
+    return mEncodedBytes;
+  }
+
+  /**
+   * Returns the full size width of the bitmap, reading only its header if not yet decoded.
+   */
+  public synchronized int getWidth() {
+    ensureSize();
+    return mWidth;
+  }
+
+  /**
+   * Returns the full size height of the bitmap, reading only its header if not yet decoded.
+   */
+  public synchronized int getHeight() {
+    ensureSize();
+    return mHeight;
+  }
+
+  /**
+   * Returns the full size bitmap, decoding it if needed.
+   */
+  public Bitmap getBitmap() {
+    return getBitmap(1);
+  }
+
+  /**
+   * Returns the bitmap decoded with the given {@link BitmapFactory.Options#inSampleSize}, decoding
+   * it if it isn't already held by a drawable at that sample size.  Bitmaps which were supplied
+   * already decoded are always returned at full size.
+   * @return The decoded bitmap, or null if it could not be decoded, in which case it isn't decoded
+   * again at that sample size
+   */
+  public synchronized Bitmap getBitmap(int sampleSize) {
+    if (mBitmap != null) {
+      return mBitmap;
+    }
+    Bitmap bitmap = mDecodedBitmap != null ? mDecodedBitmap.get() : null;
+    if (bitmap != null && mDecodedSampleSize == sampleSize) {
+      return bitmap;
+    }
+    if (hasDecodeFailed(sampleSize)) {
+      return null;
+    }
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = sampleSize;
+    bitmap = BitmapFactory.decodeByteArray(mEncodedBytes, 0, mEncodedBytes.length, options);
+    if (bitmap == null) {
+      if (mFailedSampleSizes == null) {
+        mFailedSampleSizes = new HashSet<>();
+      }
+      mFailedSampleSizes.add(sampleSize);
+      return null;
+    }
+    mDecodedBitmap = new WeakReference<>(bitmap);
+    mDecodedSampleSize = sampleSize;
+    return bitmap;
+  }
+
+  /**
+   * Returns whether decoding the bitmap with the given sample size already failed.
+   */
+  public synchronized boolean hasDecodeFailed(int sampleSize) {
+    return mFailedSampleSizes != null && mFailedSampleSizes.contains(sampleSize);
+  }
+
+  /**
+   * Returns the largest power of two sample size which, at the given drawing scale, still decodes
+   * at least one bitmap pixel per screen pixel.
+   * @param scale The ratio of drawn size to the size the bitmap was exported at
+   */
+  public static int computeSampleSize(float scale) {
+    if (scale <= 0) {
+      return 1;
+    }
+    int sampleSize = 1;
+    while (sampleSize < MAX_SAMPLE_SIZE && sampleSize * 2 * scale <= 1) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  private void ensureSize() {
+    if (mWidth >= 0) {
+      return;
+    }
+    if (mBitmap != null) {
+      mWidth = mBitmap.getWidth();
+      mHeight = mBitmap.getHeight();
+      return;
+    }
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(mEncodedBytes, 0, mEncodedBytes.length, options);
+    mWidth = options.outWidth;
+    mHeight = options.outHeight;
+  }
+}
@@ -12,6 +12,7 @@ package com.facebook.keyframes.model;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.facebook.keyframes.model.keyframedmodels.KeyFramedAnchorPoint;
@@ -119,9 +120,9 @@ public class KFFeature {
    */
   final KFAnimation mAnchorPoint;
   /**
-   * The opacity for this feature.
+   * The opacity for this feature.  Package private for {@link KFScalarChannels}.
    */
-  private final KFAnimation mOpacityAnimation;
+  final KFAnimation mOpacityAnimation;
   /**
    * A KFAnimation just for the special cased stroke color animation. Package private for testing.
    */
@@ -149,6 +150,17 @@ public class KFFeature {
    */
   private final KeyFramedPath mKeyFramedPath;
 
+  /**
+   * The anchor point and matrix based animations which need applying each frame, leaving out those
+   * which have no effect.
+   */
+  private final List<KFAnimation> mMatrixAnimationsToApply;
+  /**
+   * The animation matrix, computed once, if it is the same at every frame.
+   */
+  private final Matrix mConstantAnimationMatrix;
+  private final int mFoldedAnimationCount;
+
   public static class Builder {
     public String name;
     public int fillColor;
@@ -238,6 +250,20 @@ public class KFFeature {
     mBackedImageName = backedImageName;
 
     mKeyFramedPath = mKeyFrames.isEmpty() ? null : KeyFramedPath.fromFeature(this);
+
+    mMatrixAnimationsToApply =
+        AnimationHelper.getMatrixAnimationsToApply(mAnchorPoint, mFeatureMatrixAnimations);
+    int foldedAnimationCount = mFeatureMatrixAnimations.size() + (mAnchorPoint != null ? 1 : 0) -
+        mMatrixAnimationsToApply.size();
+    if (!mMatrixAnimationsToApply.isEmpty() &&
+        AnimationHelper.areConstant(mMatrixAnimationsToApply)) {
+      mConstantAnimationMatrix = new Matrix();
+      AnimationHelper.applyMatrixAnimations(mMatrixAnimationsToApply, 0, mConstantAnimationMatrix);
+      foldedAnimationCount += mMatrixAnimationsToApply.size();
+    } else {
+      mConstantAnimationMatrix = null;
+    }
+    mFoldedAnimationCount = foldedAnimationCount;
   }
 
   public String getName() {
@@ -252,6 +278,10 @@ public class KFFeature {
     return mStrokeColor;
   }
 
+  public float getStrokeWidth() {
+    return mStrokeWidth;
+  }
+
   public float getFromFrame() {
     return mFromFrame;
   }
@@ -328,15 +358,41 @@ public class KFFeature {
     if (featureMatrix == null) {
       return;
     }
-    featureMatrix.reset();
-    if (mFeatureMatrixAnimations == null) {
+    if (mConstantAnimationMatrix != null) {
+      featureMatrix.set(mConstantAnimationMatrix);
       return;
     }
-    if (mAnchorPoint != null) {
-      mAnchorPoint.getAnimation().apply(frameProgress, featureMatrix);
-    }
-    for (int i = 0, len = mFeatureMatrixAnimations.size(); i < len; i++) {
-      mFeatureMatrixAnimations.get(i).getAnimation().apply(frameProgress, featureMatrix);
+    featureMatrix.reset();
+    AnimationHelper.applyMatrixAnimations(mMatrixAnimationsToApply, frameProgress, featureMatrix);
+  }
+
+  /**
+   * Returns how many matrix based animations of this feature are no longer evaluated each frame,
+   * either because they have no effect, or because the animation matrix is the same at every frame
+   * and was computed up front.  This includes the feature mask, if any.
+   */
+  public int getFoldedAnimationCount() {
+    return mFoldedAnimationCount +
+        (mFeatureMask != null ? mFeatureMask.getFoldedAnimationCount() : 0);
+  }
+
+  /**
+   * Returns all of the animations of this feature, matrix based and special cased alike, in the
+   * same form they were supplied in the feature_animations set.
+   */
+  public List<KFAnimation> getFeatureAnimations() {
+    List<KFAnimation> animations = new ArrayList<>(mFeatureMatrixAnimations);
+    addIfNotNull(animations, mAnchorPoint);
+    addIfNotNull(animations, mStrokeWidthAnimation);
+    addIfNotNull(animations, mStrokeColorAnimation);
+    addIfNotNull(animations, mFillColorAnimation);
+    addIfNotNull(animations, mOpacityAnimation);
+    return animations;
+  }
+
+  private static void addIfNotNull(List<KFAnimation> animations, KFAnimation animation) {
+    if (animation != null) {
+      animations.add(animation);
     }
   }
 
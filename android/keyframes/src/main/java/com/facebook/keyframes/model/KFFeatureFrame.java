@@ -10,10 +10,12 @@
 package com.facebook.keyframes.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.facebook.keyframes.KFPath;
 import com.facebook.keyframes.util.VectorCommand;
+import com.facebook.keyframes.util.VectorCommandParser;
 import com.facebook.keyframes.util.ListHelper;
 
 /**
@@ -43,8 +45,12 @@ public class KFFeatureFrame implements HasKeyFrame {
   }
 
   public KFFeatureFrame(int startFrame, List<String> data) {
+    this(startFrame, new ShapeMoveListData(data));
+  }
+
+  public KFFeatureFrame(int startFrame, ShapeMoveListData shapeData) {
     mStartFrame = startFrame;
-    mShapeData = new ShapeMoveListData(data);
+    mShapeData = shapeData;
   }
 
   @Override
@@ -61,13 +67,22 @@ public class KFFeatureFrame implements HasKeyFrame {
     private final List<VectorCommand> mVectorCommands;
 
     public ShapeMoveListData(List<String> data) {
-      List<VectorCommand> vectorCommandList = new ArrayList<>();
+      List<VectorCommand> vectorCommandList = new ArrayList<>(data.size());
+      VectorCommandParser parser = new VectorCommandParser();
       for (int i = 0, len = data.size(); i < len; i ++) {
-        vectorCommandList.add(VectorCommand.createVectorCommand(data.get(i)));
+        parser.parseCommands(data.get(i), vectorCommandList);
       }
       mVectorCommands = ListHelper.immutableOrEmpty(vectorCommandList);
     }
 
+    /**
+     * Constructs the shape data from already created {@link VectorCommand}s, skipping the string
+     * parsing step entirely.
+     */
+    public ShapeMoveListData(VectorCommand[] vectorCommands) {
+      mVectorCommands = ListHelper.immutableOrEmpty(Arrays.asList(vectorCommands));
+    }
+
     public void applyFeature(KFPath path) {
       for (int i = 0, len = mVectorCommands.size(); i < len; i++) {
         mVectorCommands.get(i).apply(path);
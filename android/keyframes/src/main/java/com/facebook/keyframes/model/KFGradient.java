@@ -22,20 +22,23 @@ public class KFGradient {
 
   /**
    * To prevent allocating a lot of LinearGradient shaders during animation, and because it looks
-   * looks like LinearGradient shader params can't be modified after instantiation, we cache the
-   * shaders needed once at a precision of shaders per second listed here.
+   * looks like LinearGradient shader params can't be modified after instantiation, the shaders
+   * needed are cached per image at a precision of shaders per second, see
+   * {@link KFGradientShaderCache}.
    */
 
   /**
    * The start color of the gradient, the top color of the linear gradient.
    */
   public static final String COLOR_START_JSON_FIELD = "color_start";
+  private final KFGradientColor mColorStart;
   private final KeyFramedGradient mStartGradient;
 
   /**
    * The end color of the gradient, the bottom color of the linear gradient.
    */
   public static final String COLOR_END_JSON_FIELD = "color_end";
+  private final KFGradientColor mColorEnd;
   private final KeyFramedGradient mEndGradient;
 
   public static class Builder {
@@ -48,6 +51,8 @@ public class KFGradient {
   }
 
   public KFGradient(KFGradientColor colorStart, KFGradientColor colorEnd) {
+    mColorStart = colorStart;
+    mColorEnd = colorEnd;
     mStartGradient = KeyFramedGradient.fromGradient(
         ArgCheckUtil.checkArg(
             colorStart,
@@ -62,6 +67,14 @@ public class KFGradient {
         END);
   }
 
+  public KFGradientColor getColorStart() {
+    return mColorStart;
+  }
+
+  public KFGradientColor getColorEnd() {
+    return mColorEnd;
+  }
+
   public KeyFramedGradient getStartGradient() {
     return mStartGradient;
   }
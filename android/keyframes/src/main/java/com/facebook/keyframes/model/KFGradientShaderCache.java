@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.LinearGradient;
+import android.graphics.Shader;
+
+import com.facebook.keyframes.model.keyframedmodels.KeyFramedGradient;
+
+/**
+ * The gradient shaders of the features of a {@link KFImage}, sampled at a fixed number of steps per
+ * second of animation, and shared by every drawable of the image.  The shader of a step is only
+ * created the first time it is drawn, and steps whose colors are the same share a shader, so an
+ * image whose gradients only change for part of the animation holds few shaders.  All methods are
+ * thread safe.
+ */
+public class KFGradientShaderCache {
+
+  private final KFImage mImage;
+  private final int mStepCount;
+
+  /**
+   * For each feature, its shader at each step, created on first use.  Null for features without a
+   * gradient.
+   */
+  private final Shader[][] mShaders;
+  /**
+   * Every shader created, by its start color in the upper half of the key and its end color in the
+   * lower half.  Gradients of all features span the canvas in the same way, so only the colors
+   * differ.
+   */
+  private final Map<Long, Shader> mShadersByColors = new HashMap<>();
+  private final KeyFramedGradient.GradientColorPair mRecyclableColorPair =
+      new KeyFramedGradient.GradientColorPair();
+
+  /**
+   * @param image The image whose features' gradients are cached
+   * @param precisionPerSecond The number of steps to sample each second of animation at
+   */
+  KFGradientShaderCache(KFImage image, float precisionPerSecond) {
+    mImage = image;
+    mStepCount = Math.max(
+        Math.round(precisionPerSecond * image.getFrameCount() / image.getFrameRate()),
+        1);
+    List<KFFeature> features = image.getFeatures();
+    mShaders = new Shader[features.size()][];
+    for (int i = 0, len = features.size(); i < len; i++) {
+      KFFeatureEffect effect = features.get(i).getEffect();
+      if (effect != null && effect.getGradient() != null) {
+        mShaders[i] = new Shader[mStepCount + 1];
+      }
+    }
+  }
+
+  /**
+   * Returns the shader of a feature at the step nearest below frameProgress, or null if the feature
+   * has no gradient.
+   * @param featureIndex The index of the feature in {@link KFImage#getFeatures()}
+   * @param frameProgress The progress in animation, given as a frame value
+   */
+  public synchronized Shader getShader(int featureIndex, float frameProgress) {
+    Shader[] shaders = mShaders[featureIndex];
+    if (shaders == null) {
+      return null;
+    }
+    int step = (int) (frameProgress / mImage.getFrameCount() * mStepCount);
+    step = Math.max(0, Math.min(step, mStepCount));
+    Shader shader = shaders[step];
+    if (shader == null) {
+      shader = createShader(featureIndex, step);
+      shaders[step] = shader;
+    }
+    return shader;
+  }
+
+  private Shader createShader(int featureIndex, int step) {
+    KFGradient gradient = mImage.getFeatures().get(featureIndex).getEffect().getGradient();
+    float progress = step / (float) mStepCount * mImage.getFrameCount();
+    gradient.getStartGradient().apply(progress, mRecyclableColorPair);
+    gradient.getEndGradient().apply(progress, mRecyclableColorPair);
+    int startColor = mRecyclableColorPair.getStartColor();
+    int endColor = mRecyclableColorPair.getEndColor();
+    Long colors = ((long) startColor << 32) | (endColor & 0xFFFFFFFFL);
+    Shader shader = mShadersByColors.get(colors);
+    if (shader == null) {
+      shader = new LinearGradient(
+          0,
+          0,
+          0,
+          mImage.getCanvasSize()[1],
+          startColor,
+          endColor,
+          Shader.TileMode.CLAMP);
+      mShadersByColors.put(colors, shader);
+    }
+    return shader;
+  }
+
+  /**
+   * Returns the number of distinct shaders created so far.
+   */
+  public synchronized int getShaderCount() {
+    return mShadersByColors.size();
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import android.graphics.Matrix;
+
+/**
+ * The final, parent concatenated, matrix of every animation group of a {@link KFImage} at each
+ * whole frame, held in a single array of 9 values per group per frame.  Between two whole frames,
+ * matrices are a linear approximation, interpolated value by value from their neighbours.  It only
+ * matches live evaluation at whole frames, and between them for groups animated linearly by
+ * translation or scale alone: eased timing curves, rotation and skew all follow curves between
+ * whole frames which the table flattens.  Callers drawing between whole frames, e.g. at display
+ * rates above the image's frame rate, should use live evaluation through
+ * {@link KFImage#setAnimationMatrices(Matrix[], float)} where that error is visible.  Once built, a
+ * table is immutable and may be shared between threads.
+ */
+public class KFGroupMatrixTable {
+
+  private static final int MATRIX_SIZE = 9;
+
+  private final int mGroupCount;
+  private final int mLastFrame;
+  private final float[] mValues;
+
+  /**
+   * Evaluates the matrices of every group of the image at frames 0 through
+   * {@link KFImage#getFrameCount()}.
+   */
+  KFGroupMatrixTable(KFImage image) {
+    int groupCount = image.getAnimationGroups().size();
+    mGroupCount = groupCount;
+    Matrix[] matrices = new Matrix[groupCount];
+    for (int i = 0; i < groupCount; i++) {
+      matrices[i] = new Matrix();
+    }
+    mLastFrame = image.getFrameCount();
+    mValues = new float[(mLastFrame + 1) * groupCount * MATRIX_SIZE];
+    float[] values = new float[MATRIX_SIZE];
+    for (int frame = 0; frame <= mLastFrame; frame++) {
+      image.setAnimationMatrices(matrices, frame);
+      for (int i = 0; i < groupCount; i++) {
+        matrices[i].getValues(values);
+        System.arraycopy(values, 0, mValues, getOffset(frame, i), MATRIX_SIZE);
+      }
+    }
+  }
+
+  /**
+   * Sets each matrix in the array to its group's matrix at frameProgress, as
+   * {@link KFImage#setAnimationMatrices(Matrix[], float)} would.
+   * @param matrices An array of one matrix per animation group
+   * @param frameProgress The progress in animation, given as a frame value
+   * @param recyclableValues An array of at least 9 floats to use as scratch space
+   */
+  public void apply(Matrix[] matrices, float frameProgress, float[] recyclableValues) {
+    float clampedProgress = Math.max(0, Math.min(frameProgress, mLastFrame));
+    int frame = (int) clampedProgress;
+    float fraction = clampedProgress - frame;
+    for (int i = 0; i < mGroupCount; i++) {
+      int offset = getOffset(frame, i);
+      if (fraction == 0) {
+        System.arraycopy(mValues, offset, recyclableValues, 0, MATRIX_SIZE);
+      } else {
+        int nextOffset = getOffset(frame + 1, i);
+        for (int j = 0; j < MATRIX_SIZE; j++) {
+          float value = mValues[offset + j];
+          recyclableValues[j] = value + (mValues[nextOffset + j] - value) * fraction;
+        }
+      }
+      matrices[i].setValues(recyclableValues);
+    }
+  }
+
+  /**
+   * Returns the size of the table, in bytes.
+   */
+  public int getSizeBytes() {
+    return mValues.length * 4;
+  }
+
+  private int getOffset(int frame, int groupIndex) {
+    return (frame * mGroupCount + groupIndex) * MATRIX_SIZE;
+  }
+}
@@ -8,6 +8,9 @@
  */
 package com.facebook.keyframes.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +52,13 @@ public class KFImage {
    */
   public static final String ANIMATION_GROUPS_JSON_FIELD = "animation_groups";
   private final List<KFAnimationGroup> mAnimationGroups;
+  /**
+   * The IDs of the animation groups in ascending order, with the index in mAnimationGroups of the
+   * group with each ID, and the index of each group's parent, or -1 for root groups.
+   */
+  private final int[] mSortedAnimationGroupIds;
+  private final int[] mSortedAnimationGroupIndices;
+  private final int[] mAnimationGroupParentIndices;
 
   /**
    * The canvas size that this image was initially exported as.
@@ -63,10 +73,32 @@ public class KFImage {
   private final int mKey;
 
   /**
-   * An optional map of bitmaps for this image.
+   * An optional map of bitmaps for this image, keyed by {@link KFFeature#getBackedImageName()}.
    */
   public static final String BITMAPS_JSON_FIELD = "bitmaps";
-  private final Map<String, Bitmap> mBitmaps;
+  private final Map<String, KFBitmap> mBitmaps;
+
+  /**
+   * For each animation group, in the order of mAnimationGroups, its final matrix if that is the
+   * same at every frame, which it is when the group and all of its parents are constant.
+   */
+  private final Matrix[] mConstantGroupMatrices;
+  private final int mFoldedAnimationCount;
+
+  /**
+   * The baked matrices of every animation group, built on first request.
+   */
+  private volatile KFGroupMatrixTable mGroupMatrixTable;
+
+  /**
+   * The packed scalar feature animations, built on first request.
+   */
+  private volatile KFScalarChannelTable mScalarChannelTable;
+
+  /**
+   * The gradient shader caches of this image, by precision.
+   */
+  private final Map<Float, KFGradientShaderCache> mGradientShaderCaches = new HashMap<>();
 
   public static class Builder {
     public int frameRate;
@@ -75,10 +107,25 @@ public class KFImage {
     public List<KFAnimationGroup> animationGroups;
     public float[] canvasSize;
     public int key;
+    /**
+     * Bitmaps which are already decoded.
+     */
     public Map<String, Bitmap> bitmaps;
+    /**
+     * Encoded bitmaps, which are decoded on first use.
+     */
+    public Map<String, byte[]> encodedBitmaps;
 
     public KFImage build() {
-      return new KFImage(frameRate, frameCount, features, animationGroups, canvasSize, key, bitmaps);
+      return new KFImage(
+          frameRate,
+          frameCount,
+          features,
+          animationGroups,
+          canvasSize,
+          key,
+          bitmaps,
+          encodedBitmaps);
     }
   }
 
@@ -89,7 +136,8 @@ public class KFImage {
       List<KFAnimationGroup> animationGroups,
       float[] canvasSize,
       int key,
-      Map<String, Bitmap> bitmaps) {
+      Map<String, Bitmap> bitmaps,
+      Map<String, byte[]> encodedBitmaps) {
     mFrameRate = ArgCheckUtil.checkArg(
         frameRate,
         frameRate > 0,
@@ -102,18 +150,94 @@ public class KFImage {
         ListHelper.immutableOrEmpty(features),
         features.size() > 0,
         FEATURES_JSON_FIELD);
-    animationGroups = AnimationGroupSort.sort(animationGroups);
-    mAnimationGroups =
-        ArgCheckUtil.checkArg(
-            ListHelper.immutableOrEmpty(animationGroups),
-            ArgCheckUtil.checkAnimationGroupIdUniqueness(animationGroups),
-            ANIMATION_GROUPS_JSON_FIELD);
+    ArgCheckUtil.checkArg(
+        animationGroups,
+        ArgCheckUtil.checkAnimationGroupIdUniqueness(animationGroups),
+        ANIMATION_GROUPS_JSON_FIELD);
+    mAnimationGroups = ListHelper.immutableOrEmpty(AnimationGroupSort.sort(animationGroups));
+    int groupCount = mAnimationGroups.size();
+    mSortedAnimationGroupIds = new int[groupCount];
+    mSortedAnimationGroupIndices = new int[groupCount];
+    sortAnimationGroupIds(mAnimationGroups, mSortedAnimationGroupIds, mSortedAnimationGroupIndices);
+    mAnimationGroupParentIndices = new int[groupCount];
+    for (int i = 0; i < groupCount; i++) {
+      KFAnimationGroup group = mAnimationGroups.get(i);
+      // Parents are sorted before their children, so are already indexed.
+      mAnimationGroupParentIndices[i] =
+          group.getParentGroup() != 0 ? getAnimationGroupIndex(group.getParentGroup()) : -1;
+    }
     mCanvasSize = ArgCheckUtil.checkArg(
         canvasSize,
         canvasSize.length == 2 && canvasSize[0] > 0 && canvasSize[1] > 0,
         CANVAS_SIZE_JSON_FIELD);
     mKey = key;
-    mBitmaps = bitmaps;
+    mBitmaps = createBitmaps(bitmaps, encodedBitmaps);
+
+    mConstantGroupMatrices = new Matrix[mAnimationGroups.size()];
+    int foldedAnimationCount = foldConstantGroups(
+        mAnimationGroups,
+        mAnimationGroupParentIndices,
+        mConstantGroupMatrices);
+    for (int i = 0, len = mFeatures.size(); i < len; i++) {
+      foldedAnimationCount += mFeatures.get(i).getFoldedAnimationCount();
+    }
+    mFoldedAnimationCount = foldedAnimationCount;
+  }
+
+  /**
+   * Computes the final matrix of each group whose matrix, including all of its parents, is the
+   * same at every frame.  The groups must be sorted so that parents come before their children.
+   * @return how many animations are no longer evaluated each frame as a result
+   */
+  private static int foldConstantGroups(
+      List<KFAnimationGroup> animationGroups,
+      int[] parentIndices,
+      Matrix[] constantGroupMatrices) {
+    int foldedAnimationCount = 0;
+    for (int i = 0, len = animationGroups.size(); i < len; i++) {
+      KFAnimationGroup group = animationGroups.get(i);
+      int animationCount = group.getAnimations().size() + (group.getAnchorPoint() != null ? 1 : 0);
+      int skippedAnimationCount = group.getSkippedAnimationCount();
+      foldedAnimationCount += skippedAnimationCount;
+      if (!group.isConstant()) {
+        continue;
+      }
+      Matrix parentMatrix = null;
+      if (parentIndices[i] >= 0) {
+        parentMatrix = constantGroupMatrices[parentIndices[i]];
+        if (parentMatrix == null) {
+          continue;
+        }
+      }
+      Matrix matrix = new Matrix();
+      group.applyAnimations(0, matrix);
+      if (parentMatrix != null) {
+        matrix.postConcat(parentMatrix);
+      }
+      constantGroupMatrices[i] = matrix;
+      foldedAnimationCount += animationCount - skippedAnimationCount;
+    }
+    return foldedAnimationCount;
+  }
+
+  private static Map<String, KFBitmap> createBitmaps(
+      Map<String, Bitmap> bitmaps,
+      Map<String, byte[]> encodedBitmaps) {
+    if (bitmaps == null && encodedBitmaps == null) {
+      return null;
+    }
+    Map<String, KFBitmap> kfBitmaps = new HashMap<>();
+    if (encodedBitmaps != null) {
+      for (Map.Entry<String, byte[]> entry : encodedBitmaps.entrySet()) {
+        kfBitmaps.put(entry.getKey(), new KFBitmap(entry.getValue()));
+      }
+    }
+    if (bitmaps != null) {
+      for (Map.Entry<String, Bitmap> entry : bitmaps.entrySet()) {
+        kfBitmaps.put(entry.getKey(), new KFBitmap(entry.getValue()));
+      }
+    }
+    return Collections.unmodifiableMap(kfBitmaps);
   }
 
   public int getFrameRate() {
@@ -132,9 +256,61 @@ public class KFImage {
     return mAnimationGroups;
   }
 
+  /**
+   * Returns the index of the animation group with the given ID in {@link #getAnimationGroups()},
+   * or -1 if there is none.
+   */
+  public int getAnimationGroupIndex(int groupId) {
+    int position = Arrays.binarySearch(mSortedAnimationGroupIds, groupId);
+    return position >= 0 ? mSortedAnimationGroupIndices[position] : -1;
+  }
+
+  /**
+   * Fills ids with the IDs of the groups in ascending order, and indices with the index in groups
+   * of the group with each ID.
+   */
+  private static void sortAnimationGroupIds(
+      List<KFAnimationGroup> groups,
+      int[] ids,
+      int[] indices) {
+    // IDs are positive, so sorting each ID packed above its index sorts by ID.
+    long[] packed = new long[groups.size()];
+    for (int i = 0; i < packed.length; i++) {
+      packed[i] = ((long) groups.get(i).getGroupId() << 32) | i;
+    }
+    Arrays.sort(packed);
+    for (int i = 0; i < packed.length; i++) {
+      ids[i] = (int) (packed[i] >>> 32);
+      indices[i] = (int) packed[i];
+    }
+  }
+
+  /**
+   * Sets each matrix in the array to the matrix of the animation group at the same index in
+   * {@link #getAnimationGroups()}, at the given progress in the animation.
+   * @param matrices An array of one matrix per animation group
+   * @param frameProgress The progress in animation, given as a frame value
+   */
+  public void setAnimationMatrices(Matrix[] matrices, float frameProgress) {
+    for (int groupIndex = 0, groupsLen = matrices.length; groupIndex < groupsLen; groupIndex++) {
+      Matrix matrix = matrices[groupIndex];
+      if (mConstantGroupMatrices[groupIndex] != null) {
+        matrix.set(mConstantGroupMatrices[groupIndex]);
+        continue;
+      }
+      matrix.reset();
+      mAnimationGroups.get(groupIndex).applyAnimations(frameProgress, matrix);
+      int parentIndex = mAnimationGroupParentIndices[groupIndex];
+      if (parentIndex >= 0) {
+        matrix.postConcat(matrices[parentIndex]);
+      }
+    }
+  }
+
   /**
    * Given a map of group id and corresponding matrices, apply the current matrix state calculated
-   * from progress in the animation to the matrix in the map.
+   * from progress in the animation to the matrix in the map.  Prefer
+   * {@link #setAnimationMatrices(Matrix[], float)}, which doesn't look matrices up by ID.
    * @param matrixMap A prefilled map of animation group id -> matrix
    * @param frameProgress The progress in animation, given as a frame value
    */
@@ -145,21 +321,81 @@ public class KFImage {
          groupIndex++) {
       KFAnimationGroup group = mAnimationGroups.get(groupIndex);
       matrix = matrixMap.get(group.getGroupId());
-      matrix.reset();
-      if (group.getAnchorPoint() != null) {
-        group.getAnchorPoint().apply(frameProgress, matrix);
-      }
-      for (int animationIndex = 0, animationsLen = group.getAnimations().size();
-           animationIndex < animationsLen;
-           animationIndex++) {
-        group.getAnimations().get(animationIndex).getAnimation().apply(frameProgress, matrix);
+      if (mConstantGroupMatrices[groupIndex] != null) {
+        matrix.set(mConstantGroupMatrices[groupIndex]);
+        continue;
       }
+      matrix.reset();
+      group.applyAnimations(frameProgress, matrix);
       if (group.getParentGroup() > 0) {
         matrix.postConcat(matrixMap.get(group.getParentGroup()));
       }
     }
   }
 
+  /**
+   * Returns a table of the matrices of every animation group at each frame, which is built on the
+   * first call and shared by later ones.  Looking matrices up in the table is cheaper than
+   * {@link #setAnimationMatrices(SparseArray, float)}, at the cost of 36 bytes per group per frame.
+   */
+  public KFGroupMatrixTable getGroupMatrixTable() {
+    KFGroupMatrixTable table = mGroupMatrixTable;
+    if (table == null) {
+      synchronized (this) {
+        table = mGroupMatrixTable;
+        if (table == null) {
+          table = new KFGroupMatrixTable(this);
+          mGroupMatrixTable = table;
+        }
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Returns the scalar feature animations of this image packed for {@link KFScalarChannels}, which
+   * are built on the first call and shared by later ones, so that drawables of this image only
+   * allocate their outputs.  Colors are interpolated as set by
+   * {@link com.facebook.keyframes.util.KFColorInterpolator#setPremultiplied(boolean)} at the time
+   * of the first call.
+   */
+  public KFScalarChannelTable getScalarChannelTable() {
+    KFScalarChannelTable table = mScalarChannelTable;
+    if (table == null) {
+      synchronized (this) {
+        table = mScalarChannelTable;
+        if (table == null) {
+          table = new KFScalarChannelTable(mFeatures);
+          mScalarChannelTable = table;
+        }
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Returns the cache of gradient shaders sampled at the given precision, which is created on the
+   * first call and shared by later ones, so that drawables of this image share their shaders.
+   * @param precisionPerSecond The number of shaders per second of animation
+   */
+  public synchronized KFGradientShaderCache getGradientShaderCache(float precisionPerSecond) {
+    KFGradientShaderCache cache = mGradientShaderCaches.get(precisionPerSecond);
+    if (cache == null) {
+      cache = new KFGradientShaderCache(this, precisionPerSecond);
+      mGradientShaderCaches.put(precisionPerSecond, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Returns how many animation evaluations each frame were removed when this image was loaded,
+   * because the animations have no effect, or belong to a group or feature whose matrix is the same
+   * at every frame and so was computed up front.
+   */
+  public int getFoldedAnimationCount() {
+    return mFoldedAnimationCount;
+  }
+
   public float[] getCanvasSize() {
     return mCanvasSize;
   }
@@ -168,7 +404,25 @@ public class KFImage {
     return mKey;
   }
 
+  /**
+   * Returns the bitmaps of this image, decoding any that aren't decoded yet at full size.  Prefer
+   * {@link #getKFBitmaps()}, which leaves decoding to when, and if, each bitmap is drawn.
+   */
   public Map<String, Bitmap> getBitmaps() {
+    if (mBitmaps == null) {
+      return null;
+    }
+    Map<String, Bitmap> bitmaps = new HashMap<>();
+    for (Map.Entry<String, KFBitmap> entry : mBitmaps.entrySet()) {
+      bitmaps.put(entry.getKey(), entry.getValue().getBitmap());
+    }
+    return bitmaps;
+  }
+
+  /**
+   * Returns the bitmaps of this image, which are decoded on first use.
+   */
+  public Map<String, KFBitmap> getKFBitmaps() {
     return mBitmaps;
   }
 }
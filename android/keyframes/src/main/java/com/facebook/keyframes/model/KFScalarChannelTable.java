@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.view.animation.Interpolator;
+
+import com.facebook.keyframes.model.keyframedmodels.KeyFrameAnimationHelper;
+import com.facebook.keyframes.util.KFColorInterpolator;
+
+/**
+ * The scalar feature animations of an image, packed into flat arrays for {@link KFScalarChannels}.
+ * Each animation is a channel, whose key frames occupy a contiguous range of the key frame arrays.
+ * Once built, a table is immutable and may be shared between the drawables of an image, see
+ * {@link KFImage#getScalarChannelTable()}.
+ */
+public class KFScalarChannelTable {
+
+  /**
+   * For each feature and property, at featureIndex * PROPERTY_COUNT + property, the channel
+   * animating it, or NO_CHANNEL.
+   */
+  private final int[] mFeatureChannels;
+
+  /**
+   * For each channel, the index of its first key frame, followed by the total number of key frames.
+   */
+  final int[] mChannelStarts;
+  /**
+   * For each channel, the index of the key frame starting its last interpolated segment, or -1 if
+   * it holds a single value.
+   */
+  final int[] mChannelLastSegments;
+  final boolean[] mChannelIsColor;
+
+  /**
+   * The key frames of all channels.  For each key frame that starts a segment, the index of the
+   * segment's interpolator and 1 / the segment's length in frames.
+   */
+  final float[] mKeyFrames;
+  final float[] mKeyValues;
+  final int[] mKeyInterpolators;
+  final float[] mInverseSegmentDurations;
+  final Interpolator[] mInterpolators;
+
+  /**
+   * For the key frames of color channels, the color as an int and, for each key frame that starts
+   * a segment, the segment prepared for {@link KFColorInterpolator}.
+   */
+  final int[] mKeyColors;
+  final int[] mSegmentStarts;
+  final long[] mSegmentDeltas;
+  final boolean mPremultiplied;
+
+  public KFScalarChannelTable(List<KFFeature> features) {
+    int featureCount = features.size();
+    mFeatureChannels = new int[featureCount * KFScalarChannels.PROPERTY_COUNT];
+    Arrays.fill(mFeatureChannels, KFScalarChannels.NO_CHANNEL);
+    List<KFAnimation> animations = new ArrayList<>();
+    int keyFrameCount = 0;
+    for (int i = 0; i < featureCount; i++) {
+      KFFeature feature = features.get(i);
+      KFAnimation[] featureAnimations = {
+          feature.mStrokeWidthAnimation,
+          feature.mStrokeColorAnimation,
+          feature.mFillColorAnimation,
+          feature.mOpacityAnimation};
+      for (int property = 0; property < KFScalarChannels.PROPERTY_COUNT; property++) {
+        KFAnimation animation = featureAnimations[property];
+        if (animation == null) {
+          continue;
+        }
+        mFeatureChannels[i * KFScalarChannels.PROPERTY_COUNT + property] = animations.size();
+        animations.add(animation);
+        keyFrameCount += KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation).size();
+      }
+    }
+
+    int channelCount = animations.size();
+    mChannelStarts = new int[channelCount + 1];
+    mChannelLastSegments = new int[channelCount];
+    mChannelIsColor = new boolean[channelCount];
+    mKeyFrames = new float[keyFrameCount];
+    mKeyValues = new float[keyFrameCount];
+    mKeyInterpolators = new int[keyFrameCount];
+    mInverseSegmentDurations = new float[keyFrameCount];
+    mKeyColors = new int[keyFrameCount];
+    mSegmentStarts = new int[keyFrameCount];
+    mSegmentDeltas = new long[keyFrameCount];
+    mPremultiplied = KFColorInterpolator.isPremultiplied();
+
+    Map<Interpolator, Integer> interpolatorIndices = new IdentityHashMap<>();
+    List<Interpolator> interpolators = new ArrayList<>();
+    int start = 0;
+    for (int channel = 0; channel < channelCount; channel++) {
+      KFAnimation animation = animations.get(channel);
+      mChannelStarts[channel] = start;
+      mChannelIsColor[channel] =
+          animation.getPropertyType() == KFAnimation.PropertyType.STROKE_COLOR ||
+          animation.getPropertyType() == KFAnimation.PropertyType.FILL_COLOR;
+      int size = packKeyFrames(
+          KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+          start);
+      List<Interpolator> segmentInterpolators = KeyFrameAnimationHelper.buildInterpolatorList(
+          KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
+      int segmentCount = Math.min(segmentInterpolators.size(), size - 1);
+      for (int i = 0; i < segmentCount; i++) {
+        Interpolator interpolator = segmentInterpolators.get(i);
+        Integer index = interpolatorIndices.get(interpolator);
+        if (index == null) {
+          index = interpolators.size();
+          interpolatorIndices.put(interpolator, index);
+          interpolators.add(interpolator);
+        }
+        mKeyInterpolators[start + i] = index;
+        mInverseSegmentDurations[start + i] =
+            1f / (mKeyFrames[start + i + 1] - mKeyFrames[start + i]);
+      }
+      mChannelLastSegments[channel] = segmentCount > 0 ? start + segmentCount - 1 : -1;
+      if (mChannelIsColor[channel]) {
+        prepareColors(start, size, segmentCount);
+      }
+      start += size;
+    }
+    mChannelStarts[channelCount] = start;
+    mInterpolators = interpolators.toArray(new Interpolator[interpolators.size()]);
+  }
+
+  /**
+   * Sorts the key frames of one channel into the arrays at start, the way KeyFramedObject does: a
+   * later key frame for the same frame replaces an earlier one.
+   * @return the number of distinct key frames
+   */
+  private int packKeyFrames(List<KFAnimationFrame> frames, int start) {
+    int size = 0;
+    for (int i = 0, len = frames.size(); i < len; i++) {
+      KFAnimationFrame frame = frames.get(i);
+      float keyFrame = frame.getKeyFrame();
+      int index = size > 0 && mKeyFrames[start + size - 1] < keyFrame
+          ? ~(start + size)
+          : Arrays.binarySearch(mKeyFrames, start, start + size, keyFrame);
+      if (index >= 0) {
+        index -= start;
+      } else {
+        index = ~index - start;
+        System.arraycopy(mKeyFrames, start + index, mKeyFrames, start + index + 1, size - index);
+        System.arraycopy(mKeyValues, start + index, mKeyValues, start + index + 1, size - index);
+        size++;
+      }
+      mKeyFrames[start + index] = keyFrame;
+      mKeyValues[start + index] = frame.getData()[0];
+    }
+    return size;
+  }
+
+  private void prepareColors(int start, int size, int segmentCount) {
+    for (int i = start; i < start + size; i++) {
+      mKeyColors[i] = (int) mKeyValues[i];
+    }
+    for (int i = start; i < start + segmentCount; i++) {
+      mSegmentStarts[i] = KFColorInterpolator.getSegmentStart(mKeyColors[i], mPremultiplied);
+      mSegmentDeltas[i] = KFColorInterpolator.getSegmentDeltas(
+          mKeyColors[i],
+          mKeyColors[i + 1],
+          mPremultiplied);
+    }
+  }
+
+  /**
+   * Returns the channel animating a property of a feature, or {@link KFScalarChannels#NO_CHANNEL}.
+   */
+  int getChannel(int featureIndex, int property) {
+    return mFeatureChannels[featureIndex * KFScalarChannels.PROPERTY_COUNT + property];
+  }
+
+  public int getChannelCount() {
+    return mChannelLastSegments.length;
+  }
+}
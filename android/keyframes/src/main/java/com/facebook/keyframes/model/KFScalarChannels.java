@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import java.util.List;
+
+import com.facebook.keyframes.util.KFColorInterpolator;
+
+/**
+ * The scalar feature animations of an image (stroke width, stroke color, fill color and opacity),
+ * evaluated from a {@link KFScalarChannelTable} in one loop per frame, rather than through a
+ * {@link com.facebook.keyframes.model.keyframedmodels.KeyFramedObject} per animation.  The values
+ * at a frame are written to an output array, read with {@link #getValue(int)}, or
+ * {@link #getColor(int)} for color channels.  Values are identical to those of the equivalent
+ * KeyFramedObjects.
+ *
+ * The packed table is shared by every drawable of an image, but a KFScalarChannels holds the
+ * outputs and segment cursors of the last evaluation, so each drawable needs its own.
+ */
+public class KFScalarChannels {
+
+  public static final int STROKE_WIDTH = 0;
+  public static final int STROKE_COLOR = 1;
+  public static final int FILL_COLOR = 2;
+  public static final int OPACITY = 3;
+  static final int PROPERTY_COUNT = 4;
+
+  public static final int NO_CHANNEL = -1;
+
+  private final KFScalarChannelTable mTable;
+
+  /**
+   * For each channel, the segment found by the last evaluation, which is checked first.
+   */
+  private final int[] mChannelCursors;
+
+  private final float[] mOutputs;
+  private final int[] mColorOutputs;
+
+  /**
+   * Creates channels evaluating a shared table, see {@link KFImage#getScalarChannelTable()}.
+   */
+  public KFScalarChannels(KFScalarChannelTable table) {
+    mTable = table;
+    int channelCount = table.getChannelCount();
+    mChannelCursors = new int[channelCount];
+    System.arraycopy(table.mChannelStarts, 0, mChannelCursors, 0, channelCount);
+    mOutputs = new float[channelCount];
+    mColorOutputs = new int[channelCount];
+  }
+
+  public KFScalarChannels(List<KFFeature> features) {
+    this(new KFScalarChannelTable(features));
+  }
+
+  /**
+   * Evaluates every channel at frameProgress.
+   * @param frameProgress The progress in animation, given as a frame value
+   */
+  public void evaluate(float frameProgress) {
+    final KFScalarChannelTable table = mTable;
+    final float[] keyFrames = table.mKeyFrames;
+    final float[] keyValues = table.mKeyValues;
+    final float[] outputs = mOutputs;
+    for (int channel = 0, len = outputs.length; channel < len; channel++) {
+      int first = table.mChannelStarts[channel];
+      int lastSegment = table.mChannelLastSegments[channel];
+      if (lastSegment < 0 || frameProgress <= keyFrames[first]) {
+        setKeyValue(channel, first);
+        continue;
+      }
+      int last = table.mChannelStarts[channel + 1] - 1;
+      if (frameProgress >= keyFrames[last]) {
+        setKeyValue(channel, last);
+        continue;
+      }
+      int segment = mChannelCursors[channel];
+      if (keyFrames[segment] > frameProgress ||
+          (segment < lastSegment && keyFrames[segment + 1] <= frameProgress)) {
+        segment = findSegment(first, lastSegment, frameProgress);
+        mChannelCursors[channel] = segment;
+      }
+      float progress = table.mInterpolators[table.mKeyInterpolators[segment]].getInterpolation(
+          (frameProgress - keyFrames[segment]) * table.mInverseSegmentDurations[segment]);
+      if (table.mChannelIsColor[channel]) {
+        mColorOutputs[channel] = progress == 0
+            ? table.mKeyColors[segment]
+            : KFColorInterpolator.interpolate(
+                table.mSegmentStarts[segment],
+                table.mSegmentDeltas[segment],
+                progress,
+                table.mPremultiplied);
+        continue;
+      }
+      float valueA = keyValues[segment];
+      outputs[channel] = valueA + (keyValues[segment + 1] - valueA) * progress;
+    }
+  }
+
+  private void setKeyValue(int channel, int keyFrame) {
+    if (mTable.mChannelIsColor[channel]) {
+      mColorOutputs[channel] = mTable.mKeyColors[keyFrame];
+    } else {
+      mOutputs[channel] = mTable.mKeyValues[keyFrame];
+    }
+  }
+
+  /**
+   * Returns the last key frame at or before frameProgress, among those starting segments.
+   */
+  private int findSegment(int low, int high, float frameProgress) {
+    final float[] keyFrames = mTable.mKeyFrames;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (keyFrames[mid] <= frameProgress) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the channel animating a property of a feature, or {@link #NO_CHANNEL}.
+   * @param featureIndex The index of the feature in the list this was built from
+   * @param property One of {@link #STROKE_WIDTH}, {@link #STROKE_COLOR}, {@link #FILL_COLOR} or
+   * {@link #OPACITY}
+   */
+  public int getChannel(int featureIndex, int property) {
+    return mTable.getChannel(featureIndex, property);
+  }
+
+  /**
+   * Returns the value of a channel from the last call to {@link #evaluate(float)}.
+   */
+  public float getValue(int channel) {
+    return mOutputs[channel];
+  }
+
+  /**
+   * Returns the color of a color channel from the last call to {@link #evaluate(float)}.
+   */
+  public int getColor(int channel) {
+    return mColorOutputs[channel];
+  }
+
+  public int getChannelCount() {
+    return mOutputs.length;
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model.keyframedmodels;
+
+import com.facebook.keyframes.util.KFColorInterpolator;
+
+/**
+ * The segments between consecutive key frame colors of a color animation, prepared for
+ * {@link KFColorInterpolator}.
+ */
+class ColorSegments {
+
+  private final int[] mStarts;
+  private final long[] mDeltas;
+  private final boolean mPremultiplied;
+
+  /**
+   * @param keyColors The color of each key frame, in ascending order of key frames
+   */
+  ColorSegments(int[] keyColors) {
+    int segmentCount = Math.max(keyColors.length - 1, 0);
+    mStarts = new int[segmentCount];
+    mDeltas = new long[segmentCount];
+    mPremultiplied = KFColorInterpolator.isPremultiplied();
+    for (int i = 0; i < segmentCount; i++) {
+      mStarts[i] = KFColorInterpolator.getSegmentStart(keyColors[i], mPremultiplied);
+      mDeltas[i] =
+          KFColorInterpolator.getSegmentDeltas(keyColors[i], keyColors[i + 1], mPremultiplied);
+    }
+  }
+
+  /**
+   * Returns the color at progress along a segment.
+   * @param segment The index of the key frame starting the segment
+   */
+  int interpolate(int segment, float progress) {
+    return KFColorInterpolator.interpolate(
+        mStarts[segment],
+        mDeltas[segment],
+        progress,
+        mPremultiplied);
+  }
+}
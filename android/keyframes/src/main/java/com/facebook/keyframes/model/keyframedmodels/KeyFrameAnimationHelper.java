@@ -15,7 +15,9 @@ import java.util.List;
 
 import android.view.animation.Interpolator;
 
-import com.facebook.keyframes.util.KFPathInterpolator;
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.util.KFInterpolatorFactory;
 
 /**
  * A helper class to build a list of interpolators corresponding to a list of timing curves, for use
@@ -26,7 +28,8 @@ public class KeyFrameAnimationHelper {
   /**
    * Given a list of timing curves consisting of an outTangent and an inTangent with x/y values,
    * returns an ImmutableList with a corresponding interpolator for each timing curve, in the same
-   * order as supplied.
+   * order as supplied.  Identical timing curves share one interpolator, see
+   * {@link KFInterpolatorFactory}.
    */
   public static List<Interpolator> buildInterpolatorList(float[][][] timingCurves) {
     if (timingCurves == null) {
@@ -36,7 +39,7 @@ public class KeyFrameAnimationHelper {
     for (int i = 0, len = timingCurves.length; i < len; i++) {
       float[][] influences = timingCurves[i];
       interpolatorList.add(
-          new KFPathInterpolator(
+          KFInterpolatorFactory.getInterpolator(
               influences[0][0],
               influences[0][1],
               influences[1][0],
@@ -45,4 +48,19 @@ public class KeyFrameAnimationHelper {
     return Collections.unmodifiableList(interpolatorList);
   }
 
+  /**
+   * Returns the key frames to post-process for an animation, which is just the first one if the
+   * animation is constant.
+   */
+  public static List<KFAnimationFrame> getKeyFramesToInterpolate(KFAnimation animation) {
+    List<KFAnimationFrame> animationFrames = animation.getAnimationFrames();
+    return animation.isConstant() ? animationFrames.subList(0, 1) : animationFrames;
+  }
+
+  /**
+   * Returns the timing curves to go with {@link #getKeyFramesToInterpolate(KFAnimation)}.
+   */
+  public static float[][][] getTimingCurvesToInterpolate(KFAnimation animation) {
+    return animation.isConstant() ? null : animation.getTimingCurves();
+  }
 }
@@ -23,7 +23,9 @@ import java.util.List;
 public class KeyFramedAnchorPoint extends KeyFramedObject<KFAnimationFrame, Matrix> {
 
   public static KeyFramedAnchorPoint fromAnchorPoint(KFAnimation animation) {
-    return new KeyFramedAnchorPoint(animation.getAnimationFrames(), animation.getTimingCurves());
+    return new KeyFramedAnchorPoint(
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
   }
 
   private KeyFramedAnchorPoint(
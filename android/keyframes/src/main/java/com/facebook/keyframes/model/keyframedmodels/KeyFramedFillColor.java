@@ -9,8 +9,6 @@
 
 package com.facebook.keyframes.model.keyframedmodels;
 
-import android.graphics.Color;
-
 import com.facebook.keyframes.model.KFAnimation;
 import com.facebook.keyframes.model.KFAnimationFrame;
 
@@ -20,8 +18,8 @@ import java.util.List;
 /**
  * This is a special cased KFAnimation, since it is an animation which is not applied
  * via a matrix.  The information for this Modifiable is packed into a single length array.
- * A {@link KeyFramedObject} which houses information about a stroke color animation.  This includes
- * float values for stroke color at any given key frame.  This is a post-process object used for
+ * A {@link KeyFramedObject} which houses information about a fill color animation.  This includes
+ * ARGB values for fill color at any given key frame.  This is a post-process object used for
  * KFAnimation.
  */
 public class KeyFramedFillColor
@@ -31,15 +29,15 @@ public class KeyFramedFillColor
    * A container object so that this class can set values on an object which on a common reference.
    */
   public static class FillColor {
-    private float mFillColor;
+    private int mFillColor;
     private boolean mHasFillColor;
 
-    public float getFillColor() {
+    public int getFillColor() {
       return mFillColor;
     }
 
-    public void setFillColor(float strokeColor) {
-      mFillColor = strokeColor;
+    public void setFillColor(int fillColor) {
+      mFillColor = fillColor;
       mHasFillColor = true;
     }
 
@@ -56,17 +54,27 @@ public class KeyFramedFillColor
       throw new IllegalArgumentException(
           "Cannot create a KeyFramedFillColor object from a non FILL_COLOR animation.");
     }
-    return new KeyFramedFillColor(animation.getAnimationFrames(), animation.getTimingCurves());
+    return new KeyFramedFillColor(
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
   }
 
+  private final ColorSegments mSegments;
+
   public KeyFramedFillColor(
       List<KFAnimationFrame> objects,
       float[][][] timingCurves) {
     super(objects, timingCurves);
+    int[] keyColors = new int[getKeyFrameCount()];
+    for (int i = 0; i < keyColors.length; i++) {
+      keyColors[i] = (int) getKeyFrameObject(i).getData()[0];
+    }
+    mSegments = new ColorSegments(keyColors);
   }
 
   private KeyFramedFillColor() {
     super();
+    mSegments = null;
   }
 
   /**
@@ -82,19 +90,21 @@ public class KeyFramedFillColor
       KFAnimationFrame stateB,
       float interpolationValue,
       FillColor modifiable) {
-    if (stateB == null) {
-      modifiable.setFillColor(stateA.getData()[0]);
+    // Only called for a single key frame, see applySegmentImpl.
+    modifiable.setFillColor((int) stateA.getData()[0]);
+  }
+
+  @Override
+  protected void applySegmentImpl(
+      int index,
+      KFAnimationFrame stateA,
+      KFAnimationFrame stateB,
+      float interpolationValue,
+      FillColor modifiable) {
+    if (interpolationValue == 0) {
+      modifiable.setFillColor((int) stateA.getData()[0]);
       return;
     }
-
-    // Interpolate A, R, G, B values separately
-    int aColor = (int)stateA.getData()[0];
-    int bColor = (int)stateB.getData()[0];
-    float alpha = interpolateValue(Color.alpha(aColor), Color.alpha(bColor), interpolationValue);
-    float red = interpolateValue(Color.red(aColor), Color.red(bColor), interpolationValue);
-    float green = interpolateValue(Color.green(aColor), Color.green(bColor), interpolationValue);
-    float blue = interpolateValue(Color.blue(aColor), Color.blue(bColor), interpolationValue);
-
-    modifiable.setFillColor(Color.argb((int)alpha, (int)red, (int)green, (int)blue));
+    modifiable.setFillColor(mSegments.interpolate(index, interpolationValue));
   }
 }
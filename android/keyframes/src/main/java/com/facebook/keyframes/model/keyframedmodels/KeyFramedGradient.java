@@ -11,10 +11,9 @@ package com.facebook.keyframes.model.keyframedmodels;
 
 import java.util.List;
 
-import android.graphics.Color;
-
 import com.facebook.keyframes.model.KFColorFrame;
 import com.facebook.keyframes.model.KFGradientColor;
+import com.facebook.keyframes.util.KFColorInterpolator;
 
 /**
  * A {@link KeyFramedObject} which houses information for a gradient animation.  This includes just
@@ -74,6 +73,7 @@ public class KeyFramedGradient
   }
 
   private final Position mPosition;
+  private final ColorSegments mSegments;
 
   private KeyFramedGradient(
       List<KFColorFrame> objects,
@@ -81,6 +81,11 @@ public class KeyFramedGradient
       Position position) {
     super(objects, timingCurves);
     mPosition = position;
+    int[] keyColors = new int[getKeyFrameCount()];
+    for (int i = 0; i < keyColors.length; i++) {
+      keyColors[i] = getKeyFrameObject(i).getColor();
+    }
+    mSegments = new ColorSegments(keyColors);
   }
 
   /**
@@ -96,20 +101,29 @@ public class KeyFramedGradient
       KFColorFrame stateB,
       float interpolationValue,
       GradientColorPair modifiable) {
-    if (stateB == null) {
-      if (mPosition == Position.START) {
-        modifiable.setStartColor(stateA.getColor());
-      } else {
-        modifiable.setEndColor(stateA.getColor());
-      }
-      return;
-    }
+    // Only called for a single key frame, see applySegmentImpl.
+    setColor(stateA.getColor(), modifiable);
+  }
+
+  @Override
+  protected void applySegmentImpl(
+      int index,
+      KFColorFrame stateA,
+      KFColorFrame stateB,
+      float interpolationValue,
+      GradientColorPair modifiable) {
+    setColor(
+        interpolationValue == 0
+            ? stateA.getColor()
+            : mSegments.interpolate(index, interpolationValue),
+        modifiable);
+  }
+
+  private void setColor(int color, GradientColorPair modifiable) {
     if (mPosition == Position.START) {
-      modifiable.setStartColor(
-          getTransitionColor(interpolationValue, stateA.getColor(), stateB.getColor()));
+      modifiable.setStartColor(color);
     } else {
-      modifiable.setEndColor(
-          getTransitionColor(interpolationValue, stateA.getColor(), stateB.getColor()));
+      modifiable.setEndColor(color);
     }
   }
 
@@ -123,18 +137,6 @@ public class KeyFramedGradient
    * @return The intermediate color that is {progress} between {colorA} and {colorB}.
    */
   public static int getTransitionColor(float progress, int colorA, int colorB) {
-    int startA = Color.alpha(colorA);
-    int startR = Color.red(colorA);
-    int startG = Color.green(colorA);
-    int startB = Color.blue(colorA);
-
-    int endA = Color.alpha(colorB);
-    int endR = Color.red(colorB);
-    int endG = Color.green(colorB);
-    int endB = Color.blue(colorB);
-    return ((startA + (int) (progress * (endA - startA))) << 24) |
-        ((startR + (int) (progress * (endR - startR))) << 16) |
-        ((startG + (int) (progress * (endG - startG))) << 8) |
-        ((startB + (int) (progress * (endB - startB))));
+    return KFColorInterpolator.interpolate(colorA, colorB, progress);
   }
 }
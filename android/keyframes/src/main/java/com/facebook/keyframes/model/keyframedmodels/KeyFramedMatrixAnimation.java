@@ -31,8 +31,8 @@ public class KeyFramedMatrixAnimation extends KeyFramedObject<KFAnimationFrame,
           "Cannot create a KeyFramedMatrixAnimation from a non matrix based KFAnimation.");
     }
     return new KeyFramedMatrixAnimation(
-        animation.getAnimationFrames(),
-        animation.getTimingCurves(),
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation),
         animation.getPropertyType(),
         animation.getAnchor());
   }
@@ -9,10 +9,10 @@
 
 package com.facebook.keyframes.model.keyframedmodels;
 
-import android.util.SparseArray;
 import android.view.animation.Interpolator;
 import com.facebook.keyframes.model.HasKeyFrame;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -24,31 +24,80 @@ import java.util.List;
  */
 public abstract class KeyFramedObject<T extends HasKeyFrame, M> {
 
-  private final SparseArray<T> mObjects;
-  private final List<Interpolator> mInterpolators;
+  /**
+   * The interpolation value of a state in which only one key frame applies.
+   */
+  private static final float NO_NEXT_KEY_FRAME = Float.NaN;
+
+  /**
+   * The key frames, in ascending order, and the object for each.
+   */
+  private final int[] mKeyFrames;
+  private final T[] mObjects;
+  /**
+   * The interpolator for each segment between consecutive key frames, and 1 / the segment's length
+   * in frames.
+   */
+  private final Interpolator[] mInterpolators;
+  private final float[] mInverseSegmentDurations;
   private final int mFirstDescribedFrame;
   private final int mLastDescribedFrame;
 
+  /**
+   * The segment found by the last call to {@link #getState}, which is checked first since playback
+   * mostly stays within a segment or moves on to the next one.  It is only a hint, so a stale value
+   * read from another thread is harmless.
+   */
+  private int mSegmentCursor;
+
+  @SuppressWarnings("unchecked")
   public KeyFramedObject(List<T> objects, float[][][] timingCurves) {
     int listSize = objects.size();
-    mObjects = new SparseArray<>(listSize);
+    int[] keyFrames = new int[listSize];
+    T[] sortedObjects = (T[]) new HasKeyFrame[listSize];
+    int size = 0;
     T object;
     for (int i = 0; i < listSize; i++) {
       object = objects.get(i);
-      mObjects.put(object.getKeyFrame(), object);
+      int keyFrame = object.getKeyFrame();
+      // Key frames are almost always listed in order, so check for appending before searching.
+      int index = size > 0 && keyFrames[size - 1] < keyFrame
+          ? ~size
+          : Arrays.binarySearch(keyFrames, 0, size, keyFrame);
+      if (index >= 0) {
+        // A later object for the same key frame replaces the earlier one.
+        sortedObjects[index] = object;
+        continue;
+      }
+      index = ~index;
+      System.arraycopy(keyFrames, index, keyFrames, index + 1, size - index);
+      System.arraycopy(sortedObjects, index, sortedObjects, index + 1, size - index);
+      keyFrames[index] = keyFrame;
+      sortedObjects[index] = object;
+      size++;
     }
+    mKeyFrames = size == listSize ? keyFrames : Arrays.copyOf(keyFrames, size);
+    mObjects = size == listSize ? sortedObjects : Arrays.copyOf(sortedObjects, size);
 
-    mFirstDescribedFrame = mObjects.keyAt(0);
-    mLastDescribedFrame = mObjects.keyAt(mObjects.size() - 1);
-    mInterpolators = KeyFrameAnimationHelper.buildInterpolatorList(timingCurves);
+    mFirstDescribedFrame = mKeyFrames[0];
+    mLastDescribedFrame = mKeyFrames[size - 1];
+    List<Interpolator> interpolators = KeyFrameAnimationHelper.buildInterpolatorList(timingCurves);
+    mInterpolators = interpolators.toArray(new Interpolator[interpolators.size()]);
+    int segmentCount = Math.min(mInterpolators.length, size - 1);
+    mInverseSegmentDurations = new float[Math.max(segmentCount, 0)];
+    for (int i = 0; i < segmentCount; i++) {
+      mInverseSegmentDurations[i] = 1f / (mKeyFrames[i + 1] - mKeyFrames[i]);
+    }
   }
 
   /**
    * Constructor for creating empty/invalid KeyFramedObjects.
    */
   protected KeyFramedObject() {
+    mKeyFrames = null;
     mObjects = null;
     mInterpolators = null;
+    mInverseSegmentDurations = null;
     mFirstDescribedFrame = 0;
     mLastDescribedFrame = 0;
   }
@@ -63,35 +112,110 @@ public abstract class KeyFramedObject<T extends HasKeyFrame, M> {
    * @param modifiable The object to insert values into.
    */
   public void apply(float frameProgress, M modifiable) {
-    if (mInterpolators.isEmpty() ||
+    applyState(getState(frameProgress), modifiable);
+  }
+
+  /**
+   * Returns the state of this object at frameProgress: which key frames apply, and the
+   * interpolation value between them.  Frame progresses with equal states apply identical values,
+   * so callers can compare states to skip work when nothing has changed.  States are never
+   * negative.
+   * @param frameProgress The progress, described in frames, of the animation.
+   * @return the state, to pass to {@link #applyState(long, Object)}
+   */
+  public long getState(float frameProgress) {
+    if (mInverseSegmentDurations.length == 0 ||
         frameProgress <= mFirstDescribedFrame) {
-      applyImpl(mObjects.get(mFirstDescribedFrame), null, 0, modifiable);
-      return;
+      return packState(0, NO_NEXT_KEY_FRAME);
     }
     if (frameProgress >= mLastDescribedFrame) {
-      applyImpl(mObjects.get(mLastDescribedFrame), null, 0, modifiable);
+      return packState(mObjects.length - 1, NO_NEXT_KEY_FRAME);
+    }
+    int segment = findSegment(frameProgress);
+    float progress = (frameProgress - mKeyFrames[segment]) * mInverseSegmentDurations[segment];
+    return packState(segment, mInterpolators[segment].getInterpolation(progress));
+  }
+
+  /**
+   * Applies the values for a state returned by {@link #getState(float)} to the modifiable object.
+   */
+  public void applyState(long state, M modifiable) {
+    int index = getStateIndex(state);
+    float interpolationValue = getStateInterpolationValue(state);
+    if (Float.isNaN(interpolationValue)) {
+      applyImpl(mObjects[index], null, 0, modifiable);
       return;
     }
-    T thisFrame = null;
-    T nextFrame = null;
-    int interpolatorIndex;
-    int len = mInterpolators.size();
-    for (interpolatorIndex = 0; interpolatorIndex < len; interpolatorIndex++) {
-      if (mObjects.keyAt(interpolatorIndex) == frameProgress ||
-          (mObjects.keyAt(interpolatorIndex) < frameProgress &&
-              mObjects.keyAt(interpolatorIndex + 1) > frameProgress)) {
-        thisFrame = mObjects.valueAt(interpolatorIndex);
-        nextFrame = mObjects.valueAt(interpolatorIndex + 1);
-        break;
+    applySegmentImpl(index, mObjects[index], mObjects[index + 1], interpolationValue, modifiable);
+  }
+
+  /**
+   * Returns the number of distinct key frames.
+   */
+  protected int getKeyFrameCount() {
+    return mObjects.length;
+  }
+
+  /**
+   * Returns the object of a key frame, with key frames in ascending order.
+   */
+  protected T getKeyFrameObject(int index) {
+    return mObjects[index];
+  }
+
+  /**
+   * Packs the index of the first key frame in the upper half of the state, and the interpolation
+   * value towards the next key frame, or {@link #NO_NEXT_KEY_FRAME}, in the lower half.
+   */
+  private static long packState(int index, float interpolationValue) {
+    return ((long) index << 32) | (Float.floatToIntBits(interpolationValue) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the index of the first key frame of a state, see {@link #packState(int, float)}.
+   */
+  protected static int getStateIndex(long state) {
+    return (int) (state >>> 32);
+  }
+
+  /**
+   * Returns the interpolation value of a state, which is NaN if only one key frame applies.
+   */
+  protected static float getStateInterpolationValue(long state) {
+    return Float.intBitsToFloat((int) state);
+  }
+
+  /**
+   * Returns the index of the segment containing frameProgress, which must be within the described
+   * frames.  The segment of the last call, and the one after it, are tried before a binary search.
+   */
+  private int findSegment(float frameProgress) {
+    int[] keyFrames = mKeyFrames;
+    int lastSegment = mInverseSegmentDurations.length - 1;
+    int cursor = mSegmentCursor;
+    if (cursor <= lastSegment && keyFrames[cursor] <= frameProgress) {
+      if (frameProgress < keyFrames[cursor + 1]) {
+        return cursor;
+      }
+      if (cursor < lastSegment && frameProgress < keyFrames[cursor + 2]) {
+        mSegmentCursor = cursor + 1;
+        return cursor + 1;
+      }
+    }
+
+    // Find the last key frame at or before frameProgress.
+    int low = 0;
+    int high = lastSegment;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (keyFrames[mid] <= frameProgress) {
+        low = mid;
+      } else {
+        high = mid - 1;
       }
     }
-    float progress = (frameProgress - thisFrame.getKeyFrame()) /
-        (nextFrame.getKeyFrame() - thisFrame.getKeyFrame());
-    applyImpl(
-        thisFrame,
-        nextFrame,
-        mInterpolators.get(interpolatorIndex).getInterpolation(progress),
-        modifiable);
+    mSegmentCursor = low;
+    return low;
   }
 
   /**
@@ -107,6 +231,21 @@ public abstract class KeyFramedObject<T extends HasKeyFrame, M> {
       float interpolationValue,
       M modifiable);
 
+  /**
+   * Applies a state between two consecutive key frames to a modifiable, for subclasses which
+   * prepare data for each segment between key frames.  By default, this calls
+   * {@link #applyImpl(HasKeyFrame, HasKeyFrame, float, Object)}.
+   * @param index The index of stateA, see {@link #getKeyFrameObject(int)}
+   */
+  protected void applySegmentImpl(
+      int index,
+      T stateA,
+      T stateB,
+      float interpolationValue,
+      M modifiable) {
+    applyImpl(stateA, stateB, interpolationValue, modifiable);
+  }
+
   /**
    * Given two values and the progress from valueA to valueB, returns the transitional value in
    * between.
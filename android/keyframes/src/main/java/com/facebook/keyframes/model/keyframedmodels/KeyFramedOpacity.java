@@ -49,7 +49,9 @@ public class KeyFramedOpacity
       throw new IllegalArgumentException(
           "Cannot create a KeyFramedOpacity object from a non OPACITY animation.");
     }
-    return new KeyFramedOpacity(animation.getAnimationFrames(), animation.getTimingCurves());
+    return new KeyFramedOpacity(
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
   }
 
   public KeyFramedOpacity(
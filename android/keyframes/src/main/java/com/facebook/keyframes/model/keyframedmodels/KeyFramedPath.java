@@ -14,6 +14,7 @@ import java.util.List;
 import com.facebook.keyframes.KFPath;
 import com.facebook.keyframes.model.KFFeature;
 import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.util.VectorCommandMorph;
 
 /**
  * A {@link KeyFramedObject} which houses information for a key framed feature object.  This
@@ -29,8 +30,47 @@ public class KeyFramedPath extends KeyFramedObject<KFFeatureFrame, KFPath> {
     return new KeyFramedPath(feature.getKeyFrames(), feature.getTimingCurves());
   }
 
+  /**
+   * The morph between each pair of consecutive key frames, and the largest scratch array any of
+   * them needs.
+   */
+  private final VectorCommandMorph[] mMorphs;
+  private final int mMaxArgCount;
+
   private KeyFramedPath(List<KFFeatureFrame> featureFrames, float[][][] timingCurves) {
     super(featureFrames, timingCurves);
+    mMorphs = new VectorCommandMorph[Math.max(getKeyFrameCount() - 1, 0)];
+    int maxArgCount = 0;
+    for (int i = 0; i < mMorphs.length; i++) {
+      mMorphs[i] = new VectorCommandMorph(
+          getKeyFrameObject(i).getShapeData().getVectorCommands(),
+          getKeyFrameObject(i + 1).getShapeData().getVectorCommands());
+      maxArgCount = Math.max(maxArgCount, mMorphs[i].getMaxArgCount());
+    }
+    mMaxArgCount = maxArgCount;
+  }
+
+  /**
+   * Returns the size of the scratch array {@link #applyState(long, KFPath, float[])} needs.
+   */
+  public int getMaxArgCount() {
+    return mMaxArgCount;
+  }
+
+  /**
+   * Like {@link #applyState(long, Object)}, interpolating into a scratch array owned by the caller
+   * rather than allocating one.
+   * @param scratch An array of at least {@link #getMaxArgCount()}, which mustn't be used by another
+   * thread at the same time
+   */
+  public void applyState(long state, KFPath modifiable, float[] scratch) {
+    int index = getStateIndex(state);
+    float interpolationValue = getStateInterpolationValue(state);
+    if (Float.isNaN(interpolationValue) || interpolationValue == 0) {
+      getKeyFrameObject(index).getShapeData().applyFeature(modifiable);
+      return;
+    }
+    mMorphs[index].apply(interpolationValue, modifiable, scratch);
   }
 
   /**
@@ -46,17 +86,26 @@ public class KeyFramedPath extends KeyFramedObject<KFFeatureFrame, KFPath> {
       KFFeatureFrame stateB,
       float interpolationValue,
       KFPath modifiable) {
-    if (stateB == null || interpolationValue == 0) {
+    // Only called for a single key frame, see applySegmentImpl.
+    stateA.getShapeData().applyFeature(modifiable);
+  }
+
+  /**
+   * Applies the morph between stateA and stateB, which was prepared when this was constructed.
+   * As the morphs are shared, this allocates a scratch array for each call, which
+   * {@link #applyState(long, KFPath, float[])} avoids.
+   */
+  @Override
+  protected void applySegmentImpl(
+      int index,
+      KFFeatureFrame stateA,
+      KFFeatureFrame stateB,
+      float interpolationValue,
+      KFPath modifiable) {
+    if (interpolationValue == 0) {
       stateA.getShapeData().applyFeature(modifiable);
       return;
     }
-    KFFeatureFrame.ShapeMoveListData thisMoveList = stateA.getShapeData();
-    KFFeatureFrame.ShapeMoveListData nextMoveList = stateB.getShapeData();
-    for (int i = 0, len = thisMoveList.getVectorCommands().size(); i < len; i++) {
-      thisMoveList.getVectorCommands().get(i).interpolate(
-          nextMoveList.getVectorCommands().get(i),
-          interpolationValue,
-          modifiable);
-    }
+    mMorphs[index].apply(interpolationValue, modifiable, new float[mMaxArgCount]);
   }
 }
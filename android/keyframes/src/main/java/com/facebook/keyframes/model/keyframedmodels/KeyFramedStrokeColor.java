@@ -9,8 +9,6 @@
 
 package com.facebook.keyframes.model.keyframedmodels;
 
-import android.graphics.Color;
-
 import com.facebook.keyframes.model.KFAnimation;
 import com.facebook.keyframes.model.KFAnimationFrame;
 
@@ -21,7 +19,7 @@ import java.util.List;
  * This is a special cased KFAnimation, since it is an animation which is not applied
  * via a matrix.  The information for this Modifiable is packed into a single length array.
  * A {@link KeyFramedObject} which houses information about a stroke color animation.  This includes
- * float values for stroke color at any given key frame.  This is a post-process object used for
+ * ARGB values for stroke color at any given key frame.  This is a post-process object used for
  * KFAnimation.
  */
 public class KeyFramedStrokeColor
@@ -31,14 +29,14 @@ public class KeyFramedStrokeColor
    * A container object so that this class can set values on an object which on a common reference.
    */
   public static class StrokeColor {
-    private float mStrokeColor;
+    private int mStrokeColor;
     private boolean mHasStrokeColor;
 
-    public float getStrokeColor() {
+    public int getStrokeColor() {
       return mStrokeColor;
     }
 
-    public void setStrokeColor(float strokeColor) {
+    public void setStrokeColor(int strokeColor) {
       mStrokeColor = strokeColor;
       mHasStrokeColor = true;
     }
@@ -56,17 +54,27 @@ public class KeyFramedStrokeColor
       throw new IllegalArgumentException(
           "Cannot create a KeyFramedStrokeColor object from a non STROKE_COLOR animation.");
     }
-    return new KeyFramedStrokeColor(animation.getAnimationFrames(), animation.getTimingCurves());
+    return new KeyFramedStrokeColor(
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
   }
 
+  private final ColorSegments mSegments;
+
   public KeyFramedStrokeColor(
       List<KFAnimationFrame> objects,
       float[][][] timingCurves) {
     super(objects, timingCurves);
+    int[] keyColors = new int[getKeyFrameCount()];
+    for (int i = 0; i < keyColors.length; i++) {
+      keyColors[i] = (int) getKeyFrameObject(i).getData()[0];
+    }
+    mSegments = new ColorSegments(keyColors);
   }
 
   private KeyFramedStrokeColor() {
     super();
+    mSegments = null;
   }
 
   /**
@@ -82,19 +90,21 @@ public class KeyFramedStrokeColor
       KFAnimationFrame stateB,
       float interpolationValue,
       StrokeColor modifiable) {
-    if (stateB == null) {
-      modifiable.setStrokeColor(stateA.getData()[0]);
+    // Only called for a single key frame, see applySegmentImpl.
+    modifiable.setStrokeColor((int) stateA.getData()[0]);
+  }
+
+  @Override
+  protected void applySegmentImpl(
+      int index,
+      KFAnimationFrame stateA,
+      KFAnimationFrame stateB,
+      float interpolationValue,
+      StrokeColor modifiable) {
+    if (interpolationValue == 0) {
+      modifiable.setStrokeColor((int) stateA.getData()[0]);
       return;
     }
-
-    // Interpolate A, R, G, B values separately
-    int aColor = (int)stateA.getData()[0];
-    int bColor = (int)stateB.getData()[0];
-    float alpha = interpolateValue(Color.alpha(aColor), Color.alpha(bColor), interpolationValue);
-    float red = interpolateValue(Color.red(aColor), Color.red(bColor), interpolationValue);
-    float green = interpolateValue(Color.green(aColor), Color.green(bColor), interpolationValue);
-    float blue = interpolateValue(Color.blue(aColor), Color.blue(bColor), interpolationValue);
-
-    modifiable.setStrokeColor(Color.argb((int)alpha, (int)red, (int)green, (int)blue));
+    modifiable.setStrokeColor(mSegments.interpolate(index, interpolationValue));
   }
 }
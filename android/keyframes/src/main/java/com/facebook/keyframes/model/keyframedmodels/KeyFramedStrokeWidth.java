@@ -52,7 +52,9 @@ public class KeyFramedStrokeWidth
       throw new IllegalArgumentException(
           "Cannot create a KeyFramedStrokeWidth object from a non STROKE_WIDTH animation.");
     }
-    return new KeyFramedStrokeWidth(animation.getAnimationFrames(), animation.getTimingCurves());
+    return new KeyFramedStrokeWidth(
+        KeyFrameAnimationHelper.getKeyFramesToInterpolate(animation),
+        KeyFrameAnimationHelper.getTimingCurvesToInterpolate(animation));
   }
 
   public KeyFramedStrokeWidth(
@@ -12,45 +12,69 @@ package com.facebook.keyframes.util;
 import com.facebook.keyframes.model.KFAnimationGroup;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 
 public class AnimationGroupSort {
 
   /**
-   * Sorts a list of {@link KFAnimationGroup} in topological order.  The list passed in should be
-   * mutable, and will be destroyed in the process.
+   * Sorts a list of {@link KFAnimationGroup} in topological order, so that every group comes after
+   * its parent, in time linear in the number of groups.  Group IDs must be unique.  The list passed
+   * in is not modified.
+   * @throws IllegalArgumentException if a group's parent doesn't exist, or parents form a cycle
    */
   public static List<KFAnimationGroup> sort(List<KFAnimationGroup> animationGroupList) {
     if (animationGroupList == null || animationGroupList.isEmpty()) {
-      return Collections.EMPTY_LIST;
+      return Collections.emptyList();
+    }
+    int count = animationGroupList.size();
+    Map<Integer, Integer> indicesById = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      indicesById.put(animationGroupList.get(i).getGroupId(), i);
     }
-    List<KFAnimationGroup> result = new ArrayList<>();
-    Stack<KFAnimationGroup> rootNodes = new Stack<>();
 
-    KFAnimationGroup currGroup;
-    for (Iterator<KFAnimationGroup> iterator = animationGroupList.iterator();
-         iterator.hasNext();) {
-      currGroup = iterator.next();
-      if (currGroup.getParentGroup() == 0) {
-        rootNodes.push(currGroup);
-        iterator.remove();
+    // Link each group into its parent's list of children, leaving roots to start the sort with.
+    int[] firstChildren = new int[count];
+    int[] nextSiblings = new int[count];
+    int[] queue = new int[count];
+    Arrays.fill(firstChildren, -1);
+    int tail = 0;
+    for (int i = count - 1; i >= 0; i--) {
+      KFAnimationGroup group = animationGroupList.get(i);
+      if (group.getParentGroup() == 0) {
+        continue;
+      }
+      Integer parentIndex = indicesById.get(group.getParentGroup());
+      if (parentIndex == null) {
+        throw new IllegalArgumentException(
+            "Animation group " + group.getGroupId() + " has a missing parent " +
+                group.getParentGroup());
+      }
+      nextSiblings[i] = firstChildren[parentIndex];
+      firstChildren[parentIndex] = i;
+    }
+    for (int i = 0; i < count; i++) {
+      if (animationGroupList.get(i).getParentGroup() == 0) {
+        queue[tail++] = i;
       }
     }
 
-    while (!rootNodes.isEmpty()) {
-      currGroup = rootNodes.pop();
-      result.add(currGroup);
-      for (Iterator<KFAnimationGroup> iterator = animationGroupList.iterator();
-           iterator.hasNext();) {
-        KFAnimationGroup childGroup = iterator.next();
-        if (childGroup.getParentGroup() == currGroup.getGroupId()) {
-          rootNodes.push(childGroup);
-        }
+    // Each group has at most one parent, so a group is ready as soon as its parent is sorted.
+    List<KFAnimationGroup> result = new ArrayList<>(count);
+    for (int head = 0; head < tail; head++) {
+      int index = queue[head];
+      result.add(animationGroupList.get(index));
+      for (int child = firstChildren[index]; child >= 0; child = nextSiblings[child]) {
+        queue[tail++] = child;
       }
     }
+    if (result.size() != count) {
+      throw new IllegalArgumentException(
+          (count - result.size()) + " animation groups have parents which form a cycle");
+    }
     return result;
   }
 }
@@ -9,8 +9,12 @@
 
 package com.facebook.keyframes.util;
 
+import android.graphics.Matrix;
+
 import com.facebook.keyframes.model.KFAnimation;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,4 +48,50 @@ public class AnimationHelper {
     }
     return animations.remove(specialAnimationIndex);
   }
+
+  /**
+   * Returns the matrix based animations which need applying for a group or feature, in order: the
+   * anchor point first, if any, then the others.  Animations which leave the matrix unchanged are
+   * left out, see {@link KFAnimation#isIdentity()}.
+   */
+  public static List<KFAnimation> getMatrixAnimationsToApply(
+      KFAnimation anchorPoint,
+      List<KFAnimation> animations) {
+    List<KFAnimation> animationsToApply = new ArrayList<>(animations.size() + 1);
+    if (anchorPoint != null && !anchorPoint.isIdentity()) {
+      animationsToApply.add(anchorPoint);
+    }
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      KFAnimation animation = animations.get(i);
+      if (!animation.isIdentity()) {
+        animationsToApply.add(animation);
+      }
+    }
+    return Collections.unmodifiableList(animationsToApply);
+  }
+
+  /**
+   * Returns whether all of the given animations are constant, see {@link KFAnimation#isConstant()}.
+   */
+  public static boolean areConstant(List<KFAnimation> animations) {
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      if (!animations.get(i).isConstant()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the given matrix based animations, in order, to the matrix.
+   */
+  @SuppressWarnings("unchecked")
+  public static void applyMatrixAnimations(
+      List<KFAnimation> animations,
+      float frameProgress,
+      Matrix matrix) {
+    for (int i = 0, len = animations.size(); i < len; i++) {
+      animations.get(i).getAnimation().apply(frameProgress, matrix);
+    }
+  }
 }
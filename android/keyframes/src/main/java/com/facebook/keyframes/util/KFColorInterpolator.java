@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+/**
+ * Interpolates ARGB colors per component in 16.16 fixed point, shared by all of the color
+ * animations.  For a segment between two key frame colors, the color to start from and the
+ * difference of each component are computed once, see {@link #getSegmentStart(int, boolean)} and
+ * {@link #getSegmentDeltas(int, int, boolean)}, so that each frame is a handful of integer
+ * multiplies and shifts.  Components are rounded to the nearest value, and both ends of a segment
+ * are exact.
+ *
+ * Colors are interpolated either as they are, or, in premultiplied mode, with each color component
+ * multiplied by alpha first, so that fading from a transparent color doesn't pass through that
+ * color's hue.  The mode is read when color animations are created, so it should be set before
+ * images are loaded.
+ */
+public class KFColorInterpolator {
+
+  private static final int FRACTION_BITS = 16;
+  private static final float ONE = 1 << FRACTION_BITS;
+  private static final int HALF = 1 << (FRACTION_BITS - 1);
+
+  private static boolean sPremultiplied;
+
+  /**
+   * Sets whether color animations created from now on interpolate premultiplied colors.
+   */
+  public static synchronized void setPremultiplied(boolean premultiplied) {
+    sPremultiplied = premultiplied;
+  }
+
+  public static synchronized boolean isPremultiplied() {
+    return sPremultiplied;
+  }
+
+  /**
+   * Interpolates between two colors without premultiplying them.
+   * @param colorA The color at progress 0
+   * @param colorB The color at progress 1
+   * @param progress Progress between colorA and colorB
+   */
+  public static int interpolate(int colorA, int colorB, float progress) {
+    return interpolate(
+        getSegmentStart(colorA, false),
+        getSegmentDeltas(colorA, colorB, false),
+        progress,
+        false);
+  }
+
+  /**
+   * Returns the color a segment starting at colorA interpolates from, which is colorA,
+   * premultiplied if requested.
+   */
+  public static int getSegmentStart(int colorA, boolean premultiplied) {
+    return premultiplied ? premultiply(colorA) : colorA;
+  }
+
+  /**
+   * Returns the difference of each component between colorB and colorA, premultiplied if
+   * requested, packed as four 16 bit signed values in ARGB order.
+   */
+  public static long getSegmentDeltas(int colorA, int colorB, boolean premultiplied) {
+    if (premultiplied) {
+      colorA = premultiply(colorA);
+      colorB = premultiply(colorB);
+    }
+    return packDelta(colorA >>> 24, colorB >>> 24, 48) |
+        packDelta((colorA >> 16) & 0xFF, (colorB >> 16) & 0xFF, 32) |
+        packDelta((colorA >> 8) & 0xFF, (colorB >> 8) & 0xFF, 16) |
+        packDelta(colorA & 0xFF, colorB & 0xFF, 0);
+  }
+
+  private static long packDelta(int componentA, int componentB, int shift) {
+    return ((long) ((componentB - componentA) & 0xFFFF)) << shift;
+  }
+
+  /**
+   * Interpolates along a segment.  Progress outside of [0..1], from overshooting timing curves,
+   * is clamped to valid components.
+   * @param segmentStart See {@link #getSegmentStart(int, boolean)}
+   * @param segmentDeltas See {@link #getSegmentDeltas(int, int, boolean)}
+   * @param progress Progress along the segment
+   * @param premultiplied Whether the segment was premultiplied, in which case the result is not
+   * @return the color, not premultiplied
+   */
+  public static int interpolate(
+      int segmentStart,
+      long segmentDeltas,
+      float progress,
+      boolean premultiplied) {
+    int fraction = (int) (progress * ONE);
+    int alpha = interpolateComponent(segmentStart >>> 24, (short) (segmentDeltas >> 48), fraction);
+    int red = interpolateComponent(
+        (segmentStart >> 16) & 0xFF,
+        (short) (segmentDeltas >> 32),
+        fraction);
+    int green = interpolateComponent(
+        (segmentStart >> 8) & 0xFF,
+        (short) (segmentDeltas >> 16),
+        fraction);
+    int blue = interpolateComponent(segmentStart & 0xFF, (short) segmentDeltas, fraction);
+    if (premultiplied) {
+      red = unpremultiply(red, alpha);
+      green = unpremultiply(green, alpha);
+      blue = unpremultiply(blue, alpha);
+    }
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
+
+  private static int interpolateComponent(int start, int delta, int fraction) {
+    int component = start + ((delta * fraction + HALF) >> FRACTION_BITS);
+    return component < 0 ? 0 : (component > 0xFF ? 0xFF : component);
+  }
+
+  static int premultiply(int color) {
+    int alpha = color >>> 24;
+    if (alpha == 0xFF) {
+      return color;
+    }
+    return (alpha << 24) |
+        (premultiplyComponent((color >> 16) & 0xFF, alpha) << 16) |
+        (premultiplyComponent((color >> 8) & 0xFF, alpha) << 8) |
+        premultiplyComponent(color & 0xFF, alpha);
+  }
+
+  private static int premultiplyComponent(int component, int alpha) {
+    return (component * alpha + 127) / 255;
+  }
+
+  private static int unpremultiply(int component, int alpha) {
+    if (alpha == 0xFF) {
+      return component;
+    }
+    if (alpha == 0) {
+      return 0;
+    }
+    return Math.min((component * 255 + alpha / 2) / alpha, 0xFF);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.view.animation.Interpolator;
+
+/**
+ * An interpolator for the cubic bezier timing curve from (0, 0) to (1, 1), which solves the curve
+ * analytically rather than sampling it like {@link KFPathInterpolator}.  For an input x, the curve
+ * parameter t with x(t) = x is found with a few Newton-Raphson iterations, falling back to
+ * bisection where the slope is too flat for Newton-Raphson to converge, as browsers do for CSS
+ * easing functions.  The output is then y(t).
+ *
+ * Construction is cheap and needs no android {@link android.graphics.Path}, and the only state
+ * kept is the polynomial coefficients of the curve.
+ */
+public class KFCubicBezierInterpolator implements Interpolator {
+
+  /**
+   * The maximum error in x of the solved curve parameter, far below what is visible in an easing.
+   */
+  private static final float EPSILON = 1e-6f;
+  private static final int MAX_NEWTON_ITERATIONS = 8;
+  private static final float MIN_SLOPE = 1e-6f;
+  private static final int MAX_BISECTION_ITERATIONS = 32;
+
+  /**
+   * Coefficients of x(t) = ((ax * t + bx) * t + cx) * t, and the same for y(t).
+   */
+  private final float mAx;
+  private final float mBx;
+  private final float mCx;
+  private final float mAy;
+  private final float mBy;
+  private final float mCy;
+
+  public KFCubicBezierInterpolator(
+      float controlX1,
+      float controlY1,
+      float controlX2,
+      float controlY2) {
+    mCx = 3 * controlX1;
+    mBx = 3 * (controlX2 - controlX1) - mCx;
+    mAx = 1 - mCx - mBx;
+    mCy = 3 * controlY1;
+    mBy = 3 * (controlY2 - controlY1) - mCy;
+    mAy = 1 - mCy - mBy;
+  }
+
+  @Override
+  public float getInterpolation(float x) {
+    if (x <= 0.0f) {
+      return 0.0f;
+    } else if (x >= 1.0f) {
+      return 1.0f;
+    }
+    return sampleY(solveForT(x));
+  }
+
+  private float solveForT(float x) {
+    // Newton-Raphson, starting from the parameter for a linear curve.
+    float t = x;
+    for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+      float error = sampleX(t) - x;
+      if (Math.abs(error) < EPSILON) {
+        return t;
+      }
+      float slope = sampleSlopeX(t);
+      if (Math.abs(slope) < MIN_SLOPE) {
+        break;
+      }
+      t -= error / slope;
+    }
+
+    // Bisection, which always converges since x(t) is monotonic for control points in [0, 1].
+    float low = 0f;
+    float high = 1f;
+    t = x;
+    for (int i = 0; i < MAX_BISECTION_ITERATIONS; i++) {
+      float sample = sampleX(t);
+      if (Math.abs(sample - x) < EPSILON) {
+        return t;
+      }
+      if (x > sample) {
+        low = t;
+      } else {
+        high = t;
+      }
+      t = (low + high) / 2;
+    }
+    return t;
+  }
+
+  private float sampleX(float t) {
+    return ((mAx * t + mBx) * t + mCx) * t;
+  }
+
+  private float sampleY(float t) {
+    return ((mAy * t + mBy) * t + mCy) * t;
+  }
+
+  private float sampleSlopeX(float t) {
+    return (3 * mAx * t + 2 * mBx) * t + mCx;
+  }
+}
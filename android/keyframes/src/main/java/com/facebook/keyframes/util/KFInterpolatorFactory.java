@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Creates the interpolators for timing curves.  Exported animations reuse a handful of easing
+ * curves many times over, and interpolators are stateless, so each distinct curve gets a single
+ * shared instance which is interned in a global table keyed by its four control points.
+ *
+ * The kind of interpolator created can be chosen with {@link #setInterpolatorType}.  Timing curves
+ * are turned into interpolators while an image is deserialized, so this must be set before images
+ * are loaded.
+ *
+ * The table is bounded: once it holds {@link #MAX_INTERNED_INTERPOLATORS} curves, the least
+ * recently requested is dropped from it (instances already handed out are unaffected).  All
+ * methods are thread safe.
+ */
+public class KFInterpolatorFactory {
+
+  public static final int MAX_INTERNED_INTERPOLATORS = 256;
+
+  public enum InterpolatorType {
+    /**
+     * {@link KFPathInterpolator}, which samples the curve with a {@link android.graphics.Path}.
+     */
+    PATH_SAMPLED,
+    /**
+     * {@link KFCubicBezierInterpolator}, which solves the curve for each input.
+     */
+    CUBIC_BEZIER,
+    /**
+     * {@link KFLookupTableInterpolator}, which precomputes the curve at evenly spaced inputs, to
+     * within the error bound set with {@link #setLookupTableErrorBound}.
+     */
+    LOOKUP_TABLE
+  }
+
+  private static final Map<CurveKey, Interpolator> sInterned =
+      new LinkedHashMap<CurveKey, Interpolator>(16, 0.75f, true /* accessOrder */) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CurveKey, Interpolator> eldest) {
+          return size() > MAX_INTERNED_INTERPOLATORS;
+        }
+      };
+
+  /**
+   * Reused for lookups, guarded by the class lock, so that only new curves allocate a key.
+   */
+  private static final CurveKey sLookupKey = new CurveKey();
+
+  private static int sDeduplicatedCount;
+  private static InterpolatorType sInterpolatorType = InterpolatorType.PATH_SAMPLED;
+  private static float sLookupTableErrorBound = KFLookupTableInterpolator.DEFAULT_ERROR_BOUND;
+
+  /**
+   * Sets the kind of interpolator created for timing curves of images loaded from now on.
+   */
+  public static synchronized void setInterpolatorType(InterpolatorType interpolatorType) {
+    if (interpolatorType == null) {
+      throw new IllegalArgumentException("interpolatorType == null");
+    }
+    sInterpolatorType = interpolatorType;
+  }
+
+  public static synchronized InterpolatorType getInterpolatorType() {
+    return sInterpolatorType;
+  }
+
+  /**
+   * Sets the maximum error of {@link InterpolatorType#LOOKUP_TABLE} interpolators created from now
+   * on.  Smaller bounds need larger tables.
+   */
+  public static synchronized void setLookupTableErrorBound(float errorBound) {
+    if (!(errorBound > 0)) {
+      throw new IllegalArgumentException("errorBound must be positive: " + errorBound);
+    }
+    sLookupTableErrorBound = errorBound;
+  }
+
+  public static synchronized float getLookupTableErrorBound() {
+    return sLookupTableErrorBound;
+  }
+
+  /**
+   * Returns the interpolator for the cubic bezier timing curve from (0, 0) to (1, 1) with the given
+   * control points, shared with every other request for the same curve.
+   */
+  public static synchronized Interpolator getInterpolator(
+      float controlX1,
+      float controlY1,
+      float controlX2,
+      float controlY2) {
+    sLookupKey.set(sInterpolatorType, getErrorBound(), controlX1, controlY1, controlX2, controlY2);
+    Interpolator interpolator = sInterned.get(sLookupKey);
+    if (interpolator != null) {
+      sDeduplicatedCount++;
+      return interpolator;
+    }
+    interpolator = createInterpolator(controlX1, controlY1, controlX2, controlY2);
+    CurveKey key = new CurveKey();
+    key.set(sInterpolatorType, getErrorBound(), controlX1, controlY1, controlX2, controlY2);
+    sInterned.put(key, interpolator);
+    return interpolator;
+  }
+
+  private static Interpolator createInterpolator(
+      float controlX1,
+      float controlY1,
+      float controlX2,
+      float controlY2) {
+    switch (sInterpolatorType) {
+      case LOOKUP_TABLE:
+        return new KFLookupTableInterpolator(
+            controlX1,
+            controlY1,
+            controlX2,
+            controlY2,
+            sLookupTableErrorBound);
+      case CUBIC_BEZIER:
+        return new KFCubicBezierInterpolator(controlX1, controlY1, controlX2, controlY2);
+      case PATH_SAMPLED:
+      default:
+        return new KFPathInterpolator(controlX1, controlY1, controlX2, controlY2);
+    }
+  }
+
+  /**
+   * The error bound distinguishing interned interpolators of the current type, which is only
+   * meaningful for lookup tables.
+   */
+  private static float getErrorBound() {
+    return sInterpolatorType == InterpolatorType.LOOKUP_TABLE ? sLookupTableErrorBound : 0;
+  }
+
+  /**
+   * Returns how many requested curves were served by an already interned interpolator, rather
+   * than a new one.
+   */
+  public static synchronized int getDeduplicatedCount() {
+    return sDeduplicatedCount;
+  }
+
+  /**
+   * Returns how many distinct curves are currently interned.
+   */
+  public static synchronized int getInternedCount() {
+    return sInterned.size();
+  }
+
+  /**
+   * Empties the table and resets {@link #getDeduplicatedCount()}.
+   */
+  public static synchronized void clear() {
+    sInterned.clear();
+    sDeduplicatedCount = 0;
+  }
+
+  /**
+   * The interpolator type, error bound and control points of a curve, compared by their exact bit
+   * patterns.
+   */
+  private static class CurveKey {
+
+    private InterpolatorType mType;
+    private int mErrorBound;
+    private int mX1;
+    private int mY1;
+    private int mX2;
+    private int mY2;
+
+    private void set(
+        InterpolatorType type,
+        float errorBound,
+        float controlX1,
+        float controlY1,
+        float controlX2,
+        float controlY2) {
+      mType = type;
+      mErrorBound = Float.floatToIntBits(errorBound);
+      mX1 = Float.floatToIntBits(controlX1);
+      mY1 = Float.floatToIntBits(controlY1);
+      mX2 = Float.floatToIntBits(controlX2);
+      mY2 = Float.floatToIntBits(controlY2);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CurveKey)) {
+        return false;
+      }
+      CurveKey other = (CurveKey) o;
+      return mType == other.mType && mErrorBound == other.mErrorBound &&
+          mX1 == other.mX1 && mY1 == other.mY1 && mX2 == other.mX2 && mY2 == other.mY2;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = mType.ordinal();
+      result = 31 * result + mErrorBound;
+      result = 31 * result + mX1;
+      result = 31 * result + mY1;
+      result = 31 * result + mX2;
+      result = 31 * result + mY2;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.view.animation.Interpolator;
+
+/**
+ * An interpolator which samples another interpolator at evenly spaced inputs into a table, so that
+ * evaluating it is just an index computation and a linear interpolation between two entries,
+ * rather than the binary search of {@link KFPathInterpolator}, whose samples are evenly spaced
+ * along the curve instead.
+ *
+ * The table is sized to keep the error, compared to the source interpolator, within a given bound.
+ * It is doubled in size until the bound holds, up to {@link #MAX_TABLE_SIZE} entries.  Curves with
+ * near vertical sections may still exceed the bound at that size.
+ */
+public class KFLookupTableInterpolator implements Interpolator {
+
+  public static final float DEFAULT_ERROR_BOUND = 0.001f;
+
+  private static final int MIN_TABLE_SIZE = 16;
+  static final int MAX_TABLE_SIZE = 4096;
+
+  /**
+   * Outputs for inputs 0, 1 / n, 2 / n ... 1, where n is {@link #mIntervals}.
+   */
+  private final float[] mValues;
+  private final int mIntervals;
+
+  /**
+   * Creates a table for the cubic bezier timing curve with the given control points.
+   */
+  public KFLookupTableInterpolator(
+      float controlX1,
+      float controlY1,
+      float controlX2,
+      float controlY2,
+      float errorBound) {
+    this(new KFCubicBezierInterpolator(controlX1, controlY1, controlX2, controlY2), errorBound);
+  }
+
+  /**
+   * Creates a table from any source interpolator.
+   * @param source The interpolator to sample
+   * @param errorBound The maximum difference in output from the source interpolator
+   */
+  public KFLookupTableInterpolator(Interpolator source, float errorBound) {
+    if (!(errorBound > 0)) {
+      throw new IllegalArgumentException("errorBound must be positive: " + errorBound);
+    }
+    int intervals = MIN_TABLE_SIZE;
+    float[] values = sample(source, intervals);
+    while (intervals < MAX_TABLE_SIZE && maxError(source, values, intervals) > errorBound) {
+      intervals *= 2;
+      values = sample(source, intervals);
+    }
+    mValues = values;
+    mIntervals = intervals;
+  }
+
+  @Override
+  public float getInterpolation(float t) {
+    if (t <= 0.0f) {
+      return 0.0f;
+    } else if (t >= 1.0f) {
+      return 1.0f;
+    }
+    float position = t * mIntervals;
+    int index = (int) position;
+    float fraction = position - index;
+    float start = mValues[index];
+    return start + fraction * (mValues[index + 1] - start);
+  }
+
+  /**
+   * Returns the number of entries in the table.
+   */
+  public int getTableSize() {
+    return mValues.length;
+  }
+
+  private static float[] sample(Interpolator source, int intervals) {
+    float[] values = new float[intervals + 1];
+    for (int i = 0; i <= intervals; i++) {
+      values[i] = source.getInterpolation((float) i / intervals);
+    }
+    return values;
+  }
+
+  /**
+   * Measures the error at several points within each interval, where linear interpolation is
+   * furthest from the curve.
+   */
+  private static float maxError(Interpolator source, float[] values, int intervals) {
+    float maxError = 0;
+    for (int i = 0; i < intervals; i++) {
+      for (int j = 1; j < 4; j++) {
+        float fraction = j / 4f;
+        float expected = source.getInterpolation((i + fraction) / intervals);
+        float actual = values[i] + fraction * (values[i + 1] - values[i]);
+        maxError = Math.max(maxError, Math.abs(expected - actual));
+      }
+    }
+    return maxError;
+  }
+}
@@ -10,6 +10,7 @@
 package com.facebook.keyframes.util;
 
 
+import java.util.Arrays;
 import java.util.Locale;
 
 import com.facebook.keyframes.KFPath;
@@ -40,16 +41,51 @@ public abstract class VectorCommand {
     ABSOLUTE
   }
 
-  private static final String SVG_ARG_DELIMITER = ",";
-
+  /**
+   * Parses a single SVG command string, e.g. "M10,20".  When parsing many commands, prefer reusing
+   * one {@link VectorCommandParser} for all of them.
+   */
   public static VectorCommand createVectorCommand(String svgCommandString) {
-    SVGCommand cmd = SVGCommand.valueOf(svgCommandString.substring(0, 1));
-    String[] argsAsString = svgCommandString.substring(1).split(SVG_ARG_DELIMITER);
-    float[] args = new float[argsAsString.length];
-    int i = 0;
-    for (String arg : argsAsString) {
-      args[i++] = Float.parseFloat(arg);
+    return new VectorCommandParser().parseCommand(svgCommandString);
+  }
+
+  /**
+   * Creates a VectorCommand directly from an SVG command character and its already parsed
+   * arguments, without going through an intermediate string.
+   * @param command The SVG command character, e.g. 'M' or 'c'
+   * @param args The arguments for the command.  The array is held by the command, not copied.
+   */
+  public static VectorCommand createVectorCommand(char command, float[] args) {
+    return createVectorCommand(getSVGCommand(command), args);
+  }
+
+  private static SVGCommand getSVGCommand(char command) {
+    switch (command) {
+      case 'm':
+        return SVGCommand.m;
+      case 'M':
+        return SVGCommand.M;
+      case 'q':
+        return SVGCommand.q;
+      case 'Q':
+        return SVGCommand.Q;
+      case 'c':
+        return SVGCommand.c;
+      case 'C':
+        return SVGCommand.C;
+      case 'l':
+        return SVGCommand.l;
+      case 'L':
+        return SVGCommand.L;
+      default:
+        throw new IllegalArgumentException(String.format(
+            Locale.US,
+            "Unhandled vector command: %s",
+            command));
     }
+  }
+
+  private static VectorCommand createVectorCommand(SVGCommand cmd, float[] args) {
     switch (cmd) {
       case m:
       case M: {
@@ -59,7 +95,7 @@ public abstract class VectorCommand {
           throw new IllegalArgumentException(String.format(
               Locale.US,
               "VectorCommand MoveTo requires two arguments, but got %s",
-              args.toString()));
+              Arrays.toString(args)));
         }
       }
       case q:
@@ -70,7 +106,7 @@ public abstract class VectorCommand {
           throw new IllegalArgumentException(String.format(
               Locale.US,
               "VectorCommand QuadraticTo requires four arguments, but got %s",
-              args.toString()));
+              Arrays.toString(args)));
         }
       }
       case c:
@@ -81,7 +117,7 @@ public abstract class VectorCommand {
           throw new IllegalArgumentException(String.format(
               Locale.US,
               "VectorCommand CubicTo requires six arguments, but got %s",
-              args.toString()));
+              Arrays.toString(args)));
         }
       }
       case l:
@@ -92,14 +128,14 @@ public abstract class VectorCommand {
           throw new IllegalArgumentException(String.format(
               Locale.US,
               "VectorCommand LineTo requires two arguments, but got %s",
-              args.toString()));
+              Arrays.toString(args)));
         }
       }
       default: {
         throw new IllegalArgumentException(String.format(
             Locale.US,
             "Unhandled vector command: %s",
-            svgCommandString));
+            cmd));
       }
     }
   }
@@ -176,6 +212,26 @@ public abstract class VectorCommand {
    */
   public abstract void apply(KFPath path);
 
+  /**
+   * Returns the SVG command character for this command, lower case for relative commands.
+   */
+  public char getCommandCharacter() {
+    char command = getAbsoluteCommandCharacter();
+    return mArgFormat == ArgFormat.RELATIVE ? Character.toLowerCase(command) : command;
+  }
+
+  /**
+   * Returns the arguments of this command, which should *never* be modified.
+   */
+  public float[] getArguments() {
+    return mArgs;
+  }
+
+  /**
+   * Returns the upper case SVG command character for this type of command.
+   */
+  protected abstract char getAbsoluteCommandCharacter();
+
   /**
    * A protected method that essentially is a 'static' method describing how to apply this command,
    * given a set of arguments and the format of the arguments, to a path.  This allows us to have a
@@ -244,6 +300,11 @@ public abstract class VectorCommand {
       super(argFormat, args);
     }
 
+    @Override
+    protected char getAbsoluteCommandCharacter() {
+      return 'M';
+    }
+
     @Override
     public void apply(KFPath path) {
       applyInner(path, mArgFormat, mArgs);
@@ -288,6 +349,11 @@ public abstract class VectorCommand {
       super(argFormat, args);
     }
 
+    @Override
+    protected char getAbsoluteCommandCharacter() {
+      return 'Q';
+    }
+
     @Override
     public void apply(KFPath path) {
       applyInner(path, mArgFormat, mArgs);
@@ -328,6 +394,11 @@ public abstract class VectorCommand {
       super(argFormat, args);
     }
 
+    @Override
+    protected char getAbsoluteCommandCharacter() {
+      return 'C';
+    }
+
     @Override
     public void apply(KFPath path) {
       applyInner(path, mArgFormat, mArgs);
@@ -372,6 +443,11 @@ public abstract class VectorCommand {
       super(argFormat, args);
     }
 
+    @Override
+    protected char getAbsoluteCommandCharacter() {
+      return 'L';
+    }
+
     @Override
     public void apply(KFPath path) {
       applyInner(path, mArgFormat, mArgs);
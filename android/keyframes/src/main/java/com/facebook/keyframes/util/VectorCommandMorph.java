@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.facebook.keyframes.KFPath;
+
+/**
+ * A morph between two lists of {@link VectorCommand}s, prepared once so that drawing a frame in
+ * between them is only a lerp of argument arrays.  When a pair of commands differ in order, e.g. a
+ * line and a cubic, the lower order command is converted up to the higher order one ahead of time,
+ * using the start point of the command within its own path, rather than through
+ * {@link VectorCommand#interpolate(VectorCommand, float, KFPath)} at every frame.
+ *
+ * A morph is immutable once prepared, so that it can be shared by every drawable of an image and
+ * applied from several threads at once.  The interpolated arguments are written to a scratch
+ * array owned by the caller, see {@link #getMaxArgCount()}.
+ */
+public class VectorCommandMorph {
+
+  /**
+   * The start point of relative commands, whose arguments are relative to it.
+   */
+  private static final float[] ORIGIN = {0, 0};
+
+  /**
+   * For each pair of commands, the command which draws the interpolated arguments, and the
+   * arguments at either end in the same form.
+   */
+  private final VectorCommand[] mCommands;
+  private final float[][] mFromArgs;
+  private final float[][] mToArgs;
+  private final int mMaxArgCount;
+
+  /**
+   * Prepares the morph between two command lists.
+   * @throws IllegalArgumentException if the lists can't be interpolated: they differ in length, or
+   * a pair of commands differs in argument format, or pairs a move with another kind of command.
+   */
+  public VectorCommandMorph(List<VectorCommand> fromCommands, List<VectorCommand> toCommands) {
+    int count = fromCommands.size();
+    if (count != toCommands.size()) {
+      throw new IllegalArgumentException(String.format(
+          Locale.US,
+          "Cannot interpolate between %d and %d vector commands",
+          count,
+          toCommands.size()));
+    }
+    mCommands = new VectorCommand[count];
+    mFromArgs = new float[count][];
+    mToArgs = new float[count][];
+    float[] fromPoint = new float[2];
+    float[] toPoint = new float[2];
+    int maxArgCount = 0;
+    for (int i = 0; i < count; i++) {
+      VectorCommand from = fromCommands.get(i);
+      VectorCommand to = toCommands.get(i);
+      if (from.mArgFormat != to.mArgFormat) {
+        throw new IllegalArgumentException(String.format(
+            Locale.US,
+            "Argument format must match between interpolated commands, but command %d is %s " +
+                "and %s",
+            i,
+            from.mArgFormat,
+            to.mArgFormat));
+      }
+      if ((from instanceof VectorCommand.MoveToCommand) !=
+          (to instanceof VectorCommand.MoveToCommand)) {
+        throw new IllegalArgumentException(String.format(
+            Locale.US,
+            "MoveToCommand should only be interpolated with other instances of MoveToCommand, " +
+                "but command %d is %s and %s",
+            i,
+            from.getCommandCharacter(),
+            to.getCommandCharacter()));
+      }
+      int fromArgCount = from.mArgs.length;
+      int toArgCount = to.mArgs.length;
+      if (fromArgCount >= toArgCount) {
+        mCommands[i] = from;
+        mFromArgs[i] = from.mArgs;
+        mToArgs[i] = fromArgCount == toArgCount ?
+            to.mArgs :
+            VectorCommand.convertUp(
+                getStartPoint(to, toPoint),
+                to.mArgs,
+                new float[fromArgCount]);
+      } else {
+        mCommands[i] = to;
+        mFromArgs[i] = VectorCommand.convertUp(
+            getStartPoint(from, fromPoint),
+            from.mArgs,
+            new float[toArgCount]);
+        mToArgs[i] = to.mArgs;
+      }
+      maxArgCount = Math.max(maxArgCount, mFromArgs[i].length);
+      advance(fromPoint, from);
+      advance(toPoint, to);
+    }
+    mMaxArgCount = maxArgCount;
+  }
+
+  /**
+   * Returns the size of the scratch array {@link #apply(float, KFPath, float[])} needs.
+   */
+  public int getMaxArgCount() {
+    return mMaxArgCount;
+  }
+
+  private static float[] getStartPoint(VectorCommand command, float[] lastPoint) {
+    return command.mArgFormat == VectorCommand.ArgFormat.RELATIVE ? ORIGIN : lastPoint;
+  }
+
+  /**
+   * Moves point to the end of command, the way {@link KFPath} tracks its last point.
+   */
+  private static void advance(float[] point, VectorCommand command) {
+    float[] args = command.mArgs;
+    float x = args[args.length - 2];
+    float y = args[args.length - 1];
+    if (command.mArgFormat == VectorCommand.ArgFormat.RELATIVE) {
+      point[0] += x;
+      point[1] += y;
+    } else {
+      point[0] = x;
+      point[1] = y;
+    }
+  }
+
+  /**
+   * Adds the commands at progress between the two lists to destPath.
+   * @param scratch An array of at least {@link #getMaxArgCount()} to interpolate arguments into,
+   * which mustn't be used by another thread at the same time
+   */
+  public void apply(float progress, KFPath destPath, float[] scratch) {
+    if (scratch.length < mMaxArgCount) {
+      throw new IllegalArgumentException(String.format(
+          Locale.US,
+          "Scratch array of %d is smaller than the %d arguments of a command",
+          scratch.length,
+          mMaxArgCount));
+    }
+    for (int i = 0, len = mCommands.length; i < len; i++) {
+      float[] fromArgs = mFromArgs[i];
+      float[] toArgs = mToArgs[i];
+      for (int j = 0, argsLen = fromArgs.length; j < argsLen; j++) {
+        scratch[j] = fromArgs[j] + (toArgs[j] - fromArgs[j]) * progress;
+      }
+      VectorCommand command = mCommands[i];
+      command.applyInner(destPath, command.mArgFormat, scratch);
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A single pass tokenizer for SVG path command strings, e.g. "M10,20" or "c1.5 -2 3,4e1 5-6".
+ * Command letters and numbers are read directly from the characters of the string into a float
+ * buffer which is reused for every command parsed by the same instance, so the only allocations
+ * per command are the final, exactly sized argument array and the {@link VectorCommand} itself.
+ *
+ * Arguments may be separated by commas and/or whitespace, or implicitly by a sign or a second
+ * decimal point, as in "1-2" or "1.5.5".  Numbers produce the exact same float values as
+ * {@link Float#parseFloat(String)}.  Decimal numbers are scanned directly, and any other argument
+ * {@link Float#parseFloat(String)} accepts, such as "NaN", "Infinity", "1.5f" or "0x1p3", is handed
+ * to it whole, up to the next comma or whitespace.  Errors are reported as
+ * {@link IllegalArgumentException}s that include the offset into the string where parsing failed.
+ *
+ * Instances are not thread safe.
+ */
+public class VectorCommandParser {
+
+  private static final int INITIAL_BUFFER_SIZE = 6;
+
+  /**
+   * The largest mantissa for which the mantissa and the result of scaling it by an exactly
+   * representable power of ten are both correctly rounded doubles.
+   */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final int MAX_SIGNIFICANT_DIGITS = 18;
+  private static final double[] EXACT_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * The bits dropped when rounding a double significand to a float significand, and the value of
+   * those bits when a double lies exactly halfway between two floats.
+   */
+  private static final long DROPPED_BITS_MASK = (1L << 29) - 1;
+  private static final long HALFWAY_DROPPED_BITS = 1L << 28;
+
+  private float[] mArgBuffer = new float[INITIAL_BUFFER_SIZE];
+  private int mArgCount;
+
+  private String mSource;
+  private int mPosition;
+
+  /**
+   * Parses a string containing exactly one command.
+   * @param svgCommandString The command string, e.g. "M10,20"
+   * @return The parsed {@link VectorCommand}
+   */
+  public VectorCommand parseCommand(String svgCommandString) {
+    reset(svgCommandString);
+    skipSeparators();
+    VectorCommand command = nextCommand();
+    if (mPosition < mSource.length()) {
+      throw parseError("Unexpected character '" + mSource.charAt(mPosition) + "'", mPosition);
+    }
+    return command;
+  }
+
+  /**
+   * Parses a string containing one or more commands, adding each one to the output list in order.
+   * @param svgCommandString The command string, e.g. "M10,20 L30,40"
+   * @param outCommands The list to add the parsed {@link VectorCommand}s to
+   */
+  public void parseCommands(String svgCommandString, List<VectorCommand> outCommands) {
+    reset(svgCommandString);
+    skipSeparators();
+    do {
+      outCommands.add(nextCommand());
+    } while (mPosition < mSource.length());
+  }
+
+  private void reset(String svgCommandString) {
+    mSource = svgCommandString;
+    mPosition = 0;
+    mArgCount = 0;
+  }
+
+  /**
+   * Reads one command letter and all of the numbers following it, leaving the position at the
+   * start of the next command or at the end of the string.
+   */
+  private VectorCommand nextCommand() {
+    int commandStart = mPosition;
+    if (commandStart >= mSource.length()) {
+      throw parseError("Expected a vector command", commandStart);
+    }
+    char command = mSource.charAt(commandStart);
+    if (!isCommandCharacter(command)) {
+      throw parseError("Expected a vector command but found '" + command + "'", commandStart);
+    }
+    mPosition++;
+    mArgCount = 0;
+    skipSeparators();
+    while (mPosition < mSource.length() && !startsCommand(mSource.charAt(mPosition))) {
+      addArg(nextNumber());
+      skipSeparators();
+    }
+    try {
+      return VectorCommand.createVectorCommand(command, Arrays.copyOf(mArgBuffer, mArgCount));
+    } catch (IllegalArgumentException e) {
+      throw parseError(e.getMessage(), commandStart);
+    }
+  }
+
+  private void addArg(float arg) {
+    if (mArgCount == mArgBuffer.length) {
+      mArgBuffer = Arrays.copyOf(mArgBuffer, mArgBuffer.length * 2);
+    }
+    mArgBuffer[mArgCount++] = arg;
+  }
+
+  private void skipSeparators() {
+    while (mPosition < mSource.length()) {
+      char c = mSource.charAt(mPosition);
+      if (c != ',' && !isWhitespace(c)) {
+        return;
+      }
+      mPosition++;
+    }
+  }
+
+  /**
+   * Reads a decimal number of the form [+-]digits[.digits][(e|E)[+-]digits] at the current
+   * position.  The result is correctly rounded, exactly like {@link Float#parseFloat(String)}.
+   * Common numbers are computed from an exact integer mantissa and power of ten without any
+   * allocation.  The rare numbers where that is not guaranteed to round correctly, such as those
+   * with very many digits or extreme exponents, fall back to {@link Float#parseFloat(String)}.  So
+   * do numbers it doesn't classify, such as "NaN", "Infinity", "1.5f" or "0x1p3", which run up to
+   * the next comma or whitespace as when arguments were split on commas.
+   */
+  private float nextNumber() {
+    final String source = mSource;
+    final int length = source.length();
+    final int start = mPosition;
+    int position = start;
+
+    boolean negative = false;
+    if (position < length && (source.charAt(position) == '-' || source.charAt(position) == '+')) {
+      negative = source.charAt(position) == '-';
+      position++;
+    }
+    if (position < length && isLetter(source.charAt(position))) {
+      int end = findArgumentEnd(position);
+      try {
+        return parseFloat(start, end);
+      } catch (NumberFormatException e) {
+        throw parseError("Invalid number '" + source.substring(start, end) + "'", start);
+      }
+    }
+
+    long mantissa = 0;
+    int significantDigits = 0;
+    int decimalExponent = 0;
+    int digits = 0;
+    boolean exact = true;
+
+    char c;
+    while (position < length && isDigit(c = source.charAt(position))) {
+      if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+        mantissa = mantissa * 10 + (c - '0');
+        if (mantissa != 0) {
+          significantDigits++;
+        }
+      } else {
+        // Too many digits to hold exactly, but the magnitude still needs to be tracked.
+        decimalExponent++;
+        exact &= c == '0';
+      }
+      digits++;
+      position++;
+    }
+    if (position < length && source.charAt(position) == '.') {
+      position++;
+      while (position < length && isDigit(c = source.charAt(position))) {
+        if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+          mantissa = mantissa * 10 + (c - '0');
+          decimalExponent--;
+          if (mantissa != 0) {
+            significantDigits++;
+          }
+        } else {
+          exact &= c == '0';
+        }
+        digits++;
+        position++;
+      }
+    }
+    if (digits == 0) {
+      throw parseError("Expected a number", start);
+    }
+    if (position < length && (source.charAt(position) == 'e' || source.charAt(position) == 'E')) {
+      int exponentStart = position;
+      position++;
+      boolean negativeExponent = false;
+      if (position < length &&
+          (source.charAt(position) == '-' || source.charAt(position) == '+')) {
+        negativeExponent = source.charAt(position) == '-';
+        position++;
+      }
+      int exponent = 0;
+      int exponentDigits = 0;
+      while (position < length && isDigit(c = source.charAt(position))) {
+        if (exponent < 10000) {
+          exponent = exponent * 10 + (c - '0');
+        }
+        exponentDigits++;
+        position++;
+      }
+      if (exponentDigits == 0) {
+        throw parseError("Expected an exponent", exponentStart);
+      }
+      decimalExponent += negativeExponent ? -exponent : exponent;
+    }
+    if (position < length &&
+        isLetter(source.charAt(position)) &&
+        !isPathCommandCharacter(source.charAt(position))) {
+      try {
+        return parseFloat(start, findArgumentEnd(position));
+      } catch (NumberFormatException e) {
+        // Not a longer number after all, so the letter starts the next command.
+      }
+    }
+    mPosition = position;
+
+    if (mantissa == 0 && exact) {
+      return negative ? -0f : 0f;
+    }
+    if (exact &&
+        mantissa < MAX_EXACT_MANTISSA &&
+        decimalExponent >= -22 &&
+        decimalExponent <= 22) {
+      double value = decimalExponent < 0 ?
+          mantissa / EXACT_POWERS_OF_TEN[-decimalExponent] :
+          mantissa * EXACT_POWERS_OF_TEN[decimalExponent];
+      // The double is correctly rounded.  Rounding it again to a float gives the correctly rounded
+      // float, unless the double landed exactly halfway between two floats.
+      if (value >= Float.MIN_NORMAL &&
+          value <= Float.MAX_VALUE &&
+          (Double.doubleToRawLongBits(value) & DROPPED_BITS_MASK) != HALFWAY_DROPPED_BITS) {
+        return negative ? (float) -value : (float) value;
+      }
+    }
+    return Float.parseFloat(source.substring(start, position));
+  }
+
+  /**
+   * Returns the position of the next comma or whitespace at or after position, or the end.
+   */
+  private int findArgumentEnd(int position) {
+    while (position < mSource.length() &&
+        mSource.charAt(position) != ',' &&
+        !isWhitespace(mSource.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Parses the characters from start to end with {@link Float#parseFloat(String)}, and moves past
+   * them if they are a number.
+   */
+  private float parseFloat(int start, int end) {
+    float value = Float.parseFloat(mSource.substring(start, end));
+    mPosition = end;
+    return value;
+  }
+
+  private IllegalArgumentException parseError(String message, int offset) {
+    return new IllegalArgumentException(String.format(
+        Locale.US,
+        "%s at offset %d in \"%s\"",
+        message,
+        offset,
+        mSource));
+  }
+
+  private static boolean isCommandCharacter(char c) {
+    return (c >= 'a' && c <= 'z' && c != 'e') || (c >= 'A' && c <= 'Z' && c != 'E');
+  }
+
+  /**
+   * Returns whether the character ends the arguments of a command, which every command character
+   * other than the first letters of "NaN" and "Infinity" does.
+   */
+  private static boolean startsCommand(char c) {
+    return isCommandCharacter(c) && c != 'N' && c != 'I';
+  }
+
+  /**
+   * Returns whether the character starts a command {@link VectorCommand} handles, rather than being
+   * part of a number.
+   */
+  private static boolean isPathCommandCharacter(char c) {
+    switch (c) {
+      case 'm':
+      case 'M':
+      case 'q':
+      case 'Q':
+      case 'c':
+      case 'C':
+      case 'l':
+      case 'L':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+}
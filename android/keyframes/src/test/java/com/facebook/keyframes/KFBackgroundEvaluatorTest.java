@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class KFBackgroundEvaluatorTest {
+
+  @Test
+  public void testCoalescesRequestsAndDropsToLatestFrame() {
+    QueueExecutor executor = new QueueExecutor();
+    RecordingEvaluation evaluation = new RecordingEvaluation();
+    CountingRunnable onFrameAvailable = new CountingRunnable();
+    KFBackgroundEvaluator<float[]> evaluator =
+        new KFBackgroundEvaluator<>(executor, evaluation, onFrameAvailable, 0);
+
+    evaluator.request(1);
+    evaluator.request(2);
+    evaluator.request(3);
+    Assert.assertNull(evaluator.acquireFrame());
+    executor.runAll();
+
+    Assert.assertEquals(Arrays.asList(3f), evaluation.mEvaluatedFrames);
+    Assert.assertEquals(1, onFrameAvailable.mRunCount);
+    Assert.assertEquals(3f, evaluator.acquireFrame()[0], 0);
+  }
+
+  @Test
+  public void testBackBufferIsKeptUntilAcquired() {
+    QueueExecutor executor = new QueueExecutor();
+    RecordingEvaluation evaluation = new RecordingEvaluation();
+    KFBackgroundEvaluator<float[]> evaluator =
+        new KFBackgroundEvaluator<>(executor, evaluation, new CountingRunnable(), 0);
+
+    evaluator.request(1);
+    executor.runAll();
+    // The completed frame hasn't been acquired, so there is no buffer to evaluate into.
+    evaluator.request(2);
+    Assert.assertTrue(executor.mQueue.isEmpty());
+
+    float[] first = evaluator.acquireFrame();
+    Assert.assertEquals(1f, first[0], 0);
+    executor.runAll();
+    // The acquired frame is left alone while the next is evaluated.
+    Assert.assertEquals(1f, first[0], 0);
+
+    float[] second = evaluator.acquireFrame();
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(2f, second[0], 0);
+    Assert.assertSame(second, evaluator.acquireFrame());
+
+    evaluator.request(3);
+    executor.runAll();
+    Assert.assertSame(first, evaluator.acquireFrame());
+    Assert.assertEquals(2, evaluation.mCreatedBufferCount);
+  }
+
+  @Test
+  public void testBlocksUntilLatestFrame() {
+    RecordingEvaluation evaluation = new RecordingEvaluation();
+    KFBackgroundEvaluator<float[]> evaluator = new KFBackgroundEvaluator<>(
+        new ThreadExecutor(),
+        evaluation,
+        new CountingRunnable(),
+        10000);
+
+    for (int i = 1; i <= 5; i++) {
+      evaluator.request(i);
+      Assert.assertEquals(i, evaluator.acquireFrame()[0], 0);
+    }
+  }
+
+  @Test
+  public void testBlockingTimesOut() {
+    QueueExecutor executor = new QueueExecutor();
+    KFBackgroundEvaluator<float[]> evaluator = new KFBackgroundEvaluator<>(
+        executor,
+        new RecordingEvaluation(),
+        new CountingRunnable(),
+        10);
+
+    evaluator.request(1);
+    Assert.assertNull(evaluator.acquireFrame());
+    executor.runAll();
+    evaluator.request(2);
+    // Times out waiting for frame 2, and falls back to the completed frame 1.
+    Assert.assertEquals(1f, evaluator.acquireFrame()[0], 0);
+  }
+
+  @Test
+  public void testRejectsNegativeWait() {
+    try {
+      new KFBackgroundEvaluator<>(
+          new QueueExecutor(),
+          new RecordingEvaluation(),
+          new CountingRunnable(),
+          -1);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  private static class RecordingEvaluation implements KFBackgroundEvaluator.Evaluation<float[]> {
+
+    private final List<Float> mEvaluatedFrames = new ArrayList<>();
+    private int mCreatedBufferCount;
+
+    @Override
+    public float[] createBuffer() {
+      mCreatedBufferCount++;
+      return new float[1];
+    }
+
+    @Override
+    public void evaluate(float frameProgress, float[] buffer) {
+      mEvaluatedFrames.add(frameProgress);
+      buffer[0] = frameProgress;
+    }
+  }
+
+  private static class CountingRunnable implements Runnable {
+
+    private int mRunCount;
+
+    @Override
+    public void run() {
+      mRunCount++;
+    }
+  }
+
+  private static class QueueExecutor implements Executor {
+
+    private final List<Runnable> mQueue = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      mQueue.add(command);
+    }
+
+    private void runAll() {
+      while (!mQueue.isEmpty()) {
+        mQueue.remove(0).run();
+      }
+    }
+  }
+
+  private static class ThreadExecutor implements Executor {
+
+    @Override
+    public void execute(Runnable command) {
+      new Thread(command).start();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KFFrameCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    KFFrameCache<String> cache = new KFFrameCache<>(100);
+    Assert.assertNull(cache.get(0));
+    cache.put(0, "zero", 10);
+    Assert.assertEquals("zero", cache.get(0));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+
+    // Replacing a frame replaces its size too.
+    cache.put(0, "ZERO", 20);
+    Assert.assertEquals("ZERO", cache.get(0));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(20, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    KFFrameCache<String> cache = new KFFrameCache<>(30);
+    cache.put(0, "zero", 10);
+    cache.put(1, "one", 10);
+    cache.put(2, "two", 10);
+    cache.get(0);
+
+    cache.put(3, "three", 10);
+    Assert.assertEquals(1, cache.getEvictionCount());
+    Assert.assertNull(cache.get(1));
+    Assert.assertEquals("zero", cache.get(0));
+    Assert.assertEquals("two", cache.get(2));
+    Assert.assertEquals("three", cache.get(3));
+
+    // A larger frame evicts as many as needed.
+    cache.put(4, "four", 25);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(25, cache.getSizeBytes());
+    Assert.assertEquals("four", cache.get(4));
+  }
+
+  @Test
+  public void testRejectsOversizeFrame() {
+    KFFrameCache<String> cache = new KFFrameCache<>(30);
+    cache.put(0, "zero", 10);
+    cache.put(1, "one", 31);
+    Assert.assertNull(cache.get(1));
+    Assert.assertEquals("zero", cache.get(0));
+    Assert.assertEquals(10, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testEvictAll() {
+    KFFrameCache<String> cache = new KFFrameCache<>(30);
+    cache.put(0, "zero", 10);
+    cache.put(1, "one", 10);
+    cache.evictAll();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.getSizeBytes());
+    Assert.assertNull(cache.get(0));
+  }
+
+  @Test
+  public void testRejectsNegativeSize() {
+    try {
+      new KFFrameCache<String>(-1);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KFFrameRateGovernorTest {
+
+  private static final long INTERVAL_NANOS = 1000000000L / 60;
+  private static final long MS = 1000000;
+
+  @Test
+  public void testStepsDownUnderSustainedOverload() {
+    KFFrameRateGovernor governor = new KFFrameRateGovernor();
+    Assert.assertEquals(1, governor.getDivisor());
+
+    Assert.assertTrue(recordWindow(governor, 40 * MS));
+    Assert.assertEquals(2, governor.getDivisor());
+    Assert.assertTrue(recordWindow(governor, 40 * MS));
+    Assert.assertEquals(3, governor.getDivisor());
+    Assert.assertTrue(recordWindow(governor, 40 * MS));
+    Assert.assertEquals(4, governor.getDivisor());
+    Assert.assertFalse(recordWindow(governor, 40 * MS));
+    Assert.assertEquals(4, governor.getDivisor());
+    Assert.assertEquals(3, governor.getTransitionCount());
+  }
+
+  @Test
+  public void testSettlesAtRateWithinBudget() {
+    KFFrameRateGovernor governor = new KFFrameRateGovernor();
+    // Over half of the 16.7ms interval at 60 fps, but not of the 33.3ms interval at 30 fps.
+    for (int i = 0; i < 10; i++) {
+      recordWindow(governor, 12 * MS);
+    }
+    Assert.assertEquals(2, governor.getDivisor());
+    Assert.assertEquals(1, governor.getTransitionCount());
+  }
+
+  @Test
+  public void testIgnoresSingleSlowUpdates() {
+    KFFrameRateGovernor governor = new KFFrameRateGovernor();
+    for (int i = 0; i < 10 * KFFrameRateGovernor.WINDOW_UPDATES; i++) {
+      governor.recordUpdate(i % 3 == 0 ? 100 * MS : 2 * MS, INTERVAL_NANOS);
+    }
+    Assert.assertEquals(1, governor.getDivisor());
+  }
+
+  @Test
+  public void testStepsUpAfterSustainedHeadroom() {
+    KFFrameRateGovernor governor = new KFFrameRateGovernor();
+    recordWindow(governor, 40 * MS);
+    recordWindow(governor, 40 * MS);
+    Assert.assertEquals(3, governor.getDivisor());
+
+    for (int i = 1; i < KFFrameRateGovernor.HEADROOM_WINDOWS; i++) {
+      Assert.assertFalse(recordWindow(governor, 1 * MS));
+    }
+    Assert.assertTrue(recordWindow(governor, 1 * MS));
+    Assert.assertEquals(2, governor.getDivisor());
+
+    // A window without headroom starts the count over.
+    recordWindow(governor, 1 * MS);
+    recordWindow(governor, 10 * MS);
+    for (int i = 1; i < KFFrameRateGovernor.HEADROOM_WINDOWS; i++) {
+      Assert.assertFalse(recordWindow(governor, 1 * MS));
+    }
+    Assert.assertTrue(recordWindow(governor, 1 * MS));
+    Assert.assertEquals(1, governor.getDivisor());
+    Assert.assertEquals(4, governor.getTransitionCount());
+  }
+
+  @Test
+  public void testDoesNotStepUpJustBelowBudget() {
+    KFFrameRateGovernor governor = new KFFrameRateGovernor();
+    recordWindow(governor, 10 * MS);
+    Assert.assertEquals(2, governor.getDivisor());
+    // Within budget at 30 fps, and just within it at 60 fps, so stepping up would be marginal.
+    for (int i = 0; i < 10; i++) {
+      recordWindow(governor, 8 * MS);
+    }
+    Assert.assertEquals(2, governor.getDivisor());
+  }
+
+  private static boolean recordWindow(KFFrameRateGovernor governor, long costNanos) {
+    boolean changed = false;
+    for (int i = 0; i < KFFrameRateGovernor.WINDOW_UPDATES; i++) {
+      changed |= governor.recordUpdate(costNanos, INTERVAL_NANOS);
+    }
+    return changed;
+  }
+}
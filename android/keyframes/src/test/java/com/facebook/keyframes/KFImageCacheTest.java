@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KFImageCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    KFImage image = createImage(1, 1);
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    Assert.assertNull(cache.get("a"));
+    cache.put("a", image);
+    Assert.assertSame(image, cache.get("a"));
+
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getPutCount());
+    Assert.assertEquals(KFImageCache.estimateSizeBytes(image), cache.getSizeBytes());
+  }
+
+  @Test
+  public void testBuilderLooksUpCachedImageWhenBuilding() {
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    KeyframesDrawableBuilder builder = new KeyframesDrawableBuilder().withCachedImage(cache, "a");
+    Assert.assertEquals(0, cache.getMissCount());
+    try {
+      builder.build();
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testPutByImageKey() {
+    KFImage image = createImage(42, 1);
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    cache.put(image);
+    Assert.assertSame(image, cache.get(42));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    KFImage a = createImage(1, 1);
+    KFImage b = createImage(2, 1);
+    KFImage c = createImage(3, 1);
+    int imageSize = KFImageCache.estimateSizeBytes(a);
+    KFImageCache cache = new KFImageCache(imageSize * 2);
+
+    cache.put("a", a);
+    cache.put("b", b);
+    // Touch a, so that b is the least recently used.
+    cache.get("a");
+    cache.put("c", c);
+
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(1, cache.getEvictionCount());
+    Assert.assertSame(a, cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertSame(c, cache.get("c"));
+    Assert.assertEquals(imageSize * 2, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testReplaceUpdatesSize() {
+    KFImage small = createImage(1, 1);
+    KFImage large = createImage(1, 10);
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    cache.put("a", small);
+    Assert.assertSame(small, cache.put("a", large));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(KFImageCache.estimateSizeBytes(large), cache.getSizeBytes());
+    Assert.assertSame(large, cache.remove("a"));
+    Assert.assertEquals(0, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testOversizedImageIsNotCached() {
+    KFImage small = createImage(1, 1);
+    KFImage large = createImage(2, 100);
+    KFImageCache cache = new KFImageCache(KFImageCache.estimateSizeBytes(small));
+    cache.put("small", small);
+    cache.put("large", large);
+
+    Assert.assertNull(cache.get("large"));
+    Assert.assertSame(small, cache.get("small"));
+    Assert.assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testSizeEstimateGrowsWithContent() {
+    Assert.assertTrue(
+        KFImageCache.estimateSizeBytes(createImage(1, 10)) >
+            KFImageCache.estimateSizeBytes(createImage(1, 1)));
+  }
+
+  @Test
+  public void testTrimAndResize() {
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    cache.put("a", createImage(1, 1));
+    cache.put("b", createImage(2, 1));
+    cache.resize(KFImageCache.estimateSizeBytes(createImage(1, 1)));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertNotNull(cache.get("b"));
+
+    cache.evictAll();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.getSizeBytes());
+    Assert.assertEquals(2, cache.getEvictionCount());
+  }
+
+  private static KFImage createImage(int key, int commandCount) {
+    List<String> commands = new ArrayList<>();
+    commands.add("M0,0");
+    for (int i = 1; i < commandCount; i++) {
+      commands.add("C1,2,3,4,5,6");
+    }
+    KFFeature.Builder featureBuilder = new KFFeature.Builder();
+    featureBuilder.name = "feature";
+    featureBuilder.keyFrames = Arrays.asList(new KFFeatureFrame(0, commands));
+
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = 10;
+    builder.canvasSize = new float[]{100, 100};
+    builder.key = key;
+    builder.features = Arrays.asList(featureBuilder.build());
+    builder.animationGroups = new ArrayList<>();
+    return builder.build();
+  }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFImage;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class KFImageLoaderTest {
+
+  private QueueExecutor mExecutor;
+  private QueueExecutor mCallbackExecutor;
+  private KFImageLoader mLoader;
+
+  @Before
+  public void setUp() {
+    mExecutor = new QueueExecutor();
+    mCallbackExecutor = new QueueExecutor();
+    mLoader = new KFImageLoader(mExecutor, mCallbackExecutor);
+  }
+
+  @Test
+  public void testLoadDeliversOnCallbackExecutor() {
+    CountingSource source = new CountingSource(createImage());
+    RecordingCallback callback = new RecordingCallback();
+    mLoader.load("key", source, callback);
+
+    Assert.assertTrue(mLoader.isLoading("key"));
+    mExecutor.runAll();
+    Assert.assertNull(callback.mImage);
+    mCallbackExecutor.runAll();
+
+    Assert.assertSame(source.mImage, callback.mImage);
+    Assert.assertNull(callback.mError);
+    Assert.assertFalse(mLoader.isLoading("key"));
+  }
+
+  @Test
+  public void testConcurrentLoadsAreCoalesced() {
+    CountingSource source = new CountingSource(createImage());
+    RecordingCallback first = new RecordingCallback();
+    RecordingCallback second = new RecordingCallback();
+    RecordingCallback other = new RecordingCallback();
+    mLoader.load("key", source, first);
+    mLoader.load("key", source, second);
+    mLoader.load("other", new CountingSource(createImage()), other);
+
+    Assert.assertEquals(2, mExecutor.mQueue.size());
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+
+    Assert.assertEquals(1, source.mLoadCount);
+    Assert.assertSame(source.mImage, first.mImage);
+    Assert.assertSame(source.mImage, second.mImage);
+    Assert.assertNotNull(other.mImage);
+    Assert.assertNotSame(source.mImage, other.mImage);
+  }
+
+  @Test
+  public void testCancelledRequestIsNotDelivered() {
+    CountingSource source = new CountingSource(createImage());
+    RecordingCallback cancelled = new RecordingCallback();
+    RecordingCallback delivered = new RecordingCallback();
+    KFImageLoader.Request request = mLoader.load("key", source, cancelled);
+    mLoader.load("key", source, delivered);
+
+    mExecutor.runAll();
+    request.cancel();
+    mCallbackExecutor.runAll();
+
+    Assert.assertTrue(request.isCancelled());
+    Assert.assertEquals(0, cancelled.mCallCount);
+    Assert.assertEquals(1, delivered.mCallCount);
+  }
+
+  @Test
+  public void testCancellingAllRequestsSkipsLoad() {
+    CountingSource source = new CountingSource(createImage());
+    RecordingCallback callback = new RecordingCallback();
+    mLoader.load("key", source, callback).cancel();
+
+    Assert.assertFalse(mLoader.isLoading("key"));
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+
+    Assert.assertEquals(0, source.mLoadCount);
+    Assert.assertEquals(0, callback.mCallCount);
+
+    // A new request after cancellation starts a new load.
+    mLoader.load("key", source, callback);
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+    Assert.assertEquals(1, source.mLoadCount);
+    Assert.assertEquals(1, callback.mCallCount);
+  }
+
+  @Test
+  public void testErrorIsDelivered() {
+    final IOException error = new IOException("broken");
+    RecordingCallback callback = new RecordingCallback();
+    mLoader.load(
+        "key",
+        new KFImageLoader.Source() {
+          @Override
+          public KFImage load() throws IOException {
+            throw error;
+          }
+        },
+        callback);
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+
+    Assert.assertNull(callback.mImage);
+    Assert.assertSame(error, callback.mError);
+    Assert.assertFalse(mLoader.isLoading("key"));
+  }
+
+  @Test
+  public void testErrorFromSourceDoesNotLeaveKeyLoading() {
+    final Error error = new OutOfMemoryError("broken");
+    RecordingCallback callback = new RecordingCallback();
+    mLoader.load(
+        "key",
+        new KFImageLoader.Source() {
+          @Override
+          public KFImage load() {
+            throw error;
+          }
+        },
+        callback);
+    try {
+      mExecutor.runAll();
+      Assert.fail("Expected exception not thrown.");
+    } catch (OutOfMemoryError e) {
+      Assert.assertSame(error, e);
+    }
+    Assert.assertFalse(mLoader.isLoading("key"));
+
+    // The key can be loaded again.
+    CountingSource source = new CountingSource(createImage());
+    mLoader.load("key", source, callback);
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+    Assert.assertEquals(1, source.mLoadCount);
+    Assert.assertSame(source.mImage, callback.mImage);
+  }
+
+  @Test
+  public void testCachedImageSkipsLoad() {
+    KFImageCache cache = new KFImageCache(KFImageCache.DEFAULT_MAX_SIZE_BYTES);
+    mLoader.setImageCache(cache);
+    CountingSource source = new CountingSource(createImage());
+    RecordingCallback first = new RecordingCallback();
+    RecordingCallback second = new RecordingCallback();
+
+    mLoader.load("key", source, first);
+    mExecutor.runAll();
+    mCallbackExecutor.runAll();
+    Assert.assertSame(source.mImage, cache.get("key"));
+
+    mLoader.load("key", source, second);
+    Assert.assertTrue(mExecutor.mQueue.isEmpty());
+    Assert.assertNull(second.mImage);
+    mCallbackExecutor.runAll();
+
+    Assert.assertEquals(1, source.mLoadCount);
+    Assert.assertSame(source.mImage, second.mImage);
+  }
+
+  private static KFImage createImage() {
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = 10;
+    builder.canvasSize = new float[]{100, 100};
+    KFFeature.Builder featureBuilder = new KFFeature.Builder();
+    featureBuilder.name = "feature";
+    builder.features = Arrays.asList(featureBuilder.build());
+    builder.animationGroups = new ArrayList<>();
+    return builder.build();
+  }
+
+  private static class QueueExecutor implements Executor {
+
+    private final List<Runnable> mQueue = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      mQueue.add(command);
+    }
+
+    private void runAll() {
+      while (!mQueue.isEmpty()) {
+        mQueue.remove(0).run();
+      }
+    }
+  }
+
+  private static class CountingSource implements KFImageLoader.Source {
+
+    private final KFImage mImage;
+    private int mLoadCount;
+
+    private CountingSource(KFImage image) {
+      mImage = image;
+    }
+
+    @Override
+    public KFImage load() {
+      mLoadCount++;
+      return mImage;
+    }
+  }
+
+  private static class RecordingCallback implements KFImageLoader.Callback {
+
+    private KFImage mImage;
+    private Exception mError;
+    private int mCallCount;
+
+    @Override
+    public void onImageLoaded(KFImage image) {
+      mImage = image;
+      mCallCount++;
+    }
+
+    @Override
+    public void onImageLoadFailed(Exception error) {
+      mError = error;
+      mCallCount++;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeyframesDrawableAnimationCallbackTest {
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long START_TIME_NANOS = 5 * NANOS_PER_SECOND;
+  private static final int[] REFRESH_RATES = {60, 90, 120, 144};
+
+  private KeyframesTicker mTicker;
+  private RecordingFrameListener mListener;
+  private KeyframesDrawableAnimationCallback mCallback;
+  private long mNextFrameTimeNanos;
+
+  @Before
+  public void setUp() {
+    mTicker = new KeyframesTicker(new KeyframesTicker.FrameScheduler() {
+      @Override
+      public void postFrame(KeyframesTicker ticker) {
+      }
+
+      @Override
+      public void cancelFrame(KeyframesTicker ticker) {
+      }
+    });
+    mListener = new RecordingFrameListener();
+    mNextFrameTimeNanos = START_TIME_NANOS;
+    // A one second loop of 30 frames.
+    mCallback = KeyframesDrawableAnimationCallback.create(mListener, 30, 30, mTicker);
+  }
+
+  @Test
+  public void testCapsUpdatesOnAnyRefreshRate() {
+    for (int refreshRate : REFRESH_RATES) {
+      setUp();
+      mCallback.setMaxFrameRate(60);
+      mCallback.start();
+      List<Long> updateTimes = runFrames(refreshRate, 2 * refreshRate);
+      Assert.assertEquals(60, countUpdatesInSecondSecond(updateTimes));
+    }
+  }
+
+  @Test
+  public void testUpdatesOnEveryFrameAtDisplayRate() {
+    for (int refreshRate : REFRESH_RATES) {
+      setUp();
+      mCallback.setMaxFrameRate(KeyframesDrawable.MAX_FRAME_RATE_DISPLAY);
+      mCallback.start();
+      List<Long> updateTimes = runFrames(refreshRate, 2 * refreshRate);
+      Assert.assertEquals(refreshRate, countUpdatesInSecondSecond(updateTimes));
+    }
+  }
+
+  @Test
+  public void testPacesEvenlyWhenCapDividesRefreshRate() {
+    for (int refreshRate : REFRESH_RATES) {
+      setUp();
+      mCallback.setMaxFrameRate(refreshRate / 2);
+      mCallback.start();
+      List<Long> updateTimes = runFrames(refreshRate, 2 * refreshRate);
+      for (int i = 1; i < updateTimes.size(); i++) {
+        assertNanosEqual(
+            2 * NANOS_PER_SECOND / refreshRate,
+            updateTimes.get(i) - updateTimes.get(i - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testPacesCapOnIndivisibleRefreshRate() {
+    mCallback.setMaxFrameRate(60);
+    mCallback.start();
+    List<Long> updateTimes = runFrames(144, 144);
+    // 2.4 display frames per update, so updates alternate between 2 and 3 frames apart.
+    long framePeriodNanos = NANOS_PER_SECOND / 144;
+    for (int i = 1; i < updateTimes.size(); i++) {
+      long frames = Math.round((double) (updateTimes.get(i) - updateTimes.get(i - 1)) /
+          framePeriodNanos);
+      Assert.assertTrue(frames == 2 || frames == 3);
+    }
+  }
+
+  @Test
+  public void testProgressFollowsFrameTime() {
+    mCallback.setMaxFrameRate(KeyframesDrawable.MAX_FRAME_RATE_DISPLAY);
+    mCallback.start();
+    List<Long> updateTimes = runFrames(144, 300);
+    Assert.assertEquals(300, mListener.mProgresses.size());
+    for (int i = 0; i < updateTimes.size(); i++) {
+      double elapsedSeconds = (double) (updateTimes.get(i) - START_TIME_NANOS) / NANOS_PER_SECOND;
+      Assert.assertEquals(
+          (elapsedSeconds % 1) * 30,
+          mListener.mProgresses.get(i),
+          0.001);
+    }
+  }
+
+  @Test
+  public void testResumesFromLastUpdate() {
+    mCallback.setMaxFrameRate(KeyframesDrawable.MAX_FRAME_RATE_DISPLAY);
+    mCallback.start();
+    runFrames(120, 30);
+    float pausedProgress = mListener.mProgresses.get(mListener.mProgresses.size() - 1);
+    mCallback.pause();
+
+    mCallback.resume();
+    long resumeTimeNanos = START_TIME_NANOS + 10 * NANOS_PER_SECOND;
+    mTicker.doFrame(resumeTimeNanos);
+    mTicker.doFrame(resumeTimeNanos + NANOS_PER_SECOND / 120);
+    int updateCount = mListener.mProgresses.size();
+    Assert.assertEquals(pausedProgress, mListener.mProgresses.get(updateCount - 2), 0.001);
+    Assert.assertEquals(pausedProgress + 0.25f, mListener.mProgresses.get(updateCount - 1), 0.001);
+  }
+
+  @Test
+  public void testFreezesWhileSkipped() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget();
+    mTicker.setFrameBudget(frameBudget);
+    mCallback.setMaxFrameRate(KeyframesDrawable.MAX_FRAME_RATE_DISPLAY);
+    mCallback.setPriority(KeyframesFrameBudget.Priority.OFFSCREEN);
+    mCallback.start();
+    runFrames(120, 30);
+    int updateCount = mListener.mProgresses.size();
+    float skippedProgress = mListener.mProgresses.get(updateCount - 1);
+
+    frameBudget.setScrolling(true);
+    runFrames(120, 120);
+    Assert.assertEquals(updateCount, mListener.mProgresses.size());
+
+    // The time spent skipped doesn't count towards progress.
+    frameBudget.setScrolling(false);
+    runFrames(120, 2);
+    updateCount = mListener.mProgresses.size();
+    Assert.assertEquals(skippedProgress, mListener.mProgresses.get(updateCount - 2), 0.001);
+    Assert.assertEquals(
+        skippedProgress + 0.25f,
+        mListener.mProgresses.get(updateCount - 1),
+        0.001);
+  }
+
+  @Test
+  public void testAdaptsFrameRateToDrawCost() {
+    final List<Float> frameRates = new ArrayList<>();
+    mCallback.setMaxFrameRate(60);
+    mCallback.setAdaptiveFrameRate(
+        true,
+        new KeyframesDrawableAnimationCallback.FrameRateListener() {
+          @Override
+          public void onFrameRateChanged(float effectiveFrameRate, int transitionCount) {
+            frameRates.add(effectiveFrameRate);
+            Assert.assertEquals(frameRates.size(), transitionCount);
+          }
+        });
+    mListener.mDrawCallback = mCallback;
+    // Over budget at 60 fps, but not at 30 fps.
+    mListener.mDrawNanos = 12000000;
+    mCallback.start();
+
+    List<Long> updateTimes = runFrames(120, 240);
+    Assert.assertEquals(30, mCallback.getEffectiveFrameRate(), 0.01);
+    Assert.assertEquals(1, mCallback.getFrameRateTransitionCount());
+    // Updates are four display frames apart once stepped down.
+    int updateCount = updateTimes.size();
+    assertNanosEqual(
+        4 * NANOS_PER_SECOND / 120,
+        updateTimes.get(updateCount - 1) - updateTimes.get(updateCount - 2));
+
+    mListener.mDrawNanos = 1000000;
+    runFrames(120, 240);
+    Assert.assertEquals(60, mCallback.getEffectiveFrameRate(), 0.01);
+    Assert.assertEquals(2, mCallback.getFrameRateTransitionCount());
+    Assert.assertEquals(2, frameRates.size());
+    Assert.assertEquals(30, frameRates.get(0), 0.01);
+    Assert.assertEquals(60, frameRates.get(1), 0.01);
+  }
+
+  @Test
+  public void testRejectsNegativeMaxFrameRate() {
+    try {
+      mCallback.setMaxFrameRate(-1);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * Drives the ticker with a fake display clock.
+   * @return the frame times at which progress was updated
+   */
+  private List<Long> runFrames(int refreshRate, int frameCount) {
+    List<Long> updateTimes = new ArrayList<>();
+    for (int i = 0; i < frameCount; i++) {
+      long frameTimeNanos =
+          mNextFrameTimeNanos + Math.round((double) i * NANOS_PER_SECOND / refreshRate);
+      int updateCount = mListener.mProgresses.size();
+      mTicker.doFrame(frameTimeNanos);
+      if (mListener.mProgresses.size() > updateCount) {
+        updateTimes.add(frameTimeNanos);
+      }
+    }
+    mNextFrameTimeNanos += Math.round((double) frameCount * NANOS_PER_SECOND / refreshRate);
+    return updateTimes;
+  }
+
+  /**
+   * Compares times in long arithmetic, allowing for the nanosecond {@link #runFrames} rounds frame
+   * times to.
+   */
+  private static void assertNanosEqual(long expected, long actual) {
+    Assert.assertTrue(expected + " != " + actual, Math.abs(expected - actual) <= 1);
+  }
+
+  private static int countUpdatesInSecondSecond(List<Long> updateTimes) {
+    int count = 0;
+    for (long updateTime : updateTimes) {
+      if (updateTime >= START_TIME_NANOS + NANOS_PER_SECOND) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static class RecordingFrameListener
+      implements KeyframesDrawableAnimationCallback.FrameListener {
+
+    private final List<Float> mProgresses = new ArrayList<>();
+    // When set, reports drawing each update as taking mDrawNanos.
+    private KeyframesDrawableAnimationCallback mDrawCallback;
+    private long mDrawNanos;
+
+    @Override
+    public void onProgressUpdate(float frameProgress) {
+      mProgresses.add(frameProgress);
+      if (mDrawCallback != null) {
+        mDrawCallback.recordDrawDuration(mDrawNanos);
+      }
+    }
+
+    @Override
+    public void onStop() {
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class KeyframesDrawableTest {
+
+  private static final int FRAME_COUNT = 20;
+
+  @Test
+  public void testSettingFrameRedrawsNextSourceFrame() {
+    KeyframesDrawable drawable = new KeyframesDrawableBuilder()
+        .withImage(createImage())
+        .withExperimentalFeatures()
+        .withSourceFrameQuantization()
+        .build();
+    drawable.onProgressUpdate(2);
+    drawable.onProgressUpdate(2.2f);
+    Assert.assertEquals(1, drawable.getSuppressedRedrawCount());
+
+    // The last quantized frame is no longer what is drawn.
+    drawable.setFrameProgress(5);
+    drawable.onProgressUpdate(2);
+    Assert.assertEquals(1, drawable.getSuppressedRedrawCount());
+  }
+
+  @Test
+  public void testSettingFrameRedrawsNextUpdateBelowThreshold() {
+    KeyframesDrawable drawable = new KeyframesDrawableBuilder()
+        .withImage(createImage())
+        .withExperimentalFeatures()
+        .withRedrawThreshold(1000)
+        .build();
+    drawable.onProgressUpdate(2);
+    drawable.onProgressUpdate(3);
+    Assert.assertEquals(1, drawable.getSuppressedRedrawCount());
+
+    // The states last redrawn are no longer what is drawn.
+    drawable.setFrameProgress(15);
+    drawable.onProgressUpdate(3);
+    Assert.assertEquals(1, drawable.getSuppressedRedrawCount());
+    drawable.onProgressUpdate(4);
+    Assert.assertEquals(2, drawable.getSuppressedRedrawCount());
+  }
+
+  @Test
+  public void testSeekRedrawsCurrentFrame() {
+    KeyframesDrawable drawable = new KeyframesDrawableBuilder()
+        .withImage(createImage())
+        .withExperimentalFeatures()
+        .withSourceFrameQuantization()
+        .withRedrawThreshold(1000)
+        .build();
+    drawable.onProgressUpdate(2);
+    drawable.seekToProgress(2f / FRAME_COUNT);
+    Assert.assertEquals(0, drawable.getSuppressedRedrawCount());
+
+    // The seek recorded what it drew, so updates are compared against it.
+    drawable.onProgressUpdate(2);
+    drawable.onProgressUpdate(3);
+    Assert.assertEquals(2, drawable.getSuppressedRedrawCount());
+  }
+
+  private static KFImage createImage() {
+    KFFeature.Builder featureBuilder = new KFFeature.Builder();
+    featureBuilder.name = "feature";
+    featureBuilder.fillColor = 0xFF102030;
+    featureBuilder.keyFrames = Arrays.asList(
+        new KFFeatureFrame(0, Arrays.asList("M0,0", "L10,10")));
+    // Moves the feature by a pixel a frame.
+    featureBuilder.featureAnimations = new ArrayList<>(Arrays.asList(createPositionAnimation()));
+
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = FRAME_COUNT;
+    builder.canvasSize = new float[]{100, 100};
+    builder.features = Arrays.asList(featureBuilder.build());
+    builder.animationGroups = new ArrayList<>();
+    return builder.build();
+  }
+
+  private static KFAnimation createPositionAnimation() {
+    KFAnimationFrame.Builder startFrame = new KFAnimationFrame.Builder();
+    startFrame.startFrame = 0;
+    startFrame.data = new float[]{0, 0};
+    KFAnimationFrame.Builder endFrame = new KFAnimationFrame.Builder();
+    endFrame.startFrame = FRAME_COUNT;
+    endFrame.data = new float[]{FRAME_COUNT, 0};
+    KFAnimation.Builder builder = new KFAnimation.Builder();
+    builder.propertyType = KFAnimation.PropertyType.POSITION;
+    builder.animationFrames = Arrays.asList(startFrame.build(), endFrame.build());
+    builder.timingCurves = new float[][][]{{{0, 0}, {1, 1}}};
+    return builder.build();
+  }
+}
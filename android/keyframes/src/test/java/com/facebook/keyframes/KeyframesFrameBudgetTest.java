@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import com.facebook.keyframes.KeyframesFrameBudget.Decision;
+import com.facebook.keyframes.KeyframesFrameBudget.Priority;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyframesFrameBudgetTest {
+
+  private static final long BUDGET_NANOS = 4000000;
+
+  @Test
+  public void testAdvancesEverythingWithinBudget() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget(BUDGET_NANOS);
+    for (Priority priority : Priority.values()) {
+      Assert.assertEquals(Decision.ADVANCE, frameBudget.getDecision(priority, 0));
+      Assert.assertEquals(Decision.ADVANCE, frameBudget.getDecision(priority, BUDGET_NANOS - 1));
+    }
+  }
+
+  @Test
+  public void testThrottlesLowerPrioritiesOverBudget() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget(BUDGET_NANOS);
+    Assert.assertEquals(
+        Decision.ADVANCE,
+        frameBudget.getDecision(Priority.FOREGROUND, 10 * BUDGET_NANOS));
+    Assert.assertEquals(Decision.DEFER, frameBudget.getDecision(Priority.VISIBLE, BUDGET_NANOS));
+    Assert.assertEquals(Decision.SKIP, frameBudget.getDecision(Priority.OFFSCREEN, BUDGET_NANOS));
+  }
+
+  @Test
+  public void testThrottlesHarderWhileScrolling() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget(BUDGET_NANOS);
+    frameBudget.setScrolling(true);
+    Assert.assertEquals(
+        Decision.ADVANCE,
+        frameBudget.getDecision(Priority.FOREGROUND, 10 * BUDGET_NANOS));
+    Assert.assertEquals(Decision.ADVANCE, frameBudget.getDecision(Priority.VISIBLE, 0));
+    Assert.assertEquals(
+        Decision.DEFER,
+        frameBudget.getDecision(Priority.VISIBLE, BUDGET_NANOS / 2));
+    Assert.assertEquals(Decision.SKIP, frameBudget.getDecision(Priority.OFFSCREEN, 0));
+
+    frameBudget.setScrolling(false);
+    Assert.assertEquals(
+        Decision.ADVANCE,
+        frameBudget.getDecision(Priority.VISIBLE, BUDGET_NANOS / 2));
+    Assert.assertEquals(Decision.ADVANCE, frameBudget.getDecision(Priority.OFFSCREEN, 0));
+  }
+
+  @Test
+  public void testCountsFramesOverBudget() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget(BUDGET_NANOS);
+    frameBudget.recordFrame(BUDGET_NANOS);
+    frameBudget.recordFrame(BUDGET_NANOS + 1);
+    Assert.assertEquals(1, frameBudget.getOverBudgetFrameCount());
+  }
+
+  @Test
+  public void testRejectsNonPositiveBudget() {
+    try {
+      new KeyframesFrameBudget(0);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KeyframesTickerTest {
+
+  private ManualFrameScheduler mFrameScheduler;
+  private KeyframesTicker mTicker;
+
+  @Before
+  public void setUp() {
+    mFrameScheduler = new ManualFrameScheduler();
+    mTicker = new KeyframesTicker(mFrameScheduler);
+  }
+
+  @Test
+  public void testPostsOneFrameForAllCallbacks() {
+    RecordingCallback first = new RecordingCallback(true);
+    RecordingCallback second = new RecordingCallback(true);
+    mTicker.postCallback(first);
+    mTicker.postCallback(second);
+    mTicker.postCallback(first);
+    Assert.assertEquals(1, mFrameScheduler.mPostCount);
+
+    mTicker.doFrame(16);
+    mTicker.doFrame(32);
+    Assert.assertEquals(Arrays.asList(16L, 32L), first.mFrameTimes);
+    Assert.assertEquals(Arrays.asList(16L, 32L), second.mFrameTimes);
+    Assert.assertEquals(3, mFrameScheduler.mPostCount);
+    Assert.assertEquals(2, mTicker.getLastTickAnimationCount());
+  }
+
+  @Test
+  public void testStopsPostingWhenIdle() {
+    RecordingCallback callback = new RecordingCallback(false);
+    mTicker.postCallback(callback);
+    mTicker.doFrame(16);
+    Assert.assertEquals(Arrays.asList(16L), callback.mFrameTimes);
+    Assert.assertEquals(1, mFrameScheduler.mPostCount);
+
+    mTicker.postCallback(callback);
+    mTicker.removeCallback(callback);
+    Assert.assertEquals(2, mFrameScheduler.mPostCount);
+    Assert.assertEquals(1, mFrameScheduler.mCancelCount);
+  }
+
+  @Test
+  public void testCallbackRemovedDuringFrameIsSkipped() {
+    final RecordingCallback removed = new RecordingCallback(true);
+    KeyframesTicker.Callback remover = new KeyframesTicker.Callback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        mTicker.removeCallback(removed);
+      }
+
+      @Override
+      public KeyframesFrameBudget.Priority getPriority() {
+        return KeyframesFrameBudget.Priority.VISIBLE;
+      }
+
+      @Override
+      public void onFrameSkipped() {
+      }
+    };
+    mTicker.postCallback(remover);
+    mTicker.postCallback(removed);
+    mTicker.doFrame(16);
+
+    Assert.assertTrue(removed.mFrameTimes.isEmpty());
+    Assert.assertEquals(1, mTicker.getLastTickAnimationCount());
+  }
+
+  @Test
+  public void testReportsEachTick() {
+    final List<Integer> animationCounts = new ArrayList<>();
+    mTicker.setTickObserver(new KeyframesTicker.TickObserver() {
+      @Override
+      public void onTick(int animationCount, long durationNanos) {
+        Assert.assertTrue(durationNanos >= 0);
+        animationCounts.add(animationCount);
+      }
+    });
+    mTicker.postCallback(new RecordingCallback(false));
+    mTicker.postCallback(new RecordingCallback(true));
+    mTicker.doFrame(16);
+    mTicker.doFrame(32);
+
+    Assert.assertEquals(Arrays.asList(2, 1), animationCounts);
+  }
+
+  @Test
+  public void testMeasuresRefreshPeriod() {
+    Assert.assertEquals(1000000000L / 60, mTicker.getRefreshPeriodNanos());
+    RecordingCallback callback = new RecordingCallback(true);
+    mTicker.postCallback(callback);
+    long frameTimeNanos = 1000000000L;
+    for (int i = 0; i < 20; i++) {
+      mTicker.doFrame(frameTimeNanos);
+      // Every third frame is dropped.
+      frameTimeNanos += i % 3 == 0 ? 16666667 : 8333333;
+    }
+    Assert.assertEquals(8333333, mTicker.getRefreshPeriodNanos());
+  }
+
+  @Test
+  public void testIgnoresTimeSpentIdle() {
+    RecordingCallback callback = new RecordingCallback(false);
+    long frameTimeNanos = 1000000000L;
+    for (int i = 0; i < 20; i++) {
+      mTicker.postCallback(callback);
+      mTicker.doFrame(frameTimeNanos);
+      frameTimeNanos += 6944444;
+    }
+    Assert.assertEquals(1000000000L / 60, mTicker.getRefreshPeriodNanos());
+  }
+
+  @Test
+  public void testAdvancesInOrderOfPriority() {
+    mTicker.setFrameBudget(new KeyframesFrameBudget());
+    List<RecordingCallback> order = new ArrayList<>();
+    RecordingCallback offscreen =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.OFFSCREEN, order);
+    RecordingCallback visible =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.VISIBLE, order);
+    RecordingCallback foreground =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.FOREGROUND, order);
+    mTicker.postCallback(offscreen);
+    mTicker.postCallback(visible);
+    mTicker.postCallback(foreground);
+    mTicker.doFrame(16);
+
+    Assert.assertEquals(Arrays.asList(foreground, visible, offscreen), order);
+    Assert.assertEquals(3, mTicker.getLastTickAnimationCount());
+  }
+
+  @Test
+  public void testDefersUpToMaxConsecutiveFrames() {
+    KeyframesFrameBudget frameBudget = new ScriptedFrameBudget(KeyframesFrameBudget.Decision.DEFER);
+    mTicker.setFrameBudget(frameBudget);
+    RecordingCallback visible =
+        new RecordingCallback(true, KeyframesFrameBudget.Priority.VISIBLE, null);
+    RecordingCallback foreground =
+        new RecordingCallback(true, KeyframesFrameBudget.Priority.FOREGROUND, null);
+    mTicker.postCallback(visible);
+    mTicker.postCallback(foreground);
+    for (int frame = 1; frame <= 8; frame++) {
+      mTicker.doFrame(frame);
+    }
+
+    Assert.assertEquals(8, foreground.mFrameTimes.size());
+    // Deferred for three frames in a row, then advanced anyway.
+    Assert.assertEquals(Arrays.asList(4L, 8L), visible.mFrameTimes);
+    Assert.assertEquals(
+        6,
+        frameBudget.getDeferredFrameCount(KeyframesFrameBudget.Priority.VISIBLE));
+    Assert.assertEquals(
+        0,
+        frameBudget.getDeferredFrameCount(KeyframesFrameBudget.Priority.FOREGROUND));
+  }
+
+  @Test
+  public void testSkippedCallbacksStopPostingFrames() {
+    ScriptedFrameBudget frameBudget = new ScriptedFrameBudget(KeyframesFrameBudget.Decision.SKIP);
+    mTicker.setFrameBudget(frameBudget);
+    RecordingCallback offscreen =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.OFFSCREEN, null);
+    mTicker.postCallback(offscreen);
+    mTicker.doFrame(1);
+    Assert.assertTrue(offscreen.mFrameTimes.isEmpty());
+    Assert.assertEquals(1, offscreen.mSkipCount);
+    Assert.assertEquals(0, mTicker.getLastTickAnimationCount());
+    // Nothing would be advanced, so no further frame is posted.
+    Assert.assertEquals(1, mFrameScheduler.mPostCount);
+
+    // Skipped callbacks are still reconsidered in frames posted for others.
+    RecordingCallback foreground =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.FOREGROUND, null);
+    mTicker.postCallback(foreground);
+    mTicker.doFrame(2);
+    Assert.assertEquals(Arrays.asList(2L), foreground.mFrameTimes);
+    Assert.assertEquals(2, offscreen.mSkipCount);
+    Assert.assertEquals(
+        2,
+        frameBudget.getSkippedFrameCount(KeyframesFrameBudget.Priority.OFFSCREEN));
+    Assert.assertEquals(2, mFrameScheduler.mPostCount);
+
+    // A priority change wakes the ticker up.
+    frameBudget.mDecision = KeyframesFrameBudget.Decision.ADVANCE;
+    offscreen.mPriority = KeyframesFrameBudget.Priority.VISIBLE;
+    mTicker.onPriorityChanged(offscreen);
+    Assert.assertEquals(3, mFrameScheduler.mPostCount);
+    mTicker.doFrame(3);
+    Assert.assertEquals(Arrays.asList(3L), offscreen.mFrameTimes);
+  }
+
+  @Test
+  public void testSkippedCallbacksResumeWhenScrollingStops() {
+    KeyframesFrameBudget frameBudget = new KeyframesFrameBudget();
+    frameBudget.setScrolling(true);
+    mTicker.setFrameBudget(frameBudget);
+    RecordingCallback offscreen =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.OFFSCREEN, null);
+    mTicker.postCallback(offscreen);
+    mTicker.doFrame(1);
+    Assert.assertEquals(1, offscreen.mSkipCount);
+    Assert.assertEquals(1, mFrameScheduler.mPostCount);
+
+    frameBudget.setScrolling(false);
+    Assert.assertEquals(2, mFrameScheduler.mPostCount);
+    mTicker.doFrame(2);
+    Assert.assertEquals(Arrays.asList(2L), offscreen.mFrameTimes);
+
+    // A removed callback is no longer reconsidered.
+    frameBudget.setScrolling(true);
+    mTicker.postCallback(offscreen);
+    mTicker.doFrame(3);
+    mTicker.removeCallback(offscreen);
+    frameBudget.setScrolling(false);
+    Assert.assertEquals(3, mFrameScheduler.mPostCount);
+  }
+
+  @Test
+  public void testCallbackChangingPriorityDuringFrameIsCalledOnce() {
+    mTicker.setFrameBudget(new KeyframesFrameBudget());
+    final RecordingCallback offscreen =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.OFFSCREEN, null);
+    final RecordingCallback visible =
+        new RecordingCallback(false, KeyframesFrameBudget.Priority.VISIBLE, null);
+    KeyframesTicker.Callback promoter = new KeyframesTicker.Callback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        offscreen.mPriority = KeyframesFrameBudget.Priority.FOREGROUND;
+        visible.mPriority = KeyframesFrameBudget.Priority.OFFSCREEN;
+      }
+
+      @Override
+      public KeyframesFrameBudget.Priority getPriority() {
+        return KeyframesFrameBudget.Priority.VISIBLE;
+      }
+
+      @Override
+      public void onFrameSkipped() {
+      }
+    };
+    mTicker.postCallback(promoter);
+    mTicker.postCallback(visible);
+    mTicker.postCallback(offscreen);
+    mTicker.doFrame(16);
+
+    Assert.assertEquals(Arrays.asList(16L), offscreen.mFrameTimes);
+    Assert.assertEquals(Arrays.asList(16L), visible.mFrameTimes);
+  }
+
+  private class RecordingCallback implements KeyframesTicker.Callback {
+
+    private final boolean mRepost;
+    private final List<Long> mFrameTimes = new ArrayList<>();
+    private final List<RecordingCallback> mOrder;
+    private KeyframesFrameBudget.Priority mPriority;
+    private int mSkipCount;
+
+    private RecordingCallback(boolean repost) {
+      this(repost, KeyframesFrameBudget.Priority.VISIBLE, null);
+    }
+
+    private RecordingCallback(
+        boolean repost,
+        KeyframesFrameBudget.Priority priority,
+        List<RecordingCallback> order) {
+      mRepost = repost;
+      mPriority = priority;
+      mOrder = order;
+    }
+
+    @Override
+    public KeyframesFrameBudget.Priority getPriority() {
+      return mPriority;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      mFrameTimes.add(frameTimeNanos);
+      if (mOrder != null) {
+        mOrder.add(this);
+      }
+      if (mRepost) {
+        mTicker.postCallback(this);
+      }
+    }
+
+    @Override
+    public void onFrameSkipped() {
+      mSkipCount++;
+    }
+  }
+
+  /**
+   * Makes the same decision for all animations other than foreground ones.
+   */
+  private static class ScriptedFrameBudget extends KeyframesFrameBudget {
+
+    private Decision mDecision;
+
+    private ScriptedFrameBudget(Decision decision) {
+      mDecision = decision;
+    }
+
+    @Override
+    public Decision getDecision(Priority priority, long spentNanos) {
+      return priority == Priority.FOREGROUND ? Decision.ADVANCE : mDecision;
+    }
+  }
+
+  private static class ManualFrameScheduler implements KeyframesTicker.FrameScheduler {
+
+    private int mPostCount;
+    private int mCancelCount;
+
+    @Override
+    public void postFrame(KeyframesTicker ticker) {
+      mPostCount++;
+    }
+
+    @Override
+    public void cancelFrame(KeyframesTicker ticker) {
+      mCancelCount++;
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.deserializers;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFAnimationGroup;
+import com.facebook.keyframes.model.KFColorFrame;
+import com.facebook.keyframes.model.KFFeature;
+import com.facebook.keyframes.model.KFFeatureEffect;
+import com.facebook.keyframes.model.KFFeatureFrame;
+import com.facebook.keyframes.model.KFGradient;
+import com.facebook.keyframes.model.KFGradientColor;
+import com.facebook.keyframes.model.KFImage;
+import com.facebook.keyframes.util.VectorCommand;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class KFImageBinarySerializationTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    KFImage image = createImage();
+    KFImage result = KFImageBinaryDeserializer.deserialize(ByteBuffer.wrap(serialize(image)));
+
+    Assert.assertEquals(image.getFrameRate(), result.getFrameRate());
+    Assert.assertEquals(image.getFrameCount(), result.getFrameCount());
+    Assert.assertEquals(image.getKey(), result.getKey());
+    Assert.assertArrayEquals(image.getCanvasSize(), result.getCanvasSize(), 0);
+    Assert.assertNull(result.getBitmaps());
+
+    Assert.assertEquals(1, result.getFeatures().size());
+    KFFeature feature = result.getFeatures().get(0);
+    Assert.assertEquals("feature", feature.getName());
+    Assert.assertEquals(0xFF102030, feature.getFillColor());
+    Assert.assertEquals(0x80405060, feature.getStrokeColor());
+    Assert.assertEquals(2.5f, feature.getStrokeWidth(), 0);
+    Assert.assertEquals(1, feature.getFromFrame(), 0);
+    Assert.assertEquals(Float.MAX_VALUE, feature.getToFrame(), 0);
+    Assert.assertEquals(1, feature.getAnimationGroup());
+    Assert.assertNull(feature.getBackedImageName());
+    Assert.assertNull(feature.getFeatureMask());
+
+    Assert.assertEquals(2, feature.getKeyFrames().size());
+    List<VectorCommand> commands = feature.getKeyFrames().get(1).getShapeData().getVectorCommands();
+    Assert.assertEquals(10, feature.getKeyFrames().get(1).getKeyFrame());
+    Assert.assertEquals(3, commands.size());
+    Assert.assertEquals('M', commands.get(0).getCommandCharacter());
+    Assert.assertEquals('c', commands.get(1).getCommandCharacter());
+    Assert.assertEquals('L', commands.get(2).getCommandCharacter());
+    Assert.assertArrayEquals(
+        new float[]{1.5f, -2.25f, 3, 4, 5, 6},
+        commands.get(1).getArguments(),
+        0);
+    assertTimingCurvesEqual(
+        image.getFeatures().get(0).getTimingCurves(),
+        feature.getTimingCurves());
+
+    List<KFAnimation> animations = feature.getFeatureAnimations();
+    Assert.assertEquals(2, animations.size());
+    Assert.assertEquals(KFAnimation.PropertyType.SCALE, animations.get(0).getPropertyType());
+    Assert.assertEquals(KFAnimation.PropertyType.OPACITY, animations.get(1).getPropertyType());
+    Assert.assertArrayEquals(
+        new float[]{50, 50},
+        animations.get(0).getAnimationFrames().get(1).getData(),
+        0);
+
+    KFGradient gradient = feature.getEffect().getGradient();
+    Assert.assertEquals(0xFF00FF00, gradient.getColorStart().getKeyValues().get(0).getColor());
+    Assert.assertEquals(0xFF0000FF, gradient.getColorEnd().getKeyValues().get(0).getColor());
+
+    Assert.assertEquals(1, result.getAnimationGroups().size());
+    KFAnimationGroup group = result.getAnimationGroups().get(0);
+    Assert.assertEquals(1, group.getGroupId());
+    Assert.assertEquals(0, group.getParentGroup());
+    Assert.assertEquals(
+        KFAnimation.PropertyType.ROTATION,
+        group.getAnimations().get(0).getPropertyType());
+    Assert.assertNotNull(group.getAnchorPointAnimation());
+  }
+
+  @Test
+  public void testEncodedBitmapsAreCopied() throws IOException {
+    byte[] encodedBitmap = new byte[]{1, 2, 3, 4};
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = 10;
+    builder.canvasSize = new float[]{100, 100};
+    builder.features = createImage().getFeatures();
+    builder.encodedBitmaps = new HashMap<>();
+    builder.encodedBitmaps.put("bitmap", encodedBitmap);
+
+    KFImage result = KFImageBinaryDeserializer.deserialize(
+        ByteBuffer.wrap(serialize(builder.build())));
+
+    Assert.assertEquals(1, result.getKFBitmaps().size());
+    Assert.assertTrue(Arrays.equals(
+        encodedBitmap,
+        result.getKFBitmaps().get("bitmap").getEncodedBytes()));
+  }
+
+  @Test
+  public void testInvalidHeader() {
+    try {
+      KFImageBinaryDeserializer.deserialize(ByteBuffer.wrap(new byte[]{'{', '"', 'a', '"', 0, 0}));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("Not a binary KFImage"));
+    }
+  }
+
+  @Test
+  public void testTruncatedImage() throws IOException {
+    byte[] bytes = serialize(createImage());
+    try {
+      KFImageBinaryDeserializer.deserialize(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length / 2)));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("Truncated"));
+    }
+  }
+
+  @Test
+  public void testOutOfRangeCounts() {
+    // A canvas size longer than the whole buffer, and a negative feature count.
+    assertDeserializeFails(createImageHeader(Integer.MAX_VALUE, 0), "Truncated");
+    assertDeserializeFails(createImageHeader(2, -5), "Malformed");
+  }
+
+  private static ByteBuffer createImageHeader(int canvasSizeLength, int featureCount) {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    buffer.putInt(KFBinaryFormat.MAGIC);
+    buffer.putInt(KFBinaryFormat.VERSION);
+    buffer.putInt(24);
+    buffer.putInt(10);
+    buffer.putInt(canvasSizeLength);
+    buffer.putFloat(100);
+    buffer.putFloat(100);
+    buffer.putInt(0);
+    buffer.putInt(featureCount);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void assertDeserializeFails(ByteBuffer buffer, String message) {
+    try {
+      KFImageBinaryDeserializer.deserialize(buffer);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains(message));
+    }
+  }
+
+  private static byte[] serialize(KFImage image) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    KFImageBinarySerializer.serialize(image, outputStream);
+    return outputStream.toByteArray();
+  }
+
+  private static void assertTimingCurvesEqual(float[][][] expected, float[][][] actual) {
+    Assert.assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertArrayEquals(expected[i][0], actual[i][0], 0);
+      Assert.assertArrayEquals(expected[i][1], actual[i][1], 0);
+    }
+  }
+
+  private static KFImage createImage() {
+    KFFeature.Builder featureBuilder = new KFFeature.Builder();
+    featureBuilder.name = "feature";
+    featureBuilder.fillColor = 0xFF102030;
+    featureBuilder.strokeColor = 0x80405060;
+    featureBuilder.strokeWidth = 2.5f;
+    featureBuilder.fromFrame = 1;
+    featureBuilder.animationGroup = 1;
+    featureBuilder.keyFrames = Arrays.asList(
+        new KFFeatureFrame(0, Arrays.asList("M0,0", "c1,2,3,4,5,6", "L7,8")),
+        new KFFeatureFrame(10, Arrays.asList("M1,1", "c1.5,-2.25,3,4,5,6", "L9,10")));
+    featureBuilder.timingCurves = new float[][][]{{{0.25f, 0.1f}, {0.25f, 1}}};
+    featureBuilder.featureAnimations = new ArrayList<>(Arrays.asList(
+        createAnimation(KFAnimation.PropertyType.SCALE, new float[]{100, 100}, new float[]{50, 50}),
+        createAnimation(KFAnimation.PropertyType.OPACITY, new float[]{100}, new float[]{0})));
+    KFGradient.Builder gradientBuilder = new KFGradient.Builder();
+    gradientBuilder.colorStart = createGradientColor(0xFF00FF00);
+    gradientBuilder.colorEnd = createGradientColor(0xFF0000FF);
+    KFFeatureEffect.Builder effectBuilder = new KFFeatureEffect.Builder();
+    effectBuilder.gradient = gradientBuilder.build();
+    featureBuilder.effect = effectBuilder.build();
+
+    KFAnimationGroup.Builder groupBuilder = new KFAnimationGroup.Builder();
+    groupBuilder.groupId = 1;
+    groupBuilder.animations = new ArrayList<>(Arrays.asList(
+        createAnimation(KFAnimation.PropertyType.ROTATION, new float[]{0}, new float[]{90}),
+        createAnimation(KFAnimation.PropertyType.ANCHOR_POINT, new float[]{5, 5}, new float[]{5, 5})));
+
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = 20;
+    builder.canvasSize = new float[]{100, 200};
+    builder.key = 42;
+    builder.features = Arrays.asList(featureBuilder.build());
+    builder.animationGroups = new ArrayList<>(Arrays.asList(groupBuilder.build()));
+    return builder.build();
+  }
+
+  private static KFAnimation createAnimation(
+      KFAnimation.PropertyType propertyType,
+      float[] startData,
+      float[] endData) {
+    KFAnimationFrame.Builder startFrame = new KFAnimationFrame.Builder();
+    startFrame.startFrame = 0;
+    startFrame.data = startData;
+    KFAnimationFrame.Builder endFrame = new KFAnimationFrame.Builder();
+    endFrame.startFrame = 10;
+    endFrame.data = endData;
+    KFAnimation.Builder builder = new KFAnimation.Builder();
+    builder.propertyType = propertyType;
+    builder.animationFrames = Arrays.asList(startFrame.build(), endFrame.build());
+    builder.timingCurves = new float[][][]{{{0, 0}, {1, 1}}};
+    return builder.build();
+  }
+
+  private static KFGradientColor createGradientColor(int color) {
+    KFColorFrame.Builder frameBuilder = new KFColorFrame.Builder();
+    frameBuilder.startFrame = 0;
+    frameBuilder.color = color;
+    KFGradientColor.Builder builder = new KFGradientColor.Builder();
+    builder.keyValues = Arrays.asList(frameBuilder.build());
+    return builder.build();
+  }
+}
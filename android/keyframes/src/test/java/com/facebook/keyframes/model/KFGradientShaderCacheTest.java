@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import android.graphics.Shader;
+
+import com.facebook.keyframes.util.KFInterpolatorFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class KFGradientShaderCacheTest {
+
+  private static final float[][] LINEAR = {{0, 0}, {1, 1}};
+
+  @Test
+  public void testShadersAreLazyAndShared() {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    try {
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.CUBIC_BEZIER);
+      KFImage image = createImage();
+      KFGradientShaderCache cache = image.getGradientShaderCache(5);
+      Assert.assertSame(cache, image.getGradientShaderCache(5));
+      Assert.assertNotSame(cache, image.getGradientShaderCache(10));
+      Assert.assertEquals(0, cache.getShaderCount());
+
+      Assert.assertNull(cache.getShader(0, 5));
+
+      // The start color stops changing at frame 10, so later steps share one shader.
+      Shader shader = cache.getShader(1, 12);
+      Assert.assertNotNull(shader);
+      Assert.assertSame(shader, cache.getShader(1, 16));
+      Assert.assertSame(shader, cache.getShader(1, 20));
+      Assert.assertEquals(1, cache.getShaderCount());
+
+      Assert.assertNotSame(shader, cache.getShader(1, 0));
+      Assert.assertEquals(2, cache.getShaderCount());
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+    }
+  }
+
+  private static KFImage createImage() {
+    KFGradient.Builder gradientBuilder = new KFGradient.Builder();
+    gradientBuilder.colorStart = createGradientColor(
+        new int[]{0, 10, 20},
+        new int[]{0xFF000000, 0xFFFF0000, 0xFFFF0000},
+        LINEAR,
+        LINEAR);
+    gradientBuilder.colorEnd = createGradientColor(new int[]{0}, new int[]{0xFFFFFFFF});
+    KFFeatureEffect.Builder effectBuilder = new KFFeatureEffect.Builder();
+    effectBuilder.gradient = gradientBuilder.build();
+
+    KFFeature.Builder plainFeatureBuilder = new KFFeature.Builder();
+    plainFeatureBuilder.name = "plain";
+    KFFeature.Builder gradientFeatureBuilder = new KFFeature.Builder();
+    gradientFeatureBuilder.name = "gradient";
+    gradientFeatureBuilder.effect = effectBuilder.build();
+
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 10;
+    builder.frameCount = 20;
+    builder.canvasSize = new float[]{100, 100};
+    builder.features = Arrays.asList(plainFeatureBuilder.build(), gradientFeatureBuilder.build());
+    builder.animationGroups = new ArrayList<>();
+    return builder.build();
+  }
+
+  private static KFGradientColor createGradientColor(
+      int[] keyFrames,
+      int[] colors,
+      float[][]... timingCurves) {
+    KFGradientColor.Builder builder = new KFGradientColor.Builder();
+    builder.keyValues = new ArrayList<>();
+    for (int i = 0; i < keyFrames.length; i++) {
+      KFColorFrame.Builder frameBuilder = new KFColorFrame.Builder();
+      frameBuilder.startFrame = keyFrames[i];
+      frameBuilder.color = colors[i];
+      builder.keyValues.add(frameBuilder.build());
+    }
+    builder.timingCurves = timingCurves;
+    return builder.build();
+  }
+}
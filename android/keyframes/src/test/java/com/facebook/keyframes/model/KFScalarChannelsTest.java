@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model;
+
+import com.facebook.keyframes.model.keyframedmodels.KeyFramedOpacity;
+import com.facebook.keyframes.model.keyframedmodels.KeyFramedStrokeWidth;
+import com.facebook.keyframes.util.KFInterpolatorFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KFScalarChannelsTest {
+
+  private static final float[][] LINEAR = {{0, 0}, {1, 1}};
+  private static final float[][] EASE_IN_OUT = {{0.42f, 0}, {0.58f, 1}};
+
+  @Test
+  public void testMatchesKeyFramedObjects() {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    try {
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.CUBIC_BEZIER);
+      KFFeature strokedFeature = createFeature(
+          createAnimation(
+              KFAnimation.PropertyType.STROKE_WIDTH,
+              new int[]{0, 10, 30},
+              new float[]{1, 5, 2},
+              LINEAR,
+              EASE_IN_OUT),
+          createAnimation(
+              KFAnimation.PropertyType.OPACITY,
+              // Out of order, and with a duplicate key frame whose later value wins.
+              new int[]{20, 0, 5, 5},
+              new float[]{100, 0, 10, 50},
+              EASE_IN_OUT,
+              LINEAR,
+              EASE_IN_OUT));
+      KFFeature staticFeature = createFeature();
+      KFFeature constantFeature = createFeature(
+          createAnimation(
+              KFAnimation.PropertyType.OPACITY,
+              new int[]{0, 30},
+              new float[]{40, 40},
+              LINEAR));
+      KFScalarChannels channels = new KFScalarChannels(
+          Arrays.asList(strokedFeature, staticFeature, constantFeature));
+
+      Assert.assertEquals(3, channels.getChannelCount());
+      for (int property : new int[]{
+          KFScalarChannels.STROKE_WIDTH,
+          KFScalarChannels.STROKE_COLOR,
+          KFScalarChannels.FILL_COLOR,
+          KFScalarChannels.OPACITY}) {
+        Assert.assertEquals(KFScalarChannels.NO_CHANNEL, channels.getChannel(1, property));
+      }
+      Assert.assertEquals(
+          KFScalarChannels.NO_CHANNEL,
+          channels.getChannel(0, KFScalarChannels.FILL_COLOR));
+      int strokeWidthChannel = channels.getChannel(0, KFScalarChannels.STROKE_WIDTH);
+      int opacityChannel = channels.getChannel(0, KFScalarChannels.OPACITY);
+      int constantChannel = channels.getChannel(2, KFScalarChannels.OPACITY);
+
+      KeyFramedStrokeWidth.StrokeWidth strokeWidth = new KeyFramedStrokeWidth.StrokeWidth();
+      KeyFramedOpacity.Opacity opacity = new KeyFramedOpacity.Opacity();
+      // Forwards, then backwards, so that segments are found both from the cursor and by search.
+      List<Float> frames = new ArrayList<>();
+      for (float frame = -2; frame <= 32; frame += 0.5f) {
+        frames.add(frame);
+      }
+      for (int i = frames.size() - 1; i >= 0; i--) {
+        frames.add(frames.get(i));
+      }
+      for (float frame : frames) {
+        channels.evaluate(frame);
+        strokedFeature.setStrokeWidth(strokeWidth, frame);
+        strokedFeature.setOpacity(opacity, frame);
+        Assert.assertEquals(
+            "At " + frame,
+            strokeWidth.getStrokeWidth(),
+            channels.getValue(strokeWidthChannel),
+            0);
+        Assert.assertEquals(
+            "At " + frame,
+            opacity.getOpacity(),
+            channels.getValue(opacityChannel),
+            0);
+        Assert.assertEquals("At " + frame, 40, channels.getValue(constantChannel), 0);
+      }
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+    }
+  }
+
+  @Test
+  public void testColorsInterpolatePerComponent() {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    try {
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.CUBIC_BEZIER);
+      KFFeature feature = createFeature(
+          createAnimation(
+              KFAnimation.PropertyType.FILL_COLOR,
+              new int[]{0, 10},
+              new float[]{0xFF000000, 0xFFFF8040},
+              LINEAR));
+      KFScalarChannels channels = new KFScalarChannels(Arrays.asList(feature));
+      int fillColorChannel = channels.getChannel(0, KFScalarChannels.FILL_COLOR);
+
+      channels.evaluate(5);
+      Assert.assertEquals(0xFF804020, channels.getColor(fillColorChannel));
+      channels.evaluate(10);
+      Assert.assertEquals(0xFFFF8040, channels.getColor(fillColorChannel));
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+    }
+  }
+
+  @Test
+  public void testDrawablesShareImageTable() {
+    KFImage.Builder builder = new KFImage.Builder();
+    builder.frameRate = 24;
+    builder.frameCount = 10;
+    builder.canvasSize = new float[]{100, 100};
+    builder.features = Arrays.asList(createFeature(
+        createAnimation(
+            KFAnimation.PropertyType.STROKE_WIDTH,
+            new int[]{0, 10},
+            new float[]{0, 10},
+            LINEAR)));
+    builder.animationGroups = new ArrayList<>();
+    KFImage image = builder.build();
+    KFScalarChannelTable table = image.getScalarChannelTable();
+    Assert.assertSame(table, image.getScalarChannelTable());
+
+    // Channels of the same table keep their own outputs.
+    KFScalarChannels first = new KFScalarChannels(table);
+    KFScalarChannels second = new KFScalarChannels(table);
+    int channel = first.getChannel(0, KFScalarChannels.STROKE_WIDTH);
+    first.evaluate(2);
+    second.evaluate(8);
+    Assert.assertEquals(2, first.getValue(channel), 0.0001f);
+    Assert.assertEquals(8, second.getValue(channel), 0.0001f);
+  }
+
+  private static KFFeature createFeature(KFAnimation... animations) {
+    KFFeature.Builder builder = new KFFeature.Builder();
+    builder.strokeWidth = 3;
+    builder.featureAnimations = new ArrayList<>(Arrays.asList(animations));
+    return builder.build();
+  }
+
+  private static KFAnimation createAnimation(
+      KFAnimation.PropertyType type,
+      int[] keyFrames,
+      float[] values,
+      float[][]... timingCurves) {
+    List<KFAnimationFrame> frames = new ArrayList<>();
+    for (int i = 0; i < keyFrames.length; i++) {
+      KFAnimationFrame.Builder frame = new KFAnimationFrame.Builder();
+      frame.startFrame = keyFrames[i];
+      frame.data = new float[]{values[i]};
+      frames.add(frame.build());
+    }
+    KFAnimation.Builder builder = new KFAnimation.Builder();
+    builder.propertyType = type;
+    builder.animationFrames = frames;
+    builder.timingCurves = timingCurves;
+    return builder.build();
+  }
+}
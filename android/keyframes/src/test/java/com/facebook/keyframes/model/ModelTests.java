@@ -39,6 +39,29 @@ public class ModelTests {
         group.getAnimations().get(2).getPropertyType());
   }
 
+  @Test
+  public void testBitmapSampleSize() {
+    Assert.assertEquals(1, KFBitmap.computeSampleSize(2f));
+    Assert.assertEquals(1, KFBitmap.computeSampleSize(1f));
+    Assert.assertEquals(1, KFBitmap.computeSampleSize(0.6f));
+    Assert.assertEquals(2, KFBitmap.computeSampleSize(0.5f));
+    Assert.assertEquals(2, KFBitmap.computeSampleSize(0.3f));
+    Assert.assertEquals(4, KFBitmap.computeSampleSize(0.25f));
+    Assert.assertEquals(1, KFBitmap.computeSampleSize(0f));
+    Assert.assertTrue(KFBitmap.computeSampleSize(0.0001f) <= 32);
+  }
+
+  @Test
+  public void testBitmapDecodeFailureIsRemembered() {
+    // Decoding returns null in unit tests, as it would for corrupt data.
+    KFBitmap bitmap = new KFBitmap(new byte[] {1, 2, 3});
+    Assert.assertFalse(bitmap.hasDecodeFailed(1));
+    Assert.assertNull(bitmap.getBitmap(1));
+    Assert.assertTrue(bitmap.hasDecodeFailed(1));
+    Assert.assertFalse(bitmap.hasDecodeFailed(2));
+    Assert.assertNull(bitmap.getBitmap(1));
+  }
+
   @Test
   public void testFeatureAnimationOrderingAndExtraction() {
     // Test transform matrix ordering is correct, as well as filtering out stroke_width from matrix
@@ -80,6 +103,136 @@ public class ModelTests {
         feature.mFillColorAnimation);
   }
 
+  @Test
+  public void testConstantAnimationDetection() {
+    KFAnimation constantScale = createConstantAnimation(KFAnimation.PropertyType.SCALE, 100, 100);
+    Assert.assertTrue(constantScale.isConstant());
+    Assert.assertTrue(constantScale.isIdentity());
+
+    KFAnimation constantRotation = createConstantAnimation(KFAnimation.PropertyType.ROTATION, 45);
+    Assert.assertTrue(constantRotation.isConstant());
+    Assert.assertFalse(constantRotation.isIdentity());
+
+    KFAnimation animatedRotation =
+        createAnimation(KFAnimation.PropertyType.ROTATION, new float[]{0}, new float[]{45});
+    Assert.assertFalse(animatedRotation.isConstant());
+    Assert.assertFalse(animatedRotation.isIdentity());
+
+    KFAnimation constantPosition =
+        createConstantAnimation(KFAnimation.PropertyType.POSITION, 10, 20);
+    Assert.assertTrue(constantPosition.isIdentity());
+
+    KFAnimation constantOpacity = createConstantAnimation(KFAnimation.PropertyType.OPACITY, 100);
+    Assert.assertTrue(constantOpacity.isConstant());
+    Assert.assertFalse(constantOpacity.isIdentity());
+  }
+
+  @Test
+  public void testConstantGroupChainFolding() {
+    // Group 1 is constant, group 2 is constant within a constant parent, group 3 is animated, and
+    // group 4 is constant within an animated parent.
+    KFAnimationGroup root = createGroup(
+        1,
+        0,
+        createConstantAnimation(KFAnimation.PropertyType.SCALE, 50, 50),
+        createConstantAnimation(KFAnimation.PropertyType.ROTATION, 0));
+    KFAnimationGroup constantChild = createGroup(
+        2,
+        1,
+        createConstantAnimation(KFAnimation.PropertyType.X_POSITION, 10));
+    KFAnimationGroup animatedChild = createGroup(
+        3,
+        1,
+        createAnimation(KFAnimation.PropertyType.ROTATION, new float[]{0}, new float[]{90}),
+        createConstantAnimation(KFAnimation.PropertyType.SCALE, 100, 100));
+    KFAnimationGroup constantGrandchild = createGroup(
+        4,
+        3,
+        createConstantAnimation(KFAnimation.PropertyType.Y_POSITION, 5));
+
+    Assert.assertTrue(root.isConstant());
+    Assert.assertEquals(1, root.getSkippedAnimationCount());
+    Assert.assertFalse(animatedChild.isConstant());
+    Assert.assertEquals(1, animatedChild.getSkippedAnimationCount());
+
+    KFFeature.Builder featureBuilder = new KFFeature.Builder();
+    featureBuilder.animationGroup = 4;
+    featureBuilder.featureAnimations = new ArrayList<>(Arrays.asList(
+        createConstantAnimation(KFAnimation.PropertyType.ROTATION, 30),
+        createConstantAnimation(KFAnimation.PropertyType.POSITION, 1, 2)));
+    KFFeature feature = featureBuilder.build();
+    // The rotation is folded into a constant matrix, and the position has no effect.
+    Assert.assertEquals(2, feature.getFoldedAnimationCount());
+
+    KFImage.Builder imageBuilder = new KFImage.Builder();
+    imageBuilder.frameRate = 24;
+    imageBuilder.frameCount = 10;
+    imageBuilder.canvasSize = new float[]{100, 100};
+    imageBuilder.features = Arrays.asList(feature);
+    imageBuilder.animationGroups = new ArrayList<>(
+        Arrays.asList(constantGrandchild, animatedChild, constantChild, root));
+    KFImage image = imageBuilder.build();
+
+    // Both animations of group 1, the one of group 2, the identity scale of group 3, and both of
+    // the feature.  Group 4 still needs its animated parent each frame.
+    Assert.assertEquals(2 + 1 + 1 + 2, image.getFoldedAnimationCount());
+  }
+
+  @Test
+  public void testAnimationGroupIndexLookup() {
+    KFImage.Builder imageBuilder = new KFImage.Builder();
+    imageBuilder.frameRate = 24;
+    imageBuilder.frameCount = 10;
+    imageBuilder.canvasSize = new float[]{100, 100};
+    imageBuilder.features = Arrays.asList(new KFFeature.Builder().build());
+    // Sparse IDs, with a child listed before its parent.
+    KFAnimation scale = createConstantAnimation(KFAnimation.PropertyType.SCALE, 50, 50);
+    imageBuilder.animationGroups = new ArrayList<>(Arrays.asList(
+        createGroup(1000, 40, scale),
+        createGroup(40, 0, scale),
+        createGroup(7, 0, scale)));
+    KFImage image = imageBuilder.build();
+
+    for (int i = 0; i < 3; i++) {
+      KFAnimationGroup group = image.getAnimationGroups().get(i);
+      Assert.assertEquals(i, image.getAnimationGroupIndex(group.getGroupId()));
+    }
+    Assert.assertEquals(-1, image.getAnimationGroupIndex(8));
+    Assert.assertEquals(-1, image.getAnimationGroupIndex(2000));
+  }
+
+  private static KFAnimation createConstantAnimation(KFAnimation.PropertyType type, float... data) {
+    return createAnimation(type, data, data);
+  }
+
+  private static KFAnimation createAnimation(
+      KFAnimation.PropertyType type,
+      float[] startData,
+      float[] endData) {
+    KFAnimationFrame.Builder startFrame = new KFAnimationFrame.Builder();
+    startFrame.startFrame = 0;
+    startFrame.data = startData;
+    KFAnimationFrame.Builder endFrame = new KFAnimationFrame.Builder();
+    endFrame.startFrame = 10;
+    endFrame.data = endData;
+    KFAnimation.Builder builder = new KFAnimation.Builder();
+    builder.propertyType = type;
+    builder.animationFrames = Arrays.asList(startFrame.build(), endFrame.build());
+    builder.timingCurves = new float[][][]{{{0, 0}, {1, 1}}};
+    return builder.build();
+  }
+
+  private static KFAnimationGroup createGroup(
+      int groupId,
+      int parentGroup,
+      KFAnimation... animations) {
+    KFAnimationGroup.Builder builder = new KFAnimationGroup.Builder();
+    builder.groupId = groupId;
+    builder.parentGroup = parentGroup;
+    builder.animations = new ArrayList<>(Arrays.asList(animations));
+    return builder.build();
+  }
+
   private KFAnimation createDummyAnimationOfType(KFAnimation.PropertyType type) {
     KFAnimation animation = Mockito.mock(KFAnimation.class);
     Mockito.when(animation.getPropertyType()).thenReturn(type);
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.model.keyframedmodels;
+
+import com.facebook.keyframes.model.HasKeyFrame;
+import com.facebook.keyframes.util.KFInterpolatorFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KeyFramedObjectTest {
+
+  private static final float[][] LINEAR = {{0, 0}, {1, 1}};
+
+  @Test
+  public void testSegmentLookup() {
+    TestKeyFramedObject object = create(0, 10, 20, 40, 80);
+    float[] frames = {-5, 0, 5, 10, 15, 20, 39, 40, 79.5f, 80, 100};
+    // Forwards, backwards and in a random order, so that both the cursor and the binary search
+    // are exercised.
+    List<Float> order = new ArrayList<>();
+    for (float frame : frames) {
+      order.add(frame);
+    }
+    for (int i = frames.length - 1; i >= 0; i--) {
+      order.add(frames[i]);
+    }
+    order.addAll(Arrays.asList(39f, 5f, 100f, 15f, 79.5f, -5f, 10f));
+    for (float frame : order) {
+      assertApplies(object, frame);
+    }
+  }
+
+  @Test
+  public void testUnsortedAndDuplicateKeyFrames() {
+    TestKeyFramedObject object = create(20, 0, 10, 10);
+    Result result = new Result();
+
+    object.apply(15, result);
+    Assert.assertEquals(10, result.mStateA.getKeyFrame());
+    Assert.assertEquals(20, result.mStateB.getKeyFrame());
+    Assert.assertEquals(0.5f, result.mInterpolationValue, 1e-4f);
+
+    // The later of the duplicate key frames wins.
+    object.apply(10, result);
+    Assert.assertEquals(3, ((TestFrame) result.mStateA).mId);
+  }
+
+  @Test
+  public void testSingleKeyFrame() {
+    TestKeyFramedObject object = create(5);
+    Result result = new Result();
+    object.apply(10, result);
+    Assert.assertEquals(5, result.mStateA.getKeyFrame());
+    Assert.assertNull(result.mStateB);
+  }
+
+  @Test
+  public void testStates() {
+    TestKeyFramedObject object = create(0, 10, 20);
+
+    // Outside of the described frames, the first or last key frame applies alone.
+    Assert.assertEquals(object.getState(-5), object.getState(0));
+    Assert.assertEquals(object.getState(20), object.getState(30));
+    Assert.assertTrue(object.getState(0) != object.getState(20));
+
+    Assert.assertTrue(object.getState(5) != object.getState(6));
+    Assert.assertTrue(object.getState(5) != object.getState(15));
+    Assert.assertEquals(object.getState(5), object.getState(5));
+
+    for (float frame : new float[]{-5, 0, 5, 10, 15, 20, 30}) {
+      long state = object.getState(frame);
+      Assert.assertTrue(state >= 0);
+      Result fromState = new Result();
+      object.applyState(state, fromState);
+      Result fromFrame = new Result();
+      object.apply(frame, fromFrame);
+      Assert.assertSame(fromFrame.mStateA, fromState.mStateA);
+      Assert.assertSame(fromFrame.mStateB, fromState.mStateB);
+      Assert.assertEquals(fromFrame.mInterpolationValue, fromState.mInterpolationValue, 0);
+    }
+  }
+
+  /**
+   * Checks the key frames passed to applyImpl against a linear scan.
+   */
+  private static void assertApplies(TestKeyFramedObject object, float frame) {
+    Result result = new Result();
+    object.apply(frame, result);
+    int[] keyFrames = object.mKeyFrameValues;
+    if (frame <= keyFrames[0] || frame >= keyFrames[keyFrames.length - 1]) {
+      Assert.assertNull("At " + frame, result.mStateB);
+      return;
+    }
+    int segment = 0;
+    while (keyFrames[segment + 1] <= frame) {
+      segment++;
+    }
+    Assert.assertEquals("At " + frame, keyFrames[segment], result.mStateA.getKeyFrame());
+    Assert.assertEquals("At " + frame, keyFrames[segment + 1], result.mStateB.getKeyFrame());
+    Assert.assertEquals(
+        "At " + frame,
+        (frame - keyFrames[segment]) / (keyFrames[segment + 1] - keyFrames[segment]),
+        result.mInterpolationValue,
+        1e-4f);
+  }
+
+  private static TestKeyFramedObject create(int... keyFrames) {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    try {
+      // Path sampled interpolators need a real android Path.
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.CUBIC_BEZIER);
+      List<TestFrame> frames = new ArrayList<>();
+      for (int i = 0; i < keyFrames.length; i++) {
+        frames.add(new TestFrame(i, keyFrames[i]));
+      }
+      int[] sorted = keyFrames.clone();
+      Arrays.sort(sorted);
+      float[][][] timingCurves = new float[Math.max(keyFrames.length - 1, 0)][][];
+      Arrays.fill(timingCurves, LINEAR);
+      return new TestKeyFramedObject(frames, timingCurves, sorted);
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+    }
+  }
+
+  private static class TestFrame implements HasKeyFrame {
+
+    private final int mId;
+    private final int mKeyFrame;
+
+    private TestFrame(int id, int keyFrame) {
+      mId = id;
+      mKeyFrame = keyFrame;
+    }
+
+    @Override
+    public int getKeyFrame() {
+      return mKeyFrame;
+    }
+  }
+
+  private static class Result {
+
+    private HasKeyFrame mStateA;
+    private HasKeyFrame mStateB;
+    private float mInterpolationValue;
+  }
+
+  private static class TestKeyFramedObject extends KeyFramedObject<TestFrame, Result> {
+
+    private final int[] mKeyFrameValues;
+
+    private TestKeyFramedObject(
+        List<TestFrame> objects,
+        float[][][] timingCurves,
+        int[] keyFrameValues) {
+      super(objects, timingCurves);
+      mKeyFrameValues = keyFrameValues;
+    }
+
+    @Override
+    protected void applyImpl(
+        TestFrame stateA,
+        TestFrame stateB,
+        float interpolationValue,
+        Result modifiable) {
+      modifiable.mStateA = stateA;
+      modifiable.mStateB = stateB;
+      modifiable.mInterpolationValue = interpolationValue;
+    }
+  }
+}
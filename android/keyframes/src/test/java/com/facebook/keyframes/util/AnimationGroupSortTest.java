@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import com.facebook.keyframes.model.KFAnimation;
+import com.facebook.keyframes.model.KFAnimationFrame;
+import com.facebook.keyframes.model.KFAnimationGroup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AnimationGroupSortTest {
+
+  @Test
+  public void testParentsBeforeChildren() {
+    List<KFAnimationGroup> groups = Arrays.asList(
+        createGroup(5, 4),
+        createGroup(3, 1),
+        createGroup(4, 2),
+        createGroup(1, 0),
+        createGroup(6, 1),
+        createGroup(2, 0));
+    List<KFAnimationGroup> input = new ArrayList<>(groups);
+
+    List<KFAnimationGroup> sorted = AnimationGroupSort.sort(input);
+    Assert.assertEquals(groups.size(), sorted.size());
+    Map<Integer, Integer> positions = new HashMap<>();
+    for (int i = 0; i < sorted.size(); i++) {
+      positions.put(sorted.get(i).getGroupId(), i);
+    }
+    for (KFAnimationGroup group : groups) {
+      Assert.assertTrue(positions.containsKey(group.getGroupId()));
+      if (group.getParentGroup() != 0) {
+        Assert.assertTrue(
+            positions.get(group.getParentGroup()) < positions.get(group.getGroupId()));
+      }
+    }
+    // The list passed in is left alone.
+    Assert.assertEquals(groups, input);
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertTrue(AnimationGroupSort.sort(null).isEmpty());
+    Assert.assertTrue(AnimationGroupSort.sort(new ArrayList<KFAnimationGroup>()).isEmpty());
+  }
+
+  @Test
+  public void testRejectsMissingParent() {
+    try {
+      AnimationGroupSort.sort(Arrays.asList(createGroup(1, 0), createGroup(2, 3)));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testRejectsCycle() {
+    try {
+      AnimationGroupSort.sort(
+          Arrays.asList(createGroup(1, 0), createGroup(2, 3), createGroup(3, 2)));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    try {
+      AnimationGroupSort.sort(Arrays.asList(createGroup(1, 1)));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  private static KFAnimationGroup createGroup(int groupId, int parentGroup) {
+    KFAnimationGroup.Builder builder = new KFAnimationGroup.Builder();
+    builder.groupId = groupId;
+    builder.parentGroup = parentGroup;
+    KFAnimationFrame.Builder frame = new KFAnimationFrame.Builder();
+    frame.startFrame = 0;
+    frame.data = new float[]{0};
+    KFAnimation.Builder animation = new KFAnimation.Builder();
+    animation.propertyType = KFAnimation.PropertyType.ROTATION;
+    animation.animationFrames = Arrays.asList(frame.build());
+    builder.animations = new ArrayList<>(Arrays.asList(animation.build()));
+    return builder.build();
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KFColorInterpolatorTest {
+
+  private static final int[] COLORS = {
+      0x00000000,
+      0xFF000000,
+      0xFFFFFFFF,
+      0x80FF8040,
+      0x00336699,
+      0xFF1E90FF,
+      0xC0FF0000,
+      0x01FE02FD,
+  };
+
+  @Test
+  public void testEndsAreExact() {
+    for (boolean premultiplied : new boolean[]{false, true}) {
+      for (int colorA : COLORS) {
+        for (int colorB : COLORS) {
+          int start = KFColorInterpolator.getSegmentStart(colorA, premultiplied);
+          long deltas = KFColorInterpolator.getSegmentDeltas(colorA, colorB, premultiplied);
+          if (!premultiplied || (colorA >>> 24) == 0xFF) {
+            Assert.assertEquals(
+                colorA,
+                KFColorInterpolator.interpolate(start, deltas, 0, premultiplied));
+          }
+          if (!premultiplied || (colorB >>> 24) == 0xFF) {
+            Assert.assertEquals(
+                colorB,
+                KFColorInterpolator.interpolate(start, deltas, 1, premultiplied));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testComponentsAreRoundedToNearest() {
+    for (int colorA : COLORS) {
+      for (int colorB : COLORS) {
+        for (int step = 0; step <= 100; step++) {
+          float progress = step / 100f;
+          int color = KFColorInterpolator.interpolate(colorA, colorB, progress);
+          for (int shift = 0; shift < 32; shift += 8) {
+            int componentA = (colorA >>> shift) & 0xFF;
+            int componentB = (colorB >>> shift) & 0xFF;
+            double expected = componentA + (componentB - componentA) * (double) progress;
+            // Half a step, plus the truncation of progress to 16 bits.
+            Assert.assertEquals(expected, (color >>> shift) & 0xFF, 0.5 + 1 / 256.0);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNegativeDeltas() {
+    Assert.assertEquals(
+        0x80808080,
+        KFColorInterpolator.interpolate(0xFFFFFFFF, 0x01010101, 0.5f));
+    // Halfway between 0 and 255 rounds up, in either direction.
+    Assert.assertEquals(
+        0x80808080,
+        KFColorInterpolator.interpolate(0xFF00FF00, 0x00FF00FF, 0.5f));
+  }
+
+  @Test
+  public void testOvershootIsClamped() {
+    Assert.assertEquals(
+        0xFFFF0000,
+        KFColorInterpolator.interpolate(0x80800000, 0xFFFF0000, 1.5f));
+    Assert.assertEquals(
+        0x00000000,
+        KFColorInterpolator.interpolate(0x80800000, 0xFFFF0000, -1.5f));
+  }
+
+  @Test
+  public void testPremultipliedKeepsHue() {
+    // Fading in from transparent black shouldn't darken the color on the way.
+    int start = KFColorInterpolator.getSegmentStart(0x00000000, true);
+    long deltas = KFColorInterpolator.getSegmentDeltas(0x00000000, 0xFFFF8040, true);
+    for (int step = 1; step <= 10; step++) {
+      int color = KFColorInterpolator.interpolate(start, deltas, step / 10f, true);
+      // Premultiplied components only have as many steps as alpha does.
+      double tolerance = 255.0 / (color >>> 24);
+      Assert.assertEquals(0xFF, (color >> 16) & 0xFF, tolerance);
+      Assert.assertEquals(0x80, (color >> 8) & 0xFF, tolerance);
+      Assert.assertEquals(0x40, color & 0xFF, tolerance);
+    }
+    // Without premultiplying, the same fade passes through darker colors.
+    int color = KFColorInterpolator.interpolate(0x00000000, 0xFFFF8040, 0.5f);
+    Assert.assertEquals(0x80, (color >> 16) & 0xFF);
+  }
+
+  @Test
+  public void testPremultiplyRoundTripsOpaqueColors() {
+    for (int color : COLORS) {
+      int opaque = color | 0xFF000000;
+      Assert.assertEquals(opaque, KFColorInterpolator.premultiply(opaque));
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KFCubicBezierInterpolatorTest {
+
+  private static final float[][] CURVES = {
+      {0, 0, 1, 1},
+      {0.25f, 0.1f, 0.25f, 1},
+      {0.42f, 0, 1, 1},
+      {0, 0, 0.58f, 1},
+      {0.42f, 0, 0.58f, 1},
+      {0.167f, 0.167f, 0.833f, 0.833f},
+      {0.333f, 0, 0.667f, 1},
+      {1, 0, 0, 1},
+      {0, 1, 1, 0},
+      {0.68f, -0.55f, 0.265f, 1.55f},
+  };
+
+  private static final float TOLERANCE = 1e-4f;
+
+  @Test
+  public void testMatchesReferenceSolution() {
+    for (float[] curve : CURVES) {
+      Interpolator interpolator =
+          new KFCubicBezierInterpolator(curve[0], curve[1], curve[2], curve[3]);
+      for (int i = 0; i <= 1000; i++) {
+        float x = i / 1000f;
+        Assert.assertEquals(
+            "Curve " + curve[0] + "," + curve[1] + "," + curve[2] + "," + curve[3] + " at " + x,
+            referenceInterpolation(curve, x),
+            interpolator.getInterpolation(x),
+            TOLERANCE);
+      }
+    }
+  }
+
+  @Test
+  public void testEndpointsAndClamping() {
+    Interpolator interpolator = new KFCubicBezierInterpolator(0.68f, -0.55f, 0.265f, 1.55f);
+    Assert.assertEquals(0, interpolator.getInterpolation(0), 0);
+    Assert.assertEquals(1, interpolator.getInterpolation(1), 0);
+    Assert.assertEquals(0, interpolator.getInterpolation(-0.5f), 0);
+    Assert.assertEquals(1, interpolator.getInterpolation(1.5f), 0);
+  }
+
+  @Test
+  public void testLinearCurveIsIdentity() {
+    Interpolator interpolator = new KFCubicBezierInterpolator(0.25f, 0.25f, 0.75f, 0.75f);
+    for (int i = 0; i <= 100; i++) {
+      float x = i / 100f;
+      Assert.assertEquals(x, interpolator.getInterpolation(x), TOLERANCE);
+    }
+  }
+
+  @Test
+  public void testFactoryCreatesSelectedType() {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    try {
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.CUBIC_BEZIER);
+      Assert.assertTrue(
+          KFInterpolatorFactory.getInterpolator(0.1f, 0.2f, 0.3f, 0.4f)
+              instanceof KFCubicBezierInterpolator);
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.PATH_SAMPLED);
+      Assert.assertTrue(
+          KFInterpolatorFactory.getInterpolator(0.1f, 0.2f, 0.3f, 0.4f)
+              instanceof KFPathInterpolator);
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+    }
+  }
+
+  /**
+   * Solves the curve in double precision by bisection alone.
+   */
+  private static float referenceInterpolation(float[] curve, float x) {
+    double low = 0;
+    double high = 1;
+    for (int i = 0; i < 100; i++) {
+      double t = (low + high) / 2;
+      if (bezier(curve[0], curve[2], t) < x) {
+        low = t;
+      } else {
+        high = t;
+      }
+    }
+    return (float) bezier(curve[1], curve[3], (low + high) / 2);
+  }
+
+  private static double bezier(double control1, double control2, double t) {
+    double oneMinusT = 1 - t;
+    return 3 * oneMinusT * oneMinusT * t * control1 +
+        3 * oneMinusT * t * t * control2 +
+        t * t * t;
+  }
+}
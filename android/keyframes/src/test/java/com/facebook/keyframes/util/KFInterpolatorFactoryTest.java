@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.view.animation.Interpolator;
+
+import com.facebook.keyframes.model.keyframedmodels.KeyFrameAnimationHelper;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class KFInterpolatorFactoryTest {
+
+  @Before
+  public void setUp() {
+    KFInterpolatorFactory.clear();
+  }
+
+  @Test
+  public void testIdenticalCurvesAreShared() {
+    Interpolator first = KFInterpolatorFactory.getInterpolator(0.25f, 0.1f, 0.25f, 1);
+    Interpolator second = KFInterpolatorFactory.getInterpolator(0.25f, 0.1f, 0.25f, 1);
+    Interpolator other = KFInterpolatorFactory.getInterpolator(0.42f, 0, 0.58f, 1);
+
+    Assert.assertSame(first, second);
+    Assert.assertNotSame(first, other);
+    Assert.assertEquals(1, KFInterpolatorFactory.getDeduplicatedCount());
+    Assert.assertEquals(2, KFInterpolatorFactory.getInternedCount());
+  }
+
+  @Test
+  public void testBuildInterpolatorListDeduplicates() {
+    float[][][] timingCurves = new float[][][]{
+        {{0, 0}, {1, 1}},
+        {{0.5f, 0}, {0.5f, 1}},
+        {{0, 0}, {1, 1}},
+        {{0, 0}, {1, 1}}};
+    List<Interpolator> interpolators =
+        KeyFrameAnimationHelper.buildInterpolatorList(timingCurves);
+
+    Assert.assertEquals(4, interpolators.size());
+    Assert.assertSame(interpolators.get(0), interpolators.get(2));
+    Assert.assertSame(interpolators.get(0), interpolators.get(3));
+    Assert.assertNotSame(interpolators.get(0), interpolators.get(1));
+    Assert.assertEquals(2, KFInterpolatorFactory.getDeduplicatedCount());
+  }
+
+  @Test
+  public void testTableIsBounded() {
+    Interpolator first = KFInterpolatorFactory.getInterpolator(0, 0, 1, 1);
+    for (int i = 1; i <= KFInterpolatorFactory.MAX_INTERNED_INTERPOLATORS; i++) {
+      KFInterpolatorFactory.getInterpolator(i / 1000f, 0, 1, 1);
+    }
+    Assert.assertEquals(
+        KFInterpolatorFactory.MAX_INTERNED_INTERPOLATORS,
+        KFInterpolatorFactory.getInternedCount());
+    // The least recently used curve was dropped, so it gets a new instance.
+    Assert.assertNotSame(first, KFInterpolatorFactory.getInterpolator(0, 0, 1, 1));
+    Assert.assertEquals(0, KFInterpolatorFactory.getDeduplicatedCount());
+  }
+}
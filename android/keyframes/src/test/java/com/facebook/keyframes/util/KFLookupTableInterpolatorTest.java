@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KFLookupTableInterpolatorTest {
+
+  private static final float[][] CURVES = {
+      {0, 0, 1, 1},
+      {0.25f, 0.1f, 0.25f, 1},
+      {0.42f, 0, 1, 1},
+      {0, 0, 0.58f, 1},
+      {0.42f, 0, 0.58f, 1},
+      {0.167f, 0.167f, 0.833f, 0.833f},
+      {0.333f, 0, 0.667f, 1},
+      {0.68f, -0.55f, 0.265f, 1.55f},
+  };
+
+  private static final float[] ERROR_BOUNDS = {0.01f, 0.001f, 0.0001f};
+
+  @Test
+  public void testWithinErrorBound() {
+    for (float errorBound : ERROR_BOUNDS) {
+      for (float[] curve : CURVES) {
+        Interpolator expected =
+            new KFCubicBezierInterpolator(curve[0], curve[1], curve[2], curve[3]);
+        KFLookupTableInterpolator actual = new KFLookupTableInterpolator(
+            curve[0],
+            curve[1],
+            curve[2],
+            curve[3],
+            errorBound);
+        Assert.assertTrue(actual.getTableSize() < KFLookupTableInterpolator.MAX_TABLE_SIZE);
+        for (int i = 0; i <= 1000; i++) {
+          float x = i / 1000f;
+          Assert.assertEquals(
+              "Curve " + curve[0] + "," + curve[1] + "," + curve[2] + "," + curve[3] + " at " + x,
+              expected.getInterpolation(x),
+              actual.getInterpolation(x),
+              errorBound);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTableGrowsWithTighterBound() {
+    KFLookupTableInterpolator coarse = new KFLookupTableInterpolator(0.42f, 0, 0.58f, 1, 0.01f);
+    KFLookupTableInterpolator fine = new KFLookupTableInterpolator(0.42f, 0, 0.58f, 1, 0.0001f);
+    Assert.assertTrue(coarse.getTableSize() < fine.getTableSize());
+
+    // A linear curve is exact with the smallest table.
+    KFLookupTableInterpolator linear = new KFLookupTableInterpolator(0, 0, 1, 1, 0.0001f);
+    Assert.assertEquals(17, linear.getTableSize());
+  }
+
+  @Test
+  public void testEndpointsAndClamping() {
+    Interpolator interpolator =
+        new KFLookupTableInterpolator(0.68f, -0.55f, 0.265f, 1.55f, 0.001f);
+    Assert.assertEquals(0, interpolator.getInterpolation(0), 0);
+    Assert.assertEquals(1, interpolator.getInterpolation(1), 0);
+    Assert.assertEquals(0, interpolator.getInterpolation(-0.5f), 0);
+    Assert.assertEquals(1, interpolator.getInterpolation(1.5f), 0);
+  }
+
+  @Test
+  public void testRejectsNonPositiveBound() {
+    try {
+      new KFLookupTableInterpolator(0.42f, 0, 0.58f, 1, 0);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testFactorySharesTablesPerErrorBound() {
+    KFInterpolatorFactory.InterpolatorType previousType =
+        KFInterpolatorFactory.getInterpolatorType();
+    float previousBound = KFInterpolatorFactory.getLookupTableErrorBound();
+    try {
+      KFInterpolatorFactory.setInterpolatorType(
+          KFInterpolatorFactory.InterpolatorType.LOOKUP_TABLE);
+      KFInterpolatorFactory.setLookupTableErrorBound(0.01f);
+      Interpolator first = KFInterpolatorFactory.getInterpolator(0.1f, 0.2f, 0.3f, 0.4f);
+      Assert.assertTrue(first instanceof KFLookupTableInterpolator);
+      Assert.assertSame(first, KFInterpolatorFactory.getInterpolator(0.1f, 0.2f, 0.3f, 0.4f));
+
+      KFInterpolatorFactory.setLookupTableErrorBound(0.0001f);
+      Assert.assertNotSame(first, KFInterpolatorFactory.getInterpolator(0.1f, 0.2f, 0.3f, 0.4f));
+    } finally {
+      KFInterpolatorFactory.setInterpolatorType(previousType);
+      KFInterpolatorFactory.setLookupTableErrorBound(previousBound);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import com.facebook.keyframes.KFPath;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VectorCommandMorphTest {
+
+  @Test
+  public void testMorphConvertsUpAheadOfTime() {
+    VectorCommandMorph morph = new VectorCommandMorph(
+        parse("M0,0", "L30,30", "l6,0"),
+        parse("M10,10", "C10,20,20,30,40,40", "q0,0,6,6"));
+    KFPath mockPath = Mockito.mock(KFPath.class);
+    InOrder orderedMock = Mockito.inOrder(mockPath);
+
+    Assert.assertEquals(6, morph.getMaxArgCount());
+    morph.apply(0.5f, mockPath, new float[morph.getMaxArgCount()]);
+    orderedMock.verify(mockPath).moveTo(5, 5);
+    // The line from 0,0 to 30,30 is converted up to the cubic 10,10,20,20,30,30.
+    orderedMock.verify(mockPath).cubicTo(10, 15, 20, 25, 35, 35);
+    // Relative commands are converted up from the origin.
+    orderedMock.verify(mockPath).rQuadTo(1.5f, 0, 6, 3);
+  }
+
+  @Test
+  public void testRejectsMismatchedCommands() {
+    // Different lengths
+    try {
+      new VectorCommandMorph(parse("M0,0", "L1,1"), parse("M0,0"));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // Different argument formats
+    try {
+      new VectorCommandMorph(parse("M0,0", "L1,1"), parse("M0,0", "l1,1"));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // A move paired with another kind of command
+    try {
+      new VectorCommandMorph(parse("M0,0", "L1,1"), parse("M0,0", "M1,1"));
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testScratchIsOwnedByCaller() {
+    VectorCommandMorph morph = new VectorCommandMorph(
+        parse("M0,0", "Q10,10,20,20"),
+        parse("M10,10", "Q30,30,40,40"));
+    Assert.assertEquals(4, morph.getMaxArgCount());
+    KFPath mockPath = Mockito.mock(KFPath.class);
+
+    float[] scratch = new float[4];
+    morph.apply(0.5f, mockPath, scratch);
+    Mockito.verify(mockPath).quadTo(20, 20, 30, 30);
+    // The last interpolated command is left in the caller's scratch, not in the morph.
+    Assert.assertArrayEquals(new float[] {20, 20, 30, 30}, scratch, 0);
+
+    try {
+      morph.apply(0.5f, mockPath, new float[3]);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testAppliesConcurrently() throws InterruptedException {
+    final VectorCommandMorph morph = new VectorCommandMorph(
+        parse("M0,0", "C0,0,0,0,0,0", "L0,0"),
+        parse("M100,100", "C100,100,100,100,100,100", "L100,100"));
+    final AtomicInteger mismatchCount = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final float progress = (t + 1) / 5f;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          // Like two drawables of one image, each with its own path and scratch.
+          KFPath path = new KFPath();
+          float[] scratch = new float[morph.getMaxArgCount()];
+          for (int i = 0; i < 20000; i++) {
+            path.reset();
+            morph.apply(progress, path, scratch);
+            if (path.getLastPoint()[0] != progress * 100 ||
+                path.getLastPoint()[1] != progress * 100) {
+              mismatchCount.incrementAndGet();
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(0, mismatchCount.get());
+  }
+
+  private static List<VectorCommand> parse(String... commands) {
+    List<VectorCommand> vectorCommands = new ArrayList<>();
+    for (String command : commands) {
+      vectorCommands.add(VectorCommand.createVectorCommand(command));
+    }
+    return vectorCommands;
+  }
+}
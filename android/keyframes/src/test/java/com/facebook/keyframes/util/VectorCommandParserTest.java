@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2016-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.keyframes.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+public class VectorCommandParserTest {
+
+  private static final String[] NUMBERS = {
+      "0", "-0", "0.0", "+1", "1.", ".5", "-.5", "00012.50", "3.14159265358979323846",
+      "1e3", "1E-3", "2.5e+2", "-7.25e-10", "123456789", "16777217", "0.1", "0.2", "0.3",
+      "1.17549435E-38", "3.4028235e38", "3.4028236e38", "1e-50", "1e50",
+      "0.000000000000000000000000000000000000000000001", "99999999999999999999.5",
+      "1.0000000596046447753906250", "1.00000005960464477539062500001"
+  };
+
+  @Test
+  public void testNumbersMatchParseFloat() {
+    VectorCommandParser parser = new VectorCommandParser();
+    for (String number : NUMBERS) {
+      assertParsesLikeParseFloat(parser, number);
+    }
+  }
+
+  @Test
+  public void testOtherNumbersMatchParseFloat() {
+    VectorCommandParser parser = new VectorCommandParser();
+    for (String number : new String[]{"NaN", "-Infinity", "1.5f", "2D", "1e2f", "0x1.8p1"}) {
+      assertParsesLikeParseFloat(parser, number);
+    }
+    assertArgs(new float[]{1.5f, 2}, parser.parseCommand("M1.5f,2"));
+  }
+
+  @Test
+  public void testRandomNumbersMatchParseFloat() {
+    VectorCommandParser parser = new VectorCommandParser();
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      float value = Float.intBitsToFloat(random.nextInt());
+      if (Float.isNaN(value) || Float.isInfinite(value)) {
+        continue;
+      }
+      assertParsesLikeParseFloat(parser, Float.toString(value));
+      assertParsesLikeParseFloat(parser, String.format(Locale.US, "%.3f", value));
+      assertParsesLikeParseFloat(
+          parser,
+          String.format(Locale.US, "%.2f", (random.nextFloat() - 0.5f) * 2000));
+      assertParsesLikeParseFloat(
+          parser,
+          String.format(Locale.US, "%.12e", random.nextDouble() * 1000));
+    }
+  }
+
+  @Test
+  public void testSeparators() {
+    VectorCommandParser parser = new VectorCommandParser();
+    assertArgs(new float[]{1, 2}, parser.parseCommand("M1,2"));
+    assertArgs(new float[]{1, 2}, parser.parseCommand("M 1 2"));
+    assertArgs(new float[]{1, 2}, parser.parseCommand("  M1 ,\t2\n"));
+    assertArgs(new float[]{1, -2}, parser.parseCommand("M1-2"));
+    assertArgs(new float[]{1.5f, 0.5f}, parser.parseCommand("M1.5.5"));
+    assertArgs(new float[]{10, -20}, parser.parseCommand("M1e1-2e1"));
+    assertArgs(
+        new float[]{1.5f, -2, 3, 40, 5, -6},
+        parser.parseCommand("c1.5 -2 3,4e1 5-6"));
+  }
+
+  @Test
+  public void testParseCommands() {
+    VectorCommandParser parser = new VectorCommandParser();
+    List<VectorCommand> commands = new ArrayList<>();
+    parser.parseCommands("M0,0 L10,10q1,2,3,4 C1 2 3 4 5 6", commands);
+    Assert.assertEquals(4, commands.size());
+    Assert.assertEquals('M', commands.get(0).getCommandCharacter());
+    Assert.assertEquals('L', commands.get(1).getCommandCharacter());
+    Assert.assertEquals('q', commands.get(2).getCommandCharacter());
+    Assert.assertEquals('C', commands.get(3).getCommandCharacter());
+    assertArgs(new float[]{1, 2, 3, 4}, commands.get(2));
+    assertArgs(new float[]{1, 2, 3, 4, 5, 6}, commands.get(3));
+  }
+
+  @Test
+  public void testErrorOffsets() {
+    assertParseError("M1,2,#", "Expected a number at offset 5");
+    assertParseError("M1,2e", "Expected an exponent at offset 4");
+    assertParseError("1,2", "Expected a vector command but found '1' at offset 0");
+    assertParseError("", "Expected a vector command at offset 0");
+    assertParseError("M1,2 L3,4", "Unexpected character 'L' at offset 5");
+    assertParseError("M1,2,3", "requires two arguments");
+    assertParseError("M1,2,3", "at offset 0");
+    assertParseError("A1,2", "Unhandled vector command: A at offset 0");
+    // A letter which isn't part of a number still starts the next command.
+    assertParseError("M1,2z", "Unexpected character 'z' at offset 4");
+    assertParseError("M1,Nope", "Invalid number 'Nope' at offset 3");
+  }
+
+  private static void assertParsesLikeParseFloat(VectorCommandParser parser, String number) {
+    float expected = Float.parseFloat(number);
+    float[] actual = parser.parseCommand("M" + number + " " + number).getArguments();
+    Assert.assertEquals(
+        "Parsing " + number,
+        Float.floatToIntBits(expected),
+        Float.floatToIntBits(actual[0]));
+    Assert.assertEquals(
+        "Parsing " + number,
+        Float.floatToIntBits(expected),
+        Float.floatToIntBits(actual[1]));
+  }
+
+  private static void assertArgs(float[] expected, VectorCommand command) {
+    Assert.assertArrayEquals(expected, command.getArguments(), 0);
+  }
+
+  private static void assertParseError(String command, String expectedMessage) {
+    try {
+      new VectorCommandParser().parseCommand(command);
+      Assert.fail("Expected exception not thrown.");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+    }
+  }
+}
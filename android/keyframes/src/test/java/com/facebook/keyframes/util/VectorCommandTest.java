@@ -25,7 +25,7 @@ public class VectorCommandTest {
       Assert.fail("Expected exception not thrown.");
     } catch (Exception e) {
       Assert.assertTrue(e instanceof IllegalArgumentException);
-      Assert.assertTrue(e.getMessage().contains("No enum constant"));
+      Assert.assertTrue(e.getMessage().contains("Unhandled vector command: A at offset 0"));
     }
   }
 